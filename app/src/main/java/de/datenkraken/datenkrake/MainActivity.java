@@ -6,7 +6,6 @@ import android.content.pm.PackageManager;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Bundle;
-import android.util.Pair;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.ViewParent;
@@ -59,6 +58,7 @@ import de.datenkraken.datenkrake.surveillance.broadcast.Receiver;
 import de.datenkraken.datenkrake.surveillance.broadcast.UserActivityReceiver;
 import de.datenkraken.datenkrake.surveillance.graphqladapter.ApplicationAction;
 import de.datenkraken.datenkrake.surveillance.graphqladapter.Permission;
+import de.datenkraken.datenkrake.surveillance.payload.PermissionStatePayload;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
@@ -482,7 +482,7 @@ public class MainActivity extends AppCompatActivity {
             editor.putBoolean(getString(R.string.preference_permission_location),
                 granted);
             EventCollector.raiseEvent(new DataCollectionEvent<>(DataCollectionEventType.PERMISSIONSTATE)
-                .with(new Pair<>(Permission.LOCATION, granted)));
+                .with(PermissionStatePayload.obtain(Permission.LOCATION, granted)));
             editor.apply();
         }
     }
@@ -200,6 +200,22 @@ public abstract class DaoArticle implements DaoSourceToArticleRelation, DaoArtic
         return relation.article;
     }
 
+    /**
+     * Returns the {@link Article}s of the given uids with one query. <br>
+     * Works synchronously.
+     *
+     * @param uids Uids of the {@link Article}s
+     * @return list of {@link Article}s, articles which don't exist are missing.
+     */
+    public List<Article> getAllArticleByArticleUidsSync(List<Long> uids) {
+        List<Article> articles = new ArrayList<>();
+        for (ArticleToSourceRelation relation : getAllArticleToSourceByArticleUidsSync(uids)) {
+            relation.reference();
+            articles.add(relation.article);
+        }
+        return articles;
+    }
+
 
 
     /**
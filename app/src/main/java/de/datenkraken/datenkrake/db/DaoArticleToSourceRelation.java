@@ -8,6 +8,8 @@ import androidx.room.Transaction;
 
 import de.datenkraken.datenkrake.model.Article;
 
+import java.util.List;
+
 /**
  * Dao for {@link ArticleToSourceRelation}. <br>
  * Will be decorated by Room to be able to query the database. <br>
@@ -41,4 +43,15 @@ interface DaoArticleToSourceRelation {
     @Transaction
     @Query(value = "SELECT * FROM articles WHERE :uid = articles.uid")
     ArticleToSourceRelation getOneArticleToSourceByArticleUidSync(long uid);
+
+    /**
+     * Returns the {@link ArticleToSourceRelation}s for the given article ids. <br>
+     * Works synchronously.
+     *
+     * @param uids {@link Article} uids for the searched articles of the relations.
+     * @return list of {@link ArticleToSourceRelation}s, articles which don't exist are missing.
+     */
+    @Transaction
+    @Query(value = "SELECT * FROM articles WHERE articles.uid IN (:uids)")
+    List<ArticleToSourceRelation> getAllArticleToSourceByArticleUidsSync(List<Long> uids);
 }
@@ -0,0 +1,126 @@
+package de.datenkraken.datenkrake.network;
+
+import android.content.SharedPreferences;
+
+import java.util.Random;
+
+import timber.log.Timber;
+
+/**
+ * Circuit breaker for the uploads of the
+ * {@link de.datenkraken.datenkrake.surveillance.background.BackgroundPacketSender}, whose
+ * endpoint may be unreachable. The breaker doesn't send or retry anything itself, it only tells
+ * the worker, if a run should upload at all. <br>
+ * The caller reports the outcome of every run. After the configured number of consecutive
+ * failures the breaker opens and {@link #allowRequest()} returns false, until the backoff delay
+ * passed. The delay doubles with every further failure up to the configured maximum and is
+ * randomized, so devices don't hit the endpoint in lockstep. After the delay the breaker is half
+ * open: the next run is a probe, which closes the breaker on success or opens it again on
+ * failure. <br>
+ * The state is stored in {@link SharedPreferences}, so it survives the process and every run of
+ * the background worker can check it, before doing any work.
+ */
+public final class CircuitBreaker {
+
+    private final SharedPreferences preferences;
+    private final String failuresKey;
+    private final String openUntilKey;
+    private final int threshold;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final Random random = new Random();
+
+    /**
+     * Constructor of this class.
+     *
+     * @param preferences storage of the state
+     * @param name name of the guarded endpoint, used as prefix of the stored keys
+     * @param threshold number of consecutive failures, after which the breaker opens
+     * @param baseDelay delay in milliseconds after the breaker opened the first time
+     * @param maxDelay maximal delay in milliseconds
+     */
+    public CircuitBreaker(SharedPreferences preferences, String name, int threshold, long baseDelay,
+                          long maxDelay) {
+        Timber.tag("CircuitBreaker");
+        this.preferences = preferences;
+        failuresKey = name + "_failures";
+        openUntilKey = name + "_open_until";
+        this.threshold = Math.max(1, threshold);
+        this.baseDelay = baseDelay;
+        this.maxDelay = Math.max(baseDelay, maxDelay);
+    }
+
+    /**
+     * Checks if requests may be sent. If the clock of the device was turned back, a delay
+     * longer than the maximum is cut.
+     *
+     * @return false if the breaker is open
+     */
+    public synchronized boolean allowRequest() {
+        long now = System.currentTimeMillis();
+        long openUntil = preferences.getLong(openUntilKey, 0);
+        return now >= openUntil || openUntil - now > maxDelay;
+    }
+
+    /**
+     * Checks if the breaker opened before and its delay passed, so the next request is a probe.
+     *
+     * @return true if the breaker is half open
+     */
+    public synchronized boolean isHalfOpen() {
+        return preferences.getInt(failuresKey, 0) >= threshold && allowRequest();
+    }
+
+    /**
+     * Returns the time at which the breaker allows requests again.
+     *
+     * @return time in milliseconds since the epoch, in the past if the breaker is closed
+     */
+    public synchronized long getRetryTime() {
+        return preferences.getLong(openUntilKey, 0);
+    }
+
+    /**
+     * Records a successful request and closes the breaker.
+     */
+    public synchronized void onSuccess() {
+        if (preferences.getInt(failuresKey, 0) == 0) {
+            return;
+        }
+
+        preferences.edit()
+            .putInt(failuresKey, 0)
+            .putLong(openUntilKey, 0)
+            .apply();
+    }
+
+    /**
+     * Records a failed request. Opens the breaker, if the threshold is reached.
+     */
+    public synchronized void onFailure() {
+        int failures = preferences.getInt(failuresKey, 0) + 1;
+        SharedPreferences.Editor editor = preferences.edit().putInt(failuresKey, failures);
+
+        if (failures >= threshold) {
+            long delay = getDelay(failures - threshold);
+            editor.putLong(openUntilKey, System.currentTimeMillis() + delay);
+            Timber.w("%d consecutive failures, backing off for %d s", failures, delay / 1000);
+        }
+        editor.apply();
+    }
+
+    /**
+     * Calculates the randomized delay after the given number of failures beyond the threshold.
+     * The delay is at least half of the exponential delay.
+     *
+     * @param exponent number of failures beyond the threshold
+     * @return delay in milliseconds
+     */
+    private long getDelay(int exponent) {
+        long delay = maxDelay;
+        if (exponent < Long.numberOfLeadingZeros(baseDelay) - 1) {
+            delay = Math.min(maxDelay, baseDelay << exponent);
+        }
+        return delay / 2 + (long) (random.nextDouble() * (delay / 2));
+    }
+}
@@ -10,12 +10,10 @@ import de.datenkraken.datenkrake.surveillance.DataCollectionEvent;
 import de.datenkraken.datenkrake.surveillance.DataCollectionEventType;
 import de.datenkraken.datenkrake.surveillance.EventCollector;
 import de.datenkraken.datenkrake.surveillance.graphqladapter.ArticleAction;
+import de.datenkraken.datenkrake.surveillance.payload.ArticleActionPayload;
 
-import java.lang.ref.WeakReference;
 import java.util.List;
 
-import kotlin.Triple;
-
 import timber.log.Timber;
 
 /**
@@ -90,7 +88,7 @@ public final class ArticleRepository {
     public void setRead(long articleID) {
         // Raise opened event for article.
         EventCollector.raiseEvent(new DataCollectionEvent<>(DataCollectionEventType.ARTICLEIDACTION)
-            .with(new Triple<>(ArticleAction.OPENED, articleID, new WeakReference<>(database))));
+            .with(ArticleActionPayload.obtain(ArticleAction.OPENED, articleID, database)));
 
         AsyncTask.execute(() -> database.daoArticle().updateOneArticleReadSync(articleID, true));
     }
@@ -109,7 +107,7 @@ public final class ArticleRepository {
         // Raise saved event for article, only if article gets saved.
         if (saved) {
             EventCollector.raiseEvent(new DataCollectionEvent<>(DataCollectionEventType.ARTICLEACTION)
-                .with(new Triple<>(ArticleAction.SAVED, article.title, article.source.url.toString())));
+                .with(ArticleActionPayload.obtain(ArticleAction.SAVED, article.title, article.source.url.toString())));
         }
 
         AsyncTask.execute(() -> {
@@ -1,7 +1,6 @@
 package de.datenkraken.datenkrake.repository;
 
 import android.os.AsyncTask;
-import android.util.Pair;
 
 import androidx.lifecycle.LiveData;
 
@@ -15,6 +14,7 @@ import de.datenkraken.datenkrake.surveillance.DataCollectionEvent;
 import de.datenkraken.datenkrake.surveillance.DataCollectionEventType;
 import de.datenkraken.datenkrake.surveillance.EventCollector;
 import de.datenkraken.datenkrake.surveillance.graphqladapter.SourceAction;
+import de.datenkraken.datenkrake.surveillance.payload.SourceActionPayload;
 import de.datenkraken.datenkrake.util.Helper;
 
 import java.util.List;
@@ -74,7 +74,7 @@ public final class SourceRepository {
     public void insertSource(Source source) {
 
         EventCollector.raiseEvent(new DataCollectionEvent<>(DataCollectionEventType.SOURCEACTION)
-            .with(new Pair<>(SourceAction.ADDED, source.url.toString())));
+            .with(SourceActionPayload.obtain(SourceAction.ADDED, source.url.toString())));
 
         source.uid = Helper.generateSourceUid(source);
         AsyncTask.execute(() -> database.daoSource().insertOneSourceSync(source));
@@ -89,7 +89,7 @@ public final class SourceRepository {
      */
     public void deleteSource(Source source) {
         EventCollector.raiseEvent(new DataCollectionEvent<>(DataCollectionEventType.SOURCEACTION)
-            .with(new Pair<>(SourceAction.REMOVED, source.url.toString())));
+            .with(SourceActionPayload.obtain(SourceAction.REMOVED, source.url.toString())));
 
         AsyncTask.execute(() -> {
             FeedUpdateManager.getInstance(database).feedUpdater.purgeDownloadTask(source.uid);
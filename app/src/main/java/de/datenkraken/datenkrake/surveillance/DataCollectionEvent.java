@@ -1,11 +1,13 @@
 package de.datenkraken.datenkrake.surveillance;
 
-import java.lang.ref.WeakReference;
-import java.util.Date;
+import de.datenkraken.datenkrake.surveillance.payload.EventPayload;
 
 /**
  * Generic Event, which holds all necessary information to process it. Can be created by all
- * classes in this application. Gets processed by {@link IEventProcessor}s.
+ * classes in this application. Gets processed by {@link IEventProcessor}s. <br>
+ * The content is held strongly, so it can't be collected before the event is processed. Contents
+ * with several values should be an {@link EventPayload} of the event type, which is recycled once
+ * the event was distributed.
  *
  * @param <T> Type of data this event should hold.
  * @author Daniel Thoma - daniel.thoma@stud.tu-darmstadt.de
@@ -13,8 +15,9 @@ import java.util.Date;
 public class DataCollectionEvent<T> {
 
     /**
-     * Enum for the Priority of this Event. Events with a priority of {@link #PRIORITY_MEDIUM} or
-     * lower can be ignored if {@link EventCollector} reaches its soft cap.
+     * Enum for the Priority of this Event. Events with {@link #PRIORITY_LOW} are sampled, if the
+     * lane of their type in {@link EventCollector} reaches its soft cap. All events are ignored,
+     * if it reaches its hard cap.
      */
     enum Priority {
         PRIORITY_LOW(0),
@@ -37,8 +40,8 @@ public class DataCollectionEvent<T> {
     int delay = 0;
     int period = 0;
 
-    public Date timestamp;
-    public WeakReference<T> content;
+    public long timestamp; // epoch time in milliseconds
+    public T content;
 
     /**
      * Creates this Event with the given {@link DataCollectionEventType}.
@@ -46,7 +49,7 @@ public class DataCollectionEvent<T> {
      * @param t {@link DataCollectionEventType}
      */
     public DataCollectionEvent(DataCollectionEventType t) {
-        timestamp = new Date();
+        timestamp = System.currentTimeMillis();
         type = t;
     }
 
@@ -57,7 +60,7 @@ public class DataCollectionEvent<T> {
      * @return {@link DataCollectionEvent}
      */
     public DataCollectionEvent with(T content) {
-        this.content = new WeakReference<>(content);
+        this.content = content;
         return this;
 
     }
@@ -73,4 +76,56 @@ public class DataCollectionEvent<T> {
         return this;
     }
 
+    /**
+     * Sets the delay, after which this event is processed.
+     *
+     * @param delay {@link #delay} in milliseconds
+     * @return {@link DataCollectionEvent}
+     */
+    public DataCollectionEvent setDelay(int delay) {
+        this.delay = delay;
+        return this;
+    }
+
+    /**
+     * Sets the period, after which this event is processed again. Use
+     * {@link EventCollector#scheduleEvent(DataCollectionEvent)} to be able to cancel it.
+     *
+     * @param period {@link #period} in milliseconds, 0 to process the event once
+     * @return {@link DataCollectionEvent}
+     */
+    public DataCollectionEvent setPeriod(int period) {
+        this.period = period;
+        return this;
+    }
+
+    /**
+     * Creates one occurrence of this periodic event, which is processed on its own. It shares the
+     * content and settings, but its timestamp is the time it was created.
+     *
+     * @return copy of this event
+     */
+    DataCollectionEvent<T> occurrence() {
+        DataCollectionEvent<T> copy = new DataCollectionEvent<>(type);
+        copy.priority = priority;
+        copy.delay = delay;
+        copy.period = period;
+        copy.content = content;
+        return copy;
+    }
+
+    /**
+     * Recycles the {@link EventPayload} of this event, after it was distributed or dropped.
+     * Periodic events keep their content, because they are processed again.
+     */
+    void recycle() {
+        if (period > 0) {
+            return;
+        }
+        if (content instanceof EventPayload) {
+            ((EventPayload) content).recycle();
+        }
+        content = null;
+    }
+
 }
@@ -0,0 +1,158 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import de.datenkraken.datenkrake.surveillance.metrics.Counter;
+import de.datenkraken.datenkrake.surveillance.metrics.MetricsRegistry;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import timber.log.Timber;
+
+/**
+ * Decides, which {@link DataCollectionEvent}s are added to their lane, based on the number of
+ * pending events of the lane. Used by {@link EventCollector}. <br>
+ * Below the soft cap every event is accepted. Between the soft and the hard cap events with
+ * {@link DataCollectionEvent.Priority#PRIORITY_LOW} are sampled, with a rate falling from all
+ * events at the soft cap to none at the hard cap. Other events are accepted until the hard cap.
+ * Changes of the {@link EventPressure} of a lane are reported to the
+ * {@link IEventPressureListener}s. Accepted and rejected events are counted per priority and per
+ * lane, the latter in the {@link MetricsRegistry}.
+ */
+final class EventAdmission {
+
+    private final int softCap;
+    private final int hardCap;
+    private final AtomicReferenceArray<EventPressure> pressures;
+    private final AtomicLongArray accepted;
+    private final AtomicLongArray rejected;
+    private final Counter[] acceptedByLane;
+    private final Counter[] rejectedByLane;
+    private final List<IEventPressureListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructor of this class.
+     *
+     * @param softCap pending events of a lane, from which low priority events are sampled
+     * @param hardCap pending events of a lane, from which no events are accepted
+     */
+    EventAdmission(int softCap, int hardCap) {
+        Timber.tag("EventAdmission");
+        if (hardCap <= softCap) {
+            Timber.e("Hard cap %d isn't above soft cap %d", hardCap, softCap);
+        }
+        this.softCap = softCap;
+        this.hardCap = Math.max(hardCap, softCap + 1);
+
+        pressures = new AtomicReferenceArray<>(DataCollectionEventType.values().length);
+        for (int i = 0; i < pressures.length(); i++) {
+            pressures.set(i, EventPressure.NORMAL);
+        }
+        accepted = new AtomicLongArray(DataCollectionEvent.Priority.values().length);
+        rejected = new AtomicLongArray(DataCollectionEvent.Priority.values().length);
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        acceptedByLane = new Counter[DataCollectionEventType.values().length];
+        rejectedByLane = new Counter[DataCollectionEventType.values().length];
+        for (DataCollectionEventType type : DataCollectionEventType.values()) {
+            acceptedByLane[type.ordinal()] = metrics.counter("events.accepted." + type);
+            rejectedByLane[type.ordinal()] = metrics.counter("events.rejected." + type);
+        }
+    }
+
+    /**
+     * Checks if an event can be added to its lane and counts the decision.
+     *
+     * @param type {@link DataCollectionEventType} of the event, null for
+     *             {@link DataCollectionEventType#DEFAULT}
+     * @param pending number of events waiting in the lane of the type
+     * @param priority {@link DataCollectionEvent.Priority} of the event
+     * @return true if the event can be added
+     */
+    boolean admit(DataCollectionEventType type, int pending, DataCollectionEvent.Priority priority) {
+        EventPressure pressure = update(type, pending);
+
+        boolean admitted;
+        if (pressure == EventPressure.HARD) {
+            admitted = false;
+        } else if (pressure == EventPressure.SOFT && priority == DataCollectionEvent.Priority.PRIORITY_LOW) {
+            // keep the share of the space left between both caps
+            admitted = ThreadLocalRandom.current().nextInt(hardCap - softCap) < hardCap - pending;
+        } else {
+            admitted = true;
+        }
+
+        (admitted ? accepted : rejected).incrementAndGet(priority.ordinal());
+        int lane = (type == null ? DataCollectionEventType.DEFAULT : type).ordinal();
+        (admitted ? acceptedByLane : rejectedByLane)[lane].increment();
+        return admitted;
+    }
+
+    /**
+     * Updates the {@link EventPressure} of a lane and notifies the listeners, if it changed.
+     *
+     * @param type {@link DataCollectionEventType} of the lane, null for
+     *             {@link DataCollectionEventType#DEFAULT}
+     * @param pending number of events waiting in the lane
+     * @return current {@link EventPressure} of the lane
+     */
+    EventPressure update(DataCollectionEventType type, int pending) {
+        DataCollectionEventType lane = type == null ? DataCollectionEventType.DEFAULT : type;
+        EventPressure pressure;
+        if (pending >= hardCap) {
+            pressure = EventPressure.HARD;
+        } else if (pending >= softCap) {
+            pressure = EventPressure.SOFT;
+        } else {
+            pressure = EventPressure.NORMAL;
+        }
+
+        if (pressures.getAndSet(lane.ordinal(), pressure) != pressure) {
+            for (IEventPressureListener listener : listeners) {
+                try {
+                    listener.onPressureChanged(lane, pressure);
+                } catch (RuntimeException e) { // NOPMD a failing listener must not stop the lane
+                    Timber.e(e, "Pressure listener %s failed", listener);
+                }
+            }
+        }
+        return pressure;
+    }
+
+    /**
+     * Returns the last known {@link EventPressure} of the lane of the given type.
+     *
+     * @param type {@link DataCollectionEventType} of the lane
+     * @return {@link EventPressure} of the lane
+     */
+    EventPressure getPressure(DataCollectionEventType type) {
+        return pressures.get((type == null ? DataCollectionEventType.DEFAULT : type).ordinal());
+    }
+
+    void addListener(IEventPressureListener listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(IEventPressureListener listener) {
+        listeners.remove(listener);
+    }
+
+    long getAccepted(DataCollectionEvent.Priority priority) {
+        return accepted.get(priority.ordinal());
+    }
+
+    long getRejected(DataCollectionEvent.Priority priority) {
+        return rejected.get(priority.ordinal());
+    }
+
+    /**
+     * Logs the number of accepted and rejected events per priority.
+     */
+    void logCounts() {
+        for (DataCollectionEvent.Priority priority : DataCollectionEvent.Priority.values()) {
+            Timber.d("%s: accepted %d, rejected %d events", priority, getAccepted(priority), getRejected(priority));
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import timber.log.Timber;
+
+/**
+ * Stage of the {@link EventDistributor}, which drops duplicate {@link DataCollectionEvent}s before
+ * they are processed. Duplicates are detected by the {@link IEventCoalescer} registered for the
+ * type of an event. <br>
+ * The window starts with the first event of a key and isn't extended by its duplicates, so an
+ * event repeated all the time is still processed once per window. Dropped events are counted
+ * per type.
+ */
+final class EventCoalescer {
+
+    // number of keys per type, after which keys with an expired window are removed
+    private static final int KEY_LIMIT = 64;
+
+    private final Map<DataCollectionEventType, IEventCoalescer> coalescers =
+        new EnumMap<>(DataCollectionEventType.class);
+    private final Map<DataCollectionEventType, Map<Object, Long>> windows =
+        new EnumMap<>(DataCollectionEventType.class);
+    private final Map<DataCollectionEventType, AtomicLong> merged = new EnumMap<>(DataCollectionEventType.class);
+
+    /**
+     * Constructor of this class, registering the given coalescers. The registration is fixed, so
+     * the maps can be read without locking.
+     *
+     * @param eventCoalescers {@link IEventCoalescer}s to use
+     */
+    EventCoalescer(IEventCoalescer... eventCoalescers) {
+        Timber.tag("EventCoalescer");
+        for (DataCollectionEventType type : DataCollectionEventType.values()) {
+            windows.put(type, new ConcurrentHashMap<>());
+            merged.put(type, new AtomicLong());
+        }
+
+        for (IEventCoalescer coalescer : eventCoalescers) {
+            for (DataCollectionEventType type : coalescer.canCoalesce()) {
+                if (coalescers.containsKey(type)) {
+                    Timber.e("Coalescer %s ignored, %s has one already", coalescer, type);
+                    continue;
+                }
+                coalescers.put(type, coalescer);
+            }
+        }
+    }
+
+    /**
+     * Checks if the given event has to be processed.
+     *
+     * @param event raised {@link DataCollectionEvent}
+     * @return false if the event is a duplicate
+     */
+    boolean accept(DataCollectionEvent event) {
+        IEventCoalescer coalescer = event.type == null ? null : coalescers.get(event.type);
+        if (coalescer == null) {
+            return true;
+        }
+
+        Object key = coalescer.getKey(event);
+        if (key == null) {
+            return true;
+        }
+
+        Map<Object, Long> starts = windows.get(event.type);
+        long time = event.timestamp;
+        Long start = starts.get(key);
+        if (start != null && time >= start && time - start < coalescer.getWindow()) {
+            merged.get(event.type).incrementAndGet();
+            return false;
+        }
+
+        starts.put(key, time);
+        if (starts.size() > KEY_LIMIT) {
+            removeExpired(starts, time - coalescer.getWindow());
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of events of the given type, which were dropped as duplicates.
+     *
+     * @param type type of the events
+     * @return number of dropped events
+     */
+    long getMerged(DataCollectionEventType type) {
+        return merged.get(type).get();
+    }
+
+    /**
+     * Logs the number of dropped events per type.
+     */
+    void logMerged() {
+        for (Map.Entry<DataCollectionEventType, AtomicLong> entry : merged.entrySet()) {
+            if (entry.getValue().get() > 0) {
+                Timber.d("Merged %d duplicate %s events", entry.getValue().get(), entry.getKey());
+            }
+        }
+    }
+
+    private static void removeExpired(Map<Object, Long> starts, long before) {
+        Iterator<Long> iterator = starts.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() < before) {
+                iterator.remove();
+            }
+        }
+    }
+}
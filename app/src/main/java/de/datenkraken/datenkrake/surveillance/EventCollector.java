@@ -4,79 +4,119 @@ import android.content.Context;
 
 import androidx.lifecycle.LifecycleObserver;
 import de.datenkraken.datenkrake.R;
+import de.datenkraken.datenkrake.surveillance.metrics.Counter;
+import de.datenkraken.datenkrake.surveillance.metrics.MetricsRegistry;
 
 import java.lang.ref.WeakReference;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Collects raised events. Implements Limits to keep the queue size in check. <br>
- * Creates {@link ProcessEventTask}s for every {@link DataCollectionEvent} raised.
+ * Creates {@link ProcessEventTask}s for every {@link DataCollectionEvent} raised. The tasks run
+ * in the {@link EventLanes} of their event type, so events of one type keep their order. The
+ * limits apply to every lane on its own and are checked by the {@link EventAdmission}. Producers
+ * can observe the {@link EventPressure} of a lane, to raise fewer events while it is full.
+ * Immediate events are added to their lane right away, delayed and periodic events wait in the
+ * {@link EventTimer}, until they are due.
  *
  * @author Daniel Thoma - daniel.thoma@stud.tu-darmstadt.de
  */
 public class EventCollector implements LifecycleObserver {
 
-    private final int EVENT_QUEUE_SOFT_CAP;
-    private final int EVENT_QUEUE_HARD_CAP;
+    /**
+     * Handle of events, which were handed to their lane right away and can't be cancelled.
+     */
+    private static final EventHandle IMMEDIATE = new EventHandle() {
+        @Override
+        public boolean cancel() {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
 
-    private final ScheduledThreadPoolExecutor pool;
-    private final EventDistributor distributor;
+    private final EventTimer timer;
+    private final EventLanes lanes;
+    private final WeakReference<EventDistributor> distributor;
+    private final Counter stopped = MetricsRegistry.getInstance().counter("events.rejected.stopped");
+    final EventAdmission admission;
 
     /**
      * Creates this collector.
      *
-     * @param pool Pool which can hold the {@link ProcessEventTask}.
+     * @param timer {@link EventTimer} which holds delayed and periodic {@link ProcessEventTask}s.
+     * @param lanes {@link EventLanes} running the {@link ProcessEventTask}s.
      * @param distributor {@link EventDistributor} which will distribute the {@link DataCollectionEvent}s
      to the {@link IEventProcessor}s.
      */
-    EventCollector(ScheduledThreadPoolExecutor pool, EventDistributor distributor,
+    EventCollector(EventTimer timer, EventLanes lanes, EventDistributor distributor,
                    WeakReference<Context> context) {
-        this.pool = pool;
-        this.distributor = distributor;
-        EVENT_QUEUE_SOFT_CAP = context.get().getResources().getInteger(R.integer.event_queue_hard_cap);
-        EVENT_QUEUE_HARD_CAP = context.get().getResources().getInteger(R.integer.event_queue_soft_cap);
+        this(timer, lanes, distributor,
+            new EventAdmission(context.get().getResources().getInteger(R.integer.event_queue_soft_cap),
+                context.get().getResources().getInteger(R.integer.event_queue_hard_cap)));
+    }
+
+    /**
+     * Creates this collector with the given {@link EventAdmission}.
+     *
+     * @param timer {@link EventTimer} which holds delayed and periodic {@link ProcessEventTask}s.
+     * @param lanes {@link EventLanes} running the {@link ProcessEventTask}s.
+     * @param distributor {@link EventDistributor} which will distribute the {@link DataCollectionEvent}s
+     * @param admission {@link EventAdmission} deciding by the limits of the lanes
+     */
+    EventCollector(EventTimer timer, EventLanes lanes, EventDistributor distributor, EventAdmission admission) {
+        this.timer = timer;
+        this.lanes = lanes;
+        this.distributor = new WeakReference<>(distributor);
+        this.admission = admission;
+        lanes.setTurnListener(admission::update);
     }
 
     /**
      * Creates {@link ProcessEventTask} to process the given {@link DataCollectionEvent},
-     * instantiate a {@link ProcessEventTask} and adds it to the queue of {@link #pool}.
-     * If the queue size is greater than {@link #EVENT_QUEUE_SOFT_CAP} or
-     * {@link #EVENT_QUEUE_HARD_CAP} constraints for the event priority apply.
+     * instantiate a {@link ProcessEventTask} and adds it to the lane of its type. Delayed and
+     * periodic events are added by the {@link #timer}, when they are due. Every firing of a
+     * periodic event is added as its own {@link DataCollectionEvent#occurrence()}, so it carries
+     * the time it fired.
+     * If the lane reached its soft or hard cap, the {@link #admission} decides by the event
+     * priority, when the event is due. The content of rejected events is recycled right away.
+     * Events raised after the pipeline stopped are counted in the {@link MetricsRegistry}.
      *
      * @param event {@link DataCollectionEvent} to process
-     * @return true if added to queue, false otherwise.
+     * @return handle of the event or null, if it wasn't accepted. Delayed and periodic events
+     *         are only rejected, when they are due.
      */
-    private synchronized boolean addEvent(DataCollectionEvent event) { //NOPMD
-        if (!canAcceptEvent(pool.getQueue().size(), event.priority)) {
-            return false;
+    EventHandle addEvent(DataCollectionEvent event) {
+        if (lanes.isShutdown() || timer.isStopped()) {
+            stopped.increment();
+            event.recycle();
+            return null;
         }
-
         int delay = Math.max(event.delay, 0);
 
-        ProcessEventTask processEventTask = new ProcessEventTask(new WeakReference<>(distributor), event);
-
-        if (event.period <= 0) {
-            pool.schedule(processEventTask, delay, TimeUnit.MILLISECONDS);
-        } else {
-            pool.scheduleWithFixedDelay(processEventTask, delay, event.period, TimeUnit.MILLISECONDS);
+        if (event.period <= 0 && delay == 0) {
+            return submit(event) ? IMMEDIATE : null;
         }
-
-        return true;
+        return timer.schedule(() -> submit(event.period > 0 ? event.occurrence() : event),
+            delay, Math.max(event.period, 0));
     }
 
     /**
-     * Checks if the given priority allows to add an {@link DataCollectionEvent} to {@link #pool}.
+     * Adds the given event to its lane, if the {@link #admission} accepts it. Called when the
+     * event is due, so delayed and periodic events are checked against the limits of the lane at
+     * the time they fire. The content of rejected events is recycled, unless they are periodic.
      *
-     * @param querySize Size of the current query
-     * @param priority {@link DataCollectionEvent.Priority} priority of the {@link DataCollectionEvent}
-     * @return true if it can be added, false otherwise
+     * @param event {@link DataCollectionEvent} to add
+     * @return true if the event was added
      */
-    private boolean canAcceptEvent(int querySize, DataCollectionEvent.Priority priority) {
-        return !((querySize > EVENT_QUEUE_SOFT_CAP
-            && priority.getPriority() < DataCollectionEvent.Priority.PRIORITY_HIGH.getPriority())
-            || querySize > EVENT_QUEUE_HARD_CAP
-            || pool.isShutdown());
+    private boolean submit(DataCollectionEvent event) {
+        if (!admission.admit(event.type, lanes.getPending(event.type), event.priority)) {
+            event.recycle();
+            return false;
+        }
+        return lanes.submit(event.type, new ProcessEventTask(distributor, event));
     }
 
     /**
@@ -86,6 +126,45 @@ public class EventCollector implements LifecycleObserver {
      * @return true if it was added, false otherwise
      */
     public static boolean raiseEvent(DataCollectionEvent event) {
+        return scheduleEvent(event) != null;
+    }
+
+    /**
+     * Static function to raise an {@link DataCollectionEvent}, which may be delayed or periodic.
+     *
+     * @param event raised {@link DataCollectionEvent}
+     * @return handle to cancel the event or null, if it wasn't added
+     */
+    public static EventHandle scheduleEvent(DataCollectionEvent event) {
         return EventManager.getInstance().eventCollector.addEvent(event);
     }
+
+    /**
+     * Returns the current {@link EventPressure} of the lane of the given type. Producers of
+     * frequent events can check it, before they create an event.
+     *
+     * @param type {@link DataCollectionEventType} of the lane
+     * @return {@link EventPressure} of the lane
+     */
+    public static EventPressure getPressure(DataCollectionEventType type) {
+        return EventManager.getInstance().eventCollector.admission.getPressure(type);
+    }
+
+    /**
+     * Registers a listener, which gets notified when the {@link EventPressure} of a lane changes.
+     *
+     * @param listener {@link IEventPressureListener} to add
+     */
+    public static void addPressureListener(IEventPressureListener listener) {
+        EventManager.getInstance().eventCollector.admission.addListener(listener);
+    }
+
+    /**
+     * Removes a listener registered with {@link #addPressureListener(IEventPressureListener)}.
+     *
+     * @param listener {@link IEventPressureListener} to remove
+     */
+    public static void removePressureListener(IEventPressureListener listener) {
+        EventManager.getInstance().eventCollector.admission.removeListener(listener);
+    }
 }
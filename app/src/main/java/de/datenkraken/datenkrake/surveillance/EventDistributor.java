@@ -1,47 +1,105 @@
 package de.datenkraken.datenkrake.surveillance;
 
-import java.util.Collection;
+import de.datenkraken.datenkrake.surveillance.metrics.Counter;
+import de.datenkraken.datenkrake.surveillance.metrics.LatencyHistogram;
+import de.datenkraken.datenkrake.surveillance.metrics.MetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Distributes {@link DataCollectionEvent} coming from the
- * {@link java.util.concurrent.ThreadPoolExecutor} in {@link EventManager} to
+ * {@link EventLanes} in {@link EventManager} to
  * {@link IEventProcessor}s which signalize that they process them via
- * {@link IEventProcessor#canProcess()} for them.
+ * {@link IEventProcessor#canProcess()} for them. Duplicate events are dropped by the
+ * {@link EventCoalescer} before. The contents of the events are recycled afterwards. <br>
+ * Distributed and dropped events and the time the processors took are recorded in the
+ * {@link MetricsRegistry}.
  *
  * @author Daniel Thoma - daniel.thoma@stud.tu-darmstadt.de
  */
 class EventDistributor {
     final EventProcessorMap eventProcessors;
+    final EventCoalescer coalescer;
     private final ProcessedDataCollector collector;
+    private final Counter distributed;
+    private final Counter coalesced;
+    private final LatencyHistogram processing;
 
     /**
      * Creates this {@link EventDistributor}. Registers {@link IEventProcessor}s via
-     * {@link #registerEventProcessors()}.
+     * {@link #registerEventProcessors()} and the {@link IEventCoalescer}s provided by
+     * {@link ProcessorProvider#getEventCoalescers()}.
      *
      * @param collector {@link ProcessedDataCollector} used by the {@link IEventProcessor}s.
      */
     @SuppressWarnings("PMD.ConstructorCallsOverridableMethod") // registerEventProcessors is private so not overrideable
     EventDistributor(ProcessedDataCollector collector) {
         eventProcessors = new EventProcessorMap();
+        coalescer = new EventCoalescer(ProcessorProvider.getEventCoalescers());
         this.collector = collector;
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        distributed = metrics.counter("events.distributed");
+        coalesced = metrics.counter("events.coalesced");
+        processing = metrics.histogram("events.processing");
         registerEventProcessors();
     }
 
     /**
      * Distributes the given {@link DataCollectionEvent} to {@link IEventProcessor}s which
-     * subscribed for its {@link DataCollectionEventType}.
+     * subscribed for its {@link DataCollectionEventType}, unless it is a duplicate.
      *
      * @param event {@link DataCollectionEvent} to distribute
      */
     void distributeEvent(DataCollectionEvent event) {
-        Collection<IEventProcessor> processors  = eventProcessors.get(event.type);
-
-        if (processors == null) {
-            return;
+        if (coalescer.accept(event)) {
+            distribute(event);
+        } else {
+            coalesced.increment();
         }
-        for (IEventProcessor processor : processors) {
+        event.recycle();
+    }
+
+    private void distribute(DataCollectionEvent event) {
+        long start = System.nanoTime();
+        for (IEventProcessor processor : eventProcessors.get(event.type)) {
             processor.process(event, collector);
         }
+        processing.recordSince(start);
+        distributed.increment();
+    }
+
+    /**
+     * Distributes the given {@link DataCollectionEvent}s of the same type to the
+     * {@link IEventProcessor}s which subscribed for it, in one batch per processor. Duplicates
+     * are dropped before.
+     *
+     * @param events {@link DataCollectionEvent}s of one type, in the order they were raised
+     */
+    void distributeEvents(List<DataCollectionEvent> events) {
+        List<DataCollectionEvent> accepted = new ArrayList<>();
+        for (DataCollectionEvent event : events) {
+            if (coalescer.accept(event)) {
+                accepted.add(event);
+            }
+        }
+
+        coalesced.add(events.size() - accepted.size());
+
+        if (accepted.size() == 1) {
+            distribute(accepted.get(0));
+        } else if (!accepted.isEmpty()) {
+            long start = System.nanoTime();
+            for (IEventProcessor processor : eventProcessors.get(accepted.get(0).type)) {
+                processor.processBatch(accepted, collector);
+            }
+            processing.recordSince(start);
+            distributed.add(accepted.size());
+        }
+
+        for (DataCollectionEvent event : events) {
+            event.recycle();
+        }
     }
 
     /**
@@ -56,7 +114,8 @@ class EventDistributor {
     }
 
     /**
-     * Registers the given {@link IEventProcessor}.
+     * Registers the given {@link IEventProcessor}. May be called by any thread, events which are
+     * distributed at the same time see either the old or the new processors.
      *
      * @param processor to register.
      */
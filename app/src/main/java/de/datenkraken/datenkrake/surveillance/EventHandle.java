@@ -0,0 +1,24 @@
+package de.datenkraken.datenkrake.surveillance;
+
+/**
+ * Handle of a raised {@link DataCollectionEvent}, returned by
+ * {@link EventCollector#scheduleEvent(DataCollectionEvent)}. Allows to cancel delayed and periodic
+ * events, before they are processed (again).
+ */
+public interface EventHandle {
+
+    /**
+     * Cancels the event. A delayed event isn't processed anymore, a periodic event isn't
+     * processed again. Events which are already handed to their lane can't be cancelled.
+     *
+     * @return true if the event was cancelled by this call
+     */
+    boolean cancel();
+
+    /**
+     * Checks if the event was cancelled.
+     *
+     * @return true if {@link #cancel()} succeeded
+     */
+    boolean isCancelled();
+}
@@ -0,0 +1,215 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import timber.log.Timber;
+
+/**
+ * Runs the {@link ProcessEventTask}s of every {@link DataCollectionEventType} in its own serial
+ * lane, so the events of one type are processed in the order they were raised. <br>
+ * Lanes don't own threads. A lane with pending tasks is queued once in a shared pool and runs a
+ * limited number of its tasks, before it is queued again behind the other lanes. So a burst of
+ * one type doesn't starve the others and the pool queue never holds more than one entry per
+ * type. Submitting a task only appends it to a lock free queue of its lane. <br>
+ * Consecutive {@link ProcessEventTask}s taken in one turn are run as one batch, so the
+ * {@link IEventProcessor}s can process the queued events together.
+ */
+final class EventLanes {
+
+    private static final int TASKS_PER_TURN = 32;
+
+    private final ExecutorService workers;
+    private final Map<DataCollectionEventType, Lane> lanes;
+    private volatile TurnListener turnListener;
+
+    /**
+     * Constructor of this class.
+     *
+     * @param threads number of threads shared by all lanes
+     */
+    EventLanes(int threads) {
+        int size = Math.max(1, threads);
+        workers = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+
+        Map<DataCollectionEventType, Lane> map = new EnumMap<>(DataCollectionEventType.class);
+        for (DataCollectionEventType type : DataCollectionEventType.values()) {
+            map.put(type, new Lane(type));
+        }
+        lanes = map;
+    }
+
+    /**
+     * Appends a task to the lane of the given type.
+     *
+     * @param type type of the event processed by the task, null for {@link DataCollectionEventType#DEFAULT}
+     * @param task task to run
+     * @return false if the lanes are shut down
+     */
+    boolean submit(DataCollectionEventType type, Runnable task) {
+        if (workers.isShutdown()) {
+            return false;
+        }
+        getLane(type).add(task);
+        return true;
+    }
+
+    /**
+     * Returns the number of tasks waiting in the lane of the given type.
+     *
+     * @param type type of the lane
+     * @return number of waiting tasks
+     */
+    int getPending(DataCollectionEventType type) {
+        return getLane(type).pending.get();
+    }
+
+    /**
+     * Sets the listener, which is called after every turn of a lane.
+     *
+     * @param listener {@link TurnListener} or null
+     */
+    void setTurnListener(TurnListener listener) {
+        turnListener = listener;
+    }
+
+    boolean isShutdown() {
+        return workers.isShutdown();
+    }
+
+    /**
+     * Stops all lanes. Waiting tasks are discarded and running tasks get interrupted.
+     */
+    void shutdownNow() {
+        workers.shutdownNow();
+    }
+
+    private Lane getLane(DataCollectionEventType type) {
+        return lanes.get(type == null ? DataCollectionEventType.DEFAULT : type);
+    }
+
+    /**
+     * Serial queue of tasks of one event type. At most one thread runs the tasks of a lane.
+     */
+    private final class Lane implements Runnable {
+
+        private final DataCollectionEventType type;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Lane(DataCollectionEventType type) {
+            this.type = type;
+        }
+
+        void add(Runnable task) {
+            tasks.add(task);
+            pending.incrementAndGet();
+            schedule();
+        }
+
+        /**
+         * Queues this lane in the pool, unless it is queued or running already.
+         */
+        private void schedule() {
+            if (!scheduled.compareAndSet(false, true)) {
+                return;
+            }
+
+            try {
+                workers.execute(this);
+            } catch (RejectedExecutionException e) {
+                Timber.d("Lane %s stopped, discarding %d tasks", type, pending.get());
+            }
+        }
+
+        @Override
+        public void run() {
+            List<Runnable> turn = new ArrayList<>();
+            for (Runnable task = tasks.poll(); task != null; task = tasks.poll()) {
+                pending.decrementAndGet();
+                turn.add(task);
+                if (turn.size() == TASKS_PER_TURN) {
+                    break;
+                }
+            }
+
+            int start = 0;
+            while (start < turn.size()) {
+                List<ProcessEventTask> batch = getBatch(turn, start);
+                try {
+                    if (batch.size() > 1) {
+                        ProcessEventTask.runAll(batch);
+                    } else {
+                        turn.get(start).run();
+                    }
+                } catch (RuntimeException e) { // NOPMD a failing processor must not stop the lane
+                    Timber.e(e, "Processing an event of type %s failed", type);
+                }
+                start += Math.max(1, batch.size());
+            }
+
+            TurnListener listener = turnListener;
+            if (listener != null) {
+                listener.onTurnFinished(type, pending.get());
+            }
+
+            scheduled.set(false);
+            // tasks added after the last poll weren't able to queue the lane
+            if (!tasks.isEmpty()) {
+                schedule();
+            }
+        }
+
+        /**
+         * Collects the consecutive {@link ProcessEventTask}s, which can run together with the
+         * task at the given index.
+         *
+         * @param turn tasks of this turn
+         * @param start index of the first task
+         * @return tasks of the batch, empty if the first task isn't a {@link ProcessEventTask}
+         */
+        private List<ProcessEventTask> getBatch(List<Runnable> turn, int start) {
+            List<ProcessEventTask> batch = new ArrayList<>();
+            if (!(turn.get(start) instanceof ProcessEventTask)) {
+                return batch;
+            }
+
+            ProcessEventTask first = (ProcessEventTask) turn.get(start);
+            batch.add(first);
+            for (int i = start + 1; i < turn.size() && turn.get(i) instanceof ProcessEventTask; i++) {
+                ProcessEventTask task = (ProcessEventTask) turn.get(i);
+                if (!first.canBatch(task)) {
+                    break;
+                }
+                batch.add(task);
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * Listener, which is called after a lane ran a turn of its tasks.
+     */
+    interface TurnListener {
+
+        /**
+         * Gets called on the thread of the lane, after a turn.
+         *
+         * @param type type of the lane
+         * @param pending number of tasks still waiting in the lane
+         */
+        void onTurnFinished(DataCollectionEventType type, int pending);
+    }
+}
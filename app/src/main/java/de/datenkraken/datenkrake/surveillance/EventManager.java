@@ -5,16 +5,16 @@ import android.content.Context;
 import androidx.lifecycle.Lifecycle;
 import androidx.lifecycle.LifecycleObserver;
 import androidx.lifecycle.OnLifecycleEvent;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
 
 import de.datenkraken.datenkrake.R;
-import de.datenkraken.datenkrake.surveillance.util.FileUtil;
+import de.datenkraken.datenkrake.surveillance.background.PacketFlushWorker;
+import de.datenkraken.datenkrake.surveillance.metrics.MetricsRegistry;
 
-import java.io.File;
-import java.io.IOException;
 import java.lang.ref.WeakReference;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
 
-import org.apache.commons.io.FileUtils;
 import timber.log.Timber;
 
 /**
@@ -27,8 +27,11 @@ public final class EventManager implements LifecycleObserver {
 
     private static EventManager instance;
 
-    private final ScheduledThreadPoolExecutor pool;
+    private final EventTimer timer;
+    private final EventLanes lanes;
     private final ProcessedDataCollector processedDataCollector;
+    private final WeakReference<Context> context;
+    private final long flushTimeout;
     final EventDistributor distributor;
     final EventCollector eventCollector;
 
@@ -40,10 +43,14 @@ public final class EventManager implements LifecycleObserver {
 
         int threadPoolSize = context.get().getResources().getInteger(R.integer.event_processor_pool);
 
-        pool = new ScheduledThreadPoolExecutor(threadPoolSize);
+        this.context = context;
+        flushTimeout = context.get().getResources().getInteger(R.integer.packet_flush_timeout);
+        timer = new EventTimer(context.get().getResources().getInteger(R.integer.event_timer_tick),
+            context.get().getResources().getInteger(R.integer.event_timer_wheel_size));
+        lanes = new EventLanes(Math.min(threadPoolSize, Runtime.getRuntime().availableProcessors()));
         processedDataCollector = new ProcessedDataCollector(context);
         distributor = new EventDistributor(processedDataCollector);
-        eventCollector = new EventCollector(pool, distributor, context);
+        eventCollector = new EventCollector(timer, lanes, distributor, context);
     }
 
     /**
@@ -69,29 +76,70 @@ public final class EventManager implements LifecycleObserver {
         instance = new EventManager(context);
     }
 
+    /**
+     * Writes the {@link ProcessedDataPacket}s buffered by the current instance to the disk.
+     * Blocks until they are written. Used by the {@link PacketFlushWorker}.
+     *
+     * @return false if there is no instance in this process
+     */
+    public static boolean flushPending() {
+        EventManager manager;
+        synchronized (EventManager.class) {
+            manager = instance;
+        }
+        if (manager == null) {
+            return false;
+        }
+
+        manager.processedDataCollector.flush();
+        return true;
+    }
+
     /**
      * Gets called when the observer LifecycleOwner enters the ON_DESTROY state. <br>
-     * Shutdowns the {@link #pool}, removes all {@link IEventProcessor}s and write all remaining
-     * {@link ProcessedDataPacket}s in {@link ProcessedDataCollector} to the disk.
+     * Stops the {@link #timer} and the {@link #lanes}, removes all {@link IEventProcessor}s and write all remaining
+     * {@link ProcessedDataPacket}s in {@link ProcessedDataCollector} to the disk. Waits only a
+     * short time for the flush, because this is called on the main thread. If the packets weren't
+     * written in time, the ones still buffered are written to the {@link PacketSpill} and a
+     * {@link PacketFlushWorker} saves them to the {@link PacketLog}, even if the process died in
+     * the meantime.
      */
     @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
     public void shutdown() {
-        pool.shutdownNow();
+        timer.stop();
+        lanes.shutdownNow();
         distributor.eventProcessors.clear();
-        processedDataCollector.flush();
+        distributor.coalescer.logMerged();
+        eventCollector.admission.logCounts();
+        boolean flushed = processedDataCollector.flushAsync(flushTimeout);
+        MetricsRegistry.getInstance().export();
+        if (flushed || context.get() == null) {
+            return;
+        }
+
+        Timber.d("Packets weren't written within %d ms, handing them to the WorkManager", flushTimeout);
+        PacketSpill spill = PacketSpill.get(context.get());
+        if (spill == null || !processedDataCollector.spill(spill)) {
+            Timber.w("Couldn't spill the buffered packets, they are lost if the process dies");
+        }
+        WorkManager.getInstance(context.get()).enqueueUniqueWork(
+            context.get().getString(R.string.background_service_packet_flush),
+            ExistingWorkPolicy.KEEP,
+            new OneTimeWorkRequest.Builder(PacketFlushWorker.class).build());
     }
 
     /**
      * Gets called when the observer LifecycleOwner enters the ON_PAUSE state.
-     * Writes all remaining {@link ProcessedDataPacket}s in {@link ProcessedDataCollector} to the disk.
+     * Lets the {@link ProcessedDataCollector} write all remaining {@link ProcessedDataPacket}s to
+     * the disk in the background, so the main thread isn't blocked.
      */
     @OnLifecycleEvent(Lifecycle.Event.ON_PAUSE)
     public void pause() {
-        processedDataCollector.flush();
+        processedDataCollector.flushAsync(0);
     }
 
     /**
-     * Registers the given {@link IEventProcessor}.
+     * Registers the given {@link IEventProcessor}. May be called at any time by any thread.
      *
      * @param processor to register.
      */
@@ -99,19 +147,14 @@ public final class EventManager implements LifecycleObserver {
         distributor.registerEventProcessor(processor);
     }
 
+    /**
+     * Deletes all packets of the {@link PacketLog}, which weren't sent yet.
+     *
+     * @param context used to locate the cache directory
+     * @return false if the cache couldn't be deleted completely
+     */
     public boolean cleanCache(Context context) {
-        File dir = FileUtil.getDataDir(context.getCacheDir().getPath(), context);
-
-        if (dir == null || !dir.exists()) {
-            return false;
-        }
-
-        try {
-            FileUtils.cleanDirectory(dir);
-        } catch (IOException e) {
-            Timber.e("Unable to clear surveillance cache dir: %s", dir.getPath());
-            return false;
-        }
-        return true;
+        PacketLog log = PacketLog.get(context);
+        return log != null && log.clear();
     }
 }
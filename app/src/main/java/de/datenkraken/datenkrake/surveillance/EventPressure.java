@@ -0,0 +1,21 @@
+package de.datenkraken.datenkrake.surveillance;
+
+/**
+ * Load of the lane of one {@link DataCollectionEventType}, reported by {@link EventCollector} to
+ * the registered {@link IEventPressureListener}s. Producers can use it to raise fewer events.
+ */
+public enum EventPressure {
+    /**
+     * The lane is below its soft cap, all events are accepted.
+     */
+    NORMAL,
+    /**
+     * The lane reached its soft cap. Events with {@link DataCollectionEvent.Priority#PRIORITY_LOW}
+     * are sampled, the fuller the lane, the fewer of them are accepted.
+     */
+    SOFT,
+    /**
+     * The lane reached its hard cap, no event is accepted.
+     */
+    HARD
+}
@@ -2,21 +2,25 @@ package de.datenkraken.datenkrake.surveillance;
 
 import androidx.annotation.NonNull;
 
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Arrays;
 
 import timber.log.Timber;
 
 /**
- * Class, extending {@link java.util.HashMap} to provide functionality for supporting multiple
- * {@link IEventProcessor} for one {@link DataCollectionEventType}. Used by {@link EventDistributor}.
+ * Map of the {@link IEventProcessor}s registered for every {@link DataCollectionEventType}.
+ * Used by {@link EventDistributor}. <br>
+ * The processors are held in an immutable snapshot, one array per type indexed by
+ * {@link DataCollectionEventType#ordinal()}. Looking up the processors of an event is a plain
+ * array read without locking, while a registration copies the snapshot and replaces it at once.
+ * Registrations are rare, so the copy doesn't matter.
  *
  * @author Daniel Thoma - daniel.thoma@stud.tu-darmstadt.de
  */
-class EventProcessorMap extends ConcurrentHashMap<DataCollectionEventType, Collection<IEventProcessor>> {
+class EventProcessorMap {
 
-    private static final long serialVersionUID = 1L;
+    private static final IEventProcessor[] NONE = new IEventProcessor[0];
+
+    private volatile IEventProcessor[][] snapshot = createEmpty();
 
     /**
      * Constructor of this class, setting up Timber.
@@ -26,45 +30,27 @@ class EventProcessorMap extends ConcurrentHashMap<DataCollectionEventType, Colle
     }
 
     /**
-     * Adds an {@link IEventProcessor} to the collection identified by one {@link DataCollectionEventType}
-     * in this Map. Creates the Collection if necessary and adds the {@link IEventProcessor} to it.
-     * If the {@link IEventProcessor} exists already in the collection, it does nothing.
+     * Returns the {@link IEventProcessor}s registered for the given type. The returned array
+     * must not be modified.
      *
-     * @param type {@link DataCollectionEventType} identifies the collection
-     * @param processor {@link IEventProcessor} to add
+     * @param type {@link DataCollectionEventType} of an event, may be null
+     * @return registered {@link IEventProcessor}s, empty if there are none
      */
-    private void addToMap(DataCollectionEventType type, IEventProcessor processor) {
-        Collection<IEventProcessor> set;
-
-        if (!this.containsKey(type)) {
-            set = new HashSet<>();
-            this.put(type, set);
-
-        } else {
-            set = this.get(type);
-
-            if (set == null) {
-                set = new HashSet<>();
-                this.put(type, set);
-            }
+    @NonNull
+    IEventProcessor[] get(DataCollectionEventType type) {
+        if (type == null) {
+            return NONE;
         }
-
-        if (set.contains(processor)) {
-            Timber.e("EventProcessor %s is already registered for event %s",
-                processor, type);
-            return;
-        }
-
-        set.add(processor);
+        return snapshot[type.ordinal()];
     }
 
     /**
-     * Adds an {@link IEventProcessor} to this Map.
-     * Does nothing if the {@link IEventProcessor} is already added.
+     * Adds an {@link IEventProcessor} to this Map, for every type it can process.
+     * If the {@link IEventProcessor} is already registered for a type, it is skipped for it.
      *
      * @param processor {@link IEventProcessor} to add
      */
-    void addProcessor(@NonNull IEventProcessor processor) {
+    synchronized void addProcessor(@NonNull IEventProcessor processor) {
 
         DataCollectionEventType[] types = processor.canProcess();
 
@@ -73,8 +59,33 @@ class EventProcessorMap extends ConcurrentHashMap<DataCollectionEventType, Colle
             return;
         }
 
+        IEventProcessor[][] next = snapshot.clone();
         for (DataCollectionEventType type : types) {
-            addToMap(type, processor);
+            IEventProcessor[] processors = next[type.ordinal()];
+
+            if (Arrays.asList(processors).contains(processor)) {
+                Timber.e("EventProcessor %s is already registered for event %s",
+                    processor, type);
+                continue;
+            }
+
+            processors = Arrays.copyOf(processors, processors.length + 1);
+            processors[processors.length - 1] = processor;
+            next[type.ordinal()] = processors;
         }
+        snapshot = next;
+    }
+
+    /**
+     * Removes all {@link IEventProcessor}s.
+     */
+    synchronized void clear() {
+        snapshot = createEmpty();
+    }
+
+    private static IEventProcessor[][] createEmpty() {
+        IEventProcessor[][] empty = new IEventProcessor[DataCollectionEventType.values().length][];
+        Arrays.fill(empty, NONE);
+        return empty;
     }
 }
@@ -0,0 +1,308 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import timber.log.Timber;
+
+/**
+ * Hashed timing wheel, which runs delayed and periodic tasks. <br>
+ * The wheel is an array of buckets, every bucket holds the tasks due in one tick. A task due in
+ * more than one turn of the wheel counts down the remaining rounds, whenever its bucket is
+ * visited. So scheduling and cancelling a task takes constant time, instead of the logarithmic
+ * time of a heap. The tasks are only accurate to one tick, which is enough for events. <br>
+ * New and cancelled tasks are passed to the ticker thread through lock free queues, so only the
+ * ticker touches the buckets. The ticker starts with the first task and sleeps while there are
+ * no tasks.
+ */
+final class EventTimer {
+
+    private static final int WAITING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final long tickDuration;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startTime = System.nanoTime();
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean stopped;
+    private volatile Thread ticker;
+    private long tick;
+
+    /**
+     * Constructor of this class.
+     *
+     * @param tickDuration duration of one tick in milliseconds
+     * @param wheelSize number of buckets, rounded up to a power of two
+     */
+    EventTimer(long tickDuration, int wheelSize) {
+        this.tickDuration = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickDuration));
+        int size = Integer.highestOneBit(Math.max(2, wheelSize) - 1) << 1;
+        wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Schedules a task. May be called by any thread.
+     *
+     * @param task task to run on the ticker thread, it should hand longer work to another thread
+     * @param delay time in milliseconds until the task runs the first time
+     * @param period time in milliseconds between the runs of the task, 0 to run it once
+     * @return handle to cancel the task or null, if the timer is stopped
+     */
+    EventHandle schedule(Runnable task, long delay, long period) {
+        if (stopped) {
+            return null;
+        }
+
+        Timeout timeout = new Timeout(task, System.nanoTime() - startTime + TimeUnit.MILLISECONDS.toNanos(delay),
+            TimeUnit.MILLISECONDS.toNanos(Math.max(0, period)));
+        pending.add(timeout);
+        boolean idle = count.getAndIncrement() == 0;
+
+        if (started.compareAndSet(false, true)) {
+            Thread thread = new Thread(this::run, "EventTimer");
+            thread.setDaemon(true);
+            ticker = thread;
+            thread.start();
+        } else if (idle) {
+            Thread thread = ticker;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+        return timeout;
+    }
+
+    /**
+     * Stops the timer. Scheduled tasks don't run anymore.
+     */
+    void stop() {
+        stopped = true;
+        Thread thread = ticker;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Loop of the ticker thread.
+     */
+    private void run() {
+        tick = getCurrentTick();
+        while (!stopped) {
+            if (count.get() == 0) {
+                LockSupport.park(this);
+                tick = getCurrentTick(); // all buckets are empty, so skipped ticks don't matter
+                continue;
+            }
+
+            waitForTick();
+            if (stopped) {
+                break;
+            }
+            removeCancelled();
+            transferPending();
+            expire(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+        pending.clear();
+        cancelled.clear();
+    }
+
+    private long getCurrentTick() {
+        return (System.nanoTime() - startTime) / tickDuration;
+    }
+
+    /**
+     * Sleeps until the current tick is over.
+     */
+    private void waitForTick() {
+        long end = (tick + 1) * tickDuration;
+        long remaining = end - (System.nanoTime() - startTime);
+        while (remaining > 0 && !stopped) {
+            LockSupport.parkNanos(this, remaining);
+            remaining = end - (System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Removes cancelled tasks from their buckets.
+     */
+    private void removeCancelled() {
+        for (Timeout timeout = cancelled.poll(); timeout != null; timeout = cancelled.poll()) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+            count.decrementAndGet();
+        }
+    }
+
+    /**
+     * Moves new tasks to the bucket of their deadline.
+     */
+    private void transferPending() {
+        for (Timeout timeout = pending.poll(); timeout != null; timeout = pending.poll()) {
+            if (timeout.state.get() == WAITING) {
+                place(timeout, tick);
+            }
+        }
+    }
+
+    /**
+     * Adds a task to the bucket of its deadline.
+     *
+     * @param timeout task to add
+     * @param earliest first tick the task may be placed at
+     */
+    private void place(Timeout timeout, long earliest) {
+        long due = timeout.deadline / tickDuration;
+        timeout.remainingRounds = (due - earliest) / wheel.length;
+        wheel[(int) (Math.max(due, earliest) & mask)].add(timeout);
+    }
+
+    /**
+     * Runs the tasks of the given bucket, which are due in this round.
+     *
+     * @param bucket bucket of the current tick
+     */
+    private void expire(Bucket bucket) {
+        // periodic tasks are placed after the loop, because they may be due in this bucket again
+        List<Timeout> periodic = new ArrayList<>();
+        Timeout timeout = bucket.head;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.state.get() != WAITING) {
+                bucket.remove(timeout); // counted when its cancellation is processed
+            } else if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+            } else {
+                bucket.remove(timeout);
+                if (run(timeout)) {
+                    periodic.add(timeout);
+                }
+            }
+            timeout = next;
+        }
+
+        for (Timeout repeated : periodic) {
+            place(repeated, tick + 1);
+        }
+    }
+
+    /**
+     * Runs a due task and sets the next deadline, if it is periodic.
+     *
+     * @param timeout due task
+     * @return true if the task has to be placed again
+     */
+    private boolean run(Timeout timeout) {
+        if (timeout.period == 0 && !timeout.state.compareAndSet(WAITING, EXPIRED)) {
+            return false;
+        }
+        if (timeout.period == 0) {
+            count.decrementAndGet();
+        }
+
+        try {
+            timeout.task.run();
+        } catch (RuntimeException e) { // NOPMD a failing task must not stop the timer
+            Timber.e(e, "Timed task failed");
+        }
+
+        if (timeout.period > 0 && timeout.state.get() == WAITING) {
+            timeout.deadline = System.nanoTime() - startTime + timeout.period;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Task of the timer, linked into the list of its bucket.
+     */
+    private final class Timeout implements EventHandle {
+
+        private final Runnable task;
+        private final long period;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private long deadline;
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout next;
+        private Timeout previous;
+
+        Timeout(Runnable task, long deadline, long period) {
+            this.task = task;
+            this.deadline = deadline;
+            this.period = period;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!state.compareAndSet(WAITING, CANCELLED)) {
+                return false;
+            }
+            cancelled.add(this);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+    }
+
+    /**
+     * Doubly linked list of the tasks due in one tick of the wheel.
+     */
+    private static final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.previous = tail;
+            timeout.next = null;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.previous == null) {
+                head = timeout.next;
+            } else {
+                timeout.previous.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.previous;
+            } else {
+                timeout.next.previous = timeout.previous;
+            }
+            timeout.bucket = null;
+            timeout.next = null;
+            timeout.previous = null;
+        }
+    }
+}
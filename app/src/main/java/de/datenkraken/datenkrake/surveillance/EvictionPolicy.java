@@ -0,0 +1,21 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import java.util.List;
+
+/**
+ * Decides which records of the {@link PacketLog} get evicted, when the packet cache exceeds its
+ * size limit. Only records of sealed segments are candidates, so fresh packets are kept. <br>
+ * The policy is asked repeatedly until enough bytes are chosen. Afterwards segments without
+ * remaining records get deleted and all other affected segments get compacted.
+ */
+public interface EvictionPolicy {
+
+    /**
+     * Chooses the next record to evict.
+     *
+     * @param records records of all sealed segments, which aren't acknowledged or chosen yet,
+     *                ordered by the timestamp of their newest packet
+     * @return position of the record to evict in the given list
+     */
+    int choose(List<PacketRecord> records);
+}
@@ -0,0 +1,33 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import de.datenkraken.datenkrake.SurveillanceBatchMutation;
+
+import java.util.List;
+
+/**
+ * Extends {@link ISendProcessedData} by the ability to send the {@link ProcessedDataPacket}s as
+ * one part of a {@link SurveillanceBatchMutation}. <br>
+ * The batch mutation combines the mutations of all packet types in one request. Every part is
+ * an aliased field of the mutation, which is only included if packets were added to it. The
+ * result of every part is checked on its own, so the packets of a failed part can be sent again,
+ * while all other parts are done.
+ */
+public interface IBatchSendProcessedData extends ISendProcessedData {
+
+    /**
+     * Sets the input of the part of this sender and includes the part in the batch.
+     *
+     * @param packets {@link ProcessedDataPacket}s to send.
+     * @param batch builder of the batch mutation.
+     */
+    void addToBatch(List<ProcessedDataPacket> packets, SurveillanceBatchMutation.Builder batch);
+
+    /**
+     * Checks if the part of this sender was successful. Failed parts are null in the response,
+     * because every field of the mutation is nullable.
+     *
+     * @param data response data of the batch mutation.
+     * @return true, if the part of this sender was successful.
+     */
+    boolean isPartSuccessful(SurveillanceBatchMutation.Data data);
+}
@@ -0,0 +1,33 @@
+package de.datenkraken.datenkrake.surveillance;
+
+/**
+ * Interface providing the functionality to detect duplicate {@link DataCollectionEvent}s, which
+ * the {@link EventDistributor} doesn't pass to the {@link IEventProcessor}s. <br>
+ * Two events of the same type are duplicates, if they have equal keys and the second one was
+ * raised within the window of the first one. Only the first event of a window is processed, the
+ * duplicates are counted by the {@link EventCoalescer}.
+ */
+public interface IEventCoalescer {
+
+    /**
+     * Returns {@link DataCollectionEventType}s whose duplicates this class detects.
+     *
+     * @return Array of {@link DataCollectionEventType}s
+     */
+    DataCollectionEventType[] canCoalesce();
+
+    /**
+     * Returns the key of the given event. Events with equal keys are duplicates.
+     *
+     * @param event {@link DataCollectionEvent} of one of the types of {@link #canCoalesce()}
+     * @return key of the event or null, if the event must always be processed
+     */
+    Object getKey(DataCollectionEvent event);
+
+    /**
+     * Returns the time after the first event, in which duplicates are dropped.
+     *
+     * @return window in milliseconds
+     */
+    long getWindow();
+}
@@ -0,0 +1,18 @@
+package de.datenkraken.datenkrake.surveillance;
+
+/**
+ * Interface for producers of {@link DataCollectionEvent}s, which want to know when the lane of an
+ * event type is under pressure. Registered with
+ * {@link EventCollector#addPressureListener(IEventPressureListener)}.
+ */
+public interface IEventPressureListener {
+
+    /**
+     * Gets called when the {@link EventPressure} of the lane of the given type changes. Is called
+     * on the thread, which raised an event or processed the lane, so it must return quickly.
+     *
+     * @param type {@link DataCollectionEventType} of the lane
+     * @param pressure new {@link EventPressure} of the lane
+     */
+    void onPressureChanged(DataCollectionEventType type, EventPressure pressure);
+}
@@ -1,5 +1,7 @@
 package de.datenkraken.datenkrake.surveillance;
 
+import java.util.List;
+
 /**
  * Interface providing necessary functionality for event processing.
  *
@@ -16,9 +18,24 @@ public interface IEventProcessor {
 
     /**
      * Gets called by {@link EventDistributor} giving it a {@link DataCollectionEvent} to process.
+     * The content of the event is recycled after this call, so it must not be kept.
      *
      * @param event {@link DataCollectionEvent} to process
      * @param collector {@link ProcessedDataCollector} collector for the processed event data.
      */
     void process(DataCollectionEvent event, ProcessedDataCollector collector);
+
+    /**
+     * Gets called by {@link EventDistributor} instead of {@link #process}, if several events of
+     * the same type were queued. Processors which can share work between the events, like a
+     * database query, should override it. Calls {@link #process} for every event by default.
+     *
+     * @param events {@link DataCollectionEvent}s of the same type to process, in the order they were raised
+     * @param collector {@link ProcessedDataCollector} collector for the processed event data.
+     */
+    default void processBatch(List<DataCollectionEvent> events, ProcessedDataCollector collector) {
+        for (DataCollectionEvent event : events) {
+            process(event, collector);
+        }
+    }
 }
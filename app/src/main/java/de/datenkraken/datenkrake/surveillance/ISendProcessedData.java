@@ -38,4 +38,16 @@ public interface ISendProcessedData {
      * @return Id of the {@link ITask}.
      */
     String getTaskId();
+
+    /**
+     * Declares the fields of the {@link ProcessedDataPacket}s consumed by this sender. <br>
+     * Declared fields are stored unboxed in a flat record, see {@link PacketSchema}. Fields which
+     * are not declared still work, but are stored in a map.
+     *
+     * @return {@link PacketSchema} with the task id of this sender or null, if no schema is known.
+     */
+    @Nullable
+    default PacketSchema getSchema() {
+        return null;
+    }
 }
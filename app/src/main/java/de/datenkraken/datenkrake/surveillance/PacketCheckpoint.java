@@ -0,0 +1,208 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import timber.log.Timber;
+
+/**
+ * Persistent list of the packets of the {@link PacketLog}, which were already sent. <br>
+ * Every acknowledgement is appended as a small entry, so a sender run interrupted by a crash or a
+ * lost connection resumes with the first packet which wasn't sent yet. Entries identify a record
+ * by the sequence of its segment, its offset and its checksum, so entries of deleted segments
+ * never match a newer record. The log replays the entries when it is opened and replaces the
+ * file afterwards with the entries of the remaining segments only.
+ */
+final class PacketCheckpoint {
+
+    static final String FILE_NAME = "segments.acks";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int MAGIC = 0x444B4143; // "DKAC"
+    private static final int VERSION = 1;
+
+    private final File dir;
+    private final File file;
+    private DataOutputStream out;
+
+    /**
+     * Constructor of this class.
+     *
+     * @param dir directory of the {@link PacketLog}
+     */
+    PacketCheckpoint(File dir) {
+        this.dir = dir;
+        file = new File(dir, FILE_NAME);
+    }
+
+    /**
+     * Checks if the given file belongs to the checkpoint and is no segment or cache file.
+     *
+     * @param file file in the log directory
+     * @return true if the file is the checkpoint or a temporary copy of it
+     */
+    static boolean isCheckpointFile(File file) {
+        return file.getName().startsWith(FILE_NAME);
+    }
+
+    /**
+     * Loads all entries of the checkpoint. An incomplete last entry, left over from a crash
+     * while appending, is ignored.
+     *
+     * @return list of entries, oldest first
+     */
+    List<Entry> load() {
+        List<Entry> entries = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                Timber.e("Invalid checkpoint, ignoring it");
+                return entries;
+            }
+
+            while (true) {
+                entries.add(new Entry(in.readLong(), in.readLong(), in.readInt(), in.readInt(), in.readInt()));
+            }
+        } catch (FileNotFoundException e) {
+            Timber.d("No checkpoint found");
+        } catch (EOFException e) {
+            // end of the checkpoint reached
+        } catch (IOException e) {
+            Timber.e(e, "Couldn't load checkpoint");
+        }
+        return entries;
+    }
+
+    /**
+     * Replaces the checkpoint with the given entries. Writes a temporary copy first and renames
+     * it afterwards, so no entry gets lost.
+     *
+     * @param entries entries to keep
+     */
+    void rewrite(List<Entry> entries) {
+        close();
+        File temp = new File(dir, FILE_NAME + TEMP_SUFFIX);
+        try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            stream.writeInt(MAGIC);
+            stream.writeInt(VERSION);
+            for (Entry entry : entries) {
+                entry.write(stream);
+            }
+        } catch (IOException e) {
+            Timber.e(e, "Couldn't write checkpoint");
+            return;
+        }
+
+        if (!temp.renameTo(file)) {
+            Timber.e("Couldn't replace checkpoint");
+        }
+    }
+
+    /**
+     * Appends an entry to the checkpoint. The entry is handed to the file system right away, so
+     * it survives a crash of the app.
+     *
+     * @param entry entry to append
+     */
+    void append(Entry entry) {
+        try {
+            if (out == null) {
+                boolean exists = file.exists();
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+                if (!exists) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                }
+            }
+
+            entry.write(out);
+            out.flush();
+        } catch (IOException e) {
+            Timber.e(e, "Couldn't append to checkpoint");
+            close();
+        }
+    }
+
+    /**
+     * Closes the file of the checkpoint. The next entry opens it again.
+     */
+    void close() {
+        if (out == null) {
+            return;
+        }
+
+        try {
+            out.close();
+        } catch (IOException e) {
+            Timber.e(e, "Couldn't close checkpoint");
+        }
+        out = null;
+    }
+
+    /**
+     * Range of sent packets of one record.
+     */
+    static final class Entry {
+
+        final long sequence;
+        final long offset;
+        final int crc;
+        final int from;
+        final int to;
+
+        /**
+         * Constructor of this class.
+         *
+         * @param sequence sequence of the segment of the record
+         * @param offset offset of the record in its segment
+         * @param crc checksum of the record
+         * @param from index of the first sent packet, inclusive
+         * @param to index of the last sent packet, exclusive
+         */
+        Entry(long sequence, long offset, int crc, int from, int to) {
+            this.sequence = sequence;
+            this.offset = offset;
+            this.crc = crc;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Creates an entry for the given range of packets of a record.
+         *
+         * @param record record of the packets
+         * @param from index of the first sent packet, inclusive
+         * @param to index of the last sent packet, exclusive
+         * @return the entry
+         */
+        static Entry of(PacketRecord record, int from, int to) {
+            return new Entry(record.segment.getSequence(), record.offset, record.crc, from, to);
+        }
+
+        /**
+         * Checks if this entry belongs to the given record.
+         *
+         * @param record record of the segment of this entry
+         * @return true if offset and checksum match
+         */
+        boolean matches(PacketRecord record) {
+            return record.offset == offset && record.crc == crc;
+        }
+
+        private void write(DataOutputStream stream) throws IOException {
+            stream.writeLong(sequence);
+            stream.writeLong(offset);
+            stream.writeInt(crc);
+            stream.writeInt(from);
+            stream.writeInt(to);
+        }
+    }
+}
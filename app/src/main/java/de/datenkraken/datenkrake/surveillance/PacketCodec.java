@@ -0,0 +1,577 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary codec for batches of {@link ProcessedDataPacket}s. <br>
+ * A batch starts with {@link #MAGIC} and {@link #VERSION}, followed by the packets. Every packet
+ * is introduced by a marker byte, the end of the batch is signalized by {@link #END_OF_BATCH}.
+ * Values are written type tagged, integers as zigzag varints and all keys, task ids and enum names
+ * are interned in a dictionary, which lives as long as the batch. The first occurrence of a string
+ * is written literally, every further occurrence only as its index in the dictionary. <br>
+ * Batches written by older versions with {@link ObjectOutputStream} can be recognized with
+ * {@link #isLegacy(byte[], int)}.
+ */
+public final class PacketCodec {
+
+    public static final int VERSION = 2;
+
+    static final byte[] MAGIC = {'D', 'K'};
+
+    private static final int END_OF_BATCH = 0;
+    private static final int PACKET = 1;
+
+    static final int TAG_NULL = 0;
+    static final int TAG_FALSE = 1;
+    static final int TAG_TRUE = 2;
+    static final int TAG_CHAR = 3;
+    static final int TAG_BYTE = 4;
+    static final int TAG_SHORT = 5;
+    static final int TAG_INTEGER = 6;
+    static final int TAG_LONG = 7;
+    static final int TAG_FLOAT = 8;
+    static final int TAG_DOUBLE = 9;
+    static final int TAG_STRING = 10;
+    static final int TAG_ENUM = 11;
+    static final int TAG_SERIALIZABLE = 12;
+
+    // First two bytes of every stream written by an ObjectOutputStream.
+    private static final int LEGACY_MAGIC_HIGH = 0xAC;
+    private static final int LEGACY_MAGIC_LOW = 0xED;
+
+    /**
+     * Private constructor so this class doesn't get instantiated and silence PMD.
+     */
+    private PacketCodec() {
+
+    }
+
+    /**
+     * Checks if the given decompressed batch was written by an {@link ObjectOutputStream}, which
+     * means it has to be loaded with {@link ProcessedDataPacket#load(ObjectInputStream)}.
+     *
+     * @param bytes decompressed batch
+     * @param length number of valid bytes in the array
+     * @return true if the batch uses the legacy format, false otherwise
+     */
+    public static boolean isLegacy(byte[] bytes, int length) {
+        return length >= 2
+            && (bytes[0] & 0xFF) == LEGACY_MAGIC_HIGH
+            && (bytes[1] & 0xFF) == LEGACY_MAGIC_LOW;
+    }
+
+    /**
+     * Returns the {@link PacketSchema.FieldType} of values with the given type tag.
+     *
+     * @param tag type tag
+     * @return the field type or null, if the tag describes a null value or is invalid
+     */
+    static PacketSchema.FieldType typeOf(int tag) {
+        switch (tag) {
+            case TAG_FALSE:
+            case TAG_TRUE:
+                return PacketSchema.FieldType.BOOLEAN;
+            case TAG_CHAR:
+                return PacketSchema.FieldType.CHAR;
+            case TAG_BYTE:
+                return PacketSchema.FieldType.BYTE;
+            case TAG_SHORT:
+                return PacketSchema.FieldType.SHORT;
+            case TAG_INTEGER:
+                return PacketSchema.FieldType.INTEGER;
+            case TAG_LONG:
+                return PacketSchema.FieldType.LONG;
+            case TAG_FLOAT:
+                return PacketSchema.FieldType.FLOAT;
+            case TAG_DOUBLE:
+                return PacketSchema.FieldType.DOUBLE;
+            case TAG_STRING:
+                return PacketSchema.FieldType.STRING;
+            case TAG_ENUM:
+            case TAG_SERIALIZABLE:
+                return PacketSchema.FieldType.OBJECT;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Writes batches of {@link ProcessedDataPacket}s to an {@link OutputStream}. <br>
+     * Not thread safe, every batch should use its own encoder.
+     */
+    public static final class Encoder {
+
+        private final OutputStream out;
+        private final Map<String, Integer> dictionary = new HashMap<>();//NOPMD
+        private final byte[] scratch = new byte[10];
+
+        /**
+         * Creates an encoder and writes the batch header to the given stream.
+         *
+         * @param out stream to write to
+         * @throws IOException thrown if the stream is not writeable
+         */
+        public Encoder(OutputStream out) throws IOException {
+            this.out = out;
+            out.write(MAGIC);
+            out.write(VERSION);
+        }
+
+        /**
+         * Writes the given packet as the next packet of this batch.
+         *
+         * @param packet {@link ProcessedDataPacket} to write
+         * @throws IOException thrown if the stream is not writeable
+         */
+        public void write(ProcessedDataPacket packet) throws IOException {
+            out.write(PACKET);
+            packet.encode(this);
+        }
+
+        /**
+         * Ends this batch. Further packets must not be written.
+         *
+         * @throws IOException thrown if the stream is not writeable
+         */
+        public void finish() throws IOException {
+            out.write(END_OF_BATCH);
+            out.flush();
+        }
+
+        /**
+         * Writes a string, using the dictionary of this batch.
+         *
+         * @param value string to write, must not be null
+         * @throws IOException thrown if the stream is not writeable
+         */
+        void writeInterned(String value) throws IOException {
+            Integer index = dictionary.get(value);
+            if (index != null) {
+                writeVarInt(index + 1);
+                return;
+            }
+
+            dictionary.put(value, dictionary.size());
+            writeVarInt(0);
+            writeString(value);
+        }
+
+        /**
+         * Writes a value, prefixed with its type tag.
+         *
+         * @param value value to write
+         * @throws IOException thrown if the stream is not writeable
+         */
+        void writeValue(Object value) throws IOException {
+            if (value == null) {
+                out.write(TAG_NULL);
+            } else if (value instanceof Boolean) {
+                writeIntegral(PacketSchema.FieldType.BOOLEAN, (Boolean) value ? 1 : 0);
+            } else if (value instanceof Character) {
+                writeIntegral(PacketSchema.FieldType.CHAR, (Character) value);
+            } else if (value instanceof Byte) {
+                writeIntegral(PacketSchema.FieldType.BYTE, (Byte) value);
+            } else if (value instanceof Short) {
+                writeIntegral(PacketSchema.FieldType.SHORT, (Short) value);
+            } else if (value instanceof Integer) {
+                writeIntegral(PacketSchema.FieldType.INTEGER, (Integer) value);
+            } else if (value instanceof Long) {
+                writeIntegral(PacketSchema.FieldType.LONG, (Long) value);
+            } else if (value instanceof Float) {
+                writeFloating(PacketSchema.FieldType.FLOAT, (Float) value);
+            } else if (value instanceof Double) {
+                writeFloating(PacketSchema.FieldType.DOUBLE, (Double) value);
+            } else if (value instanceof String) {
+                out.write(TAG_STRING);
+                writeString((String) value);
+            } else if (value instanceof Enum) {
+                out.write(TAG_ENUM);
+                writeInterned(((Enum<?>) value).getDeclaringClass().getName());
+                writeInterned(((Enum<?>) value).name());
+            } else {
+                out.write(TAG_SERIALIZABLE);
+                writeSerializable(value);
+            }
+        }
+
+        /**
+         * Writes an unboxed boolean, char, byte, short, integer or long, prefixed with the type
+         * tag of the given type.
+         *
+         * @param type type of the value
+         * @param value value to write, booleans are written as 0 or 1
+         * @throws IOException thrown if the stream is not writeable
+         */
+        void writeIntegral(PacketSchema.FieldType type, long value) throws IOException {
+            switch (type) {
+                case BOOLEAN:
+                    out.write(value != 0 ? TAG_TRUE : TAG_FALSE);
+                    break;
+                case CHAR:
+                    out.write(TAG_CHAR);
+                    writeVarInt((char) value);
+                    break;
+                case BYTE:
+                    out.write(TAG_BYTE);
+                    out.write((int) value);
+                    break;
+                case SHORT:
+                    out.write(TAG_SHORT);
+                    writeVarLong(zigzag(value));
+                    break;
+                case INTEGER:
+                    out.write(TAG_INTEGER);
+                    writeVarLong(zigzag(value));
+                    break;
+                case LONG:
+                    out.write(TAG_LONG);
+                    writeVarLong(zigzag(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException(type + " is not an integral type");
+            }
+        }
+
+        /**
+         * Writes an unboxed float or double, prefixed with the type tag of the given type.
+         *
+         * @param type type of the value
+         * @param value value to write
+         * @throws IOException thrown if the stream is not writeable
+         */
+        void writeFloating(PacketSchema.FieldType type, double value) throws IOException {
+            if (type == PacketSchema.FieldType.FLOAT) {
+                out.write(TAG_FLOAT);
+                writeFixed(Float.floatToIntBits((float) value), 4);
+            } else if (type == PacketSchema.FieldType.DOUBLE) {
+                out.write(TAG_DOUBLE);
+                writeFixed(Double.doubleToLongBits(value), 8);
+            } else {
+                throw new IllegalArgumentException(type + " is not a floating point type");
+            }
+        }
+
+        /**
+         * Writes the given integer as unsigned varint.
+         *
+         * @param value to write
+         * @throws IOException thrown if the stream is not writeable
+         */
+        void writeVarInt(int value) throws IOException {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            int length = 0;
+            long remaining = value;
+            while ((remaining & ~0x7FL) != 0) {
+                scratch[length++] = (byte) ((remaining & 0x7F) | 0x80);
+                remaining >>>= 7;
+            }
+            scratch[length++] = (byte) remaining;
+            out.write(scratch, 0, length);
+        }
+
+        private void writeFixed(long value, int bytes) throws IOException {
+            for (int i = 0; i < bytes; i++) {
+                scratch[i] = (byte) (value >>> ((bytes - 1 - i) * 8));
+            }
+            out.write(scratch, 0, bytes);
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private void writeSerializable(Object value) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream stream = new ObjectOutputStream(bytes)) {
+                stream.writeObject(value);
+            }
+            writeVarInt(bytes.size());
+            bytes.writeTo(out);
+        }
+
+        private static long zigzag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+    }
+
+    /**
+     * Reads batches written by {@link Encoder} from an {@link InputStream}.
+     */
+    public static final class Decoder {
+
+        private final InputStream in;
+        private final List<String> dictionary = new ArrayList<>();
+        private final Map<String, Class<?>> enumClasses = new HashMap<>();//NOPMD
+        private boolean finished;
+
+        /**
+         * Creates a decoder and checks the batch header of the given stream.
+         *
+         * @param in stream to read from
+         * @throws IOException thrown if the stream is not readable or the header is invalid
+         */
+        public Decoder(InputStream in) throws IOException {
+            this.in = in;
+            if (readByte() != MAGIC[0] || readByte() != MAGIC[1]) {
+                throw new IOException("Not a packet batch");
+            }
+            int version = readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported packet batch version " + version);
+            }
+        }
+
+        /**
+         * Reads the next packet of this batch.
+         *
+         * @return the next {@link ProcessedDataPacket} or null, if the end of the batch is reached
+         * @throws IOException thrown if the stream is not readable or corrupted
+         */
+        public ProcessedDataPacket read() throws IOException {
+            if (finished) {
+                return null;
+            }
+
+            int marker = readByte();
+            if (marker == END_OF_BATCH) {
+                finished = true;
+                return null;
+            }
+            if (marker != PACKET) {
+                throw new IOException("Invalid packet marker " + marker);
+            }
+            return ProcessedDataPacket.decode(this);
+        }
+
+        /**
+         * Reads a string written by {@link Encoder#writeInterned(String)}.
+         *
+         * @return the string
+         * @throws IOException thrown if the stream is not readable or corrupted
+         */
+        String readInterned() throws IOException {
+            int index = readVarInt();
+            if (index == 0) {
+                String value = readString();
+                dictionary.add(value);
+                return value;
+            }
+            if (index > dictionary.size()) {
+                throw new IOException("Invalid dictionary index " + index);
+            }
+            return dictionary.get(index - 1);
+        }
+
+        /**
+         * Reads the type tag of the next value.
+         *
+         * @return the type tag
+         * @throws IOException thrown if the stream is not readable
+         */
+        int readTag() throws IOException {
+            return readByte();
+        }
+
+        /**
+         * Reads a value written by {@link Encoder#writeValue(Object)}.
+         *
+         * @return the value, boxed
+         * @throws IOException thrown if the stream is not readable or corrupted
+         */
+        Serializable readValue() throws IOException {
+            return readValue(readTag());
+        }
+
+        /**
+         * Reads the value following the given type tag.
+         *
+         * @param tag type tag read by {@link #readTag()}
+         * @return the value, boxed
+         * @throws IOException thrown if the stream is not readable or corrupted
+         */
+        Serializable readValue(int tag) throws IOException {
+            switch (tag) {
+                case TAG_NULL:
+                    return null;
+                case TAG_FALSE:
+                    return Boolean.FALSE;
+                case TAG_TRUE:
+                    return Boolean.TRUE;
+                case TAG_CHAR:
+                    return (char) readIntegral(tag);
+                case TAG_BYTE:
+                    return (byte) readIntegral(tag);
+                case TAG_SHORT:
+                    return (short) readIntegral(tag);
+                case TAG_INTEGER:
+                    return (int) readIntegral(tag);
+                case TAG_LONG:
+                    return readIntegral(tag);
+                case TAG_FLOAT:
+                    return (float) readFloating(tag);
+                case TAG_DOUBLE:
+                    return readFloating(tag);
+                case TAG_STRING:
+                    return readString();
+                case TAG_ENUM:
+                    return readEnum();
+                case TAG_SERIALIZABLE:
+                    return readSerializable();
+                default:
+                    throw new IOException("Invalid type tag " + tag);
+            }
+        }
+
+        /**
+         * Reads an unboxed integral value following the given type tag.
+         *
+         * @param tag type tag read by {@link #readTag()}
+         * @return the value, booleans are returned as 0 or 1
+         * @throws IOException thrown if the stream is not readable or corrupted
+         */
+        long readIntegral(int tag) throws IOException {
+            switch (tag) {
+                case TAG_FALSE:
+                    return 0;
+                case TAG_TRUE:
+                    return 1;
+                case TAG_CHAR:
+                    return readVarInt();
+                case TAG_BYTE:
+                    return (byte) readByte();
+                case TAG_SHORT:
+                case TAG_INTEGER:
+                case TAG_LONG:
+                    return unzigzag(readVarLong());
+                default:
+                    throw new IOException("Tag " + tag + " is not an integral type");
+            }
+        }
+
+        /**
+         * Reads an unboxed floating point value following the given type tag.
+         *
+         * @param tag type tag read by {@link #readTag()}
+         * @return the value
+         * @throws IOException thrown if the stream is not readable or corrupted
+         */
+        double readFloating(int tag) throws IOException {
+            if (tag == TAG_FLOAT) {
+                return Float.intBitsToFloat((int) readFixed(4));
+            } else if (tag == TAG_DOUBLE) {
+                return Double.longBitsToDouble(readFixed(8));
+            }
+            throw new IOException("Tag " + tag + " is not a floating point type");
+        }
+
+        /**
+         * Reads an unsigned varint.
+         *
+         * @return the integer
+         * @throws IOException thrown if the stream is not readable or corrupted
+         */
+        int readVarInt() throws IOException {
+            long value = readVarLong();
+            if (value > 0xFFFFFFFFL) {
+                throw new IOException("Varint overflow");
+            }
+            return (int) value;
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Varint overflow");
+        }
+
+        private long readFixed(int bytes) throws IOException {
+            long value = 0;
+            for (int i = 0; i < bytes; i++) {
+                value = (value << 8) | readByte();
+            }
+            return value;
+        }
+
+        private String readString() throws IOException {
+            byte[] bytes = readBytes(readVarInt());
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Serializable readEnum() throws IOException {
+            String className = readInterned();
+            String name = readInterned();
+            Class<?> type = enumClasses.get(className);
+            try {
+                if (type == null) {
+                    type = Class.forName(className);
+                    enumClasses.put(className, type);
+                }
+                if (!type.isEnum()) {
+                    throw new IOException(className + " is not an enum");
+                }
+                return Enum.valueOf((Class<Enum>) type, name);
+            } catch (ClassNotFoundException | IllegalArgumentException e) {
+                throw new IOException("Unknown enum constant " + className + "." + name, e);
+            }
+        }
+
+        private Serializable readSerializable() throws IOException {
+            byte[] bytes = readBytes(readVarInt());
+            try (ObjectInputStream stream = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                return (Serializable) stream.readObject();
+            } catch (ClassNotFoundException | ClassCastException e) {
+                throw new IOException("Couldn't restore serialized value", e);
+            }
+        }
+
+        private byte[] readBytes(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                int read = in.read(bytes, offset, length - offset);
+                if (read < 0) {
+                    throw new EOFException();
+                }
+                offset += read;
+            }
+            return bytes;
+        }
+
+        private int readByte() throws IOException {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            return b;
+        }
+
+        private static long unzigzag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import timber.log.Timber;
+
+/**
+ * Iterates over the {@link ProcessedDataPacket}s of one {@link PacketRecord}. <br>
+ * The payload is inflated straight from the memory mapped segment into a fixed size output
+ * buffer and decoded packet by packet, so reading a record takes constant memory besides the
+ * packets themselves. The buffers and the {@link Inflater} are reused by the next iterator of the
+ * same thread, as soon as the iteration reached its end or the iterator got closed. An iterator,
+ * which isn't read to the end, has to be closed by the thread, which created it. <br>
+ * The checksum of the record is verified before the first packet is returned. If the record is
+ * corrupted or can't be decoded, the iteration ends early and {@link #isCorrupted()} returns true.
+ */
+public final class PacketIterator implements Iterator<ProcessedDataPacket>, Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Buffers of the current thread, see {@link Buffers}.
+     */
+    private static final ThreadLocal<Buffers> BUFFERS = new ThreadLocal<Buffers>() {
+        @Override
+        protected Buffers initialValue() {
+            return new Buffers();
+        }
+    };
+
+    private final PacketRecord record;
+    private Buffers buffers;
+    private PacketCodec.Decoder decoder;
+    private ProcessedDataPacket next;
+    private boolean corrupted;
+
+    /**
+     * Constructor of this class. Verifies the checksum of the given record.
+     *
+     * @param record record to iterate over
+     */
+    PacketIterator(PacketRecord record) {
+        this.record = record;
+
+        try {
+            ByteBuffer payload = record.segment.getPayload(record);
+            buffers = Buffers.acquire();
+
+            if (checksum(payload.duplicate(), buffers.input) != record.crc) {
+                throw new IOException("Checksum mismatch");
+            }
+
+            decoder = new PacketCodec.Decoder(new RecordInputStream(payload, buffers));
+            next = decoder.read();
+        } catch (IOException e) {
+            fail(e);
+        }
+        release();
+    }
+
+    /**
+     * Calculates the CRC32 of the remaining bytes in the given buffer. Copies them in chunks,
+     * because a {@link CRC32} can't read from a {@link ByteBuffer} before API level 26.
+     *
+     * @param buffer buffer to calculate the checksum of
+     * @param chunk buffer used to copy the bytes
+     * @return checksum
+     */
+    private static int checksum(ByteBuffer buffer, byte[] chunk) {
+        CRC32 crc = new CRC32();
+        while (buffer.hasRemaining()) {
+            int length = Math.min(chunk.length, buffer.remaining());
+            buffer.get(chunk, 0, length);
+            crc.update(chunk, 0, length);
+        }
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public ProcessedDataPacket next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+
+        ProcessedDataPacket current = next;
+        try {
+            next = decoder.read();
+        } catch (IOException e) {
+            fail(e);
+        }
+        release();
+        return current;
+    }
+
+    private void fail(IOException e) {
+        Timber.e(e, "Corrupted record %s", record);
+        corrupted = true;
+        next = null;
+    }
+
+    /**
+     * Returns the buffers to the pool of the thread, as soon as the iteration is finished.
+     */
+    private void release() {
+        if (next == null && buffers != null) {
+            buffers.release();
+            buffers = null;
+            decoder = null;
+        }
+    }
+
+    /**
+     * Ends the iteration and returns the buffers to the pool of the thread. Does nothing, if the
+     * iteration already reached its end.
+     */
+    @Override
+    public void close() {
+        next = null;
+        release();
+    }
+
+    /**
+     * Returns whether the iteration ended early, because the record is corrupted.
+     *
+     * @return true if the record is corrupted
+     */
+    public boolean isCorrupted() {
+        return corrupted;
+    }
+
+    /**
+     * Input and output buffer and {@link Inflater} of one thread. If an iterator of the thread is
+     * still in use, a new instance is created for the next one.
+     */
+    private static final class Buffers {
+
+        final byte[] input = new byte[BUFFER_SIZE];
+        final byte[] output = new byte[BUFFER_SIZE];
+        final Inflater inflater = new Inflater();
+        boolean inUse;
+
+        static Buffers acquire() {
+            Buffers buffers = BUFFERS.get();
+            if (buffers.inUse) {
+                buffers = new Buffers();
+            }
+            buffers.inUse = true;
+            buffers.inflater.reset();
+            return buffers;
+        }
+
+        void release() {
+            if (BUFFERS.get() == this) { //NOPMD - reference comparison is intended
+                inUse = false;
+            } else {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * Stream of the inflated payload of a record. Copies the compressed bytes from the mapped
+     * payload in chunks into the input buffer and inflates them into the output buffer.
+     */
+    private static final class RecordInputStream extends InputStream {
+
+        private final ByteBuffer payload;
+        private final Buffers buffers;
+        private int position;
+        private int count;
+
+        RecordInputStream(ByteBuffer payload, Buffers buffers) {
+            this.payload = payload;
+            this.buffers = buffers;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position >= count && !fill()) {
+                return -1;
+            }
+            return buffers.output[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= count && !fill()) {
+                return -1;
+            }
+
+            int length = Math.min(len, count - position);
+            System.arraycopy(buffers.output, position, b, off, length);
+            position += length;
+            return length;
+        }
+
+        /**
+         * Inflates the next bytes into the output buffer.
+         *
+         * @return false if the end of the payload is reached
+         * @throws IOException thrown if the payload is no valid deflate stream
+         */
+        private boolean fill() throws IOException {
+            Inflater inflater = buffers.inflater;
+            position = 0;
+            count = 0;
+
+            try {
+                while (count == 0) {
+                    if (inflater.finished()) {
+                        return false;
+                    }
+                    if (inflater.needsDictionary()) {
+                        throw new IOException("Payload requires a dictionary");
+                    }
+                    if (inflater.needsInput()) {
+                        if (!payload.hasRemaining()) {
+                            throw new EOFException("Unexpected end of payload");
+                        }
+                        int length = Math.min(buffers.input.length, payload.remaining());
+                        payload.get(buffers.input, 0, length);
+                        inflater.setInput(buffers.input, 0, length);
+                    }
+                    count = inflater.inflate(buffers.output);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException(e);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import timber.log.Timber;
+
+/**
+ * Persistent list of the segments of the {@link PacketLog} and their sizes. <br>
+ * Lets the log open the cache without listing the directory and reading the length of every
+ * file. The ledger only changes when a segment is created, sealed or deleted, so appending a
+ * record doesn't touch it. The length of the open segment isn't stored, it is determined by the
+ * recovery scan anyway. <br>
+ * The ledger is written before a segment file is created and after a segment file is renamed or
+ * deleted. So if the process dies in between, the open segment of the ledger doesn't exist and
+ * the ledger gets rebuilt from the directory.
+ */
+final class PacketLedger {
+
+    static final String FILE_NAME = "segments.ledger";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int MAGIC = 0x444B4C47; // "DKLG"
+    private static final int VERSION = 1;
+
+    private final File dir;
+    private final File file;
+
+    /**
+     * Constructor of this class.
+     *
+     * @param dir directory of the {@link PacketLog}
+     */
+    PacketLedger(File dir) {
+        this.dir = dir;
+        file = new File(dir, FILE_NAME);
+    }
+
+    /**
+     * Checks if the given file belongs to the ledger and is no segment or cache file.
+     *
+     * @param file file in the log directory
+     * @return true if the file is the ledger or a temporary copy of it
+     */
+    static boolean isLedgerFile(File file) {
+        return file.getName().startsWith(FILE_NAME);
+    }
+
+    /**
+     * Loads the segments stored in the ledger.
+     *
+     * @return list of segments, oldest first, or null if the ledger is missing or out of date
+     */
+    List<PacketLogSegment> load() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                Timber.e("Invalid ledger, rebuilding it");
+                return null;
+            }
+
+            int count = in.readInt();
+            List<PacketLogSegment> segments = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long sequence = in.readLong();
+                boolean sealed = in.readBoolean();
+                long length = in.readLong();
+                PacketLogSegment segment = PacketLogSegment.restore(dir, sequence, sealed, length);
+
+                // the open segment is the only one changing without updating the ledger
+                if (!sealed && !segment.getFile().exists()) {
+                    Timber.d("Open segment %s is missing, rebuilding ledger", segment.getName());
+                    return null;
+                }
+                segments.add(segment);
+            }
+            return segments;
+        } catch (FileNotFoundException e) {
+            Timber.d("No ledger found, rebuilding it");
+        } catch (IOException e) {
+            Timber.e(e, "Couldn't load ledger, rebuilding it");
+        }
+        return null;
+    }
+
+    /**
+     * Replaces the ledger with the given segments. Writes a temporary copy first and renames it
+     * afterwards, so the ledger is never incomplete.
+     *
+     * @param segments all segments of the {@link PacketLog}
+     */
+    void save(List<PacketLogSegment> segments) {
+        File temp = new File(dir, FILE_NAME + TEMP_SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(segments.size());
+            for (PacketLogSegment segment : segments) {
+                out.writeLong(segment.getSequence());
+                out.writeBoolean(segment.isSealed());
+                out.writeLong(segment.isSealed() ? segment.length() : 0);
+            }
+        } catch (IOException e) {
+            Timber.e(e, "Couldn't write ledger");
+            return;
+        }
+
+        if (!temp.renameTo(file)) {
+            Timber.e("Couldn't replace ledger");
+            if (!file.delete()) {
+                Timber.e("Couldn't delete out of date ledger");
+            }
+        }
+    }
+}
@@ -0,0 +1,746 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import android.content.Context;
+
+import de.datenkraken.datenkrake.R;
+import de.datenkraken.datenkrake.surveillance.background.PacketListStream;
+import de.datenkraken.datenkrake.surveillance.util.FileUtil;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import timber.log.Timber;
+
+/**
+ * Append-only log of {@link ProcessedDataPacket}s, used as packet cache. <br>
+ * Packets get appended as compressed records to the open {@link PacketLogSegment}. When the open
+ * segment reaches the configured segment size, it gets sealed and a new one is started. The
+ * {@link de.datenkraken.datenkrake.surveillance.background.BackgroundPacketSender} selects
+ * records of sealed segments by task id and time range with {@link #select(String, long, long)},
+ * without decoding them, and acknowledges them after they were sent. A segment is deleted as
+ * soon as all of its records are acknowledged. Acknowledgements are persisted in a
+ * {@link PacketCheckpoint}, so sent packets aren't sent again after a restart. <br>
+ * The size of the log is tracked in memory and the segments are stored in a {@link PacketLedger},
+ * so neither appending nor opening the log has to list the cache directory. <br>
+ * If the log exceeds its size limit, records of sealed segments get evicted by the
+ * {@link EvictionPolicy}, by default the oldest records of the lowest {@link PacketPriority}
+ * first. Additionally the records of every task id are limited to the quota declared by its
+ * {@link PacketSchema}. Segments which lose only some of their records get compacted, their
+ * remaining records are copied to the open segment without decoding them. Acknowledgements of a
+ * copied record, which arrive after it was copied, are forwarded to its copy. <br>
+ * Cache files of older versions, which stored one file per task id, get migrated into the log
+ * once.
+ */
+public final class PacketLog {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Deflater of the current thread. Deflaters hold native memory, so they get reused instead of
+     * creating one for every record.
+     */
+    private static final ThreadLocal<Deflater> DEFLATER = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater();
+        }
+    };
+
+    /**
+     * Evicts the oldest record first, regardless of its priority.
+     */
+    public static final EvictionPolicy OLDEST_FIRST = records -> 0;
+
+    /**
+     * Evicts the oldest record of the lowest {@link PacketPriority} first.
+     */
+    public static final EvictionPolicy LOWEST_PRIORITY_FIRST = records -> {
+        int choice = 0;
+        for (int i = 1; i < records.size(); i++) {
+            if (records.get(i).getPriority().compareTo(records.get(choice).getPriority()) < 0) {
+                choice = i;
+            }
+        }
+        return choice;
+    };
+
+    private static PacketLog instance;
+
+    private final File dir;
+    private final long segmentSize;
+    private final long maxSize;
+    private final PacketLedger ledger;
+    private final PacketCheckpoint checkpoint;
+    private final List<PacketLogSegment> segments = new ArrayList<>();
+    // compacted records, which may still be sent, mapped to their copies
+    private final Map<PacketRecord, PacketRecord> moved = new HashMap<>();//NOPMD
+    private PacketLogSegment active;
+    private long size;
+    private Map<String, Long> taskSizes;
+    private EvictionPolicy evictionPolicy = LOWEST_PRIORITY_FIRST;
+
+    /**
+     * Returns the packet log of the packet cache directory. Opens it on first access.
+     *
+     * @param context used to locate the cache directory and load the constants from xml-resources
+     * @return the packet log or null, if the cache directory is not accessible
+     */
+    public static synchronized PacketLog get(Context context) {
+        if (instance == null) {
+            File dir = FileUtil.getDataDir(context.getCacheDir().getPath(), context);
+            if (dir == null) {
+                return null;
+            }
+            instance = new PacketLog(dir,
+                context.getResources().getInteger(R.integer.packet_cache_segment_bytes),
+                context.getResources().getInteger(R.integer.packet_cache_limit_bytes));
+        }
+        return instance;
+    }
+
+    /**
+     * Opens the log in the given directory. Loads the segments from the {@link PacketLedger} or
+     * rebuilds it from the directory, recovers the open segment and migrates cache files of older
+     * versions.
+     *
+     * @param dir directory of the log
+     * @param segmentSize size in bytes, after which a segment gets sealed
+     * @param maxSize size limit of the log in bytes
+     */
+    PacketLog(File dir, long segmentSize, long maxSize) {
+        Timber.tag("PacketLog");
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.maxSize = maxSize;
+        ledger = new PacketLedger(dir);
+        checkpoint = new PacketCheckpoint(dir);
+
+        List<PacketLogSegment> restored = ledger.load();
+        List<File> legacyFiles = new ArrayList<>();
+        if (restored == null) {
+            rebuild(legacyFiles);
+        } else {
+            segments.addAll(restored);
+        }
+
+        recoverOpenSegments();
+        size = 0;
+        for (PacketLogSegment segment : segments) {
+            size += segment.length();
+        }
+        restoreCheckpoint();
+        ledger.save(segments);
+
+        migrate(legacyFiles);
+    }
+
+    /**
+     * Lists the segments in the log directory. All other files are cache files of an older
+     * version.
+     *
+     * @param legacyFiles list to add the cache files of older versions to
+     */
+    private void rebuild(List<File> legacyFiles) {
+        File[] files = dir.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            if (PacketLedger.isLedgerFile(files[i]) || PacketCheckpoint.isCheckpointFile(files[i])) {
+                continue;
+            }
+
+            PacketLogSegment segment = PacketLogSegment.open(files[i]);
+            if (segment == null) {
+                legacyFiles.add(files[i]);
+            } else {
+                segments.add(segment);
+            }
+        }
+        Collections.sort(segments, (o1, o2) -> Long.compare(o1.getSequence(), o2.getSequence()));
+    }
+
+    /**
+     * Keeps the newest open segment as {@link #active} segment and removes its corrupted tail.
+     * Older open segments are left over from a failed rollover and get sealed.
+     */
+    private void recoverOpenSegments() {
+        for (PacketLogSegment segment : new ArrayList<>(segments)) {
+            if (segment.isSealed()) {
+                continue;
+            }
+
+            try {
+                if (active != null) {
+                    seal(active);
+                }
+                segment.truncateTail();
+                active = segment;
+            } catch (IOException e) {
+                Timber.e(e, "Couldn't recover segment %s", segment.getName());
+                segments.remove(segment);
+            }
+        }
+    }
+
+    /**
+     * Applies the acknowledgements of the {@link PacketCheckpoint} to the segments and deletes
+     * segments, which turn out to be sent completely. Afterwards the checkpoint is replaced with
+     * the entries of the remaining segments.
+     */
+    private void restoreCheckpoint() {
+        Map<Long, PacketLogSegment> bySequence = new HashMap<>();//NOPMD
+        for (PacketLogSegment segment : segments) {
+            bySequence.put(segment.getSequence(), segment);
+        }
+
+        List<PacketCheckpoint.Entry> kept = new ArrayList<>();
+        for (PacketCheckpoint.Entry entry : checkpoint.load()) {
+            PacketLogSegment segment = bySequence.get(entry.sequence);
+            if (segment == null) {
+                continue;
+            }
+
+            for (PacketRecord record : getRecords(segment)) {
+                if (entry.matches(record)) {
+                    kept.add(entry);
+                    if (segment.acknowledge(record, entry.from, entry.to) && segment.isSealed()) {
+                        bySequence.remove(entry.sequence);
+                        remove(segment);
+                    }
+                    break;
+                }
+            }
+        }
+
+        // entries of deleted segments are dropped, so the checkpoint doesn't grow forever
+        List<PacketCheckpoint.Entry> remaining = new ArrayList<>();
+        for (PacketCheckpoint.Entry entry : kept) {
+            if (bySequence.containsKey(entry.sequence)) {
+                remaining.add(entry);
+            }
+        }
+        checkpoint.rewrite(remaining);
+    }
+
+    /**
+     * Appends the cache files of the per task id cache to the log and deletes them afterwards.
+     *
+     * @param files cache files of an older version
+     */
+    private void migrate(List<File> files) {
+        for (File file : files) {
+            PacketListStream stream = null;
+            try {
+                stream = new PacketListStream(file);
+                List<ProcessedDataPacket> list = stream.loadNext();
+                while (list != null) {
+                    if (!list.isEmpty()) {
+                        append(list.get(0).getTaskId(), list);
+                    }
+                    list = stream.loadNext();
+                }
+            } catch (IOException e) {
+                Timber.e(e, "Couldn't migrate cache file %s", file.getName());
+            } finally {
+                if (stream != null) {
+                    stream.close();
+                }
+            }
+
+            if (!file.delete()) {
+                Timber.e("Couldn't delete cache file %s", file.getName());
+            }
+        }
+    }
+
+    /**
+     * Compresses the given packets into a new record and appends it to the open segment. The
+     * packets are encoded straight into the segment file, so no copy of them is kept in memory.
+     * If the record couldn't be written completely, it gets removed from the segment again. If the
+     * task id exceeds its quota or the log exceeds its size limit afterwards, records of sealed
+     * segments get evicted.
+     *
+     * @param taskId task id of all given packets
+     * @param packets packets to append
+     * @return bytes written or -1 if an error occurred
+     */
+    public synchronized int append(String taskId, List<ProcessedDataPacket> packets) {
+        if (packets.isEmpty()) {
+            return 0;
+        }
+
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+
+        try {
+            PacketLogSegment segment = getActive();
+            int written;
+            try (PacketRecordWriter writer = new PacketRecordWriter(segment.getFile(), taskId, maxSize)) {
+                DeflaterOutputStream compressed = new DeflaterOutputStream(writer, deflater, BUFFER_SIZE);
+                PacketCodec.Encoder encoder =
+                    new PacketCodec.Encoder(new BufferedOutputStream(compressed, BUFFER_SIZE));
+
+                long minTimestamp = Long.MAX_VALUE;
+                long maxTimestamp = Long.MIN_VALUE;
+                for (ProcessedDataPacket packet : packets) {
+                    encoder.write(packet);
+                    minTimestamp = Math.min(minTimestamp, packet.getTimestamp(PacketRecord.UNKNOWN_MIN_TIMESTAMP));
+                    maxTimestamp = Math.max(maxTimestamp, packet.getTimestamp(PacketRecord.UNKNOWN_MAX_TIMESTAMP));
+                }
+                encoder.finish();
+                compressed.finish();
+
+                segment.append(writer.commit(segment, packets.size(), minTimestamp, maxTimestamp));
+                written = (int) writer.length();
+                size += written;
+                addTaskSize(taskId, written);
+            }
+
+            if (segment.length() >= segmentSize) {
+                seal(segment);
+            }
+            enforceQuota(taskId);
+            evict();
+            return written;
+        } catch (IOException e) {
+            /* Either the file is not writeable, a value couldn't be encoded or the record alone
+               exceeds the cache limit. The record got removed from the segment again in every case. */
+            Timber.e(e, "Couldn't append %d packets of %s", packets.size(), taskId);
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the open segment. Creates a new one, if there is no open segment.
+     *
+     * @return open segment
+     * @throws IOException thrown if the segment file already exists
+     */
+    private PacketLogSegment getActive() throws IOException {
+        if (active == null) {
+            long sequence = segments.isEmpty() ? 0 : segments.get(segments.size() - 1).getSequence() + 1;
+            active = PacketLogSegment.create(dir, sequence);
+            segments.add(active);
+            ledger.save(segments); // the ledger must know the segment before its file exists
+        }
+        return active;
+    }
+
+    /**
+     * Seals the open segment, if it contains any record. Afterwards all records appended before
+     * can be selected.
+     */
+    public synchronized void sealActive() {
+        if (active == null || active.isEmpty()) {
+            return;
+        }
+
+        try {
+            seal(active);
+        } catch (IOException e) {
+            Timber.e(e, "Couldn't seal segment %s", active.getName());
+        }
+    }
+
+    private void seal(PacketLogSegment segment) throws IOException {
+        if (segment == active) { //NOPMD - reference comparison is intended
+            active = null;
+        }
+
+        long length = segment.length();
+        segment.seal();
+        size += segment.length() - length;
+        ledger.save(segments);
+        Timber.d("Sealed segment %s with %d bytes", segment.getName(), segment.length());
+    }
+
+    /**
+     * Evicts the oldest records of the given task id, if they exceed the quota declared by its
+     * {@link PacketSchema}. Records of the open segment can't be evicted, so the quota may be
+     * exceeded until the segment is sealed.
+     *
+     * @param taskId task id of the last appended record
+     */
+    private void enforceQuota(String taskId) {
+        PacketSchema schema = PacketSchema.forTaskId(taskId);
+        if (schema == null || schema.getQuota() >= 100) {
+            return;
+        }
+
+        long excess = getTaskSize(taskId) - maxSize / 100 * schema.getQuota();
+        List<PacketRecord> victims = new ArrayList<>();
+        for (PacketRecord record : select(taskId, Long.MIN_VALUE, Long.MAX_VALUE)) {
+            if (excess <= 0) {
+                break;
+            }
+            victims.add(record);
+            excess -= record.getSize();
+        }
+
+        if (!victims.isEmpty()) {
+            Timber.w("Quota of %s exceeded, evicting %d records", taskId, victims.size());
+            drop(victims);
+        }
+    }
+
+    /**
+     * Evicts records of sealed segments chosen by the {@link EvictionPolicy}, until the log
+     * doesn't exceed its size limit anymore or only the open segment is left.
+     */
+    private void evict() {
+        while (size > maxSize) {
+            // compacted records are moved to newer segments, so order the records by time
+            List<PacketRecord> candidates = select(null, Long.MIN_VALUE, Long.MAX_VALUE);
+            Collections.sort(candidates, (o1, o2) -> Long.compare(o1.getMaxTimestamp(), o2.getMaxTimestamp()));
+            List<PacketRecord> victims = new ArrayList<>();
+            long excess = size - maxSize;
+            while (excess > 0 && !candidates.isEmpty()) {
+                int choice = evictionPolicy.choose(candidates);
+                PacketRecord record = candidates.remove(Math.max(0, Math.min(choice, candidates.size() - 1)));
+                victims.add(record);
+                excess -= record.getSize();
+            }
+
+            if (victims.isEmpty()) {
+                break;
+            }
+
+            Timber.w("Cache limit reached, evicting %d records", victims.size());
+            long before = size;
+            drop(victims);
+            if (size >= before) {
+                break; // segments couldn't be deleted, don't try again on every append
+            }
+        }
+    }
+
+    /**
+     * Removes the given records of sealed segments from the log. Segments without any other
+     * unacknowledged record get deleted. The remaining records of all other affected segments are
+     * copied to the open segment first, so every segment is rewritten at most once. An affected
+     * segment is acknowledged completely before, so a segment, which can't be deleted, isn't
+     * selected anymore and gets deleted, when the log is opened the next time.
+     *
+     * @param victims records to remove
+     */
+    private void drop(List<PacketRecord> victims) {
+        Map<PacketLogSegment, List<PacketRecord>> affected = new LinkedHashMap<>();//NOPMD
+        for (PacketRecord record : victims) {
+            List<PacketRecord> list = affected.get(record.segment);
+            if (list == null) {
+                list = new ArrayList<>();
+                affected.put(record.segment, list);
+            }
+            list.add(record);
+        }
+
+        for (Map.Entry<PacketLogSegment, List<PacketRecord>> entry : affected.entrySet()) {
+            PacketLogSegment segment = entry.getKey();
+            Map<PacketRecord, BitSet> survivors = new LinkedHashMap<>();//NOPMD
+            for (PacketRecord record : getRecords(segment)) {
+                if (!entry.getValue().contains(record) && !segment.isAcknowledged(record)) {
+                    survivors.put(record, segment.getSent(record));
+                }
+            }
+
+            // the segment is marked as sent before its records are copied, so it is never sent
+            // together with the copies, even if it can't be deleted
+            for (PacketRecord record : getRecords(segment)) {
+                if (!segment.isAcknowledged(record)) {
+                    markSent(record, 0, record.getCount());
+                }
+            }
+
+            for (Map.Entry<PacketRecord, BitSet> survivor : survivors.entrySet()) {
+                try {
+                    PacketRecord copy = copy(survivor.getKey(), survivor.getValue());
+                    // a sender may have selected the record or one of its former copies before
+                    for (Map.Entry<PacketRecord, PacketRecord> former : moved.entrySet()) {
+                        if (former.getValue() == survivor.getKey()) { //NOPMD - reference comparison is intended
+                            former.setValue(copy);
+                        }
+                    }
+                    moved.put(survivor.getKey(), copy);
+                } catch (IOException e) {
+                    Timber.e(e, "Couldn't compact record %s, dropping it", survivor.getKey());
+                }
+            }
+            remove(segment);
+        }
+        ledger.save(segments);
+    }
+
+    /**
+     * Copies the given record of a sealed segment to the open segment. The compressed payload is
+     * copied as it is, its checksum is verified on the way.
+     *
+     * @param record record to copy
+     * @param sent packets of the record, which were already sent
+     * @return copy of the record
+     * @throws IOException thrown if the record is corrupted or the open segment is not writeable
+     */
+    private PacketRecord copy(PacketRecord record, BitSet sent) throws IOException {
+        PacketLogSegment segment = getActive();
+        PacketRecord copy;
+        ByteBuffer payload = record.segment.getPayload(record);
+        byte[] buffer = new byte[Math.min(BUFFER_SIZE, payload.remaining())];
+
+        try (PacketRecordWriter writer = new PacketRecordWriter(segment.getFile(), record.getTaskId(), maxSize)) {
+            while (payload.hasRemaining()) {
+                int length = Math.min(buffer.length, payload.remaining());
+                payload.get(buffer, 0, length);
+                writer.write(buffer, 0, length);
+            }
+            if (writer.checksum() != record.crc) {
+                throw new IOException("Checksum mismatch");
+            }
+
+            copy = writer.commit(segment, record.getCount(), record.getMinTimestamp(),
+                record.getMaxTimestamp());
+            segment.append(copy);
+            size += writer.length();
+            addTaskSize(record.getTaskId(), writer.length());
+
+            // packets of the record which were already sent stay sent
+            for (int from = sent.nextSetBit(0); from >= 0; from = sent.nextSetBit(sent.nextClearBit(from))) {
+                markSent(copy, from, sent.nextClearBit(from));
+            }
+        }
+
+        if (segment.length() >= segmentSize) {
+            seal(segment);
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the number of bytes the records of the given task id occupy. Reads the index of
+     * all segments on first access, afterwards the sizes are tracked on every change of the log.
+     *
+     * @param taskId task id of the records
+     * @return size in bytes
+     */
+    private long getTaskSize(String taskId) {
+        if (taskSizes == null) {
+            taskSizes = new HashMap<>();//NOPMD
+            for (PacketLogSegment segment : segments) {
+                for (PacketRecord record : getRecords(segment)) {
+                    addTaskSize(record.getTaskId(), record.getSize());
+                }
+            }
+        }
+
+        Long taskSize = taskSizes.get(taskId);
+        return taskSize == null ? 0 : taskSize;
+    }
+
+    private void addTaskSize(String taskId, long bytes) {
+        if (taskSizes != null) {
+            Long taskSize = taskSizes.get(taskId);
+            taskSizes.put(taskId, (taskSize == null ? 0 : taskSize) + bytes);
+        }
+    }
+
+    private List<PacketRecord> getRecords(PacketLogSegment segment) {
+        try {
+            return segment.getRecords();
+        } catch (IOException e) {
+            Timber.e(e, "Couldn't read index of segment %s", segment.getName());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Deletes the file of the given segment and removes it from the log.
+     *
+     * @param segment segment to remove
+     */
+    private void remove(PacketLogSegment segment) {
+        if (!segment.delete() && segment.getFile().exists()) {
+            Timber.e("Couldn't delete segment %s", segment.getName());
+            return;
+        }
+        segments.remove(segment);
+        moved.values().removeIf(copy -> copy.segment == segment);
+        size -= segment.length();
+        if (taskSizes != null) {
+            for (PacketRecord record : getRecords(segment)) {
+                addTaskSize(record.getTaskId(), -record.getSize());
+            }
+        }
+    }
+
+    /**
+     * Sets the policy deciding which records get evicted, when the log exceeds its size limit.
+     * By default {@link #LOWEST_PRIORITY_FIRST} is used.
+     *
+     * @param evictionPolicy {@link EvictionPolicy} to use
+     */
+    public synchronized void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+        this.evictionPolicy = evictionPolicy;
+    }
+
+    /**
+     * Returns the records of all sealed segments, which aren't acknowledged yet and match the
+     * given task id and time range. Only reads the index of the segments.
+     *
+     * @param taskId task id of the records or null for all task ids
+     * @param from start of the time range, inclusive
+     * @param to end of the time range, inclusive
+     * @return list of records, oldest first
+     */
+    public synchronized List<PacketRecord> select(String taskId, long from, long to) {
+        List<PacketRecord> selected = new ArrayList<>();
+        for (PacketLogSegment segment : segments) {
+            if (!segment.isSealed()) {
+                continue;
+            }
+
+            for (PacketRecord record : getRecords(segment)) {
+                if ((taskId == null || taskId.equals(record.getTaskId()))
+                    && record.overlaps(from, to)
+                    && !segment.isAcknowledged(record)) {
+                    selected.add(record);
+                }
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Returns an iterator over the packets of the given record. The record is read from the
+     * memory mapped segment, see {@link PacketIterator}. The iterator has to be closed, if it
+     * isn't read to the end.
+     *
+     * @param record record returned by {@link #select(String, long, long)}
+     * @return iterator over the packets of the record
+     */
+    public PacketIterator iterate(PacketRecord record) {
+        return new PacketIterator(record);
+    }
+
+    /**
+     * Loads the packets of the given record. Verifies the checksum of the record first.
+     *
+     * @param record record returned by {@link #select(String, long, long)}
+     * @return list of packets or null, if the record is corrupted or not readable
+     */
+    public List<ProcessedDataPacket> read(PacketRecord record) {
+        List<ProcessedDataPacket> list = new ArrayList<>(record.getCount());
+        try (PacketIterator iterator = iterate(record)) {
+            while (iterator.hasNext()) {
+                list.add(iterator.next());
+            }
+            return iterator.isCorrupted() ? null : list;
+        }
+    }
+
+    /**
+     * Marks the given record as sent. Deletes its segment, if all records of it are sent.
+     *
+     * @param record record returned by {@link #select(String, long, long)}
+     */
+    public synchronized void acknowledge(PacketRecord record) {
+        acknowledge(record, 0, record.getCount());
+    }
+
+    /**
+     * Marks a range of packets of the given record as sent. Deletes the segment of the record, if
+     * all packets of all its records are sent. If the record was compacted meanwhile, its copy
+     * is marked instead. <br>
+     * Lets the sender split a record into several mutations, so a failed mutation only has to
+     * resend its own packets.
+     *
+     * @param record record returned by {@link #select(String, long, long)}
+     * @param from index of the first sent packet in the record, inclusive
+     * @param to index of the last sent packet in the record, exclusive
+     */
+    public synchronized void acknowledge(PacketRecord record, int from, int to) {
+        PacketRecord copy = moved.get(record);
+        if (copy != null) {
+            acknowledge(copy, from, to);
+            return;
+        }
+
+        PacketLogSegment segment = record.segment;
+        if (!segments.contains(segment) || !markSent(record, from, to) || !segment.isSealed()) {
+            return;
+        }
+
+        remove(segment);
+        ledger.save(segments);
+    }
+
+    /**
+     * Marks a range of packets of the given record as sent and appends it to the checkpoint.
+     *
+     * @param record record of the packets
+     * @param from index of the first sent packet in the record, inclusive
+     * @param to index of the last sent packet in the record, exclusive
+     * @return true if all records of the segment are sent
+     */
+    private boolean markSent(PacketRecord record, int from, int to) {
+        checkpoint.append(PacketCheckpoint.Entry.of(record, from, to));
+        return record.segment.acknowledge(record, from, to);
+    }
+
+    /**
+     * Checks if the given packet of a record was already sent, see
+     * {@link #acknowledge(PacketRecord, int, int)}. If the record was compacted meanwhile, its copy
+     * is checked instead.
+     *
+     * @param record record returned by {@link #select(String, long, long)}
+     * @param index index of the packet in the record
+     * @return true if the packet was sent
+     */
+    public synchronized boolean isSent(PacketRecord record, int index) {
+        PacketRecord copy = moved.get(record);
+        return copy == null ? record.segment.isSent(record, index) : copy.segment.isSent(copy, index);
+    }
+
+    /**
+     * Deletes all segments, the ledger and the checkpoint and continues with an empty log.
+     * Records selected before can't be acknowledged anymore.
+     *
+     * @return false if the directory of the log couldn't be cleaned completely
+     */
+    public synchronized boolean clear() {
+        checkpoint.close();
+        boolean cleared = true;
+        try {
+            FileUtils.cleanDirectory(dir);
+        } catch (IOException e) {
+            Timber.e(e, "Unable to clear packet cache dir: %s", dir.getPath());
+            cleared = false;
+        }
+
+        segments.clear();
+        moved.clear();
+        active = null;
+        size = 0;
+        taskSizes = null;
+        ledger.save(segments);
+        return cleared;
+    }
+
+    /**
+     * Returns the combined size of all segments. The size is tracked on every change of the log,
+     * so this doesn't access the file system.
+     *
+     * @return size in bytes
+     */
+    public synchronized long size() {
+        return size;
+    }
+}
@@ -0,0 +1,471 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import timber.log.Timber;
+
+/**
+ * One segment file of the {@link PacketLog}. <br>
+ * A segment is a sequence of records. Every record consists of a header (magic, payload length,
+ * CRC32 of the payload, packet count, min and max timestamp, task id) and the compressed payload.
+ * New records are only appended to the open segment. When the open segment is sealed, an index
+ * of all record headers is appended as footer and the file is renamed atomically, so the records
+ * of a sealed segment can be listed by reading the footer only. <br>
+ * Open segments get scanned header by header instead. If a header is incomplete or doesn't start
+ * with the record magic, the rest of the file is treated as a corrupted tail.
+ */
+final class PacketLogSegment {
+
+    static final int RECORD_MAGIC = 0x444B5243; // "DKRC"
+    static final int FOOTER_MAGIC = 0x444B4958; // "DKIX"
+
+    /**
+     * Length of the fixed part of a record header, without the task id.
+     */
+    static final int HEADER_LENGTH = 4 * Integer.BYTES + 2 * Long.BYTES;
+
+    /**
+     * Length of the footer trailer: number of index entries, offset of the index and magic.
+     */
+    static final int TRAILER_LENGTH = 2 * Integer.BYTES + Long.BYTES;
+
+    static final String OPEN_SUFFIX = ".open";
+    static final String SEALED_SUFFIX = ".seg";
+
+    private final long sequence;
+    private File file;
+    private boolean sealed;
+    private long length;
+    private List<PacketRecord> records;
+    private MappedByteBuffer mapped;
+    private final Set<PacketRecord> acknowledged = new HashSet<>();//NOPMD
+    private final Map<PacketRecord, BitSet> sentPackets = new HashMap<>();//NOPMD
+
+    private PacketLogSegment(File file, long sequence, boolean sealed, long length) {
+        this.file = file;
+        this.sequence = sequence;
+        this.sealed = sealed;
+        this.length = length;
+    }
+
+    /**
+     * Returns the segment stored in the given file.
+     *
+     * @param file file of the segment
+     * @return the segment or null, if the file name is no segment name
+     */
+    static PacketLogSegment open(File file) {
+        String name = file.getName();
+        boolean sealed = name.endsWith(SEALED_SUFFIX);
+        if (!sealed && !name.endsWith(OPEN_SUFFIX)) {
+            return null;
+        }
+
+        try {
+            long sequence = Long.parseLong(name.substring(0, name.lastIndexOf('.')));
+            return new PacketLogSegment(file, sequence, sealed, file.length());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates a new, empty open segment. Its file gets created by the first appended record.
+     *
+     * @param dir directory of the {@link PacketLog}
+     * @param sequence sequence number of the segment
+     * @return the segment
+     * @throws IOException thrown if a file with the same sequence number already has content
+     */
+    static PacketLogSegment create(File dir, long sequence) throws IOException {
+        File file = new File(dir, getFileName(sequence, OPEN_SUFFIX));
+        if (file.length() > 0) {
+            throw new IOException("Segment " + file.getName() + " already exists");
+        }
+
+        PacketLogSegment segment = new PacketLogSegment(file, sequence, false, 0);
+        segment.records = new ArrayList<>();
+        return segment;
+    }
+
+    /**
+     * Returns the segment with the given sequence number, without accessing its file. Used for
+     * segments stored in the {@link PacketLedger}.
+     *
+     * @param dir directory of the {@link PacketLog}
+     * @param sequence sequence number of the segment
+     * @param sealed whether the segment is sealed
+     * @param length length of the segment file
+     * @return the segment
+     */
+    static PacketLogSegment restore(File dir, long sequence, boolean sealed, long length) {
+        File file = new File(dir, getFileName(sequence, sealed ? SEALED_SUFFIX : OPEN_SUFFIX));
+        return new PacketLogSegment(file, sequence, sealed, length);
+    }
+
+    private static String getFileName(long sequence, String suffix) {
+        return String.format(Locale.ROOT, "%016d%s", sequence, suffix);
+    }
+
+    /**
+     * Returns the index of this segment. Reads the footer of sealed segments and scans open
+     * segments on first access.
+     *
+     * @return list of all records in this segment
+     * @throws IOException thrown if the file is not readable
+     */
+    List<PacketRecord> getRecords() throws IOException {
+        if (records == null) {
+            if (sealed) {
+                try {
+                    records = readFooter();
+                } catch (IOException e) {
+                    Timber.e(e, "Invalid footer in %s, scanning it", file.getName());
+                    records = scan();
+                    length = file.length();
+                }
+            } else {
+                records = scan();
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Reads the index from the footer of a sealed segment.
+     *
+     * @return list of records
+     * @throws IOException thrown if the file is not readable or the footer is invalid
+     */
+    private List<PacketRecord> readFooter() throws IOException {
+        byte[] index;
+        int count;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long fileLength = raf.length();
+            if (fileLength < TRAILER_LENGTH) {
+                throw new IOException("Segment is too short for a footer");
+            }
+
+            raf.seek(fileLength - TRAILER_LENGTH);
+            count = raf.readInt();
+            long indexOffset = raf.readLong();
+            if (raf.readInt() != FOOTER_MAGIC || indexOffset < 0
+                || indexOffset > fileLength - TRAILER_LENGTH) {
+                throw new IOException("Segment has no valid footer");
+            }
+
+            index = new byte[(int) (fileLength - TRAILER_LENGTH - indexOffset)];
+            raf.seek(indexOffset);
+            raf.readFully(index);
+        }
+
+        List<PacketRecord> list = new ArrayList<>(count);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(index));
+        for (int i = 0; i < count; i++) {
+            list.add(readHeader(in, in.readLong()));
+        }
+        return list;
+    }
+
+    /**
+     * Reads the record headers of this segment one after another, skipping the payloads.
+     * Stops at the first invalid header and sets {@link #length} to the end of the last valid
+     * record.
+     *
+     * @return list of records
+     * @throws IOException thrown if the file is not readable
+     */
+    private List<PacketRecord> scan() throws IOException {
+        List<PacketRecord> list = new ArrayList<>();
+        long fileLength = file.length();
+        long position = 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (position < fileLength) {
+                if (in.readInt() != RECORD_MAGIC) {
+                    break;
+                }
+
+                // the length of a record which didn't get committed is still 0
+                PacketRecord record = readHeader(in, position);
+                if (record.length <= 0 || record.getPayloadOffset() + record.length > fileLength) {
+                    break;
+                }
+                skip(in, record.length);
+
+                list.add(record);
+                position += record.getSize();
+            }
+        } catch (EOFException e) {
+            Timber.d("Record header of %s is incomplete", file.getName());
+        }
+
+        if (position < fileLength) {
+            Timber.e("Corrupted tail in %s: %d of %d bytes are valid", file.getName(), position, fileLength);
+        }
+        length = position;
+        return list;
+    }
+
+    /**
+     * Reads a record header after its magic. Used for the record headers in the segment and
+     * the entries of the footer index.
+     *
+     * @param in stream to read from
+     * @param offset position of the record in the segment
+     * @return record described by the header
+     * @throws IOException thrown if the stream is not readable
+     */
+    private PacketRecord readHeader(DataInputStream in, long offset) throws IOException {
+        int payloadLength = in.readInt();
+        int crc = in.readInt();
+        int count = in.readInt();
+        long minTimestamp = in.readLong();
+        long maxTimestamp = in.readLong();
+        byte[] id = new byte[in.readUnsignedShort()];
+        in.readFully(id);
+
+        return new PacketRecord(this, offset, HEADER_LENGTH + Short.BYTES + id.length, payloadLength, crc,
+            new String(id, StandardCharsets.UTF_8), count, minTimestamp, maxTimestamp);
+    }
+
+    private static void skip(DataInputStream in, int bytes) throws IOException {
+        int remaining = bytes;
+        while (remaining > 0) {
+            int skipped = in.skipBytes(remaining);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            remaining -= skipped;
+        }
+    }
+
+    /**
+     * Removes the corrupted tail found by {@link #scan()}, so new records can be appended.
+     *
+     * @throws IOException thrown if the file is not writeable
+     */
+    void truncateTail() throws IOException {
+        getRecords();
+        if (file.length() <= length) {
+            return;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+        }
+    }
+
+    /**
+     * Adds a record written by {@link PacketRecordWriter} to the index.
+     *
+     * @param record record to add
+     */
+    void append(PacketRecord record) {
+        records.add(record);
+        length = record.offset + record.getSize();
+    }
+
+    /**
+     * Appends the footer index to this segment, syncs it to the disk and renames it to a sealed
+     * segment. Nothing can be appended afterwards.
+     *
+     * @throws IOException thrown if the file is not writeable or couldn't be renamed
+     */
+    void seal() throws IOException {
+        List<PacketRecord> list = getRecords();
+
+        ByteArrayOutputStream footer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(footer);
+        for (PacketRecord record : list) {
+            byte[] id = record.getTaskId().getBytes(StandardCharsets.UTF_8);
+            out.writeLong(record.offset);
+            out.writeInt(record.length);
+            out.writeInt(record.crc);
+            out.writeInt(record.getCount());
+            out.writeLong(record.getMinTimestamp());
+            out.writeLong(record.getMaxTimestamp());
+            out.writeShort(id.length);
+            out.write(id);
+        }
+        out.writeInt(list.size());
+        out.writeLong(length);
+        out.writeInt(FOOTER_MAGIC);
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+            raf.seek(length);
+            raf.write(footer.toByteArray());
+            raf.getFD().sync();
+        }
+
+        File sealedFile = new File(file.getParentFile(), getFileName(sequence, SEALED_SUFFIX));
+        if (!file.renameTo(sealedFile)) {
+            throw new IOException("Couldn't rename " + file.getName());
+        }
+
+        file = sealedFile;
+        sealed = true;
+        length += footer.size();
+    }
+
+    /**
+     * Returns a read only view on the compressed payload of the given record. The segment file
+     * gets memory mapped on first access, so the payload doesn't have to be copied to the heap.
+     * Only sealed segments are mapped, because their content doesn't change anymore.
+     *
+     * @param record record of this segment
+     * @return buffer positioned at the start of the payload, limited to its end
+     * @throws IOException thrown if the file is not readable or the record is out of bounds
+     */
+    synchronized ByteBuffer getPayload(PacketRecord record) throws IOException {
+        if (!sealed) {
+            throw new IOException("Segment " + file.getName() + " is not sealed");
+        }
+
+        if (mapped == null) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                 FileChannel channel = raf.getChannel()) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+
+        long end = record.getPayloadOffset() + record.length;
+        if (record.length < 0 || end > mapped.capacity()) {
+            throw new IOException("Record " + record + " exceeds its segment");
+        }
+
+        ByteBuffer payload = mapped.duplicate();
+        payload.limit((int) end);
+        payload.position((int) record.getPayloadOffset());
+        return payload;
+    }
+
+    /**
+     * Marks the given record as sent.
+     *
+     * @param record record of this segment
+     * @return true if all records of this segment are sent
+     */
+    boolean acknowledge(PacketRecord record) {
+        acknowledged.add(record);
+        sentPackets.remove(record);
+        return records != null && acknowledged.size() >= records.size();
+    }
+
+    /**
+     * Marks the given packets of a record as sent. The record counts as sent, as soon as all of
+     * its packets are sent.
+     *
+     * @param record record of this segment
+     * @param from index of the first sent packet in the record, inclusive
+     * @param to index of the last sent packet in the record, exclusive
+     * @return true if all records of this segment are sent
+     */
+    boolean acknowledge(PacketRecord record, int from, int to) {
+        if (acknowledged.contains(record)) {
+            return records != null && acknowledged.size() >= records.size();
+        }
+
+        BitSet sent = sentPackets.get(record);
+        if (sent == null) {
+            sent = new BitSet(record.getCount());
+            sentPackets.put(record, sent);
+        }
+        sent.set(from, to);
+        if (sent.nextClearBit(0) >= record.getCount()) {
+            return acknowledge(record);
+        }
+        return false;
+    }
+
+    /**
+     * Returns the packets of the given record, which are already sent.
+     *
+     * @param record record of this segment
+     * @return copy of the indices of the sent packets
+     */
+    BitSet getSent(PacketRecord record) {
+        if (acknowledged.contains(record)) {
+            BitSet all = new BitSet(record.getCount());
+            all.set(0, record.getCount());
+            return all;
+        }
+        BitSet sent = sentPackets.get(record);
+        return sent == null ? new BitSet() : (BitSet) sent.clone();
+    }
+
+    /**
+     * Checks if the given packet of a record is already sent.
+     *
+     * @param record record of this segment
+     * @param index index of the packet in the record
+     * @return true if the packet is sent
+     */
+    boolean isSent(PacketRecord record, int index) {
+        if (acknowledged.contains(record)) {
+            return true;
+        }
+        BitSet sent = sentPackets.get(record);
+        return sent != null && sent.get(index);
+    }
+
+    boolean isAcknowledged(PacketRecord record) {
+        return acknowledged.contains(record);
+    }
+
+    boolean delete() {
+        return file.delete();
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    String getName() {
+        return file.getName();
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    boolean isSealed() {
+        return sealed;
+    }
+
+    boolean isEmpty() {
+        return records != null && records.isEmpty();
+    }
+
+    /**
+     * Returns the number of bytes this segment occupies on the disk.
+     *
+     * @return size in bytes
+     */
+    long length() {
+        return length;
+    }
+}
@@ -0,0 +1,12 @@
+package de.datenkraken.datenkrake.surveillance;
+
+/**
+ * Priority classes of {@link ProcessedDataPacket}s, declared per task id with
+ * {@link PacketSchema#setPriority(PacketPriority)}. If the packet cache or the buffer of the
+ * {@link ProcessedDataCollector} is full, packets with a lower priority get dropped first.
+ */
+public enum PacketPriority {
+    LOW,
+    NORMAL,
+    HIGH
+}
@@ -0,0 +1,135 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Entry of the {@link PacketLog} index. Describes one compressed batch of
+ * {@link ProcessedDataPacket}s with the same task id, without having to decode it. <br>
+ * The packets can be loaded with {@link PacketLog#read(PacketRecord)}.
+ */
+public final class PacketRecord {
+
+    /**
+     * Timestamps used, if at least one packet of the record has no timestamp. The record then
+     * matches every time range.
+     */
+    static final long UNKNOWN_MIN_TIMESTAMP = Long.MIN_VALUE;
+    static final long UNKNOWN_MAX_TIMESTAMP = Long.MAX_VALUE;
+
+    final PacketLogSegment segment;
+    final long offset;
+    final int headerLength;
+    final int length;
+    final int crc;
+    private final String taskId;
+    private final int count;
+    private final long minTimestamp;
+    private final long maxTimestamp;
+
+    /**
+     * Constructor of this class.
+     *
+     * @param segment segment containing the record
+     * @param offset position of the record header in the segment file
+     * @param headerLength length of the record header
+     * @param length length of the compressed payload
+     * @param crc CRC32 of the compressed payload
+     * @param taskId task id of all packets in this record
+     * @param count number of packets in this record
+     * @param minTimestamp timestamp of the oldest packet
+     * @param maxTimestamp timestamp of the newest packet
+     */
+    PacketRecord(PacketLogSegment segment, long offset, int headerLength, int length, int crc,
+                 String taskId, int count, long minTimestamp, long maxTimestamp) {
+        this.segment = segment;
+        this.offset = offset;
+        this.headerLength = headerLength;
+        this.length = length;
+        this.crc = crc;
+        this.taskId = taskId;
+        this.count = count;
+        this.minTimestamp = minTimestamp;
+        this.maxTimestamp = maxTimestamp;
+    }
+
+    /**
+     * Returns the task id of all packets in this record.
+     *
+     * @return task id
+     */
+    public String getTaskId() {
+        return taskId;
+    }
+
+    /**
+     * Returns the number of packets in this record.
+     *
+     * @return number of packets
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the timestamp of the oldest packet in this record.
+     *
+     * @return timestamp in milliseconds
+     */
+    public long getMinTimestamp() {
+        return minTimestamp;
+    }
+
+    /**
+     * Returns the timestamp of the newest packet in this record.
+     *
+     * @return timestamp in milliseconds
+     */
+    public long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    /**
+     * Returns the priority of the packets in this record, declared by their {@link PacketSchema}.
+     *
+     * @return priority
+     */
+    public PacketPriority getPriority() {
+        PacketSchema schema = PacketSchema.forTaskId(taskId);
+        return schema == null ? PacketPriority.NORMAL : schema.getPriority();
+    }
+
+    /**
+     * Returns the number of bytes this record occupies in its segment.
+     *
+     * @return size in bytes
+     */
+    public int getSize() {
+        return headerLength + length;
+    }
+
+    /**
+     * Checks if this record contains packets created in the given time range.
+     *
+     * @param from start of the range, inclusive
+     * @param to end of the range, inclusive
+     * @return true if the time ranges overlap
+     */
+    public boolean overlaps(long from, long to) {
+        return minTimestamp <= to && maxTimestamp >= from;
+    }
+
+    long getPayloadOffset() {
+        return offset + headerLength;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "{" + "id='" + taskId + "', "
+            + "segment=" + segment.getName() + ", "
+            + "offset=" + offset + ", "
+            + "count=" + count + ", "
+            + "time=[" + minTimestamp + ", " + maxTimestamp + "]"
+            + "}";
+    }
+}
@@ -0,0 +1,151 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Output stream appending one record to a segment of the {@link PacketLog}. <br>
+ * The header of the record is written with placeholders first and gets patched by
+ * {@link #commit(PacketLogSegment, int, long, long)}, so the payload can be streamed into the file
+ * without knowing its size beforehand. If the record doesn't get committed, {@link #close()}
+ * truncates the file to its previous length again, so readers never see a partial record.
+ */
+final class PacketRecordWriter extends OutputStream {
+
+    private final RandomAccessFile file;
+    private final long start;
+    private final long limit;
+    private final String taskId;
+    private final int headerLength;
+    private final CRC32 crc = new CRC32();
+    private long length;
+    private boolean committed;
+
+    /**
+     * Opens the given file and writes the header of the record to its end.
+     *
+     * @param file segment file to append the record to
+     * @param taskId task id of the packets in this record
+     * @param limit maximal number of bytes the record may have, including its header
+     * @throws IOException thrown if the file is not writeable or the header exceeds the limit
+     */
+    PacketRecordWriter(File file, String taskId, long limit) throws IOException {
+        this.file = new RandomAccessFile(file, "rw");
+        this.taskId = taskId;
+        start = this.file.length();
+
+        byte[] id = taskId.getBytes(StandardCharsets.UTF_8);
+        headerLength = PacketLogSegment.HEADER_LENGTH + Short.BYTES + id.length;
+        this.limit = limit - headerLength;
+
+        try {
+            if (this.limit <= 0 || id.length > Short.MAX_VALUE) {
+                throw new IOException("Record exceeds the packet cache limit");
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(headerLength);
+            header.putInt(PacketLogSegment.RECORD_MAGIC);
+            header.position(PacketLogSegment.HEADER_LENGTH);
+            header.putShort((short) id.length);
+            header.put(id);
+
+            this.file.seek(start);
+            this.file.write(header.array());
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureCapacity(1);
+        file.write(b);
+        crc.update(b);
+        length++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureCapacity(len);
+        file.write(b, off, len);
+        crc.update(b, off, len);
+        length += len;
+    }
+
+    private void ensureCapacity(int len) throws IOException {
+        if (committed) {
+            throw new IOException("Record is already committed");
+        }
+        if (length + len > limit) {
+            throw new IOException("Record exceeds the packet cache limit");
+        }
+    }
+
+    /**
+     * Writes length, checksum and index information to the header of this record. Afterwards
+     * the record is complete and nothing can be written anymore.
+     *
+     * @param segment segment the record was written to
+     * @param count number of packets in the payload
+     * @param minTimestamp timestamp of the oldest packet
+     * @param maxTimestamp timestamp of the newest packet
+     * @return index entry of the record
+     * @throws IOException thrown if the file is not writeable
+     */
+    PacketRecord commit(PacketLogSegment segment, int count, long minTimestamp, long maxTimestamp)
+        throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(PacketLogSegment.HEADER_LENGTH - Integer.BYTES);
+        header.putInt((int) length);
+        header.putInt((int) crc.getValue());
+        header.putInt(count);
+        header.putLong(minTimestamp);
+        header.putLong(maxTimestamp);
+
+        file.seek(start + Integer.BYTES);
+        file.write(header.array());
+        committed = true;
+
+        return new PacketRecord(segment, start, headerLength, (int) length, (int) crc.getValue(),
+            taskId, count, minTimestamp, maxTimestamp);
+    }
+
+    /**
+     * Returns the checksum of the payload written so far.
+     *
+     * @return CRC32 of the payload
+     */
+    int checksum() {
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Returns the number of bytes written to the file, including the header.
+     *
+     * @return length of this record
+     */
+    long length() {
+        return headerLength + length;
+    }
+
+    /**
+     * Closes the file. Removes the record again, if it didn't get committed.
+     *
+     * @throws IOException thrown if the file couldn't be truncated or closed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!committed) {
+                file.setLength(start);
+            }
+        } finally {
+            file.close();
+        }
+    }
+}
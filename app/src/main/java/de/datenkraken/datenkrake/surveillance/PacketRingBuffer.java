@@ -0,0 +1,104 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded queue of {@link ProcessedDataPacket}s, which many threads may add to without locking,
+ * while a single thread takes them out. <br>
+ * Every slot of the ring carries a sequence number. A producer claims a slot by increasing the
+ * tail with a compare and set, writes the packet and publishes it by advancing the sequence of
+ * the slot. The consumer takes packets in the order they were claimed and frees the slot for the
+ * next round by advancing its sequence again. A producer never waits for another one: if the ring
+ * is full, {@link #offer(ProcessedDataPacket)} fails right away.
+ */
+final class PacketRingBuffer {
+
+    private final ProcessedDataPacket[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    /**
+     * Constructor of this class.
+     *
+     * @param capacity minimal number of packets the buffer can hold, rounded up to a power of two
+     */
+    PacketRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        slots = new ProcessedDataPacket[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Adds a packet to the buffer. May be called by any thread.
+     *
+     * @param packet packet to add
+     * @return false if the buffer is full
+     */
+    boolean offer(ProcessedDataPacket packet) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = packet;
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false; // the consumer hasn't taken the packet of the last round yet
+            } else {
+                position = tail.get(); // another producer claimed the slot
+            }
+        }
+    }
+
+    /**
+     * Moves packets from the buffer to the given list, oldest first. Must only be called by one
+     * thread at a time.
+     *
+     * @param target list receiving the packets
+     * @param max maximal number of packets to take
+     * @return number of packets taken
+     */
+    int drain(List<ProcessedDataPacket> target, int max) {
+        long position = head;
+        int count = 0;
+        while (count < max) {
+            int index = (int) (position & mask);
+            if (sequences.get(index) != position + 1) {
+                break; // the slot is empty or its producer didn't publish the packet yet
+            }
+
+            target.add(slots[index]);
+            slots[index] = null;
+            sequences.set(index, position + slots.length);
+            position++;
+            count++;
+        }
+        head = position;
+        return count;
+    }
+
+    /**
+     * Returns the number of claimed slots. Producers may still be writing some of them.
+     *
+     * @return approximate number of packets in the buffer
+     */
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+}
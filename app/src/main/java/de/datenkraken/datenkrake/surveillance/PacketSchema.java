@@ -0,0 +1,353 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import timber.log.Timber;
+
+/**
+ * Declares the fields of all {@link ProcessedDataPacket}s with one task id. <br>
+ * Every field gets a slot in a flat record: integral values and booleans are stored in a long
+ * array, floating point values in a double array and strings and other objects in an object
+ * array. A {@link ProcessedDataPacket} with a known schema stores its declared fields in this
+ * record, so the values don't have to be boxed and no hash lookup is required to access them. <br>
+ * Schemas are declared by {@link ISendProcessedData#getSchema()} and can be looked up with
+ * {@link #forTaskId(String)}.
+ */
+public final class PacketSchema {
+
+    /**
+     * Maximal number of fields, limited by the presence mask of {@link ProcessedDataPacket}.
+     */
+    static final int MAX_FIELDS = 64;
+
+    /**
+     * Types a field can have. Defines in which slot array of the record the value is stored.
+     */
+    public enum FieldType {
+        BOOLEAN(Boolean.class, Storage.LONG),
+        CHAR(Character.class, Storage.LONG),
+        BYTE(Byte.class, Storage.LONG),
+        SHORT(Short.class, Storage.LONG),
+        INTEGER(Integer.class, Storage.LONG),
+        LONG(Long.class, Storage.LONG),
+        FLOAT(Float.class, Storage.DOUBLE),
+        DOUBLE(Double.class, Storage.DOUBLE),
+        STRING(String.class, Storage.OBJECT),
+        OBJECT(null, Storage.OBJECT);
+
+        private final Class<?> boxedType;
+        final Storage storage;
+
+        FieldType(Class<?> boxedType, Storage storage) {
+            this.boxedType = boxedType;
+            this.storage = storage;
+        }
+
+        /**
+         * Checks if the given value can be stored in a field of this type.
+         *
+         * @param value value to check, must not be null
+         * @return true if the value fits into this field
+         */
+        boolean accepts(Object value) {
+            return boxedType == null || boxedType == value.getClass();
+        }
+    }
+
+    /**
+     * Slot arrays of the record.
+     */
+    enum Storage {
+        LONG,
+        DOUBLE,
+        OBJECT
+    }
+
+    private final String taskId;
+    private String[] names = new String[0];
+    private FieldType[] types = new FieldType[0];
+    private int[] slots = new int[0];
+    private int longSlots;
+    private int doubleSlots;
+    private int objectSlots;
+    private int timestampIndex = -1;
+    private PacketPriority priority = PacketPriority.NORMAL;
+    private int quota = 100;
+
+    /**
+     * Creates an empty schema for the given task id.
+     *
+     * @param taskId id of the {@link ISendProcessedData} consuming packets with this schema
+     */
+    public PacketSchema(String taskId) {
+        this.taskId = taskId;
+    }
+
+    /**
+     * Returns the schema registered for the given task id.
+     *
+     * @param taskId task id of a {@link ProcessedDataPacket}
+     * @return the schema or null, if no {@link ISendProcessedData} declared one
+     */
+    public static PacketSchema forTaskId(String taskId) {
+        if (taskId == null) {
+            return null;
+        }
+        return Registry.SCHEMAS.get(taskId);
+    }
+
+    /**
+     * Declares a boolean field.
+     *
+     * @param name key of the field
+     * @return this schema
+     */
+    public PacketSchema addBoolean(String name) {
+        return addField(name, FieldType.BOOLEAN);
+    }
+
+    /**
+     * Declares a long field, which holds the time the packet was created in milliseconds. Used
+     * to index the packets in the {@link PacketLog} by time.
+     *
+     * @param name key of the field
+     * @return this schema
+     */
+    public PacketSchema addTimestamp(String name) {
+        addField(name, FieldType.LONG);
+        timestampIndex = names.length - 1;
+        return this;
+    }
+
+    /**
+     * Declares an integer field.
+     *
+     * @param name key of the field
+     * @return this schema
+     */
+    public PacketSchema addInteger(String name) {
+        return addField(name, FieldType.INTEGER);
+    }
+
+    /**
+     * Declares a long field.
+     *
+     * @param name key of the field
+     * @return this schema
+     */
+    public PacketSchema addLong(String name) {
+        return addField(name, FieldType.LONG);
+    }
+
+    /**
+     * Declares a float field.
+     *
+     * @param name key of the field
+     * @return this schema
+     */
+    public PacketSchema addFloat(String name) {
+        return addField(name, FieldType.FLOAT);
+    }
+
+    /**
+     * Declares a double field.
+     *
+     * @param name key of the field
+     * @return this schema
+     */
+    public PacketSchema addDouble(String name) {
+        return addField(name, FieldType.DOUBLE);
+    }
+
+    /**
+     * Declares a string field.
+     *
+     * @param name key of the field
+     * @return this schema
+     */
+    public PacketSchema addString(String name) {
+        return addField(name, FieldType.STRING);
+    }
+
+    /**
+     * Declares a field for any other serializable object, e.g. an enum.
+     *
+     * @param name key of the field
+     * @return this schema
+     */
+    public PacketSchema addObject(String name) {
+        return addField(name, FieldType.OBJECT);
+    }
+
+    /**
+     * Sets the priority of all packets with this task id. Packets with a lower priority get
+     * evicted first, if the packet cache is full. Default is {@link PacketPriority#NORMAL}.
+     *
+     * @param priority priority of the packets
+     * @return this schema
+     */
+    public PacketSchema setPriority(PacketPriority priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    /**
+     * Limits the share of the packet cache, which packets with this task id may occupy. If they
+     * exceed it, their oldest packets get evicted. Default is the whole cache.
+     *
+     * @param percent share of the packet cache in percent
+     * @return this schema
+     */
+    public PacketSchema setQuota(int percent) {
+        if (percent <= 0 || percent > 100) {
+            throw new IllegalArgumentException("Quota must be between 1 and 100 percent");
+        }
+        quota = percent;
+        return this;
+    }
+
+    /**
+     * Declares a field with the given type and assigns it a slot in the record.
+     *
+     * @param name key of the field
+     * @param type type of the field
+     * @return this schema
+     */
+    public PacketSchema addField(String name, FieldType type) {
+        if (indexOf(name) >= 0) {
+            throw new IllegalArgumentException("Field " + name + " is already declared in " + taskId);
+        }
+        if (names.length >= MAX_FIELDS) {
+            throw new IllegalStateException("A schema can't declare more than " + MAX_FIELDS + " fields");
+        }
+
+        int index = names.length;
+        names = Arrays.copyOf(names, index + 1);
+        types = Arrays.copyOf(types, index + 1);
+        slots = Arrays.copyOf(slots, index + 1);
+        names[index] = name;
+        types[index] = type;
+
+        switch (type.storage) {
+            case LONG:
+                slots[index] = longSlots++;
+                break;
+            case DOUBLE:
+                slots[index] = doubleSlots++;
+                break;
+            default:
+                slots[index] = objectSlots++;
+                break;
+        }
+        return this;
+    }
+
+    /**
+     * Returns the index of the field with the given key. <br>
+     * Keys are usually string literals, so they get compared by reference first. Schemas only
+     * have a handful of fields, so this is faster than a hash lookup.
+     *
+     * @param key key of the field
+     * @return index of the field or -1 if it is not declared
+     */
+    int indexOf(String key) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i] == key) { //NOPMD - reference comparison is intended
+                return i;
+            }
+        }
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the task id of this schema.
+     *
+     * @return task id
+     */
+    public String getTaskId() {
+        return taskId;
+    }
+
+    /**
+     * Returns the priority of all packets with this task id.
+     *
+     * @return priority
+     */
+    public PacketPriority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Returns the share of the packet cache, which packets with this task id may occupy.
+     *
+     * @return share in percent
+     */
+    public int getQuota() {
+        return quota;
+    }
+
+    int getTimestampIndex() {
+        return timestampIndex;
+    }
+
+    int getFieldCount() {
+        return names.length;
+    }
+
+    String getName(int index) {
+        return names[index];
+    }
+
+    FieldType getType(int index) {
+        return types[index];
+    }
+
+    int getSlot(int index) {
+        return slots[index];
+    }
+
+    int getLongSlots() {
+        return longSlots;
+    }
+
+    int getDoubleSlots() {
+        return doubleSlots;
+    }
+
+    int getObjectSlots() {
+        return objectSlots;
+    }
+
+    /**
+     * Holds the schemas declared by the {@link ISendProcessedData}s provided by
+     * {@link ProcessorProvider#getSendProcessor()}. Initialized on first access.
+     */
+    private static final class Registry {
+
+        static final Map<String, PacketSchema> SCHEMAS = load();
+
+        private static Map<String, PacketSchema> load() {
+            Map<String, PacketSchema> schemas = new HashMap<>();//NOPMD
+            for (ISendProcessedData sender : ProcessorProvider.getSendProcessor()) {
+                PacketSchema schema = sender.getSchema();
+                if (schema == null) {
+                    continue;
+                }
+                if (schemas.containsKey(schema.getTaskId())) {
+                    Timber.e("Schema for %s is declared twice", schema.getTaskId());
+                    continue;
+                }
+                schemas.put(schema.getTaskId(), schema);
+            }
+            return Collections.unmodifiableMap(schemas);
+        }
+    }
+}
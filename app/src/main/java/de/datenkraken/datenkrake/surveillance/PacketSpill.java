@@ -0,0 +1,139 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import android.content.Context;
+
+import de.datenkraken.datenkrake.R;
+import de.datenkraken.datenkrake.surveillance.util.FileUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import timber.log.Timber;
+
+/**
+ * Directory holding {@link ProcessedDataPacket}s, which couldn't be saved to the
+ * {@link PacketLog} before the app was closed. <br>
+ * Every call of {@link #write(List)} writes one file with a {@link PacketCodec} batch and syncs
+ * it to the disk, so the packets survive, even if the process gets killed right after. The file
+ * only gets its final name once it is complete, so a partial spill is never read.
+ * {@link #drain(PacketSaver)} saves the spilled packets and deletes their files afterwards.
+ */
+public final class PacketSpill {
+
+    private static final String SUFFIX = ".spill";
+    private static final String PARTIAL_SUFFIX = ".partial";
+
+    private static PacketSpill instance;
+
+    private final File dir;
+    private long sequence;
+
+    /**
+     * Returns the spill directory in the cache directory of the given context. Opens it on first
+     * access.
+     *
+     * @param context used to locate the cache directory
+     * @return the spill or null, if the directory is not accessible
+     */
+    public static synchronized PacketSpill get(Context context) {
+        if (instance == null) {
+            File dir = new File(context.getCacheDir(),
+                context.getResources().getString(R.string.packet_spill_folder));
+            if (!dir.exists() && !dir.mkdir()) {
+                Timber.d("couldn't create spill dir!");
+                return null;
+            }
+            instance = new PacketSpill(dir);
+        }
+        return instance;
+    }
+
+    /**
+     * Constructor of this class.
+     *
+     * @param dir directory of the spill files
+     */
+    PacketSpill(File dir) {
+        Timber.tag("PacketSpill");
+        this.dir = dir;
+    }
+
+    /**
+     * Writes the given packets to a new spill file and waits until it reached the disk.
+     *
+     * @param packets {@link ProcessedDataPacket}s to write
+     * @return true if the packets were written
+     */
+    public synchronized boolean write(List<ProcessedDataPacket> packets) {
+        String name = System.currentTimeMillis() + "-" + sequence++;
+        File partial = new File(dir, name + PARTIAL_SUFFIX);
+        try (FileOutputStream file = new FileOutputStream(partial)) {
+            BufferedOutputStream out = new BufferedOutputStream(file);
+            PacketCodec.Encoder encoder = new PacketCodec.Encoder(out);
+            for (ProcessedDataPacket packet : packets) {
+                encoder.write(packet);
+            }
+            encoder.finish();
+            file.getFD().sync();
+        } catch (IOException e) {
+            Timber.e(e, "Couldn't spill %d packets", packets.size());
+            delete(partial);
+            return false;
+        }
+
+        if (!partial.renameTo(new File(dir, name + SUFFIX))) {
+            Timber.e("Couldn't complete spill %s", name);
+            delete(partial);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Saves the spilled packets with the given {@link PacketSaver}, oldest spill first. The file
+     * of a spill is deleted once it is saved. Unreadable spills and leftovers of interrupted
+     * writes are deleted as well.
+     *
+     * @param saver {@link PacketSaver} saving the packets
+     * @return false if a spill couldn't be saved and is kept for the next try
+     */
+    public synchronized boolean drain(PacketSaver saver) {
+        for (File file : FileUtil.getSortedContent(dir)) {
+            if (!file.getName().endsWith(SUFFIX)) {
+                delete(file);
+                continue;
+            }
+
+            List<ProcessedDataPacket> packets = new ArrayList<>();
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                PacketCodec.Decoder decoder = new PacketCodec.Decoder(in);
+                for (ProcessedDataPacket packet = decoder.read(); packet != null; packet = decoder.read()) {
+                    packets.add(packet);
+                }
+            } catch (IOException e) {
+                Timber.e(e, "Dropping unreadable spill %s", file.getName());
+                delete(file);
+                continue;
+            }
+
+            if (!packets.isEmpty() && !saver.save(packets)) {
+                return false;
+            }
+            delete(file);
+        }
+        return true;
+    }
+
+    private static void delete(File file) {
+        if (!file.delete() && file.exists()) {
+            Timber.w("Couldn't delete spill file %s", file.getName());
+        }
+    }
+}
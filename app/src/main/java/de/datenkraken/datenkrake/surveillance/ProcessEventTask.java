@@ -3,11 +3,11 @@ package de.datenkraken.datenkrake.surveillance;
 import androidx.annotation.NonNull;
 
 import java.lang.ref.WeakReference;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * Runnable task, which gets queued in {@link ScheduledThreadPoolExecutor} in
- * {@link EventManager}. <br>
+ * Runnable task, which gets queued in the {@link EventLanes} of {@link EventManager}. <br>
  * Contains the {@link DataCollectionEvent} and {@link WeakReference} to {@link EventDistributor}
  * to process and distribute the {@link #event}.
  *
@@ -31,7 +31,7 @@ public class ProcessEventTask implements Runnable {
     }
 
     /**
-     * Gets executed by a thread in {@link ScheduledThreadPoolExecutor} and distributes the event
+     * Gets executed by the lane of the event type in {@link EventLanes} and distributes the event
      * via {@link EventDistributor}.
      */
     @Override
@@ -42,4 +42,33 @@ public class ProcessEventTask implements Runnable {
 
         distributor.get().distributeEvent(event);
     }
+
+    /**
+     * Checks if this task can be run together with the given one in {@link #runAll(List)}.
+     *
+     * @param task task queued after this task
+     * @return true if both tasks use the same {@link EventDistributor}
+     */
+    boolean canBatch(ProcessEventTask task) {
+        return distributor.get() != null && distributor.get() == task.distributor.get();
+    }
+
+    /**
+     * Distributes the events of the given tasks at once, so the {@link IEventProcessor}s can
+     * process them in one batch. All tasks must be able to batch with each other.
+     *
+     * @param tasks tasks queued in one lane, in the order they were queued
+     */
+    static void runAll(List<ProcessEventTask> tasks) {
+        EventDistributor target = tasks.get(0).distributor.get();
+        if (target == null) {
+            return;
+        }
+
+        List<DataCollectionEvent> events = new ArrayList<>();
+        for (ProcessEventTask task : tasks) {
+            events.add(task.event);
+        }
+        target.distributeEvents(events);
+    }
 }
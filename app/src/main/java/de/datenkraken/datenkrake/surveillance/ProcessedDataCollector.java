@@ -3,24 +3,78 @@ package de.datenkraken.datenkrake.surveillance;
 import android.content.Context;
 
 import de.datenkraken.datenkrake.R;
+import de.datenkraken.datenkrake.surveillance.metrics.Counter;
+import de.datenkraken.datenkrake.surveillance.metrics.LatencyHistogram;
+import de.datenkraken.datenkrake.surveillance.metrics.MetricsRegistry;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import timber.log.Timber;
 
 /**
  * Collects {@link ProcessedDataPacket}s from different {@link IEventProcessor}s and saves them to
- * the disk.
+ * the disk. <br>
+ * Packets are added to a {@link PacketRingBuffer} without locking, so producers like the event
+ * pool, broadcast receivers or location callbacks on the main thread never wait for the disk.
+ * A flusher thread writes the buffered packets as soon as {@link #PACKET_LIMIT} packets are
+ * buffered or the flush interval passed. It is started by the first packet and ends after an
+ * interval without packets. {@link #flushAsync(long)} hands an immediate flush to this thread, so
+ * lifecycle callbacks on the main thread don't wait for serialization and compression. Packets,
+ * which weren't taken by the flusher before the app closes, can be written to a
+ * {@link PacketSpill} with {@link #spill(PacketSpill)}. <br>
+ * If the buffer is full, the {@link OverflowPolicy} decides what happens to a new packet. <br>
+ * Added, dropped, spilled and written packets, failed writes and the duration of every flush are
+ * recorded in the {@link MetricsRegistry}.
  *
  * @author Daniel Thoma - daniel.thoma@stud.tu-darmstadt.de
  */
 public class ProcessedDataCollector {
 
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
     private final long PACKET_LIMIT;
-    private final List<ProcessedDataPacket> packetList = new ArrayList<>();
+    private final long flushInterval;
+    private final OverflowPolicy policy;
+    private final long blockTimeout;
+    private final PacketRingBuffer buffer;
     private final PacketSaver packetSaver;
+    private final Object drainLock = new Object();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Counter added;
+    private final Counter droppedTotal;
+    private final Counter flushed;
+    private final Counter failed;
+    private final Counter spilled;
+    private final LatencyHistogram flushDuration;
+    private final Queue<CountDownLatch> flushRequests = new ConcurrentLinkedQueue<>();
+    private volatile Thread flusher;
+
+    /**
+     * Behaviour of {@link #addPacket(ProcessedDataPacket)}, if the buffer is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Packets are dropped right away. Low priority packets are only accepted while the buffer
+         * is half full, normal priority packets while it is three quarters full, so space is left
+         * for packets with a higher {@link PacketPriority}.
+         */
+        DROP_LOWEST_PRIORITY,
+        /**
+         * The producer waits up to the configured timeout for the flusher to free space, before
+         * the packet is dropped.
+         */
+        BLOCK
+    }
 
     /**
      * Constructor of this class, initializing constants.
@@ -28,35 +82,264 @@ public class ProcessedDataCollector {
      * @param context required to load constants from xml resources.
      */
     public ProcessedDataCollector(WeakReference<Context> context) {
+        this(new PacketSaver(context),
+            context.get().getResources().getInteger(R.integer.packet_runtime_limit),
+            context.get().getResources().getInteger(R.integer.packet_buffer_capacity),
+            context.get().getResources().getInteger(R.integer.packet_flush_interval),
+            context.get().getResources().getBoolean(R.bool.packet_buffer_block)
+                ? OverflowPolicy.BLOCK : OverflowPolicy.DROP_LOWEST_PRIORITY,
+            context.get().getResources().getInteger(R.integer.packet_buffer_block_timeout));
+    }
+
+    /**
+     * Constructor of this class.
+     *
+     * @param packetSaver saves the drained packets
+     * @param packetLimit number of buffered packets, after which they are written
+     * @param capacity maximal number of buffered packets
+     * @param flushInterval time in milliseconds, after which buffered packets are written
+     * @param policy behaviour if the buffer is full
+     * @param blockTimeout time in milliseconds, a producer waits for space with {@link OverflowPolicy#BLOCK}
+     */
+    ProcessedDataCollector(PacketSaver packetSaver, int packetLimit, int capacity, long flushInterval,
+                           OverflowPolicy policy, long blockTimeout) {
         Timber.tag("DataCollector");
-        packetSaver = new PacketSaver(context);
-        PACKET_LIMIT = context.get().getResources().getInteger(R.integer.packet_runtime_limit);
+        this.packetSaver = packetSaver;
+        buffer = new PacketRingBuffer(capacity);
+        PACKET_LIMIT = Math.min(packetLimit, buffer.capacity() / 2);
+        this.flushInterval = TimeUnit.MILLISECONDS.toNanos(flushInterval);
+        this.policy = policy;
+        this.blockTimeout = TimeUnit.MILLISECONDS.toNanos(blockTimeout);
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        added = metrics.counter("packets.added");
+        droppedTotal = metrics.counter("packets.dropped");
+        flushed = metrics.counter("packets.flushed");
+        failed = metrics.counter("packets.flush_failed");
+        spilled = metrics.counter("packets.spilled");
+        flushDuration = metrics.histogram("packets.flush");
     }
 
     /**
-     * Adds an packet to {@link #packetList}. Checks if the {@link #packetList} exceeds
-     * {@link #PACKET_LIMIT} and writes it to the disk if necessary.
+     * Adds an packet to the buffer and wakes the flusher, if {@link #PACKET_LIMIT} packets are
+     * buffered. Never blocks, unless the policy is {@link OverflowPolicy#BLOCK} and the buffer
+     * is full.
      *
      * @param packet {@link ProcessedDataPacket} to add
      */
     public void addPacket(ProcessedDataPacket packet) {
-        synchronized (packetList) {
-            packetList.add(packet);
-            if (packetList.size() >= PACKET_LIMIT) {
-                flush();
-            }
+        if (!admit(packet)) {
+            dropped.incrementAndGet();
+            droppedTotal.increment();
+            return;
+        }
+        added.increment();
+
+        if (buffer.size() >= PACKET_LIMIT) {
+            wakeFlusher();
+        } else {
+            startFlusher();
         }
     }
 
     /**
-     * Saves {@link #packetList} to disk via {@link PacketSaver}.
+     * Saves all buffered packets to disk via {@link PacketSaver}. Blocks until they are written.
      */
     public void flush() {
-        synchronized (packetList) {
-            if (!packetList.isEmpty()) {
-                packetSaver.save(packetList);
-                packetList.clear();
+        synchronized (drainLock) {
+            while (drain() > 0) {
+                // packets added while saving are written as well
+            }
+        }
+    }
+
+    /**
+     * Lets the flusher thread save all buffered packets now and waits at most the given time for
+     * it. Packets added after this call may be written later.
+     *
+     * @param timeout time in milliseconds to wait, 0 to return right away
+     * @return true if the packets were written within the timeout
+     */
+    public boolean flushAsync(long timeout) {
+        CountDownLatch done = new CountDownLatch(1);
+        flushRequests.add(done);
+        wakeFlusher();
+        if (timeout <= 0) {
+            return false;
+        }
+
+        try {
+            return done.await(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Takes the packets, which the flusher didn't take yet, and writes them to the given
+     * {@link PacketSpill}, so they survive the process. The batch the flusher is saving right
+     * now isn't spilled, it would be saved twice otherwise. If the spill fails, the packets are
+     * put back into the buffer.
+     *
+     * @param spill {@link PacketSpill} to write to
+     * @return false if the packets couldn't be spilled
+     */
+    public boolean spill(PacketSpill spill) {
+        List<ProcessedDataPacket> packets = new ArrayList<>();
+        synchronized (buffer) {
+            buffer.drain(packets, buffer.capacity());
+        }
+        if (packets.isEmpty()) {
+            return true;
+        }
+        if (spill.write(packets)) {
+            spilled.add(packets.size());
+            return true;
+        }
+
+        for (ProcessedDataPacket packet : packets) {
+            if (!buffer.offer(packet)) {
+                dropped.incrementAndGet();
+                droppedTotal.increment();
+            }
+        }
+        wakeFlusher();
+        return false;
+    }
+
+    /**
+     * Adds the packet to the buffer according to the {@link OverflowPolicy}.
+     *
+     * @param packet packet to add
+     * @return false if the packet was dropped
+     */
+    private boolean admit(ProcessedDataPacket packet) {
+        if (policy == OverflowPolicy.DROP_LOWEST_PRIORITY) {
+            return buffer.size() < getAdmissionLimit(packet.getPriority()) && buffer.offer(packet);
+        }
+
+        if (buffer.offer(packet)) {
+            return true;
+        }
+        long deadline = System.nanoTime() + blockTimeout;
+        do {
+            wakeFlusher();
+            LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+            if (buffer.offer(packet)) {
+                return true;
+            }
+        } while (System.nanoTime() - deadline < 0);
+        return false;
+    }
+
+    /**
+     * Returns the number of buffered packets, up to which packets of the given priority are
+     * accepted.
+     *
+     * @param priority priority of a packet
+     * @return limit of the buffer size
+     */
+    private int getAdmissionLimit(PacketPriority priority) {
+        switch (priority) {
+            case LOW:
+                return buffer.capacity() / 2;
+            case NORMAL:
+                return buffer.capacity() / 4 * 3;
+            default:
+                return buffer.capacity();
+        }
+    }
+
+    /**
+     * Starts the flusher thread, if it isn't running.
+     */
+    private void startFlusher() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+
+        Thread thread = new Thread(this::runFlusher, "PacketFlusher");
+        thread.setDaemon(true);
+        flusher = thread;
+        thread.start();
+    }
+
+    /**
+     * Starts the flusher thread or wakes it, so it writes the buffered packets now.
+     */
+    private void wakeFlusher() {
+        startFlusher();
+        Thread thread = flusher;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Loop of the flusher thread. Waits until {@link #PACKET_LIMIT} packets are buffered, the
+     * flush interval passed or a flush was requested and writes them. Ends, if no packets were
+     * added for an interval.
+     */
+    private void runFlusher() {
+        while (true) {
+            long deadline = System.nanoTime() + flushInterval;
+            long remaining = flushInterval;
+            while (buffer.size() < PACKET_LIMIT && flushRequests.isEmpty() && remaining > 0) {
+                LockSupport.parkNanos(this, remaining);
+                remaining = deadline - System.nanoTime();
+            }
+
+            // only requests made before the drain are fulfilled by it
+            List<CountDownLatch> requests = new ArrayList<>();
+            for (CountDownLatch request = flushRequests.poll(); request != null; request = flushRequests.poll()) {
+                requests.add(request);
+            }
+
+            int count;
+            synchronized (drainLock) {
+                count = drain();
+            }
+            for (CountDownLatch done : requests) {
+                done.countDown();
+            }
+
+            if (count == 0) {
+                running.set(false);
+                // a producer may have added a packet, before it was marked as stopped
+                if (buffer.size() == 0 && flushRequests.isEmpty() || !running.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes all buffered packets and saves them. Must be called while holding {@link #drainLock},
+     * so the packets are saved in order. The buffer itself is locked only while taking them, so
+     * {@link #spill(PacketSpill)} doesn't wait for the disk.
+     *
+     * @return number of saved packets
+     */
+    private int drain() {
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            Timber.w("Dropped %d packets, the buffer was full", lost);
+        }
+
+        List<ProcessedDataPacket> packets = new ArrayList<>();
+        synchronized (buffer) {
+            buffer.drain(packets, buffer.capacity());
+        }
+        if (!packets.isEmpty()) {
+            long start = System.nanoTime();
+            if (packetSaver.save(packets)) {
+                flushed.add(packets.size());
+            } else {
+                failed.add(packets.size());
             }
+            flushDuration.recordSince(start);
         }
+        return packets.size();
     }
 }
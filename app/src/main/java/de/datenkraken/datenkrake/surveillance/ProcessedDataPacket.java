@@ -4,7 +4,6 @@ import androidx.annotation.NonNull;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
 import java.util.HashMap;
@@ -14,20 +13,31 @@ import timber.log.Timber;
 
 /**
  * Class providing functionality to save and load serializable objects. <br>
- * Used to save the output from {@link IEventProcessor} and
+ * Gets written and read by {@link PacketCodec}. Used to save the output from {@link IEventProcessor} and
  * {@link de.datenkraken.datenkrake.surveillance.background.IBackgroundProcessor} via the
- * {@link PacketSaver} to the disc. Will be loaded again by
- * {@link de.datenkraken.datenkrake.surveillance.background.PacketListStream}.
+ * {@link PacketSaver} to the disc. Will be loaded again by {@link PacketLog}. <br>
+ * If a {@link PacketSchema} is registered for the task id, all declared fields are stored unboxed
+ * in a flat record. Keys, which are not declared by the schema or values with a different type,
+ * are stored in a map as before.
  *
  * @author Daniel Thoma - daniel.thoma@stud.tu-darmstadt.de
  */
 @SuppressWarnings("PMD.TooManyMethods") // this class is allowed to have many methods
 public class ProcessedDataPacket {
 
-    private final Map<String, ? super Serializable> values = new HashMap<>();//NOPMD
-    private String taskId;
+    private final String taskId;
+    private final PacketSchema schema;
+    private final long[] longs;
+    private final double[] doubles;
+    private final Serializable[] objects;
+    private long present;
+    private Map<String, Serializable> values;
 
-    private static final Integer VERSION = 1;
+    private static final int LEGACY_VERSION = 1;
+    private static final int ESTIMATED_NUMBER_LENGTH = 32; // formatted timestamps are the longest
+    private static final long[] NO_LONGS = new long[0];
+    private static final double[] NO_DOUBLES = new double[0];
+    private static final Serializable[] NO_OBJECTS = new Serializable[0];
 
     /**
      * Constructor of this class.
@@ -35,12 +45,18 @@ public class ProcessedDataPacket {
      * @param taskId required to identify the {@link ISendProcessedData} which consumes this packet.
      */
     public ProcessedDataPacket(String taskId) {
-        this();
-        this.taskId = taskId;
-    }
-
-    private ProcessedDataPacket() {
         Timber.tag("DataPacket");
+        this.taskId = taskId;
+        schema = PacketSchema.forTaskId(taskId);
+        if (schema == null) {
+            longs = NO_LONGS;
+            doubles = NO_DOUBLES;
+            objects = NO_OBJECTS;
+        } else {
+            longs = schema.getLongSlots() == 0 ? NO_LONGS : new long[schema.getLongSlots()];
+            doubles = schema.getDoubleSlots() == 0 ? NO_DOUBLES : new double[schema.getDoubleSlots()];
+            objects = schema.getObjectSlots() == 0 ? NO_OBJECTS : new Serializable[schema.getObjectSlots()];
+        }
     }
 
     /**
@@ -50,7 +66,19 @@ public class ProcessedDataPacket {
      * @param value value for this key
      */
     public void putBoolean(String key, Boolean value) {
-        values.put(key, value);
+        put(key, value);
+    }
+
+    /**
+     * Inserts a boolean with the given key without boxing it, if the schema declares it.
+     *
+     * @param key key for this value
+     * @param value value for this key
+     */
+    public void putBoolean(String key, boolean value) {
+        if (!putLong(indexOf(key, PacketSchema.FieldType.BOOLEAN), value ? 1 : 0)) {
+            put(key, value);
+        }
     }
 
     /**
@@ -60,7 +88,7 @@ public class ProcessedDataPacket {
      * @param value value for this key
      */
     public void putChar(String key, Character value) {
-        values.put(key, value);
+        put(key, value);
     }
 
     /**
@@ -70,7 +98,7 @@ public class ProcessedDataPacket {
      * @param value value for this key
      */
     public void putByte(String key, Byte value) {
-        values.put(key, value);
+        put(key, value);
     }
 
     /**
@@ -80,7 +108,7 @@ public class ProcessedDataPacket {
      * @param value value for this key
      */
     public void putShort(String key, Short value) {
-        values.put(key, value);
+        put(key, value);
     }
 
     /**
@@ -90,7 +118,19 @@ public class ProcessedDataPacket {
      * @param value value for this key
      */
     public void putInteger(String key, Integer value) {
-        values.put(key, value);
+        put(key, value);
+    }
+
+    /**
+     * Inserts a integer with the given key without boxing it, if the schema declares it.
+     *
+     * @param key key for this value
+     * @param value value for this key
+     */
+    public void putInteger(String key, int value) {
+        if (!putLong(indexOf(key, PacketSchema.FieldType.INTEGER), value)) {
+            put(key, value);
+        }
     }
 
     /**
@@ -100,7 +140,19 @@ public class ProcessedDataPacket {
      * @param value value for this key
      */
     public void putLong(String key, Long value) {
-        values.put(key, value);
+        put(key, value);
+    }
+
+    /**
+     * Inserts a long with the given key without boxing it, if the schema declares it.
+     *
+     * @param key key for this value
+     * @param value value for this key
+     */
+    public void putLong(String key, long value) {
+        if (!putLong(indexOf(key, PacketSchema.FieldType.LONG), value)) {
+            put(key, value);
+        }
     }
 
     /**
@@ -110,7 +162,19 @@ public class ProcessedDataPacket {
      * @param value value for this key
      */
     public void putFloat(String key, Float value) {
-        values.put(key, value);
+        put(key, value);
+    }
+
+    /**
+     * Inserts a float with the given key without boxing it, if the schema declares it.
+     *
+     * @param key key for this value
+     * @param value value for this key
+     */
+    public void putFloat(String key, float value) {
+        if (!putDouble(indexOf(key, PacketSchema.FieldType.FLOAT), value)) {
+            put(key, value);
+        }
     }
 
     /**
@@ -120,7 +184,19 @@ public class ProcessedDataPacket {
      * @param value value for this key
      */
     public void putDouble(String key, Double value) {
-        values.put(key, value);
+        put(key, value);
+    }
+
+    /**
+     * Inserts a double with the given key without boxing it, if the schema declares it.
+     *
+     * @param key key for this value
+     * @param value value for this key
+     */
+    public void putDouble(String key, double value) {
+        if (!putDouble(indexOf(key, PacketSchema.FieldType.DOUBLE), value)) {
+            put(key, value);
+        }
     }
 
     /**
@@ -130,7 +206,7 @@ public class ProcessedDataPacket {
      * @param value value for this key
      */
     public void putString(String key, String value) {
-        values.put(key, value);
+        put(key, value);
     }
 
     /**
@@ -141,7 +217,7 @@ public class ProcessedDataPacket {
      * @param value value for this key
      */
     public  <T extends Serializable> void putObject(String key, T value) {
-        values.put(key, value);
+        put(key, value);
     }
 
     /**
@@ -153,10 +229,23 @@ public class ProcessedDataPacket {
      * @return Boolean
      */
     public Boolean getBoolean(String key, Boolean def) {
-        if (!exists(key, Boolean.class)) {
-            return def;
+        return get(Boolean.class, key, def);
+    }
+
+    /**
+     * Returns the boolean with the given key or default if the value doesn't exists or it is not a
+     * boolean. Doesn't box the value, if the schema declares it.
+     *
+     * @param key key for this boolean.
+     * @param def default value.
+     * @return boolean
+     */
+    public boolean getBoolean(String key, boolean def) {
+        int index = indexOf(key, PacketSchema.FieldType.BOOLEAN);
+        if (index < 0) {
+            return get(Boolean.class, key, def);
         }
-        return (Boolean) values.get(key);
+        return isPresent(index) ? longs[schema.getSlot(index)] != 0 : def;
     }
 
     /**
@@ -168,10 +257,7 @@ public class ProcessedDataPacket {
      * @return Character
      */
     public Character getChar(String key, Character def) {
-        if (!exists(key, Character.class)) {
-            return def;
-        }
-        return (Character) values.get(key);
+        return get(Character.class, key, def);
     }
 
     /**
@@ -183,10 +269,7 @@ public class ProcessedDataPacket {
      * @return Byte
      */
     public Byte getByte(String key, Byte def) {
-        if (!exists(key, Byte.class)) {
-            return def;
-        }
-        return (Byte) values.get(key);
+        return get(Byte.class, key, def);
     }
 
     /**
@@ -198,10 +281,7 @@ public class ProcessedDataPacket {
      * @return Short
      */
     public Short getShort(String key, Short def) {
-        if (exists(key, Short.class)) {
-            return def;
-        }
-        return (Short) values.get(key);
+        return get(Short.class, key, def);
     }
 
     /**
@@ -213,10 +293,23 @@ public class ProcessedDataPacket {
      * @return Integer
      */
     public Integer getInteger(String key, Integer def) {
-        if (!exists(key, Integer.class)) {
-            return def;
+        return get(Integer.class, key, def);
+    }
+
+    /**
+     * Returns the integer with the given key or default if the value doesn't exists or it is not a
+     * integer. Doesn't box the value, if the schema declares it.
+     *
+     * @param key key for this integer.
+     * @param def default value.
+     * @return int
+     */
+    public int getInteger(String key, int def) {
+        int index = indexOf(key, PacketSchema.FieldType.INTEGER);
+        if (index < 0) {
+            return get(Integer.class, key, def);
         }
-        return (Integer) values.get(key);
+        return isPresent(index) ? (int) longs[schema.getSlot(index)] : def;
     }
 
     /**
@@ -228,10 +321,38 @@ public class ProcessedDataPacket {
      * @return Long
      */
     public Long getLong(String key, Long def) {
-        if (!exists(key, Long.class)) {
+        return get(Long.class, key, def);
+    }
+
+    /**
+     * Returns the long with the given key or default if the value doesn't exists or it is not a
+     * long. Doesn't box the value, if the schema declares it.
+     *
+     * @param key key for this long.
+     * @param def default value.
+     * @return long
+     */
+    public long getLong(String key, long def) {
+        int index = indexOf(key, PacketSchema.FieldType.LONG);
+        if (index < 0) {
+            return get(Long.class, key, def);
+        }
+        return isPresent(index) ? longs[schema.getSlot(index)] : def;
+    }
+
+    /**
+     * Returns the creation time of this packet, if the schema declares a timestamp field with
+     * {@link PacketSchema#addTimestamp(String)}.
+     *
+     * @param def default value.
+     * @return timestamp in milliseconds
+     */
+    public long getTimestamp(long def) {
+        int index = schema == null ? -1 : schema.getTimestampIndex();
+        if (index < 0 || !isPresent(index)) {
             return def;
         }
-        return (Long) values.get(key);
+        return longs[schema.getSlot(index)];
     }
 
     /**
@@ -243,10 +364,23 @@ public class ProcessedDataPacket {
      * @return Float
      */
     public Float getFloat(String key, Float def) {
-        if (!exists(key, Float.class)) {
-            return def;
+        return get(Float.class, key, def);
+    }
+
+    /**
+     * Returns the float with the given key or default if the value doesn't exists or it is not a
+     * float. Doesn't box the value, if the schema declares it.
+     *
+     * @param key key for this float.
+     * @param def default value.
+     * @return float
+     */
+    public float getFloat(String key, float def) {
+        int index = indexOf(key, PacketSchema.FieldType.FLOAT);
+        if (index < 0) {
+            return get(Float.class, key, def);
         }
-        return (Float) values.get(key);
+        return isPresent(index) ? (float) doubles[schema.getSlot(index)] : def;
     }
 
     /**
@@ -258,10 +392,23 @@ public class ProcessedDataPacket {
      * @return Double
      */
     public Double getDouble(String key, Double def) {
-        if (!exists(key, Double.class)) {
-            return def;
+        return get(Double.class, key, def);
+    }
+
+    /**
+     * Returns the double with the given key or default if the value doesn't exists or it is not a
+     * double. Doesn't box the value, if the schema declares it.
+     *
+     * @param key key for this double.
+     * @param def default value.
+     * @return double
+     */
+    public double getDouble(String key, double def) {
+        int index = indexOf(key, PacketSchema.FieldType.DOUBLE);
+        if (index < 0) {
+            return get(Double.class, key, def);
         }
-        return (Double) values.get(key);
+        return isPresent(index) ? doubles[schema.getSlot(index)] : def;
     }
 
     /**
@@ -273,10 +420,7 @@ public class ProcessedDataPacket {
      * @return String
      */
     public String getString(String key, String def) {
-        if (!exists(key, String.class)) {
-            return def;
-        }
-        return (String) values.get(key);
+        return get(String.class, key, def);
     }
 
     /**
@@ -290,25 +434,233 @@ public class ProcessedDataPacket {
      * @return Object
      */
     public <O extends Serializable> O getObject(Class<O> type, String key, O def) {
-        if (!exists(key, type)) {
+        return get(type, key, def);
+    }
+
+    /**
+     * Returns the value with the given key, if it exists and is of the same type as the given
+     * class. Otherwise returns the default value.
+     *
+     * @param <O> class of the expected value
+     * @param type expected class of the value
+     * @param key key of the value
+     * @param def default value
+     * @return the value or default
+     */
+    @SuppressWarnings("unchecked")
+    private <O> O get(Class<O> type, String key, O def) {
+        Object obj;
+        int index = schema == null ? -1 : schema.indexOf(key);
+
+        if (index >= 0 && isPresent(index)) {
+            obj = box(index);
+        } else if (values != null) {
+            obj = values.get(key);
+        } else {
+            obj = null;
+        }
+
+        if (obj == null || obj.getClass() != type) {
             return def;
         }
-        return (O) values.get(key);
+        return (O) obj;
+    }
+
+    /**
+     * Inserts the given value. Stores it in the record, if the schema declares the key with the
+     * type of the value, otherwise in {@link #values}. Null removes the value.
+     *
+     * @param key key of the value
+     * @param value value to insert
+     */
+    private void put(String key, Serializable value) {
+        int index = schema == null ? -1 : schema.indexOf(key);
+
+        if (index >= 0 && (value == null || schema.getType(index).accepts(value))) {
+            if (values != null) {
+                values.remove(key);
+            }
+            if (value == null) {
+                clear(index);
+            } else {
+                store(index, value);
+            }
+            return;
+        }
+
+        if (index >= 0) {
+            clear(index);
+        }
+        if (values == null) {
+            values = new HashMap<>();//NOPMD
+        }
+        values.put(key, value);
     }
 
     /**
-     * Checks if a value at the given key exists and its of the same type as the given class.
+     * Returns the index of the field with the given key, if the schema declares it with the given
+     * type.
      *
-     * @param key key
-     * @param c type of expected object
-     * @return true or false
+     * @param key key of the field
+     * @param type expected type
+     * @return index of the field or -1
      */
-    private boolean exists(String key, Class c) {
-        if (!values.containsKey(key)) {
+    private int indexOf(String key, PacketSchema.FieldType type) {
+        if (schema == null) {
+            return -1;
+        }
+        int index = schema.indexOf(key);
+        if (index < 0 || schema.getType(index) != type) {
+            return -1;
+        }
+        return index;
+    }
+
+    /**
+     * Stores an integral value in the long slot of the field with the given index.
+     *
+     * @param index index of the field or -1
+     * @param value value to store
+     * @return false if the index is -1
+     */
+    private boolean putLong(int index, long value) {
+        if (index < 0) {
             return false;
         }
-        Object obj = values.get(key);
-        return (obj != null && obj.getClass() == c);
+        if (values != null) {
+            values.remove(schema.getName(index));
+        }
+        longs[schema.getSlot(index)] = value;
+        present |= 1L << index;
+        return true;
+    }
+
+    /**
+     * Stores a floating point value in the double slot of the field with the given index.
+     *
+     * @param index index of the field or -1
+     * @param value value to store
+     * @return false if the index is -1
+     */
+    private boolean putDouble(int index, double value) {
+        if (index < 0) {
+            return false;
+        }
+        if (values != null) {
+            values.remove(schema.getName(index));
+        }
+        doubles[schema.getSlot(index)] = value;
+        present |= 1L << index;
+        return true;
+    }
+
+    /**
+     * Stores a boxed value in the slot of the field with the given index.
+     *
+     * @param index index of the field
+     * @param value value to store, must fit into the field
+     */
+    private void store(int index, Serializable value) {
+        int slot = schema.getSlot(index);
+        switch (schema.getType(index).storage) {
+            case LONG:
+                if (value instanceof Boolean) {
+                    longs[slot] = (Boolean) value ? 1 : 0;
+                } else if (value instanceof Character) {
+                    longs[slot] = (Character) value;
+                } else {
+                    longs[slot] = ((Number) value).longValue();
+                }
+                break;
+            case DOUBLE:
+                doubles[slot] = ((Number) value).doubleValue();
+                break;
+            default:
+                objects[slot] = value;
+                break;
+        }
+        present |= 1L << index;
+    }
+
+    /**
+     * Returns the boxed value of the field with the given index.
+     *
+     * @param index index of the field
+     * @return the value
+     */
+    private Serializable box(int index) {
+        int slot = schema.getSlot(index);
+        switch (schema.getType(index)) {
+            case BOOLEAN:
+                return longs[slot] != 0;
+            case CHAR:
+                return (char) longs[slot];
+            case BYTE:
+                return (byte) longs[slot];
+            case SHORT:
+                return (short) longs[slot];
+            case INTEGER:
+                return (int) longs[slot];
+            case LONG:
+                return longs[slot];
+            case FLOAT:
+                return (float) doubles[slot];
+            case DOUBLE:
+                return doubles[slot];
+            default:
+                return objects[slot];
+        }
+    }
+
+    private void clear(int index) {
+        present &= ~(1L << index);
+        if (schema.getType(index).storage == PacketSchema.Storage.OBJECT) {
+            objects[schema.getSlot(index)] = null;
+        }
+    }
+
+    private boolean isPresent(int index) {
+        return (present & (1L << index)) != 0;
+    }
+
+    /**
+     * Estimates the number of bytes this packet takes in the JSON body of a mutation. Numbers are
+     * counted with the length of a formatted date, strings and other objects with the length of
+     * their text. Escaping is ignored.
+     *
+     * @return estimated size in bytes
+     */
+    public int estimateSize() {
+        int size = 2; // braces
+        for (int i = 0; schema != null && i < schema.getFieldCount(); i++) {
+            if (isPresent(i)) {
+                Serializable value = schema.getType(i).storage == PacketSchema.Storage.OBJECT
+                    ? objects[schema.getSlot(i)] : null;
+                size += estimateSize(schema.getName(i), value);
+            }
+        }
+
+        if (values != null) {
+            for (Map.Entry<String, Serializable> entry : values.entrySet()) {
+                size += estimateSize(entry.getKey(), entry.getValue());
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Estimates the number of bytes of one field in a JSON object.
+     *
+     * @param key name of the field
+     * @param value value of the field or null, if it is a number
+     * @return estimated size in bytes
+     */
+    private static int estimateSize(String key, Serializable value) {
+        int size = key.length() + 4; // quotes, colon and comma
+        if (value == null || value instanceof Number || value instanceof Boolean) {
+            return size + ESTIMATED_NUMBER_LENGTH;
+        }
+        return size + String.valueOf(value).length() + 2;
     }
 
     /**
@@ -322,49 +674,95 @@ public class ProcessedDataPacket {
     }
 
     /**
-     * Ensures that important data gets saved into an object output stream, independent of the rest
-     * of the packet.
+     * Returns the priority declared by the schema of this packet.
      *
-     * @param stream Stream to save to
-     * @throws IOException thrown if the stream is not writeable
+     * @return the priority, {@link PacketPriority#NORMAL} if there is no schema
      */
-    void save(ObjectOutputStream stream) throws IOException {
-        stream.writeObject(VERSION);
-        saveData(stream);
+    public PacketPriority getPriority() {
+        return schema == null ? PacketPriority.NORMAL : schema.getPriority();
     }
 
     /**
-     * Saves the packet content into an object output stream.
+     * Writes the content of this packet with the given {@link PacketCodec.Encoder}.
      *
-     * @param stream Stream to save to
-     * @throws IOException thrown if the stream is not writeable
+     * @param encoder encoder of the current batch
+     * @throws IOException thrown if the underlying stream is not writeable
      */
-    private void saveData(ObjectOutputStream stream) throws IOException {
-        stream.writeObject(getTaskId());
-        Integer size = values.size();
-        stream.writeObject(size);
-        for (Map.Entry<String, ? super Serializable> entry : values.entrySet()) {
-            stream.writeObject(entry.getKey());
-            stream.writeObject(entry.getValue());
+    void encode(PacketCodec.Encoder encoder) throws IOException {
+        encoder.writeInterned(getTaskId());
+        encoder.writeVarInt(Long.bitCount(present) + (values == null ? 0 : values.size()));
+
+        for (int i = 0; schema != null && i < schema.getFieldCount(); i++) {
+            if (!isPresent(i)) {
+                continue;
+            }
+
+            encoder.writeInterned(schema.getName(i));
+            PacketSchema.FieldType type = schema.getType(i);
+            switch (type.storage) {
+                case LONG:
+                    encoder.writeIntegral(type, longs[schema.getSlot(i)]);
+                    break;
+                case DOUBLE:
+                    encoder.writeFloating(type, doubles[schema.getSlot(i)]);
+                    break;
+                default:
+                    encoder.writeValue(objects[schema.getSlot(i)]);
+                    break;
+            }
+        }
+
+        if (values == null) {
+            return;
+        }
+        for (Map.Entry<String, Serializable> entry : values.entrySet()) {
+            encoder.writeInterned(entry.getKey());
+            encoder.writeValue(entry.getValue());
         }
     }
 
+    /**
+     * Reads the content of a packet written by {@link #encode(PacketCodec.Encoder)}. Values of
+     * fields declared by the schema are read without boxing them.
+     *
+     * @param decoder decoder of the current batch
+     * @return the recreated {@link ProcessedDataPacket}
+     * @throws IOException thrown if the underlying stream is not readable or corrupted
+     */
+    static ProcessedDataPacket decode(PacketCodec.Decoder decoder) throws IOException {
+        ProcessedDataPacket processedDataPacket = new ProcessedDataPacket(decoder.readInterned());
+        int size = decoder.readVarInt();
+        for (int i = 0; i < size; i++) {
+            String key = decoder.readInterned();
+            int tag = decoder.readTag();
+            int index = processedDataPacket.indexOf(key, PacketCodec.typeOf(tag));
+
+            if (index >= 0 && processedDataPacket.schema.getType(index).storage == PacketSchema.Storage.LONG) {
+                processedDataPacket.putLong(index, decoder.readIntegral(tag));
+            } else if (index >= 0 && processedDataPacket.schema.getType(index).storage == PacketSchema.Storage.DOUBLE) {
+                processedDataPacket.putDouble(index, decoder.readFloating(tag));
+            } else {
+                processedDataPacket.put(key, decoder.readValue(tag));
+            }
+        }
+        return processedDataPacket;
+    }
+
     /**
      * Loads the version from the object input stream and calls the appropriate loading method to
-     * load the content of this packet.
+     * load the content of this packet. Only used for cache files written before
+     * {@link PacketCodec} was introduced.
      *
      * @param stream stream to load from
      * @return the recreatede {@link ProcessedDataPacket}
      * @throws IOException thrown if the stream is not readable or has no more bytes
      */
     public static ProcessedDataPacket load(ObjectInputStream stream) throws IOException {
-        ProcessedDataPacket processedDataPacket = new ProcessedDataPacket();
         try {
             Integer version = (Integer) stream.readObject();
             switch (version) {
-                case 1:
-                    loadVersion1(processedDataPacket, stream);
-                    return processedDataPacket;
+                case LEGACY_VERSION:
+                    return loadVersion1(stream);
                 default:
                     return null;
             }
@@ -377,26 +775,43 @@ public class ProcessedDataPacket {
     /**
      * Loads the content of the first version of {@link ProcessedDataPacket}.
      *
-     * @param processedDataPacket {@link ProcessedDataPacket} to initialize
      * @param stream object output stream to load from
+     * @return the recreated {@link ProcessedDataPacket}
      * @throws IOException thrown if the stream is not readable or has no more bytes
      * @throws ClassNotFoundException thrown if it couldn't find the appropriate class for the loaded object
      */
-    private static void loadVersion1(ProcessedDataPacket processedDataPacket, ObjectInputStream stream)
+    private static ProcessedDataPacket loadVersion1(ObjectInputStream stream)
                                             throws IOException, ClassNotFoundException {
-        processedDataPacket.taskId = (String) stream.readObject();
+        ProcessedDataPacket processedDataPacket = new ProcessedDataPacket((String) stream.readObject());
         Integer size = (Integer) stream.readObject();
         for (int i = 0; i < size; i++) {
-            processedDataPacket.values.put((String) stream.readObject(), (Serializable) stream.readObject());
+            processedDataPacket.put((String) stream.readObject(), (Serializable) stream.readObject());
         }
+        return processedDataPacket;
     }
 
     @NonNull
     @Override
     public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; schema != null && i < schema.getFieldCount(); i++) {
+            if (isPresent(i)) {
+                builder.append(schema.getName(i)).append('=').append(box(i)).append(", ");
+            }
+        }
+        if (values != null) {
+            for (Map.Entry<String, Serializable> entry : values.entrySet()) {
+                builder.append(entry.getKey()).append('=').append(entry.getValue()).append(", ");
+            }
+        }
+        if (builder.length() > 1) {
+            builder.setLength(builder.length() - 2);
+        }
+        builder.append('}');
+
         return "{" + "id='" + taskId + "', "
-            + "version=" + VERSION + ", "
-            + "values=" + values.toString()
+            + "version=" + PacketCodec.VERSION + ", "
+            + "values=" + builder.toString()
             + "}";
     }
 }
@@ -6,6 +6,8 @@ import de.datenkraken.datenkrake.surveillance.processors.background.BluetoothDev
 import de.datenkraken.datenkrake.surveillance.processors.background.GPSLocationProcessor;
 import de.datenkraken.datenkrake.surveillance.processors.background.OSInformationProcessor;
 import de.datenkraken.datenkrake.surveillance.processors.background.WifiConnectionProcessor;
+import de.datenkraken.datenkrake.surveillance.processors.coalescer.ApplicationActionCoalescer;
+import de.datenkraken.datenkrake.surveillance.processors.coalescer.ArticleActionCoalescer;
 import de.datenkraken.datenkrake.surveillance.processors.event.ApplicationActionProcessor;
 import de.datenkraken.datenkrake.surveillance.processors.event.ArticleActionProcessor;
 import de.datenkraken.datenkrake.surveillance.processors.event.LogProcessor;
@@ -23,8 +25,8 @@ import de.datenkraken.datenkrake.surveillance.sender.UserActivitySender;
 import de.datenkraken.datenkrake.surveillance.sender.WifiConnectionSender;
 
 /**
- * Contains methods to acquire {@link IEventProcessor}s, {@link IBackgroundProcessor}s and
- * {@link ISendProcessedData}s.
+ * Contains methods to acquire {@link IEventProcessor}s, {@link IEventCoalescer}s,
+ * {@link IBackgroundProcessor}s and {@link ISendProcessedData}s.
  *
  * @author Daniel Thoma - daniel.thoma@stud.tu-darmstadt.de
  */
@@ -53,6 +55,19 @@ public final class ProcessorProvider {
         };
     }
 
+    /**
+     * Provides all {@link IEventCoalescer}s. At most one {@link IEventCoalescer} per
+     * {@link DataCollectionEventType} is used.
+     *
+     * @return Array of {@link IEventCoalescer}.
+     */
+    public static IEventCoalescer[] getEventCoalescers() {
+        return new IEventCoalescer[] {
+            new ApplicationActionCoalescer(),
+            new ArticleActionCoalescer()
+        };
+    }
+
     /**
      * Provides all {@link IBackgroundProcessor}s. When a new {@link IBackgroundProcessor} gets added
      * it should be instantiated in this method.
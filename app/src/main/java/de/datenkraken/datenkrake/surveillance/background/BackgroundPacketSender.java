@@ -4,36 +4,79 @@ import android.content.Context;
 import android.os.BatteryManager;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 
+import de.datenkraken.datenkrake.R;
 import de.datenkraken.datenkrake.authentication.AuthenticationManager;
+import de.datenkraken.datenkrake.network.CircuitBreaker;
 import de.datenkraken.datenkrake.network.ITask;
 import de.datenkraken.datenkrake.network.TaskDistributor;
+import de.datenkraken.datenkrake.surveillance.IBatchSendProcessedData;
 import de.datenkraken.datenkrake.surveillance.ISendProcessedData;
-import de.datenkraken.datenkrake.surveillance.ProcessedDataPacket;
+import de.datenkraken.datenkrake.surveillance.PacketLog;
+import de.datenkraken.datenkrake.surveillance.PacketRecord;
 import de.datenkraken.datenkrake.surveillance.ProcessorProvider;
+import de.datenkraken.datenkrake.surveillance.metrics.MetricsRegistry;
 import de.datenkraken.datenkrake.surveillance.util.NetworkUtil;
 import de.datenkraken.datenkrake.util.Callback;
 
-import java.io.File;
-import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
 
 import timber.log.Timber;
 
 /**
  * This Class provides the functionality for the background worker to send data to the graphql
- * backend. It runs only when wifi or ethernet connection is available.
+ * backend. It runs only when wifi or ethernet connection is available. <br>
+ * The records are sent by an {@link UploadScheduler}, which limits the number of mutations in
+ * flight. The worker returns after the outcome of every mutation is known. Records are split into
+ * chunks by a {@link PacketChunker}, so a mutation never contains more than the configured
+ * number of packets and bytes. If batching is enabled, chunks of senders implementing
+ * {@link IBatchSendProcessedData} are combined to {@link BatchedUpload}s, so only one request
+ * per round is needed for all packet types. <br>
+ * Runs in which no mutation succeeded are recorded by a {@link CircuitBreaker}. After repeated
+ * failed runs, the following runs return right away without loading any records, until the
+ * backoff delay passed. The first run after the delay sends one mutation at a time and stops
+ * after the first failure. <br>
+ * After every run the metrics of the pipeline are written to the log database, see
+ * {@link MetricsRegistry#export()}.
  *
  * @author Daniel Thoma - daniel.thoma@stud.tu-darmstadt.de
  */
 public class BackgroundPacketSender extends Worker {
+
+    /**
+     * Callback of {@link BatchedUpload}s. Their records are acknowledged part by part by the
+     * upload itself.
+     */
+    private static final Callback BATCH_CALLBACK = new Callback() {
+        @Override
+        public void onSuccess() {
+            // acknowledged by the BatchedUpload
+        }
+
+        @Override
+        public void onFailure() {
+            // failed parts are sent again on the next run
+        }
+    };
+
     private final WeakReference<Context> context;
     private final Map<String, ISendProcessedData> processors;
+    private final Map<String, IBatchSendProcessedData> batchProcessors;
+    private volatile UploadScheduler scheduler;
+    private boolean probing;
 
     /**
      * Constructor, creating this class and initializing the {@link ISendProcessedData} provided by
@@ -47,16 +90,21 @@ public class BackgroundPacketSender extends Worker {
         Timber.tag("DataSender");
         this.context = new WeakReference<>(context);
         processors = new HashMap<>();
+        batchProcessors = new HashMap<>();
         ISendProcessedData[] eventProcessorArray = ProcessorProvider.getSendProcessor();
         TaskDistributor.setup(AuthenticationManager.create(context), context);
         for (ISendProcessedData processor : eventProcessorArray) {
             processors.put(processor.getTaskId(), processor);
+            if (processor instanceof IBatchSendProcessedData) {
+                batchProcessors.put(processor.getTaskId(), (IBatchSendProcessedData) processor);
+            }
         }
     }
 
     /**
      * Called by the {@link androidx.work.WorkManager}. Attempts to read all cached packets and
-     * send them to the graphql endpoint if ethernet or wifi is available.
+     * send them to the graphql endpoint if ethernet or wifi is available. Blocks until every
+     * mutation succeeded, failed or timed out.
      *
      * @return Success or Failure
      */
@@ -73,56 +121,195 @@ public class BackgroundPacketSender extends Worker {
             return Result.success();
         }
 
-        PacketLoader packetLoader;
-        try {
-            packetLoader = new PacketLoader(context.get());
-        } catch (IOException e) {
-            Timber.e(e, "Could not instantiate packet Loader");
+        CircuitBreaker breaker = createBreaker(context.get());
+        if (!breaker.allowRequest()) {
+            Timber.d("Uploads are backing off until %s", new Date(breaker.getRetryTime()));
+            return Result.success();
+        }
+        probing = breaker.isHalfOpen();
+
+        PacketLog log = PacketLog.get(context.get());
+        if (log == null) {
+            Timber.e("Could not access packet log");
             return Result.failure();
         }
 
-        List<ProcessedDataPacket> data = packetLoader.loadNext();
+        // everything cached until now should be sent, so the open segment gets sealed
+        log.sealActive();
+
+        UploadScheduler uploads = new UploadScheduler(
+            probing ? 1 : context.get().getResources().getInteger(R.integer.upload_parallelism),
+            TimeUnit.SECONDS.toMillis(context.get().getResources().getInteger(R.integer.upload_batch_timeout)));
+        scheduler = uploads;
+        boolean batched = context.get().getResources().getBoolean(R.bool.upload_batched);
+        int chunkPackets = context.get().getResources().getInteger(R.integer.upload_chunk_packets);
+        int chunkBytes = context.get().getResources().getInteger(R.integer.upload_chunk_bytes);
+        List<PacketChunker> chunkers = new ArrayList<>();
+        try {
+            List<PacketChunker> single = new ArrayList<>();
+            Map<String, Queue<PacketChunker>> batchable = new LinkedHashMap<>();//NOPMD
+            for (PacketRecord record : log.select(null, Long.MIN_VALUE, Long.MAX_VALUE)) {
+                if (!processors.containsKey(record.getTaskId())) {
+                    Timber.e("No sender for record %s, dropping it", record);
+                    log.acknowledge(record);
+                    continue;
+                }
+
+                PacketChunker chunker = new PacketChunker(log, record, chunkPackets, chunkBytes);
+                chunkers.add(chunker);
+                if (batched && batchProcessors.containsKey(record.getTaskId())) {
+                    Queue<PacketChunker> queue = batchable.get(record.getTaskId());
+                    if (queue == null) {
+                        queue = new ArrayDeque<>();
+                        batchable.put(record.getTaskId(), queue);
+                    }
+                    queue.add(chunker);
+                } else {
+                    single.add(chunker);
+                }
+            }
 
-        while (data != null) {
-            sendPackets(data, packetLoader.currentFilePath());
-            data = packetLoader.loadNext();
+            if (sendBatched(uploads, batchable)) {
+                sendSingle(uploads, single);
+            }
+            uploads.awaitCompletion();
+        } finally {
+            // records left over by a stopped worker or a failed probe
+            for (PacketChunker chunker : chunkers) {
+                chunker.close();
+            }
+            uploads.shutdown();
+            scheduler = null;
         }
 
+        Timber.d("Sent %d batches, %d failed", uploads.getSucceeded(), uploads.getFailed());
+        if (uploads.getSucceeded() > 0) {
+            breaker.onSuccess();
+        } else if (uploads.getFailed() > 0 && !isStopped()) {
+            // cancelled mutations of a stopped worker don't say anything about the endpoint
+            breaker.onFailure();
+        }
+        MetricsRegistry.getInstance().export();
         return Result.success();
     }
 
     /**
-     * Creates an {@link ITask} for the given packet list and enqueues it.
+     * Creates the {@link CircuitBreaker} guarding the uploads, which shares its state with all
+     * previous runs.
      *
-     * @param list list of {@link ProcessedDataPacket}
+     * @param context context to access the preferences and resources
+     * @return the circuit breaker
      */
-    private void sendPackets(List<ProcessedDataPacket> list, String currentFilePath) {
-        if (list.isEmpty()) {
-            return;
+    private static CircuitBreaker createBreaker(Context context) {
+        return new CircuitBreaker(
+            context.getSharedPreferences(context.getString(R.string.surv_shared_preference_name),
+                Context.MODE_PRIVATE),
+            context.getString(R.string.surv_shared_preference_upload),
+            context.getResources().getInteger(R.integer.upload_failure_threshold),
+            TimeUnit.SECONDS.toMillis(context.getResources().getInteger(R.integer.upload_backoff_base)),
+            TimeUnit.SECONDS.toMillis(context.getResources().getInteger(R.integer.upload_backoff_max)));
+    }
+
+    /**
+     * Checks if another mutation may be submitted. While probing an endpoint, which failed
+     * before, every mutation is awaited and sending stops after the first failure.
+     *
+     * @param uploads scheduler sending the mutations
+     * @return false if the worker got stopped or the probe failed
+     */
+    private boolean canSubmit(UploadScheduler uploads) {
+        if (isStopped()) {
+            return false;
         }
+        return !probing || uploads.awaitCompletion() && uploads.getFailed() == 0;
+    }
 
-        ITask task = null;
-        ISendProcessedData processor = processors.get(list.get(0).getTaskId());
+    /**
+     * Called by the {@link androidx.work.WorkManager}, if the constraints of the worker aren't met
+     * anymore. Cancels all mutations in flight, they are sent again on the next run.
+     */
+    @Override
+    public void onStopped() {
+        super.onStopped();
+        UploadScheduler uploads = scheduler;
+        if (uploads != null) {
+            uploads.cancelAll();
+        }
+    }
+
+    /**
+     * Sends the given records in {@link BatchedUpload}s. Every batch contains the next chunk of
+     * the oldest pending record of every task id.
+     *
+     * @param uploads scheduler sending the batches
+     * @param batchable records to send by task id, oldest first
+     * @return false if the worker got stopped or the probe failed
+     */
+    private boolean sendBatched(UploadScheduler uploads, Map<String, Queue<PacketChunker>> batchable) {
+        while (!batchable.isEmpty()) {
+            List<PacketChunker> chunkers = new ArrayList<>();
+            Iterator<Queue<PacketChunker>> queues = batchable.values().iterator();
+            while (queues.hasNext()) {
+                Queue<PacketChunker> queue = queues.next();
+                while (!queue.isEmpty() && !queue.peek().hasNext()) {
+                    queue.remove();
+                }
 
-        if (processor != null) {
-            task = processor.getTask(list, new BackgroundSenderCallback(currentFilePath));
+                if (queue.isEmpty()) {
+                    queues.remove();
+                } else {
+                    chunkers.add(queue.peek());
+                }
+            }
+
+            if (chunkers.isEmpty()) {
+                break;
+            }
+            if (!canSubmit(uploads) || !uploads.submit(new BatchedUpload(batchProcessors, chunkers), BATCH_CALLBACK)) {
+                return false;
+            }
         }
+        return true;
+    }
 
-        if (task != null) {
-            task.request();
+    /**
+     * Sends every chunk of the given records in its own mutation.
+     *
+     * @param uploads scheduler sending the mutations
+     * @param chunkers records to send
+     */
+    private void sendSingle(UploadScheduler uploads, List<PacketChunker> chunkers) {
+        for (PacketChunker chunker : chunkers) {
+            ISendProcessedData processor = processors.get(chunker.getRecord().getTaskId());
+            while (chunker.hasNext()) {
+                ChunkUpload upload = new ChunkUpload(processor, chunker);
+                if (!canSubmit(uploads) || !uploads.submit(upload, upload)) {
+                    return;
+                }
+            }
         }
     }
 
     /**
-     * Simple {@link Callback} to delete the cache file which got already processed to a list of
-     * {@link ProcessedDataPacket} and sent to the graphql backend.
+     * Upload sending the next chunk of a record in one mutation. Acknowledges the packets of the
+     * chunk, as soon as the mutation succeeded.
      */
-    private static class BackgroundSenderCallback implements Callback {
+    private static class ChunkUpload implements UploadScheduler.Upload, Callback {
+
+        private final ISendProcessedData processor;
+        private final PacketChunker chunker;
+        private PacketChunker.Chunk chunk;
 
-        String filePath;
+        ChunkUpload(ISendProcessedData processor, PacketChunker chunker) {
+            this.processor = processor;
+            this.chunker = chunker;
+        }
 
-        BackgroundSenderCallback(String path) {
-            filePath = path;
+        @Nullable
+        @Override
+        public ITask create(Callback callback) {
+            chunk = chunker.next();
+            return chunk == null ? null : processor.getTask(chunk.getPackets(), callback);
         }
 
         @Override
@@ -132,9 +319,7 @@ public class BackgroundPacketSender extends Worker {
 
         @Override
         public void onSuccess() {
-            if (filePath != null) {
-                (new File(filePath)).delete();
-            }
+            chunk.acknowledge();
         }
     }
 
@@ -20,7 +20,10 @@ import java.util.concurrent.TimeUnit;
 import timber.log.Timber;
 
 /**
- * This Class provides the functionality for the background worker to acquire data about this device.
+ * This Class provides the functionality for the background worker to acquire data about this device. <br>
+ * All {@link IBackgroundProcessor}s run at once in a {@link ProcessorRun}. The worker returns as
+ * soon as every processor signalled, that its data is in. Processors, which take longer than the
+ * configured timeout, get cancelled.
  *
  * @author Daniel Thoma - daniel.thoma@stud.tu-darmstadt.de
  */
@@ -33,6 +36,7 @@ public class BackgroundSupervisor extends Worker {
     private final IBackgroundProcessor[] processors;
 
     private final ProcessedDataCollector dataCollector;
+    private volatile ProcessorRun run;
 
     /**
      * Constructor, creating this class and initializing the {@link IBackgroundProcessor} provided by
@@ -51,7 +55,8 @@ public class BackgroundSupervisor extends Worker {
 
     /**
      * Called by the {@link androidx.work.WorkManager}. Lets all {@link IBackgroundProcessor}s in
-     * {@link #processors} run to acquire information about the device.
+     * {@link #processors} run concurrently to acquire information about the device and waits until
+     * all of them are done or timed out.
      *
      * @return Success or Failure
      */
@@ -63,29 +68,41 @@ public class BackgroundSupervisor extends Worker {
             L.e("BackgroundSupervisor: could not run, context is null!");
             return Result.failure();
         }
-        int keepAliveTime = 0;
-        for (IBackgroundProcessor processor : processors) {
-            processor.process(context.get(), dataCollector);
-            if (processor.keepAlive() > keepAliveTime) {
-                keepAliveTime = processor.keepAlive();
-            }
+        long timeout = TimeUnit.SECONDS.toMillis(
+            context.get().getResources().getInteger(R.integer.background_processor_timeout));
+        ProcessorRun processorRun = new ProcessorRun(processors);
+        run = processorRun;
+        if (isStopped()) {
+            processorRun.cancel();
         }
-        dataCollector.flush();
-
+        processorRun.start(context.get(), dataCollector);
 
         WorkManager workManager = WorkManager.getInstance(context.get());
-
         enqueueNextTask(workManager, context.get());
-        try {
-            Thread.sleep(keepAliveTime);
-        } catch (InterruptedException e) {
-            L.e(e, "Supervisor got interrupted in waiting for Threads");
+
+        long start = System.currentTimeMillis();
+        if (!processorRun.await(timeout)) {
+            L.w("Supervisor stopped waiting for processors after %d ms", System.currentTimeMillis() - start);
         }
+        run = null;
         dataCollector.flush();
 
         return Result.success();
     }
 
+    /**
+     * Called by the {@link androidx.work.WorkManager}, if the constraints of the worker aren't met
+     * anymore. Cancels the processors, which aren't done yet, so the worker returns right away.
+     */
+    @Override
+    public void onStopped() {
+        super.onStopped();
+        ProcessorRun processorRun = run;
+        if (processorRun != null) {
+            processorRun.cancel();
+        }
+    }
+
     private void enqueueNextTask(WorkManager workManager, Context context) {
 
         OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(BackgroundSupervisor.class)
@@ -0,0 +1,127 @@
+package de.datenkraken.datenkrake.surveillance.background;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.apollographql.apollo.api.Mutation;
+import com.apollographql.apollo.api.Response;
+import com.apollographql.apollo.exception.ApolloException;
+
+import de.datenkraken.datenkrake.SurveillanceBatchMutation;
+import de.datenkraken.datenkrake.network.ITask;
+import de.datenkraken.datenkrake.network.clients.apollo.ApolloMutation;
+import de.datenkraken.datenkrake.surveillance.IBatchSendProcessedData;
+import de.datenkraken.datenkrake.surveillance.PacketLog;
+import de.datenkraken.datenkrake.util.Callback;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import timber.log.Timber;
+
+/**
+ * Sends chunks of records with different task ids in one {@link SurveillanceBatchMutation}, so a
+ * sender run needs one round trip instead of one per packet type. <br>
+ * The next chunk of every given {@link PacketChunker} becomes one part of the batch, so at most
+ * one chunker per task id may be added. After the response arrived, every chunk whose part
+ * succeeded gets acknowledged. Packets of failed parts stay in the {@link PacketLog} and are sent
+ * again on the next run.
+ */
+final class BatchedUpload implements UploadScheduler.Upload {
+
+    private final Map<String, IBatchSendProcessedData> processors;
+    private final List<PacketChunker> chunkers;
+
+    /**
+     * Constructor of this class.
+     *
+     * @param processors senders of the records by task id
+     * @param chunkers records to send, at most one per task id
+     */
+    BatchedUpload(Map<String, IBatchSendProcessedData> processors, List<PacketChunker> chunkers) {
+        this.processors = processors;
+        this.chunkers = chunkers;
+    }
+
+    /**
+     * Takes the next chunk of every record and adds it to the batch mutation.
+     *
+     * @param callback called with the outcome of the batch. The batch fails, if any part failed.
+     * @return task sending the batch or null, if there are no packets to send
+     */
+    @Nullable
+    @Override
+    public ITask create(Callback callback) {
+        SurveillanceBatchMutation.Builder builder = createEmptyBatch();
+        List<PacketChunker.Chunk> parts = new ArrayList<>();
+        for (PacketChunker chunker : chunkers) {
+            PacketChunker.Chunk chunk = chunker.next();
+            if (chunk != null) {
+                processors.get(chunk.getRecord().getTaskId()).addToBatch(chunk.getPackets(), builder);
+                parts.add(chunk);
+            }
+        }
+
+        if (parts.isEmpty()) {
+            return null;
+        }
+
+        SurveillanceBatchMutation mutation = builder.build();
+        return new ApolloMutation<SurveillanceBatchMutation.Data>() {
+            @Override
+            public Mutation getMutation() {
+                return mutation;
+            }
+
+            @Override
+            public void onFailure(@NonNull ApolloException e) {
+                super.onFailure(e);
+                callback.onFailure();
+            }
+
+            @Override
+            public void onResponse(@NonNull Response response) {
+                super.onResponse(response);
+                SurveillanceBatchMutation.Data data = (SurveillanceBatchMutation.Data) response.data();
+
+                boolean successful = true;
+                for (PacketChunker.Chunk chunk : parts) {
+                    if (data != null && processors.get(chunk.getRecord().getTaskId()).isPartSuccessful(data)) {
+                        chunk.acknowledge();
+                    } else {
+                        Timber.d("Part %s of batch failed", chunk.getRecord().getTaskId());
+                        successful = false;
+                    }
+                }
+
+                if (successful) {
+                    callback.onSuccess();
+                } else {
+                    callback.onFailure();
+                }
+            }
+        };
+    }
+
+    /**
+     * Creates a builder of the batch mutation, which excludes every part. All variables of the
+     * mutation are required, so every input is set to an empty list.
+     *
+     * @return builder of an empty batch mutation
+     */
+    private static SurveillanceBatchMutation.Builder createEmptyBatch() {
+        return SurveillanceBatchMutation.builder()
+            .appEvents(Collections.emptyList()).withAppEvents(false)
+            .articleEvents(Collections.emptyList()).withArticleEvents(false)
+            .sourceEvents(Collections.emptyList()).withSourceEvents(false)
+            .wifiData(Collections.emptyList()).withWifiData(false)
+            .osInformation(Collections.emptyList()).withOsInformation(false)
+            .userActivities(Collections.emptyList()).withUserActivities(false)
+            .locations(Collections.emptyList()).withLocations(false)
+            .deviceScans(Collections.emptyList()).withDeviceScans(false)
+            .bondDevices(Collections.emptyList()).withBondDevices(false)
+            .permissionStates(Collections.emptyList()).withPermissionStates(false);
+    }
+}
@@ -4,8 +4,14 @@ import android.content.Context;
 
 import de.datenkraken.datenkrake.surveillance.ProcessedDataCollector;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
- * Processor executed in background by {@link BackgroundSupervisor}.
+ * Processor executed in background by {@link BackgroundSupervisor}. <br>
+ * Processors, which acquire their data synchronously, only implement
+ * {@link #process(Context, ProcessedDataCollector)}. Processors waiting for callbacks, like
+ * location updates or scans, implement {@link #processAsync(Context, ProcessedDataCollector)},
+ * so the supervisor knows when their data is in.
  */
 public interface IBackgroundProcessor {
 
@@ -17,5 +23,20 @@ public interface IBackgroundProcessor {
      */
     void process(Context context, ProcessedDataCollector collector);
 
-    int keepAlive();
+    /**
+     * Gets called by {@link BackgroundSupervisor} giving it it's context to acquire data. Returns
+     * a future, which resolves as soon as all data was added to the collector. <br>
+     * If the supervisor doesn't want to wait anymore, it cancels the future. The processor has to
+     * stop acquiring data then, for example by removing its listeners. <br>
+     * The default implementation calls {@link #process(Context, ProcessedDataCollector)} and
+     * returns a resolved future.
+     *
+     * @param context used to acquire data about the device
+     * @param collector {@link ProcessedDataCollector} collector for the processed data.
+     * @return future resolving, when the processor is done
+     */
+    default CompletableFuture<Void> processAsync(Context context, ProcessedDataCollector collector) {
+        process(context, collector);
+        return CompletableFuture.completedFuture(null);
+    }
 }
@@ -0,0 +1,193 @@
+package de.datenkraken.datenkrake.surveillance.background;
+
+import androidx.annotation.Nullable;
+
+import de.datenkraken.datenkrake.surveillance.PacketIterator;
+import de.datenkraken.datenkrake.surveillance.PacketLog;
+import de.datenkraken.datenkrake.surveillance.PacketRecord;
+import de.datenkraken.datenkrake.surveillance.ProcessedDataPacket;
+import de.datenkraken.datenkrake.surveillance.metrics.Counter;
+import de.datenkraken.datenkrake.surveillance.metrics.MetricsRegistry;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+
+import timber.log.Timber;
+
+/**
+ * Splits the packets of one {@link PacketRecord} into chunks, which are sent in separate
+ * mutations. A chunk contains at most the configured number of packets and its estimated size,
+ * see {@link ProcessedDataPacket#estimateSize()}, doesn't exceed the configured number of bytes,
+ * unless it consists of a single packet. <br>
+ * The packets are decoded while the chunks are taken, so only one chunk per record is kept in
+ * memory. Every chunk is acknowledged on its own by {@link Chunk#acknowledge()}, packets which
+ * were already sent are skipped. A chunker, which isn't taken to the end, has to be closed by the
+ * thread taking the chunks, so the buffers of its {@link PacketIterator} are released. <br>
+ * Loaded packets, corrupted records and the packets and estimated bytes of acknowledged chunks are
+ * counted in the {@link MetricsRegistry}.
+ */
+final class PacketChunker implements Closeable {
+
+    private final PacketLog log;
+    private final PacketRecord record;
+    private final int maxPackets;
+    private final int maxBytes;
+    private final Counter loaded;
+    private final Counter corrupted;
+    private final Counter uploadedPackets;
+    private final Counter uploadedBytes;
+    private PacketIterator iterator;
+    private ProcessedDataPacket pending;
+    private int pendingIndex;
+    private int index;
+    private boolean dropped;
+    private boolean closed;
+
+    /**
+     * Constructor of this class. The record isn't read before the first chunk is taken.
+     *
+     * @param log log containing the record
+     * @param record record to split
+     * @param maxPackets maximal number of packets in a chunk
+     * @param maxBytes maximal estimated size of a chunk in bytes
+     */
+    PacketChunker(PacketLog log, PacketRecord record, int maxPackets, int maxBytes) {
+        this.log = log;
+        this.record = record;
+        this.maxPackets = Math.max(1, maxPackets);
+        this.maxBytes = maxBytes;
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        loaded = metrics.counter("packets.loaded");
+        corrupted = metrics.counter("records.corrupted");
+        uploadedPackets = metrics.counter("uploads.packets");
+        uploadedBytes = metrics.counter("uploads.bytes");
+    }
+
+    PacketRecord getRecord() {
+        return record;
+    }
+
+    /**
+     * Checks if there may be another chunk. Even if this returns true, {@link #next()} returns
+     * null if all remaining packets were already sent.
+     *
+     * @return false if all packets of the record are taken or the chunker is closed
+     */
+    boolean hasNext() {
+        return !closed && (iterator == null || pending != null || iterator.hasNext());
+    }
+
+    /**
+     * Takes the next chunk of consecutive packets, which weren't sent yet. If the record turns
+     * out to be corrupted, the packets decoded before are still returned, the packets, which
+     * can't be decoded, get acknowledged, because they can't be sent anymore.
+     *
+     * @return next chunk or null, if there are no more packets to send
+     */
+    @Nullable
+    Chunk next() {
+        if (closed) {
+            return null;
+        }
+        if (iterator == null) {
+            iterator = log.iterate(record);
+        }
+
+        List<ProcessedDataPacket> packets = new ArrayList<>();
+        int from = 0;
+        int bytes = 0;
+        while (packets.size() < maxPackets) {
+            if (pending == null) {
+                if (!iterator.hasNext()) {
+                    break;
+                }
+                pending = iterator.next();
+                pendingIndex = index++;
+                loaded.increment();
+                if (log.isSent(record, pendingIndex)) {
+                    pending = null;
+                    continue;
+                }
+            }
+
+            int size = pending.estimateSize();
+            if (!packets.isEmpty() && (bytes + size > maxBytes || pendingIndex != from + packets.size())) {
+                break;
+            }
+
+            if (packets.isEmpty()) {
+                from = pendingIndex;
+            }
+            packets.add(pending);
+            bytes += size;
+            pending = null;
+        }
+
+        if (iterator.isCorrupted() && pending == null && !dropped) {
+            Timber.e("Record %s is corrupted, dropping its remaining packets", record);
+            dropped = true;
+            corrupted.increment();
+            if (index < record.getCount()) {
+                log.acknowledge(record, index, record.getCount());
+            }
+        }
+        return packets.isEmpty() ? null : new Chunk(from, packets, bytes);
+    }
+
+    /**
+     * Releases the record, if not all chunks were taken. Further calls of {@link #next()} return
+     * null.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        pending = null;
+        if (iterator != null) {
+            iterator.close();
+        }
+    }
+
+    /**
+     * Consecutive packets of the record, which are sent in one mutation.
+     */
+    final class Chunk {
+
+        private final int from;
+        private final List<ProcessedDataPacket> packets;
+        private final int bytes;
+
+        Chunk(int from, List<ProcessedDataPacket> packets, int bytes) {
+            this.from = from;
+            this.packets = packets;
+            this.bytes = bytes;
+        }
+
+        PacketRecord getRecord() {
+            return record;
+        }
+
+        List<ProcessedDataPacket> getPackets() {
+            return packets;
+        }
+
+        /**
+         * Returns the estimated size of the packets of this chunk.
+         *
+         * @return size in bytes
+         */
+        int getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Marks the packets of this chunk as sent.
+         */
+        void acknowledge() {
+            log.acknowledge(record, from, from + packets.size());
+            uploadedPackets.add(packets.size());
+            uploadedBytes.add(bytes);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package de.datenkraken.datenkrake.surveillance.background;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import de.datenkraken.datenkrake.surveillance.EventManager;
+import de.datenkraken.datenkrake.surveillance.PacketSaver;
+import de.datenkraken.datenkrake.surveillance.PacketSpill;
+
+import java.lang.ref.WeakReference;
+
+import timber.log.Timber;
+
+/**
+ * Worker writing the packets, which are still buffered by the {@link EventManager} or were
+ * written to the {@link PacketSpill}, to the {@link de.datenkraken.datenkrake.surveillance.PacketLog}.
+ * <br>
+ * Enqueued by {@link EventManager#shutdown()}, if the packets couldn't be written in time. The
+ * packets still waiting in the buffer are spilled to the disk before, so they are saved even if
+ * the process died in the meantime and the worker runs in a new one. Only the batch, which was
+ * being written when the app closed, is lost in that case.
+ */
+public class PacketFlushWorker extends Worker {
+
+    /**
+     * Constructor of this class.
+     *
+     * @param context Worker context, given by the {@link androidx.work.WorkManager}
+     * @param workerParams params, given in the initializing
+     */
+    public PacketFlushWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+        Timber.tag("PacketFlushWorker");
+    }
+
+    /**
+     * Called by the {@link androidx.work.WorkManager}. Blocks until all buffered and spilled
+     * packets are written.
+     *
+     * @return Success
+     */
+    @NonNull
+    @Override
+    public Result doWork() {
+        if (!EventManager.flushPending()) {
+            Timber.d("No event manager in this process, nothing to flush");
+        }
+
+        PacketSpill spill = PacketSpill.get(getApplicationContext());
+        if (spill != null && !spill.drain(new PacketSaver(new WeakReference<>(getApplicationContext())))) {
+            Timber.w("Couldn't save the spilled packets, retrying later");
+            return Result.retry();
+        }
+        return Result.success();
+    }
+}
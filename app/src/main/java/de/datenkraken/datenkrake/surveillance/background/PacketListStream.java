@@ -1,5 +1,6 @@
 package de.datenkraken.datenkrake.surveillance.background;
 
+import de.datenkraken.datenkrake.surveillance.PacketCodec;
 import de.datenkraken.datenkrake.surveillance.ProcessedDataPacket;
 
 import java.io.ByteArrayInputStream;
@@ -18,7 +19,9 @@ import java.util.zip.Inflater;
 import timber.log.Timber;
 
 /**
- * Provides a stream of list of {@link ProcessedDataPacket} from the current file.
+ * Provides a stream of list of {@link ProcessedDataPacket} from the current file. <br>
+ * Only reads cache files of the per task id cache, which was used before the
+ * {@link de.datenkraken.datenkrake.surveillance.PacketLog}. Used to migrate them into the log.
  *
  * @author Daniel Thoma - daniel.thoma@stud.tu-darmstadt.de
  */
@@ -52,20 +55,15 @@ public class PacketListStream {
         byte[] bytes;
         try {
             int size = getInteger();
-            if (size > MAX_VALID_SIZE) { //quickfix
+            if (size < 0 || size > MAX_VALID_SIZE) { //quickfix
                 fileInputStream.close();
                 return null;
             }
             Timber.d("trying to allocate %s kb", ((double) size) / 1000);
             bytes = new byte[size];
             Timber.d("remaining: %d", fileInputStream.available());
-            int read = fileInputStream.read(bytes);
-            Timber.d("read %d bytes!", read);
-            if (read == -1) {
-                fileInputStream.close();
-                return null;
-            }
-
+            // read() may return less bytes than requested, so the whole blob is read explicitly
+            getDataInputStream().readFully(bytes);
         } catch (IOException e) {
             Timber.d(e, "No more data to read");
             return null;
@@ -77,7 +75,34 @@ public class PacketListStream {
 
             return list;
         }
-        ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(decompress(bytes));
+
+        if (PacketCodec.isLegacy(decompressedBytes, decompressedBytes.length)) {
+            return loadLegacy(decompressedBytes, list);
+        }
+
+        try {
+            PacketCodec.Decoder decoder = new PacketCodec.Decoder(new ByteArrayInputStream(decompressedBytes));
+            ProcessedDataPacket packet = decoder.read();
+            while (packet != null) {
+                list.add(packet);
+                packet = decoder.read();
+            }
+        } catch (IOException e) {
+            Timber.e(e, "Failed to decode packet batch");
+        }
+        return list;
+    }
+
+    /**
+     * Loads a batch written with {@link java.io.ObjectOutputStream} by an older version of the
+     * {@link de.datenkraken.datenkrake.surveillance.PacketSaver}.
+     *
+     * @param decompressedBytes decompressed batch
+     * @param list list to add the loaded packets to
+     * @return the given list
+     */
+    private List<ProcessedDataPacket> loadLegacy(byte[] decompressedBytes, List<ProcessedDataPacket> list) {
+        ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(decompressedBytes);
         ProcessedDataPacket packet;
         try (ObjectInputStream objectInputStream = new ObjectInputStream(byteArrayInputStream)) {
             while (true) {
@@ -102,13 +127,21 @@ public class PacketListStream {
      * @throws IOException when no Integer was found.
      */
     private Integer getInteger() throws IOException {
+        int integer = getDataInputStream().readInt();
+        Timber.d("Trying to load %d Bytes", integer);
+        return integer;
+    }
 
+    /**
+     * Returns a {@link DataInputStream} reading from {@link #fileInputStream}.
+     *
+     * @return stream wrapping {@link #fileInputStream}
+     */
+    private DataInputStream getDataInputStream() {
         // this resource mustn't get closed, otherwise the fileInputStream will get closed.
         @SuppressWarnings("PMD.CloseResource")
         DataInputStream dataInputStream = new DataInputStream(fileInputStream);
-        int integer = dataInputStream.readInt();
-        Timber.d("Trying to load %d Bytes", integer);
-        return integer;
+        return dataInputStream;
     }
 
     /**
@@ -0,0 +1,135 @@
+package de.datenkraken.datenkrake.surveillance.background;
+
+import android.content.Context;
+
+import de.datenkraken.datenkrake.surveillance.ProcessedDataCollector;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import timber.log.Timber;
+
+/**
+ * One run of the {@link IBackgroundProcessor}s of the {@link BackgroundSupervisor}. <br>
+ * All processors are started at once, each on its own thread, so a slow processor doesn't delay
+ * the others. Every processor gets a completion future, which resolves together with the future
+ * returned by {@link IBackgroundProcessor#processAsync(Context, ProcessedDataCollector)}. A
+ * processor throwing an exception is logged and resolves as well. {@link #await(long)} returns as
+ * soon as every future resolved, or the timeout expired, in which case the remaining ones get
+ * cancelled. Cancelling a completion future cancels the future of its processor, so the processor
+ * stops acquiring data.
+ */
+final class ProcessorRun {
+
+    private final IBackgroundProcessor[] processors;
+    private final CompletableFuture<Void>[] futures;
+    private final ExecutorService executor;
+
+    /**
+     * Constructor of this class. The processors aren't started before
+     * {@link #start(Context, ProcessedDataCollector)}, but the run can be cancelled already.
+     *
+     * @param processors processors to run
+     */
+    @SuppressWarnings("unchecked")
+    ProcessorRun(IBackgroundProcessor[] processors) {
+        Timber.tag("ProcessorRun");
+        this.processors = processors;
+        futures = new CompletableFuture[processors.length];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = new CompletableFuture<>();
+        }
+        AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, processors.length), runnable -> {
+            Thread thread = new Thread(runnable, "BackgroundProcessor-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts all processors.
+     *
+     * @param context context given to the processors
+     * @param collector collector for the packets of the processors
+     */
+    void start(Context context, ProcessedDataCollector collector) {
+        for (int i = 0; i < processors.length; i++) {
+            IBackgroundProcessor processor = processors[i];
+            CompletableFuture<Void> done = futures[i];
+            executor.execute(() -> run(processor, done, context, collector));
+        }
+    }
+
+    private void run(IBackgroundProcessor processor, CompletableFuture<Void> done, Context context,
+                     ProcessedDataCollector collector) {
+        if (done.isDone()) {
+            return; // cancelled before it could start
+        }
+
+        CompletableFuture<Void> result;
+        try {
+            result = processor.processAsync(context, collector);
+        } catch (RuntimeException e) { // NOPMD a failing processor must not stop the others
+            Timber.e(e, "Processor %s failed", processor);
+            done.complete(null);
+            return;
+        }
+
+        if (result == null) {
+            done.complete(null);
+            return;
+        }
+        result.whenComplete((value, error) -> {
+            if (error != null && !result.isCancelled()) {
+                Timber.e(error, "Processor %s failed", processor);
+            }
+            done.complete(null);
+        });
+        done.whenComplete((value, error) -> {
+            if (done.isCancelled()) {
+                result.cancel(false);
+            }
+        });
+    }
+
+    /**
+     * Waits until all processors are done, but at most the given time. Processors, which aren't
+     * done by then, get cancelled. The threads of this run are stopped afterwards.
+     *
+     * @param timeout time in milliseconds to wait
+     * @return true if all processors were done in time, false if the timeout expired or the run
+     *         got cancelled
+     */
+    boolean await(long timeout) {
+        try {
+            CompletableFuture.allOf(futures).get(timeout, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            Timber.w("Processors didn't finish within %d ms, cancelling them", timeout);
+            return false;
+        } catch (ExecutionException e) {
+            return false; // the run got cancelled
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            cancel();
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Cancels all processors, which aren't done yet, so {@link #await(long)} returns.
+     */
+    void cancel() {
+        for (CompletableFuture<Void> future : futures) {
+            future.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package de.datenkraken.datenkrake.surveillance.background;
+
+import androidx.annotation.Nullable;
+
+import de.datenkraken.datenkrake.network.ITask;
+import de.datenkraken.datenkrake.surveillance.metrics.Counter;
+import de.datenkraken.datenkrake.surveillance.metrics.LatencyHistogram;
+import de.datenkraken.datenkrake.surveillance.metrics.MetricsRegistry;
+import de.datenkraken.datenkrake.util.Callback;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import timber.log.Timber;
+
+/**
+ * Limits the number of mutations the {@link BackgroundPacketSender} has in flight at once. <br>
+ * {@link #submit(Upload, Callback)} blocks until a slot is free, so batches are only loaded when
+ * they can be sent. Every batch holds its slot until its task calls back or the timeout of the
+ * batch expires. Expired batches get cancelled and count as failed. <br>
+ * {@link #awaitCompletion()} blocks until every submitted batch is finished, so the worker
+ * doesn't return before the outcome of all mutations is known. <br>
+ * The outcome of every batch and the time until it finished are recorded in the
+ * {@link MetricsRegistry}.
+ */
+final class UploadScheduler {
+
+    private final int parallelism;
+    private final long timeout;
+    private final Semaphore slots;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final Set<Batch> inFlight = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final Counter succeededTotal;
+    private final Counter failedTotal;
+    private final Counter expiredTotal;
+    private final LatencyHistogram latency;
+
+    /**
+     * Creates the task of one batch. Called as soon as a slot is free.
+     */
+    interface Upload {
+
+        /**
+         * Creates the task sending the batch.
+         *
+         * @param callback callback the task has to call, when the mutation is finished
+         * @return task to request or null, if there is nothing to send
+         */
+        @Nullable
+        ITask create(Callback callback);
+    }
+
+    /**
+     * Constructor of this class.
+     *
+     * @param parallelism maximal number of batches in flight
+     * @param timeout time in milliseconds, after which a batch gets cancelled
+     */
+    UploadScheduler(int parallelism, long timeout) {
+        this.parallelism = Math.max(1, parallelism);
+        this.timeout = timeout;
+        slots = new Semaphore(this.parallelism);
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        succeededTotal = metrics.counter("uploads.succeeded");
+        failedTotal = metrics.counter("uploads.failed");
+        expiredTotal = metrics.counter("uploads.expired");
+        latency = metrics.histogram("uploads.latency");
+    }
+
+    /**
+     * Waits for a free slot, creates the task of the batch and requests it.
+     *
+     * @param upload creates the task of the batch
+     * @param callback called with the outcome of the batch, before its slot is freed
+     * @return false if the thread got interrupted while waiting for a slot
+     */
+    boolean submit(Upload upload, Callback callback) {
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        Batch batch = new Batch(callback);
+        inFlight.add(batch);
+        ITask task = null;
+        try {
+            task = upload.create(batch);
+        } finally {
+            if (task == null) {
+                batch.discard();
+            }
+        }
+
+        if (task != null) {
+            batch.start(task);
+        }
+        return true;
+    }
+
+    /**
+     * Blocks until all submitted batches are finished or expired.
+     *
+     * @return false if the thread got interrupted while waiting
+     */
+    boolean awaitCompletion() {
+        try {
+            slots.acquire(parallelism);
+            slots.release(parallelism);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Cancels all batches in flight. They count as failed.
+     */
+    void cancelAll() {
+        for (Batch batch : new ArrayList<>(inFlight)) {
+            batch.expire();
+        }
+    }
+
+    /**
+     * Stops the timer of this scheduler. Batches still in flight don't expire anymore.
+     */
+    void shutdown() {
+        timer.shutdownNow();
+    }
+
+    int getSucceeded() {
+        return succeeded.get();
+    }
+
+    int getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Callback of one batch, freeing its slot exactly once. Whichever comes first of the
+     * callback of the task and the timeout decides the outcome of the batch.
+     */
+    private final class Batch implements Callback {
+
+        private final Callback callback;
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private ITask task;
+        private ScheduledFuture<?> expiry;
+        private long start;
+
+        Batch(Callback callback) {
+            this.callback = callback;
+        }
+
+        synchronized void start(ITask task) {
+            this.task = task;
+            start = System.nanoTime();
+            expiry = timer.schedule(this::expire, timeout, TimeUnit.MILLISECONDS);
+            task.request();
+        }
+
+        void expire() {
+            if (finish()) {
+                Timber.w("Batch timed out after %d ms, cancelling it", timeout);
+                expiredTotal.increment();
+                ITask expired;
+                synchronized (this) {
+                    expired = task;
+                }
+                if (expired != null) {
+                    expired.cancel();
+                }
+                fail();
+            }
+        }
+
+        void discard() {
+            if (finish()) {
+                release();
+            }
+        }
+
+        @Override
+        public void onSuccess() {
+            if (finish()) {
+                succeeded.incrementAndGet();
+                succeededTotal.increment();
+                try {
+                    callback.onSuccess();
+                } finally {
+                    release();
+                }
+            }
+        }
+
+        @Override
+        public void onFailure() {
+            if (finish()) {
+                fail();
+            }
+        }
+
+        private void fail() {
+            failed.incrementAndGet();
+            failedTotal.increment();
+            try {
+                callback.onFailure();
+            } finally {
+                release();
+            }
+        }
+
+        private boolean finish() {
+            if (!finished.compareAndSet(false, true)) {
+                return false;
+            }
+
+            ScheduledFuture<?> scheduled;
+            long started;
+            synchronized (this) {
+                scheduled = expiry;
+                started = start;
+            }
+            if (scheduled != null) {
+                scheduled.cancel(false);
+                latency.recordSince(started);
+            }
+            return true;
+        }
+
+        private void release() {
+            inFlight.remove(this);
+            slots.release();
+        }
+    }
+}
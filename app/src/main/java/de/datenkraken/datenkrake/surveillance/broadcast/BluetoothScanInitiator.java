@@ -12,15 +12,34 @@ import de.datenkraken.datenkrake.SubmitBluetoothDeviceScanMutation;
 import de.datenkraken.datenkrake.logging.L;
 import de.datenkraken.datenkrake.surveillance.ProcessedDataCollector;
 import de.datenkraken.datenkrake.surveillance.ProcessedDataPacket;
+import de.datenkraken.datenkrake.surveillance.processors.background.BluetoothDeviceScanProcessor;
 import de.datenkraken.datenkrake.surveillance.util.BluetoothUtil;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Receiver started by {@link BluetoothDeviceScanProcessor}, after it enabled bluetooth. Scans for
+ * bluetooth low energy devices, as soon as the adapter is on, and disables it afterwards. The
+ * given future resolves, when the scan stopped. {@link #stop(Context)} ends the scan early or
+ * prevents it, if it didn't start yet.
+ */
 public class BluetoothScanInitiator extends Receiver {
 
-    public BluetoothScanInitiator(ProcessedDataCollector collector) {
+    private final CompletableFuture<Void> result;
+    private boolean registered = true;
+    private Runnable stopScan;
+
+    /**
+     * Constructor of this class. The receiver has to be registered right away.
+     *
+     * @param collector collector for the scanned devices
+     * @param result future to resolve, when the scan stopped
+     */
+    public BluetoothScanInitiator(ProcessedDataCollector collector, CompletableFuture<Void> result) {
         super(collector);
+        this.result = result;
     }
 
     @Override
@@ -40,8 +59,43 @@ public class BluetoothScanInitiator extends Receiver {
             return;
         }
 
-        L.i("Bluetooth got enabled, starting scan");
-        BluetoothUtil.scanLeDevices(new ScanCallback() {
+        synchronized (this) {
+            if (!registered) {
+                return; // stopped already
+            }
+            unregister(context);
+
+            L.i("Bluetooth got enabled, starting scan");
+            stopScan = startScan(context, adapter, collector);
+        }
+    }
+
+    /**
+     * Stops the scan, if it runs, or unregisters this receiver and disables bluetooth again, if
+     * the scan didn't start yet.
+     *
+     * @param context context this receiver was registered with
+     */
+    public synchronized void stop(Context context) {
+        if (registered) {
+            unregister(context);
+            BluetoothAdapter adapter = BluetoothUtil.getAdapter(context);
+            if (adapter != null) {
+                adapter.disable();
+            }
+            result.complete(null);
+        } else if (stopScan != null) {
+            stopScan.run();
+        }
+    }
+
+    private void unregister(Context context) {
+        registered = false;
+        context.unregisterReceiver(this);
+    }
+
+    private Runnable startScan(Context context, BluetoothAdapter adapter, ProcessedDataCollector collector) {
+        return BluetoothUtil.scanLeDevices(new ScanCallback() {
             Set<String> scannedDevices = new HashSet<>();
             @Override
             public void onScanResult(int callbackType, ScanResult result) {
@@ -61,8 +115,10 @@ public class BluetoothScanInitiator extends Receiver {
                     collector.addPacket(packet);
                 }
             }
-        }, adapter::disable, 30000, context);
-        context.unregisterReceiver(this);
+        }, () -> {
+            adapter.disable();
+            result.complete(null);
+        }, BluetoothDeviceScanProcessor.SCAN_PERIOD, context);
     }
 
     @Override
@@ -0,0 +1,43 @@
+package de.datenkraken.datenkrake.surveillance.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counter of a {@link MetricsRegistry}. <br>
+ * The count is striped over several cells by a {@link LongAdder}, so threads incrementing it at
+ * the same time don't contend on a single value. Reading the count sums the cells and may miss
+ * increments made at the same time.
+ */
+public final class Counter {
+
+    private final LongAdder count = new LongAdder();
+
+    Counter() {
+        // created by the MetricsRegistry
+    }
+
+    /**
+     * Increments this counter by one.
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * Adds the given value to this counter.
+     *
+     * @param value value to add
+     */
+    public void add(long value) {
+        count.add(value);
+    }
+
+    /**
+     * Returns the current count.
+     *
+     * @return sum of all added values
+     */
+    public long get() {
+        return count.sum();
+    }
+}
@@ -0,0 +1,143 @@
+package de.datenkraken.datenkrake.surveillance.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies in nanoseconds of a {@link MetricsRegistry}. <br>
+ * The buckets are laid out like a HDR histogram: values below {@link #LINEAR} get a bucket each,
+ * every larger power of two is split into {@link #SUB_BUCKETS} buckets of equal width. So the
+ * whole range of a long fits into a few hundred buckets, while every recorded value is off by at
+ * most an eighth. Recording a value increments its bucket without locking.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // values below, which are counted exactly
+    private static final int LINEAR = 2 * SUB_BUCKETS;
+    private static final int LINEAR_BITS = SUB_BITS + 1;
+    private static final int BUCKETS = LINEAR + (Long.SIZE - 1 - LINEAR_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    LatencyHistogram() {
+        // created by the MetricsRegistry
+    }
+
+    /**
+     * Records the given latency. Negative values are recorded as 0.
+     *
+     * @param nanos latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        buckets.incrementAndGet(getIndex(value));
+        count.increment();
+        sum.add(value);
+
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Records the time passed since the given start.
+     *
+     * @param startNanos start, taken from {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the mean of the recorded latencies.
+     *
+     * @return mean in nanoseconds, 0 if nothing was recorded
+     */
+    public long getMean() {
+        long recorded = count.sum();
+        return recorded == 0 ? 0 : sum.sum() / recorded;
+    }
+
+    /**
+     * Returns the latency, which the given share of the recorded latencies doesn't exceed. The
+     * result is the upper bound of the bucket containing it, but never above the maximum.
+     *
+     * @param percentile share in percent, between 0 and 100
+     * @return latency in nanoseconds, 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(getUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Formats count, mean, median, 99th percentile and maximum of this histogram in
+     * milliseconds.
+     *
+     * @return summary of this histogram
+     */
+    String summarize() {
+        return String.format(Locale.ROOT, "count=%d mean=%.3fms p50=%.3fms p99=%.3fms max=%.3fms",
+            getCount(), toMillis(getMean()), toMillis(getPercentile(50)), toMillis(getPercentile(99)),
+            toMillis(getMax()));
+    }
+
+    static int getIndex(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR + (exponent - LINEAR_BITS) * SUB_BUCKETS + sub;
+    }
+
+    static long getUpperBound(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int exponent = (index - LINEAR) / SUB_BUCKETS + LINEAR_BITS;
+        long sub = (index - LINEAR) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BITS);
+        // the last bucket would overflow
+        return exponent == Long.SIZE - 2 && sub == SUB_BUCKETS - 1
+            ? Long.MAX_VALUE : (SUB_BUCKETS + sub + 1) * width - 1;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,110 @@
+package de.datenkraken.datenkrake.surveillance.metrics;
+
+import androidx.annotation.NonNull;
+
+import de.datenkraken.datenkrake.logging.L;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of the {@link Counter}s and {@link LatencyHistogram}s of the surveillance pipeline,
+ * from raising events to uploading the packets. <br>
+ * Metrics are created on their first lookup and live as long as the process. Components look up
+ * their metrics once and keep them in fields, so updating a metric neither locks nor touches the
+ * registry. {@link #snapshot()} reads all metrics at once and {@link #export()} writes them to the
+ * log database, so they are sent along with the logs. <br>
+ * Names are dot separated, starting with the stage of the pipeline, for example
+ * {@code events.rejected.APPLICATIONACTION} or {@code uploads.bytes}.
+ */
+public final class MetricsRegistry {
+
+    private static final MetricsRegistry instance = new MetricsRegistry();
+
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    MetricsRegistry() {
+        // a single registry per process, see getInstance()
+    }
+
+    /**
+     * Returns the registry shared by all components of the process.
+     *
+     * @return the registry
+     */
+    public static MetricsRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the {@link Counter} with the given name and creates it, if it doesn't exist.
+     *
+     * @param name name of the counter
+     * @return the counter
+     */
+    @NonNull
+    public Counter counter(@NonNull String name) {
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            counter = new Counter();
+            Counter existing = counters.putIfAbsent(name, counter);
+            if (existing != null) {
+                counter = existing;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Returns the {@link LatencyHistogram} with the given name and creates it, if it doesn't
+     * exist.
+     *
+     * @param name name of the histogram
+     * @return the histogram
+     */
+    @NonNull
+    public LatencyHistogram histogram(@NonNull String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            LatencyHistogram existing = histograms.putIfAbsent(name, histogram);
+            if (existing != null) {
+                histogram = existing;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Reads the current value of every metric. Metrics updated at the same time may or may not
+     * be included.
+     *
+     * @return snapshot of all metrics
+     */
+    @NonNull
+    public MetricsSnapshot snapshot() {
+        Map<String, Long> counterValues = new HashMap<>();//NOPMD
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            counterValues.put(entry.getKey(), entry.getValue().get());
+        }
+
+        Map<String, String> histogramValues = new HashMap<>();//NOPMD
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            histogramValues.put(entry.getKey(), entry.getValue().summarize());
+        }
+        return new MetricsSnapshot(System.currentTimeMillis(), counterValues, histogramValues);
+    }
+
+    /**
+     * Writes a {@link #snapshot()} to the log database via {@link L}.
+     */
+    public void export() {
+        MetricsSnapshot snapshot = snapshot();
+        if (!snapshot.getCounters().isEmpty() || !snapshot.getHistograms().isEmpty()) {
+            L.i("Surveillance metrics:\n%s", snapshot);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package de.datenkraken.datenkrake.surveillance.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Values of all metrics of a {@link MetricsRegistry} at one point in time, sorted by name.
+ * Created by {@link MetricsRegistry#snapshot()}. <br>
+ * Counters are kept as numbers, histograms as the summary of count, mean, median, 99th percentile
+ * and maximum, so the snapshot can be logged or shown on a debug screen as it is.
+ */
+public final class MetricsSnapshot {
+
+    private final long time;
+    private final SortedMap<String, Long> counters;
+    private final SortedMap<String, String> histograms;
+
+    MetricsSnapshot(long time, Map<String, Long> counters, Map<String, String> histograms) {
+        this.time = time;
+        this.counters = Collections.unmodifiableSortedMap(new TreeMap<>(counters));
+        this.histograms = Collections.unmodifiableSortedMap(new TreeMap<>(histograms));
+    }
+
+    /**
+     * Returns the time this snapshot was taken.
+     *
+     * @return time in milliseconds since the epoch
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Returns the value of the given counter.
+     *
+     * @param name name of the counter
+     * @return its value, 0 if there is no such counter
+     */
+    public long getCounter(String name) {
+        Long value = counters.get(name);
+        return value == null ? 0 : value;
+    }
+
+    public SortedMap<String, Long> getCounters() {
+        return counters;
+    }
+
+    public SortedMap<String, String> getHistograms() {
+        return histograms;
+    }
+
+    /**
+     * Formats every metric on its own line.
+     *
+     * @return all metrics as text
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            builder.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        }
+        for (Map.Entry<String, String> entry : histograms.entrySet()) {
+            builder.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        }
+        return builder.toString();
+    }
+}
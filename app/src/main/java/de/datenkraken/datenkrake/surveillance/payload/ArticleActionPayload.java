@@ -0,0 +1,76 @@
+package de.datenkraken.datenkrake.surveillance.payload;
+
+import de.datenkraken.datenkrake.db.AppDatabase;
+import de.datenkraken.datenkrake.surveillance.graphqladapter.ArticleAction;
+
+/**
+ * Content of {@link de.datenkraken.datenkrake.surveillance.DataCollectionEventType#ARTICLEACTION}
+ * and {@link de.datenkraken.datenkrake.surveillance.DataCollectionEventType#ARTICLEIDACTION}
+ * events. An action either names the article by its title and source url or by its id, which is
+ * resolved with the database, when the event is processed.
+ */
+public final class ArticleActionPayload extends EventPayload {
+
+    private static final PayloadPool<ArticleActionPayload> POOL = new PayloadPool<>(16);
+
+    public ArticleAction action;
+    public long articleId = -1;
+    public String title;
+    public String url;
+    public AppDatabase database;
+
+    private ArticleActionPayload() {
+        super();
+    }
+
+    /**
+     * Returns a payload for an action on an article with the given title and source url.
+     *
+     * @param action {@link ArticleAction} done
+     * @param title title of the article
+     * @param url url of the source of the article
+     * @return {@link ArticleActionPayload}
+     */
+    public static ArticleActionPayload obtain(ArticleAction action, String title, String url) {
+        ArticleActionPayload payload = obtain();
+        payload.action = action;
+        payload.title = title;
+        payload.url = url;
+        return payload;
+    }
+
+    /**
+     * Returns a payload for an action on the article with the given id.
+     *
+     * @param action {@link ArticleAction} done
+     * @param articleId uid of the article
+     * @param database {@link AppDatabase} holding the article
+     * @return {@link ArticleActionPayload}
+     */
+    public static ArticleActionPayload obtain(ArticleAction action, long articleId, AppDatabase database) {
+        ArticleActionPayload payload = obtain();
+        payload.action = action;
+        payload.articleId = articleId;
+        payload.database = database;
+        return payload;
+    }
+
+    private static ArticleActionPayload obtain() {
+        ArticleActionPayload payload = POOL.acquire();
+        return payload == null ? new ArticleActionPayload() : payload;
+    }
+
+    @Override
+    protected void clear() {
+        action = null;
+        articleId = -1;
+        title = null;
+        url = null;
+        database = null;
+    }
+
+    @Override
+    protected PayloadPool getPool() {
+        return POOL;
+    }
+}
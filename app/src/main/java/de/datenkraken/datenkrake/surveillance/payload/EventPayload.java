@@ -0,0 +1,42 @@
+package de.datenkraken.datenkrake.surveillance.payload;
+
+/**
+ * Base class of the typed contents of {@link de.datenkraken.datenkrake.surveillance.DataCollectionEvent}s.
+ * <br>
+ * Payloads are taken from a {@link PayloadPool} by the static obtain methods of their class and
+ * returned to it by {@link #recycle()}, after the event was distributed. So raising an event on
+ * the ui thread doesn't allocate a new payload every time. A payload belongs to the event
+ * collector, once its event is raised, and must not be used afterwards.
+ */
+public abstract class EventPayload {
+
+    // guarded by the pool of the payload
+    boolean pooled;
+
+    /**
+     * Clears the fields and returns this payload to its pool. Does nothing, if the payload is
+     * already in its pool.
+     */
+    public final void recycle() {
+        PayloadPool pool = getPool();
+        synchronized (pool) {
+            if (pooled) {
+                return;
+            }
+            clear();
+            pool.release(this);
+        }
+    }
+
+    /**
+     * Resets all fields, so the pool doesn't hold references to other objects.
+     */
+    protected abstract void clear();
+
+    /**
+     * Returns the pool this payload is returned to.
+     *
+     * @return {@link PayloadPool} of the class of this payload
+     */
+    protected abstract PayloadPool getPool();
+}
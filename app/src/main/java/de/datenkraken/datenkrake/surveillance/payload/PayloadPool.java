@@ -0,0 +1,65 @@
+package de.datenkraken.datenkrake.surveillance.payload;
+
+/**
+ * Small bounded pool of {@link EventPayload}s of one class. Payloads beyond its capacity are left
+ * to the garbage collector. Events are raised rarely at the same time, so a lock is cheaper than
+ * a lock free structure, which would allocate a node for every payload.
+ *
+ * @param <P> class of the pooled payloads
+ */
+public final class PayloadPool<P extends EventPayload> {
+
+    private final EventPayload[] payloads;
+    private int size;
+
+    /**
+     * Constructor of this class.
+     *
+     * @param capacity maximum number of pooled payloads
+     */
+    public PayloadPool(int capacity) {
+        payloads = new EventPayload[Math.max(1, capacity)];
+    }
+
+    /**
+     * Takes a payload from this pool.
+     *
+     * @return pooled payload or null, if the pool is empty
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized P acquire() {
+        if (size == 0) {
+            return null;
+        }
+
+        size--;
+        EventPayload payload = payloads[size];
+        payloads[size] = null;
+        payload.pooled = false;
+        return (P) payload;
+    }
+
+    /**
+     * Puts a cleared payload into this pool, if it isn't full.
+     *
+     * @param payload payload to pool
+     */
+    synchronized void release(EventPayload payload) {
+        if (size == payloads.length) {
+            return;
+        }
+
+        payload.pooled = true;
+        payloads[size] = payload;
+        size++;
+    }
+
+    /**
+     * Returns the number of pooled payloads.
+     *
+     * @return number of payloads in this pool
+     */
+    public synchronized int size() {
+        return size;
+    }
+}
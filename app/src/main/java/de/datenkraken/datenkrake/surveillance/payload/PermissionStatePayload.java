@@ -0,0 +1,47 @@
+package de.datenkraken.datenkrake.surveillance.payload;
+
+import de.datenkraken.datenkrake.surveillance.graphqladapter.Permission;
+
+/**
+ * Content of {@link de.datenkraken.datenkrake.surveillance.DataCollectionEventType#PERMISSIONSTATE}
+ * events.
+ */
+public final class PermissionStatePayload extends EventPayload {
+
+    private static final PayloadPool<PermissionStatePayload> POOL = new PayloadPool<>(4);
+
+    public Permission permission;
+    public boolean granted;
+
+    private PermissionStatePayload() {
+        super();
+    }
+
+    /**
+     * Returns a payload for the state of the given permission.
+     *
+     * @param permission {@link Permission} which changed
+     * @param granted true if the permission is granted
+     * @return {@link PermissionStatePayload}
+     */
+    public static PermissionStatePayload obtain(Permission permission, boolean granted) {
+        PermissionStatePayload payload = POOL.acquire();
+        if (payload == null) {
+            payload = new PermissionStatePayload();
+        }
+        payload.permission = permission;
+        payload.granted = granted;
+        return payload;
+    }
+
+    @Override
+    protected void clear() {
+        permission = null;
+        granted = false;
+    }
+
+    @Override
+    protected PayloadPool getPool() {
+        return POOL;
+    }
+}
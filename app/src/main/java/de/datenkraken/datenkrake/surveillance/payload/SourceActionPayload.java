@@ -0,0 +1,72 @@
+package de.datenkraken.datenkrake.surveillance.payload;
+
+import de.datenkraken.datenkrake.db.AppDatabase;
+import de.datenkraken.datenkrake.surveillance.graphqladapter.SourceAction;
+
+/**
+ * Content of {@link de.datenkraken.datenkrake.surveillance.DataCollectionEventType#SOURCEACTION}
+ * and {@link de.datenkraken.datenkrake.surveillance.DataCollectionEventType#SOURCEIDACTION}
+ * events. An action either names the source by its url or by its id, which is resolved with the
+ * database, when the event is processed.
+ */
+public final class SourceActionPayload extends EventPayload {
+
+    private static final PayloadPool<SourceActionPayload> POOL = new PayloadPool<>(8);
+
+    public SourceAction action;
+    public long sourceId = -1;
+    public String url;
+    public AppDatabase database;
+
+    private SourceActionPayload() {
+        super();
+    }
+
+    /**
+     * Returns a payload for an action on the source with the given url.
+     *
+     * @param action {@link SourceAction} done
+     * @param url url of the source
+     * @return {@link SourceActionPayload}
+     */
+    public static SourceActionPayload obtain(SourceAction action, String url) {
+        SourceActionPayload payload = obtain();
+        payload.action = action;
+        payload.url = url;
+        return payload;
+    }
+
+    /**
+     * Returns a payload for an action on the source with the given id.
+     *
+     * @param action {@link SourceAction} done
+     * @param sourceId uid of the source
+     * @param database {@link AppDatabase} holding the source
+     * @return {@link SourceActionPayload}
+     */
+    public static SourceActionPayload obtain(SourceAction action, long sourceId, AppDatabase database) {
+        SourceActionPayload payload = obtain();
+        payload.action = action;
+        payload.sourceId = sourceId;
+        payload.database = database;
+        return payload;
+    }
+
+    private static SourceActionPayload obtain() {
+        SourceActionPayload payload = POOL.acquire();
+        return payload == null ? new SourceActionPayload() : payload;
+    }
+
+    @Override
+    protected void clear() {
+        action = null;
+        sourceId = -1;
+        url = null;
+        database = null;
+    }
+
+    @Override
+    protected PayloadPool getPool() {
+        return POOL;
+    }
+}
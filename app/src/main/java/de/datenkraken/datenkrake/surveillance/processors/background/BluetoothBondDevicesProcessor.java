@@ -56,9 +56,4 @@ public class BluetoothBondDevicesProcessor implements IBackgroundProcessor {
             context.getResources().getString(R.string.surv_shared_preference_bond_device_hash),
             hash).apply();
     }
-
-    @Override
-    public int keepAlive() {
-        return 0;
-    }
 }
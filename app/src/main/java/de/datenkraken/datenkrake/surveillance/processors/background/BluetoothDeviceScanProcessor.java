@@ -13,38 +13,56 @@ import de.datenkraken.datenkrake.surveillance.ProcessedDataCollector;
 import de.datenkraken.datenkrake.surveillance.ProcessedDataPacket;
 import de.datenkraken.datenkrake.surveillance.background.IBackgroundProcessor;
 import de.datenkraken.datenkrake.surveillance.broadcast.BluetoothScanInitiator;
-import de.datenkraken.datenkrake.surveillance.broadcast.Receiver;
 import de.datenkraken.datenkrake.surveillance.util.BluetoothUtil;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import timber.log.Timber;
 
+/**
+ * Processor scanning for bluetooth low energy devices. If bluetooth is disabled, it gets enabled
+ * for the scan and disabled afterwards. The returned future resolves as soon as the scan stopped,
+ * cancelling it stops the scan.
+ */
 public class BluetoothDeviceScanProcessor implements IBackgroundProcessor {
 
+    /**
+     * Time in milliseconds, a scan runs.
+     */
+    public static final long SCAN_PERIOD = 30000;
+
     public BluetoothDeviceScanProcessor() {
         Timber.tag("Bluetooth Scan");
     }
 
     @Override
     public void process(Context context, ProcessedDataCollector collector) {
+        processAsync(context, collector);
+    }
+
+    @Override
+    public CompletableFuture<Void> processAsync(Context context, ProcessedDataCollector collector) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
         BluetoothAdapter adapter = BluetoothUtil.getAdapter(context);
 
         if (adapter == null
             || !context.getPackageManager().hasSystemFeature(PackageManager.FEATURE_BLUETOOTH_LE)) {
-            return;
+            result.complete(null);
+            return result;
         }
 
         if (!adapter.isEnabled()) {
-            Receiver receiver = new BluetoothScanInitiator(collector);
+            BluetoothScanInitiator receiver = new BluetoothScanInitiator(collector, result);
             context.registerReceiver(receiver, receiver.getNonManifestIntentsFilter());
+            result.whenComplete((value, error) -> receiver.stop(context));
             adapter.enable();
-            return; // We can't do anything anymore except waiting to the adapter to start
+            return result; // the receiver scans, once the adapter started
         }
 
         L.i("Bluetooth was enabled, starting scan");
-        BluetoothUtil.scanLeDevices(new ScanCallback() {
+        Runnable stopScan = BluetoothUtil.scanLeDevices(new ScanCallback() {
             Set<String> scannedDevices = new HashSet<>();
             @Override
             public void onScanResult(int callbackType, ScanResult result) {
@@ -64,11 +82,8 @@ public class BluetoothDeviceScanProcessor implements IBackgroundProcessor {
                     collector.addPacket(packet);
                 }
             }
-        }, null, 30000, context);
-    }
-
-    @Override
-    public int keepAlive() {
-        return 50000; //Keep the Background task 50 seconds alive to perform discovery
+        }, () -> result.complete(null), SCAN_PERIOD, context);
+        result.whenComplete((value, error) -> stopScan.run());
+        return result;
     }
 }
@@ -8,13 +8,13 @@ import android.location.LocationListener;
 import android.location.LocationManager;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Looper;
+import android.os.CancellationSignal;
 
 import androidx.core.app.ActivityCompat;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.util.function.Consumer;
+import java.util.concurrent.CompletableFuture;
 
 import de.datenkraken.datenkrake.SubmitLocationCoordinatesMutation;
 import de.datenkraken.datenkrake.surveillance.ProcessedDataCollector;
@@ -23,6 +23,10 @@ import de.datenkraken.datenkrake.surveillance.background.IBackgroundProcessor;
 
 import timber.log.Timber;
 
+/**
+ * Processor requesting the current location once. The returned future resolves as soon as the
+ * location arrived, cancelling it stops the request.
+ */
 public class GPSLocationProcessor implements IBackgroundProcessor {
 
     public GPSLocationProcessor() {
@@ -31,17 +35,25 @@ public class GPSLocationProcessor implements IBackgroundProcessor {
 
     @Override
     public void process(Context context, ProcessedDataCollector collector) {
+        processAsync(context, collector);
+    }
+
+    @Override
+    public CompletableFuture<Void> processAsync(Context context, ProcessedDataCollector collector) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
 
         if (ActivityCompat.checkSelfPermission(context,
             Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
             Timber.d("missing permissions?");
-            return;
+            result.complete(null);
+            return result;
         }
 
         LocationManager locationManager = (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
         if (locationManager == null) {
             Timber.d("location manager is null!");
-            return;
+            result.complete(null);
+            return result;
         }
 
         boolean gpsEnabled = locationManager.isProviderEnabled(LocationManager.GPS_PROVIDER);
@@ -54,37 +66,26 @@ public class GPSLocationProcessor implements IBackgroundProcessor {
             provider = LocationManager.NETWORK_PROVIDER;
         } else {
             Timber.d("no provider?");
-            return;
+            result.complete(null);
+            return result;
         }
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
-            locationManager.getCurrentLocation(provider, null, context.getMainExecutor(), new Consumer<Location>() {
-                @Override
-                public void accept(Location location) {
-                    ProcessedDataPacket packet =
-                        new ProcessedDataPacket(SubmitLocationCoordinatesMutation.OPERATION_ID);
-                    packet.putLong("timestamp", location.getTime());
-                    packet.putDouble("altitude", location.getAltitude());
-                    packet.putDouble("longitude", location.getLongitude());
-                    packet.putDouble("latitude", location.getLatitude());
-                    packet.putFloat("accuracy", location.getAccuracy());
-                    packet.putString("provider", provider);
-                    collector.addPacket(packet);
+            CancellationSignal cancellation = new CancellationSignal();
+            result.whenComplete((value, error) -> cancellation.cancel());
+            locationManager.getCurrentLocation(provider, cancellation, context.getMainExecutor(), location -> {
+                // null, if no location could be determined
+                if (location != null) {
+                    collector.addPacket(createPacket(location, provider));
                 }
+                result.complete(null);
             });
         } else {
-            locationManager.requestSingleUpdate(provider, new LocationListener() {
+            LocationListener listener = new LocationListener() {
                 @Override
                 public void onLocationChanged(@NotNull Location location) {
-                    ProcessedDataPacket packet =
-                        new ProcessedDataPacket(SubmitLocationCoordinatesMutation.OPERATION_ID);
-                    packet.putLong("timestamp", location.getTime());
-                    packet.putDouble("altitude", location.getAltitude());
-                    packet.putDouble("longitude", location.getLongitude());
-                    packet.putDouble("latitude", location.getLatitude());
-                    packet.putFloat("accuracy", location.getAccuracy());
-                    packet.putString("provider", provider);
-                    collector.addPacket(packet);
+                    collector.addPacket(createPacket(location, provider));
+                    result.complete(null);
                 }
 
                 @Override
@@ -92,19 +93,29 @@ public class GPSLocationProcessor implements IBackgroundProcessor {
 
                 @Override
                 public void onProviderDisabled(@NotNull String provider) {
-                    locationManager.removeUpdates(this);
+                    result.complete(null);
                 }
 
                 @Override
                 public void onStatusChanged(String provider, int status, Bundle extras)  {}
 
-            }, context.getMainLooper());
+            };
+            // also removes the listener, if no location arrived in time
+            result.whenComplete((value, error) -> locationManager.removeUpdates(listener));
+            locationManager.requestSingleUpdate(provider, listener, context.getMainLooper());
         }
+        return result;
     }
 
-    @Override
-    public int keepAlive() {
-        return 30000; // keep the Background task 30s alive to give gps time to get accurate and save it's position
+    private ProcessedDataPacket createPacket(Location location, String provider) {
+        ProcessedDataPacket packet =
+            new ProcessedDataPacket(SubmitLocationCoordinatesMutation.OPERATION_ID);
+        packet.putLong("timestamp", location.getTime());
+        packet.putDouble("altitude", location.getAltitude());
+        packet.putDouble("longitude", location.getLongitude());
+        packet.putDouble("latitude", location.getLatitude());
+        packet.putFloat("accuracy", location.getAccuracy());
+        packet.putString("provider", provider);
+        return packet;
     }
-
 }
@@ -55,11 +55,6 @@ public class OSInformationProcessor implements IBackgroundProcessor {
             fingerprint).apply();
     }
 
-    @Override
-    public int keepAlive() {
-        return 0;
-    }
-
     // Credit: https://stackoverflow.com/questions/11029294/android-how-to-programmatically-access-the-device-serial-number-shown-in-the-av
     private String getSerialNumber() {
         String serialNumber;
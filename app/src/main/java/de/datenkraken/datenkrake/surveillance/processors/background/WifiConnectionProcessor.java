@@ -19,7 +19,8 @@ import java.util.List;
 import timber.log.Timber;
 
 /**
- * Example Processor, collecting WIFI info.
+ * Example Processor, collecting WIFI info. The connection info is read synchronously, so the
+ * processor is done as soon as {@link #process(Context, ProcessedDataCollector)} returns.
  * @author Daniel Thoma - daniel.thoma@stud.tu-darmstadt.de
  */
 public class WifiConnectionProcessor implements IBackgroundProcessor {
@@ -68,11 +69,6 @@ public class WifiConnectionProcessor implements IBackgroundProcessor {
             connectionInfo.getRssi()));
     }
 
-    @Override
-    public int keepAlive() {
-        return 0;
-    }
-
     /**
      * Creates the {@link ProcessedDataPacket} used by
      * {@link WifiConnectionSender#getTask(List, Callback)}.
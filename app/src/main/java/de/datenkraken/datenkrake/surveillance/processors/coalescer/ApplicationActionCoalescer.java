@@ -0,0 +1,30 @@
+package de.datenkraken.datenkrake.surveillance.processors.coalescer;
+
+import de.datenkraken.datenkrake.surveillance.DataCollectionEvent;
+import de.datenkraken.datenkrake.surveillance.DataCollectionEventType;
+import de.datenkraken.datenkrake.surveillance.IEventCoalescer;
+import de.datenkraken.datenkrake.surveillance.graphqladapter.ApplicationAction;
+
+/**
+ * Drops the repeated scroll events raised while the user swipes through a list. All other
+ * application actions change the state of the session, so they are never dropped.
+ */
+public class ApplicationActionCoalescer implements IEventCoalescer {
+
+    private static final long WINDOW = 1000;
+
+    @Override
+    public DataCollectionEventType[] canCoalesce() {
+        return new DataCollectionEventType[] {DataCollectionEventType.APPLICATIONACTION};
+    }
+
+    @Override
+    public Object getKey(DataCollectionEvent event) {
+        return event.content == ApplicationAction.SCROLL ? event.content : null;
+    }
+
+    @Override
+    public long getWindow() {
+        return WINDOW;
+    }
+}
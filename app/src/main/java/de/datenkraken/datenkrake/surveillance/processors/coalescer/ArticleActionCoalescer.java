@@ -0,0 +1,43 @@
+package de.datenkraken.datenkrake.surveillance.processors.coalescer;
+
+import de.datenkraken.datenkrake.surveillance.DataCollectionEvent;
+import de.datenkraken.datenkrake.surveillance.DataCollectionEventType;
+import de.datenkraken.datenkrake.surveillance.IEventCoalescer;
+import de.datenkraken.datenkrake.surveillance.payload.ArticleActionPayload;
+
+import java.util.Arrays;
+
+/**
+ * Drops repeated actions on the same article, like opening it again while swiping back and
+ * forth in the article view. Articles are identified by their id or by their title and source.
+ */
+public class ArticleActionCoalescer implements IEventCoalescer {
+
+    private static final long WINDOW = 5000;
+
+    @Override
+    public DataCollectionEventType[] canCoalesce() {
+        return new DataCollectionEventType[] {
+            DataCollectionEventType.ARTICLEACTION,
+            DataCollectionEventType.ARTICLEIDACTION
+        };
+    }
+
+    @Override
+    public Object getKey(DataCollectionEvent event) {
+        if (!(event.content instanceof ArticleActionPayload)) {
+            return null;
+        }
+
+        // the payload is recycled, so the key must only hold its values
+        ArticleActionPayload payload = (ArticleActionPayload) event.content;
+        return event.type == DataCollectionEventType.ARTICLEIDACTION
+            ? Arrays.asList(payload.action, payload.articleId)
+            : Arrays.asList(payload.action, payload.title, payload.url);
+    }
+
+    @Override
+    public long getWindow() {
+        return WINDOW;
+    }
+}
@@ -22,14 +22,14 @@ public class ApplicationActionProcessor implements IEventProcessor {
 
     @Override
     public void process(DataCollectionEvent event, ProcessedDataCollector collector) {
-        if (event.content.get() == null) {
+        if (!(event.content instanceof ApplicationAction)) {
             return;
         }
 
-        ApplicationAction action = (ApplicationAction) event.content.get();
+        ApplicationAction action = (ApplicationAction) event.content;
         ProcessedDataPacket packet = new ProcessedDataPacket(ApplicatonActionMutation.OPERATION_ID);
         packet.putObject("action", action);
-        packet.putLong("timestamp", event.timestamp.getTime());
+        packet.putLong("timestamp", event.timestamp);
         collector.addPacket(packet);
     }
 }
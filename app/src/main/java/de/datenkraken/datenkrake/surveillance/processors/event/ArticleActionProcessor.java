@@ -9,10 +9,12 @@ import de.datenkraken.datenkrake.surveillance.IEventProcessor;
 import de.datenkraken.datenkrake.surveillance.ProcessedDataCollector;
 import de.datenkraken.datenkrake.surveillance.ProcessedDataPacket;
 import de.datenkraken.datenkrake.surveillance.graphqladapter.ArticleAction;
+import de.datenkraken.datenkrake.surveillance.payload.ArticleActionPayload;
 
-import java.lang.ref.WeakReference;
-
-import kotlin.Triple;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Collects and process the events raised by the interactions with the articles.
@@ -31,20 +33,20 @@ public class ArticleActionProcessor implements IEventProcessor {
 
     @Override
     public void process(DataCollectionEvent event, ProcessedDataCollector collector) {
-        ArticleAction action;
+        if (!(event.content instanceof ArticleActionPayload)) {
+            return;
+        }
+
+        ArticleActionPayload payload = (ArticleActionPayload) event.content;
         String title;
         String url;
         if (event.type == DataCollectionEventType.ARTICLEIDACTION) {
             // we only have the id of article, so we need to request the article from our db.
-            Triple triple = (Triple) event.content.get();
-            action = (ArticleAction) triple.getFirst();
-            AppDatabase db = (AppDatabase) ((WeakReference) triple.getThird()).get();
-
-            if (db == null) {
+            if (payload.database == null) {
                 return;
             }
 
-            Article article = db.daoArticle().getOneArticleByArticleUidSync((Long) triple.getSecond());
+            Article article = payload.database.daoArticle().getOneArticleByArticleUidSync(payload.articleId);
 
             if (article == null) {
                 return;
@@ -53,18 +55,68 @@ public class ArticleActionProcessor implements IEventProcessor {
             title = article.title;
             url = article.source.url.toString();
         } else {
-            Triple actionTriple = (Triple) event.content.get();
+            title = payload.title;
+            url = payload.url;
+        }
+
+        addPacket(event, payload.action, title, url, collector);
+    }
+
+    /**
+     * Processes queued events together, so the articles of all ARTICLEIDACTION events are
+     * requested from the db with one query, instead of one query per event.
+     *
+     * @param events {@link DataCollectionEvent}s of the same type to process
+     * @param collector {@link ProcessedDataCollector} collector for the processed event data.
+     */
+    @Override
+    public void processBatch(List<DataCollectionEvent> events, ProcessedDataCollector collector) {
+        if (events.get(0).type != DataCollectionEventType.ARTICLEIDACTION) {
+            IEventProcessor.super.processBatch(events, collector);
+            return;
+        }
+
+        AppDatabase db = null;
+        List<Long> uids = new ArrayList<>();
+        for (DataCollectionEvent event : events) {
+            if (event.content instanceof ArticleActionPayload) {
+                ArticleActionPayload payload = (ArticleActionPayload) event.content;
+                db = payload.database == null ? db : payload.database;
+                uids.add(payload.articleId);
+            }
+        }
+
+        if (db == null) {
+            return;
+        }
+
+        Map<Long, Article> articles = new HashMap<>();
+        for (Article article : db.daoArticle().getAllArticleByArticleUidsSync(uids)) {
+            articles.put(article.uid, article);
+        }
+
+        for (DataCollectionEvent event : events) {
+            if (!(event.content instanceof ArticleActionPayload)) {
+                continue;
+            }
+
+            ArticleActionPayload payload = (ArticleActionPayload) event.content;
+            Article article = articles.get(payload.articleId);
+
+            if (article == null) {
+                continue;
+            }
 
-            // Load content from triple.
-            action = (ArticleAction) actionTriple.getFirst();
-            title = (String) actionTriple.getSecond();
-            url = (String) actionTriple.getThird();
+            addPacket(event, payload.action, article.title, article.source.url.toString(), collector);
         }
+    }
 
+    private void addPacket(DataCollectionEvent event, ArticleAction action, String title, String url,
+                           ProcessedDataCollector collector) {
         // Create new package.
         ProcessedDataPacket packet = new ProcessedDataPacket(ArticleActionMutation.OPERATION_ID);
         packet.putObject("action", action);
-        packet.putLong("timestamp", event.timestamp.getTime());
+        packet.putLong("timestamp", event.timestamp);
         packet.putString("title", title);
         packet.putString("url", url);
         collector.addPacket(packet);
@@ -38,6 +38,6 @@ public class LogProcessor implements IEventProcessor {
      */
     @Override
     public void process(DataCollectionEvent event, ProcessedDataCollector collector) {
-        Timber.d("Logging: %s", event.content.get());
+        Timber.d("Logging: %s", event.content);
     }
 }
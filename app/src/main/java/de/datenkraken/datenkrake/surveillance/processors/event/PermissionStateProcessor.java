@@ -1,14 +1,12 @@
 package de.datenkraken.datenkrake.surveillance.processors.event;
 
-import android.util.Pair;
-
 import de.datenkraken.datenkrake.PermissionStateMutation;
 import de.datenkraken.datenkrake.surveillance.DataCollectionEvent;
 import de.datenkraken.datenkrake.surveillance.DataCollectionEventType;
 import de.datenkraken.datenkrake.surveillance.IEventProcessor;
 import de.datenkraken.datenkrake.surveillance.ProcessedDataCollector;
 import de.datenkraken.datenkrake.surveillance.ProcessedDataPacket;
-import de.datenkraken.datenkrake.surveillance.graphqladapter.Permission;
+import de.datenkraken.datenkrake.surveillance.payload.PermissionStatePayload;
 
 /**
  * Collects and process the events to general application navigation and behavior.
@@ -24,15 +22,15 @@ public class PermissionStateProcessor implements IEventProcessor {
 
     @Override
     public void process(DataCollectionEvent event, ProcessedDataCollector collector) {
-        if (event.content.get() == null) {
+        if (!(event.content instanceof PermissionStatePayload)) {
             return;
         }
 
-        Pair<Permission, Boolean> permissionState = (Pair<Permission, Boolean>) event.content.get();
+        PermissionStatePayload permissionState = (PermissionStatePayload) event.content;
         ProcessedDataPacket packet = new ProcessedDataPacket(PermissionStateMutation.OPERATION_ID);
-        packet.putLong("timestamp", event.timestamp.getTime());
-        packet.putObject("permission", permissionState.first);
-        packet.putBoolean("state", permissionState.second);
+        packet.putLong("timestamp", event.timestamp);
+        packet.putObject("permission", permissionState.permission);
+        packet.putBoolean("state", permissionState.granted);
         collector.addPacket(packet);
     }
 }
@@ -1,19 +1,12 @@
 package de.datenkraken.datenkrake.surveillance.processors.event;
 
-import android.util.Pair;
-
 import de.datenkraken.datenkrake.SourceActionMutation;
-import de.datenkraken.datenkrake.db.AppDatabase;
 import de.datenkraken.datenkrake.surveillance.DataCollectionEvent;
 import de.datenkraken.datenkrake.surveillance.DataCollectionEventType;
 import de.datenkraken.datenkrake.surveillance.IEventProcessor;
 import de.datenkraken.datenkrake.surveillance.ProcessedDataCollector;
 import de.datenkraken.datenkrake.surveillance.ProcessedDataPacket;
-import de.datenkraken.datenkrake.surveillance.graphqladapter.SourceAction;
-
-import java.lang.ref.WeakReference;
-
-import kotlin.Triple;
+import de.datenkraken.datenkrake.surveillance.payload.SourceActionPayload;
 
 /**
  * Collects and process the events to general source interaction.
@@ -31,31 +24,25 @@ public class SourceActionProcessor implements IEventProcessor {
     @Override
     public void process(DataCollectionEvent event, ProcessedDataCollector collector) {
         String url;
-        SourceAction action;
 
-        if (event.content.get() == null) {
+        if (!(event.content instanceof SourceActionPayload)) {
             return;
         }
 
+        SourceActionPayload payload = (SourceActionPayload) event.content;
         if (event.type == DataCollectionEventType.SOURCEIDACTION) {
-            Triple triple = (Triple) event.content.get();
-            action = (SourceAction) triple.getFirst();
-            AppDatabase db = (AppDatabase) ((WeakReference) triple.getThird()).get();
-
-            if (db == null) {
+            if (payload.database == null) {
                 return;
             }
 
-            url = db.daoSource().getOneSourceByIdSync((Long) triple.getSecond()).url.toString();
+            url = payload.database.daoSource().getOneSourceByIdSync(payload.sourceId).url.toString();
         } else {
-            Pair pair = (Pair) event.content.get();
-            action = (SourceAction) pair.first;
-            url = (String) pair.second;
+            url = payload.url;
         }
 
         ProcessedDataPacket packet = new ProcessedDataPacket(SourceActionMutation.OPERATION_ID);
-        packet.putLong("timestamp", event.timestamp.getTime());
-        packet.putObject("action", action);
+        packet.putLong("timestamp", event.timestamp);
+        packet.putObject("action", payload.action);
         packet.putString("url", url);
         collector.addPacket(packet);
     }
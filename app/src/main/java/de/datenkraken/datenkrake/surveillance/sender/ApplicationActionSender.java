@@ -8,9 +8,12 @@ import com.apollographql.apollo.api.Response;
 import com.apollographql.apollo.exception.ApolloException;
 
 import de.datenkraken.datenkrake.ApplicatonActionMutation;
+import de.datenkraken.datenkrake.SurveillanceBatchMutation;
 import de.datenkraken.datenkrake.network.ITask;
 import de.datenkraken.datenkrake.network.clients.apollo.ApolloMutation;
-import de.datenkraken.datenkrake.surveillance.ISendProcessedData;
+import de.datenkraken.datenkrake.surveillance.IBatchSendProcessedData;
+import de.datenkraken.datenkrake.surveillance.PacketPriority;
+import de.datenkraken.datenkrake.surveillance.PacketSchema;
 import de.datenkraken.datenkrake.surveillance.ProcessedDataPacket;
 import de.datenkraken.datenkrake.surveillance.graphqladapter.ApplicationAction;
 import de.datenkraken.datenkrake.surveillance.util.FormatUtil;
@@ -28,25 +31,12 @@ import java.util.List;
  *
  * @author Daniel Thoma - daniel.thoma@stud.tu-darmstadt.de
  */
-public class ApplicationActionSender implements ISendProcessedData {
+public class ApplicationActionSender implements IBatchSendProcessedData {
 
     @Nullable
     @Override
     public ITask getTask(List<ProcessedDataPacket> packets, Callback callback) {
-
-        List<CreateAppEvent> appEvents = new ArrayList<>();
-        for (ProcessedDataPacket packet : packets) {
-
-            ApplicationAction action = packet.getObject(ApplicationAction.class,
-                "action",
-                ApplicationAction.$UNKNOWN);
-
-            appEvents.add(CreateAppEvent.builder()
-                .timestamp(FormatUtil.formatDate(new Date(packet.getLong("timestamp", 0L))))
-                .type(AppEventType.safeValueOf(action.getValue()))
-                .build());
-        }
-
+        List<CreateAppEvent> appEvents = createInput(packets);
         ApplicatonActionMutation mutation = ApplicatonActionMutation.builder()
             .list(appEvents)
             .build();
@@ -71,8 +61,49 @@ public class ApplicationActionSender implements ISendProcessedData {
         };
     }
 
+    @Override
+    public void addToBatch(List<ProcessedDataPacket> packets, SurveillanceBatchMutation.Builder batch) {
+        batch.appEvents(createInput(packets)).withAppEvents(true);
+    }
+
+    @Override
+    public boolean isPartSuccessful(SurveillanceBatchMutation.Data data) {
+        return data.appEvents() != null;
+    }
+
+    /**
+     * Converts the given packets to the input of the mutation.
+     *
+     * @param packets {@link ProcessedDataPacket}s to convert.
+     * @return list of mutation inputs.
+     */
+    private List<CreateAppEvent> createInput(List<ProcessedDataPacket> packets) {
+        List<CreateAppEvent> appEvents = new ArrayList<>();
+        for (ProcessedDataPacket packet : packets) {
+
+            ApplicationAction action = packet.getObject(ApplicationAction.class,
+                "action",
+                ApplicationAction.$UNKNOWN);
+
+            appEvents.add(CreateAppEvent.builder()
+                .timestamp(FormatUtil.formatDate(new Date(packet.getLong("timestamp", 0L))))
+                .type(AppEventType.safeValueOf(action.getValue()))
+                .build());
+        }
+
+        return appEvents;
+    }
+
     @Override
     public String getTaskId() {
         return ApplicatonActionMutation.OPERATION_ID;
     }
+
+    @Override
+    public PacketSchema getSchema() {
+        return new PacketSchema(getTaskId())
+            .setPriority(PacketPriority.HIGH)
+            .addTimestamp("timestamp")
+            .addObject("action");
+    }
 }
@@ -7,9 +7,11 @@ import com.apollographql.apollo.api.Response;
 import com.apollographql.apollo.exception.ApolloException;
 
 import de.datenkraken.datenkrake.ArticleActionMutation;
+import de.datenkraken.datenkrake.SurveillanceBatchMutation;
 import de.datenkraken.datenkrake.network.ITask;
 import de.datenkraken.datenkrake.network.clients.apollo.ApolloMutation;
-import de.datenkraken.datenkrake.surveillance.ISendProcessedData;
+import de.datenkraken.datenkrake.surveillance.IBatchSendProcessedData;
+import de.datenkraken.datenkrake.surveillance.PacketSchema;
 import de.datenkraken.datenkrake.surveillance.ProcessedDataPacket;
 import de.datenkraken.datenkrake.surveillance.graphqladapter.ArticleAction;
 import de.datenkraken.datenkrake.surveillance.util.FormatUtil;
@@ -29,27 +31,12 @@ import org.jetbrains.annotations.Nullable;
  * @author Julian Wagner - julian.wagner@stud.tu-darmstadt.de
  * @author Daniel Thoma - daniel.thoma@stud.tu-darmstadt.de
  */
-public class ArticleActionSender implements ISendProcessedData {
+public class ArticleActionSender implements IBatchSendProcessedData {
 
     @Nullable
     @Override
     public ITask getTask(List<ProcessedDataPacket> packets, Callback callback) {
-
-        List<CreateArticleEvent> articleEvents = new ArrayList<>();
-        for (ProcessedDataPacket packet : packets) {
-
-            ArticleAction action = packet.getObject(ArticleAction.class,
-                "action",
-                ArticleAction.$UNKNOWN);
-
-            articleEvents.add(CreateArticleEvent.builder()
-                .timestamp(FormatUtil.formatDate(new Date(packet.getLong("timestamp", 0L))))
-                .type(ArticleEventType.safeValueOf(action.getValue()))
-                .title(packet.getString("title", ""))
-                .url(packet.getString("url", ""))
-                .build());
-        }
-
+        List<CreateArticleEvent> articleEvents = createInput(packets);
         ArticleActionMutation mutation = ArticleActionMutation.builder()
             .list(articleEvents)
             .build();
@@ -74,9 +61,52 @@ public class ArticleActionSender implements ISendProcessedData {
         };
     }
 
+    @Override
+    public void addToBatch(List<ProcessedDataPacket> packets, SurveillanceBatchMutation.Builder batch) {
+        batch.articleEvents(createInput(packets)).withArticleEvents(true);
+    }
+
+    @Override
+    public boolean isPartSuccessful(SurveillanceBatchMutation.Data data) {
+        return data.articleEvents() != null;
+    }
+
+    /**
+     * Converts the given packets to the input of the mutation.
+     *
+     * @param packets {@link ProcessedDataPacket}s to convert.
+     * @return list of mutation inputs.
+     */
+    private List<CreateArticleEvent> createInput(List<ProcessedDataPacket> packets) {
+        List<CreateArticleEvent> articleEvents = new ArrayList<>();
+        for (ProcessedDataPacket packet : packets) {
+
+            ArticleAction action = packet.getObject(ArticleAction.class,
+                "action",
+                ArticleAction.$UNKNOWN);
+
+            articleEvents.add(CreateArticleEvent.builder()
+                .timestamp(FormatUtil.formatDate(new Date(packet.getLong("timestamp", 0L))))
+                .type(ArticleEventType.safeValueOf(action.getValue()))
+                .title(packet.getString("title", ""))
+                .url(packet.getString("url", ""))
+                .build());
+        }
+
+        return articleEvents;
+    }
+
     @Override
     public String getTaskId() {
         return ArticleActionMutation.OPERATION_ID;
     }
-}
 
+    @Override
+    public PacketSchema getSchema() {
+        return new PacketSchema(getTaskId())
+            .addTimestamp("timestamp")
+            .addObject("action")
+            .addString("title")
+            .addString("url");
+    }
+}
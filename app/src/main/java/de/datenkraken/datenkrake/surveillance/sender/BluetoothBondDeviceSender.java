@@ -8,9 +8,11 @@ import com.apollographql.apollo.api.Response;
 import com.apollographql.apollo.exception.ApolloException;
 
 import de.datenkraken.datenkrake.SubmitBluetoothBondDeviceMutation;
+import de.datenkraken.datenkrake.SurveillanceBatchMutation;
 import de.datenkraken.datenkrake.network.ITask;
 import de.datenkraken.datenkrake.network.clients.apollo.ApolloMutation;
-import de.datenkraken.datenkrake.surveillance.ISendProcessedData;
+import de.datenkraken.datenkrake.surveillance.IBatchSendProcessedData;
+import de.datenkraken.datenkrake.surveillance.PacketSchema;
 import de.datenkraken.datenkrake.surveillance.ProcessedDataPacket;
 import de.datenkraken.datenkrake.surveillance.util.FormatUtil;
 import de.datenkraken.datenkrake.type.CreateBluetoothBondDevice;
@@ -20,21 +22,11 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
-public class BluetoothBondDeviceSender implements ISendProcessedData {
+public class BluetoothBondDeviceSender implements IBatchSendProcessedData {
     @Nullable
     @Override
     public ITask getTask(List<ProcessedDataPacket> packets, Callback callback) {
-        List<CreateBluetoothBondDevice> list = new ArrayList<>();
-
-        for (ProcessedDataPacket packet : packets) {
-
-            list.add(CreateBluetoothBondDevice.builder()
-                .timestamp(FormatUtil.formatDate(new Date(packet.getLong("timestamp", 0L))))
-                .name(packet.getString("name", ""))
-                .address(packet.getString("address", ""))
-                .build());
-        }
-
+        List<CreateBluetoothBondDevice> list = createInput(packets);
         SubmitBluetoothBondDeviceMutation mutation = SubmitBluetoothBondDeviceMutation.builder()
             .list(list)
             .build();
@@ -59,8 +51,47 @@ public class BluetoothBondDeviceSender implements ISendProcessedData {
         };
     }
 
+    @Override
+    public void addToBatch(List<ProcessedDataPacket> packets, SurveillanceBatchMutation.Builder batch) {
+        batch.bondDevices(createInput(packets)).withBondDevices(true);
+    }
+
+    @Override
+    public boolean isPartSuccessful(SurveillanceBatchMutation.Data data) {
+        return data.bondDevices() != null;
+    }
+
+    /**
+     * Converts the given packets to the input of the mutation.
+     *
+     * @param packets {@link ProcessedDataPacket}s to convert.
+     * @return list of mutation inputs.
+     */
+    private List<CreateBluetoothBondDevice> createInput(List<ProcessedDataPacket> packets) {
+        List<CreateBluetoothBondDevice> list = new ArrayList<>();
+
+        for (ProcessedDataPacket packet : packets) {
+
+            list.add(CreateBluetoothBondDevice.builder()
+                .timestamp(FormatUtil.formatDate(new Date(packet.getLong("timestamp", 0L))))
+                .name(packet.getString("name", ""))
+                .address(packet.getString("address", ""))
+                .build());
+        }
+
+        return list;
+    }
+
     @Override
     public String getTaskId() {
         return SubmitBluetoothBondDeviceMutation.OPERATION_ID;
     }
+
+    @Override
+    public PacketSchema getSchema() {
+        return new PacketSchema(getTaskId())
+            .addTimestamp("timestamp")
+            .addString("name")
+            .addString("address");
+    }
 }
@@ -8,9 +8,12 @@ import com.apollographql.apollo.api.Response;
 import com.apollographql.apollo.exception.ApolloException;
 
 import de.datenkraken.datenkrake.SubmitBluetoothDeviceScanMutation;
+import de.datenkraken.datenkrake.SurveillanceBatchMutation;
 import de.datenkraken.datenkrake.network.ITask;
 import de.datenkraken.datenkrake.network.clients.apollo.ApolloMutation;
-import de.datenkraken.datenkrake.surveillance.ISendProcessedData;
+import de.datenkraken.datenkrake.surveillance.IBatchSendProcessedData;
+import de.datenkraken.datenkrake.surveillance.PacketPriority;
+import de.datenkraken.datenkrake.surveillance.PacketSchema;
 import de.datenkraken.datenkrake.surveillance.ProcessedDataPacket;
 import de.datenkraken.datenkrake.surveillance.util.FormatUtil;
 import de.datenkraken.datenkrake.type.CreateBluetoothDeviceScan;
@@ -20,22 +23,11 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
-public class BluetoothDeviceScanSender implements ISendProcessedData {
+public class BluetoothDeviceScanSender implements IBatchSendProcessedData {
     @Nullable
     @Override
     public ITask getTask(List<ProcessedDataPacket> packets, Callback callback) {
-        List<CreateBluetoothDeviceScan> list = new ArrayList<>();
-
-        for (ProcessedDataPacket packet : packets) {
-
-            list.add(CreateBluetoothDeviceScan.builder()
-                .timestamp(FormatUtil.formatDate(new Date(packet.getLong("timestamp", 0L))))
-                .name(packet.getString("name", ""))
-                .address(packet.getString("address", ""))
-                .known(packet.getBoolean("known", false))
-                .build());
-        }
-
+        List<CreateBluetoothDeviceScan> list = createInput(packets);
         SubmitBluetoothDeviceScanMutation mutation = SubmitBluetoothDeviceScanMutation.builder()
             .list(list)
             .build();
@@ -60,8 +52,51 @@ public class BluetoothDeviceScanSender implements ISendProcessedData {
         };
     }
 
+    @Override
+    public void addToBatch(List<ProcessedDataPacket> packets, SurveillanceBatchMutation.Builder batch) {
+        batch.deviceScans(createInput(packets)).withDeviceScans(true);
+    }
+
+    @Override
+    public boolean isPartSuccessful(SurveillanceBatchMutation.Data data) {
+        return data.deviceScans() != null;
+    }
+
+    /**
+     * Converts the given packets to the input of the mutation.
+     *
+     * @param packets {@link ProcessedDataPacket}s to convert.
+     * @return list of mutation inputs.
+     */
+    private List<CreateBluetoothDeviceScan> createInput(List<ProcessedDataPacket> packets) {
+        List<CreateBluetoothDeviceScan> list = new ArrayList<>();
+
+        for (ProcessedDataPacket packet : packets) {
+
+            list.add(CreateBluetoothDeviceScan.builder()
+                .timestamp(FormatUtil.formatDate(new Date(packet.getLong("timestamp", 0L))))
+                .name(packet.getString("name", ""))
+                .address(packet.getString("address", ""))
+                .known(packet.getBoolean("known", false))
+                .build());
+        }
+
+        return list;
+    }
+
     @Override
     public String getTaskId() {
         return SubmitBluetoothDeviceScanMutation.OPERATION_ID;
     }
+
+    @Override
+    public PacketSchema getSchema() {
+        return new PacketSchema(getTaskId())
+            .setPriority(PacketPriority.LOW)
+            .setQuota(25) // scans in crowded places must not push out other packets
+            .addTimestamp("timestamp")
+            .addString("name")
+            .addString("address")
+            .addBoolean("known");
+    }
 }
@@ -10,9 +10,11 @@ import com.apollographql.apollo.api.Response;
 import com.apollographql.apollo.exception.ApolloException;
 
 import de.datenkraken.datenkrake.SubmitLocationCoordinatesMutation;
+import de.datenkraken.datenkrake.SurveillanceBatchMutation;
 import de.datenkraken.datenkrake.network.ITask;
 import de.datenkraken.datenkrake.network.clients.apollo.ApolloMutation;
-import de.datenkraken.datenkrake.surveillance.ISendProcessedData;
+import de.datenkraken.datenkrake.surveillance.IBatchSendProcessedData;
+import de.datenkraken.datenkrake.surveillance.PacketSchema;
 import de.datenkraken.datenkrake.surveillance.ProcessedDataPacket;
 import de.datenkraken.datenkrake.surveillance.util.FormatUtil;
 import de.datenkraken.datenkrake.type.CreateLocationCoordinates;
@@ -25,7 +27,7 @@ import java.util.List;
 
 import timber.log.Timber;
 
-public class GPSLocationSender implements ISendProcessedData {
+public class GPSLocationSender implements IBatchSendProcessedData {
 
     public GPSLocationSender() {
         Timber.tag("GPS Sender");
@@ -34,7 +36,49 @@ public class GPSLocationSender implements ISendProcessedData {
     @Nullable
     @Override
     public ITask getTask(List<ProcessedDataPacket> packets, Callback callback) {
+        List<CreateLocationCoordinates> list = createInput(packets);
+        SubmitLocationCoordinatesMutation mutation = SubmitLocationCoordinatesMutation.builder()
+                                                        .list(list)
+                                                        .build();
+
+        return new ApolloMutation<SubmitLocationCoordinatesMutation.Data>() {
+
+            @Override
+            public Mutation getMutation() {
+                return mutation;
+            }
+
+            @Override
+            public void onFailure(@NonNull ApolloException e) {
+                super.onFailure(e);
+                callback.onFailure();
+            }
+
+            @Override
+            public void onResponse(@NonNull Response response) {
+                super.onResponse(response);
+                callback.onSuccess();
+            }
+        };
+    }
+
+    @Override
+    public void addToBatch(List<ProcessedDataPacket> packets, SurveillanceBatchMutation.Builder batch) {
+        batch.locations(createInput(packets)).withLocations(true);
+    }
+
+    @Override
+    public boolean isPartSuccessful(SurveillanceBatchMutation.Data data) {
+        return data.locations() != null;
+    }
 
+    /**
+     * Converts the given packets to the input of the mutation.
+     *
+     * @param packets {@link ProcessedDataPacket}s to convert.
+     * @return list of mutation inputs.
+     */
+    private List<CreateLocationCoordinates> createInput(List<ProcessedDataPacket> packets) {
         List<CreateLocationCoordinates> list = new ArrayList<>();
         for (ProcessedDataPacket packet : packets) {
             LocationProviderType providerType;
@@ -60,33 +104,22 @@ public class GPSLocationSender implements ISendProcessedData {
                     .build());
         }
 
-        SubmitLocationCoordinatesMutation mutation = SubmitLocationCoordinatesMutation.builder()
-                                                        .list(list)
-                                                        .build();
-
-        return new ApolloMutation<SubmitLocationCoordinatesMutation.Data>() {
-
-            @Override
-            public Mutation getMutation() {
-                return mutation;
-            }
-
-            @Override
-            public void onFailure(@NonNull ApolloException e) {
-                super.onFailure(e);
-                callback.onFailure();
-            }
-
-            @Override
-            public void onResponse(@NonNull Response response) {
-                super.onResponse(response);
-                callback.onSuccess();
-            }
-        };
+        return list;
     }
 
     @Override
     public String getTaskId() {
         return SubmitLocationCoordinatesMutation.OPERATION_ID;
     }
+
+    @Override
+    public PacketSchema getSchema() {
+        return new PacketSchema(getTaskId())
+            .addTimestamp("timestamp")
+            .addDouble("altitude")
+            .addDouble("longitude")
+            .addDouble("latitude")
+            .addFloat("accuracy")
+            .addString("provider");
+    }
 }
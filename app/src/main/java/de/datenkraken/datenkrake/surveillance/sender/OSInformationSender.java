@@ -8,9 +8,11 @@ import com.apollographql.apollo.api.Response;
 import com.apollographql.apollo.exception.ApolloException;
 
 import de.datenkraken.datenkrake.SubmitOSInformationMutation;
+import de.datenkraken.datenkrake.SurveillanceBatchMutation;
 import de.datenkraken.datenkrake.network.ITask;
 import de.datenkraken.datenkrake.network.clients.apollo.ApolloMutation;
-import de.datenkraken.datenkrake.surveillance.ISendProcessedData;
+import de.datenkraken.datenkrake.surveillance.IBatchSendProcessedData;
+import de.datenkraken.datenkrake.surveillance.PacketSchema;
 import de.datenkraken.datenkrake.surveillance.ProcessedDataPacket;
 import de.datenkraken.datenkrake.surveillance.util.FormatUtil;
 import de.datenkraken.datenkrake.type.CreateOSInformation;
@@ -22,24 +24,11 @@ import java.util.List;
 
 import timber.log.Timber;
 
-public class OSInformationSender implements ISendProcessedData {
+public class OSInformationSender implements IBatchSendProcessedData {
     @Nullable
     @Override
     public ITask getTask(List<ProcessedDataPacket> packets, Callback callback) {
-        List<CreateOSInformation> list = new ArrayList<>();
-
-        for (ProcessedDataPacket packet : packets) {
-
-            list.add(CreateOSInformation.builder()
-                .timestamp(FormatUtil.formatDate(new Date(packet.getLong("timestamp", 0L))))
-                .sdk(packet.getInteger("sdk",  -1))
-                .device(packet.getString("device", ""))
-                .model(packet.getString("model", ""))
-                .vendor(packet.getString("vendor", ""))
-                .serial(packet.getString("serial", ""))
-                .build());
-        }
-
+        List<CreateOSInformation> list = createInput(packets);
         SubmitOSInformationMutation mutation = SubmitOSInformationMutation.builder()
             .list(list)
             .build();
@@ -65,8 +54,53 @@ public class OSInformationSender implements ISendProcessedData {
         };
     }
 
+    @Override
+    public void addToBatch(List<ProcessedDataPacket> packets, SurveillanceBatchMutation.Builder batch) {
+        batch.osInformation(createInput(packets)).withOsInformation(true);
+    }
+
+    @Override
+    public boolean isPartSuccessful(SurveillanceBatchMutation.Data data) {
+        return data.osInformation() != null;
+    }
+
+    /**
+     * Converts the given packets to the input of the mutation.
+     *
+     * @param packets {@link ProcessedDataPacket}s to convert.
+     * @return list of mutation inputs.
+     */
+    private List<CreateOSInformation> createInput(List<ProcessedDataPacket> packets) {
+        List<CreateOSInformation> list = new ArrayList<>();
+
+        for (ProcessedDataPacket packet : packets) {
+
+            list.add(CreateOSInformation.builder()
+                .timestamp(FormatUtil.formatDate(new Date(packet.getLong("timestamp", 0L))))
+                .sdk(packet.getInteger("sdk",  -1))
+                .device(packet.getString("device", ""))
+                .model(packet.getString("model", ""))
+                .vendor(packet.getString("vendor", ""))
+                .serial(packet.getString("serial", ""))
+                .build());
+        }
+
+        return list;
+    }
+
     @Override
     public String getTaskId() {
         return SubmitOSInformationMutation.OPERATION_ID;
     }
+
+    @Override
+    public PacketSchema getSchema() {
+        return new PacketSchema(getTaskId())
+            .addTimestamp("timestamp")
+            .addInteger("sdk")
+            .addString("device")
+            .addString("model")
+            .addString("vendor")
+            .addString("serial");
+    }
 }
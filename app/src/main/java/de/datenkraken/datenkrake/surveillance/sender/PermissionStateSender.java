@@ -8,9 +8,12 @@ import com.apollographql.apollo.api.Response;
 import com.apollographql.apollo.exception.ApolloException;
 
 import de.datenkraken.datenkrake.PermissionStateMutation;
+import de.datenkraken.datenkrake.SurveillanceBatchMutation;
 import de.datenkraken.datenkrake.network.ITask;
 import de.datenkraken.datenkrake.network.clients.apollo.ApolloMutation;
-import de.datenkraken.datenkrake.surveillance.ISendProcessedData;
+import de.datenkraken.datenkrake.surveillance.IBatchSendProcessedData;
+import de.datenkraken.datenkrake.surveillance.PacketPriority;
+import de.datenkraken.datenkrake.surveillance.PacketSchema;
 import de.datenkraken.datenkrake.surveillance.ProcessedDataPacket;
 import de.datenkraken.datenkrake.surveillance.graphqladapter.Permission;
 import de.datenkraken.datenkrake.surveillance.util.FormatUtil;
@@ -28,26 +31,12 @@ import java.util.List;
  *
  * @author Daniel Thoma - daniel.thoma@stud.tu-darmstadt.de
  */
-public class PermissionStateSender implements ISendProcessedData {
+public class PermissionStateSender implements IBatchSendProcessedData {
 
     @Nullable
     @Override
     public ITask getTask(List<ProcessedDataPacket> packets, Callback callback) {
-
-        List<CreatePermissionState> permissionStates = new ArrayList<>();
-        for (ProcessedDataPacket packet : packets) {
-
-            Permission permission = packet.getObject(Permission.class,
-                "permission",
-                Permission.$UNKNOWN);
-
-            permissionStates.add(CreatePermissionState.builder()
-                .timestamp(FormatUtil.formatDate(new Date(packet.getLong("timestamp", 0L))))
-                .permission(AppPermission.safeValueOf(permission.getValue()))
-                .state(packet.getBoolean("state", false))
-                .build());
-        }
-
+        List<CreatePermissionState> permissionStates = createInput(packets);
         PermissionStateMutation mutation = PermissionStateMutation.builder()
             .list(permissionStates)
             .build();
@@ -72,8 +61,51 @@ public class PermissionStateSender implements ISendProcessedData {
         };
     }
 
+    @Override
+    public void addToBatch(List<ProcessedDataPacket> packets, SurveillanceBatchMutation.Builder batch) {
+        batch.permissionStates(createInput(packets)).withPermissionStates(true);
+    }
+
+    @Override
+    public boolean isPartSuccessful(SurveillanceBatchMutation.Data data) {
+        return data.permissionStates() != null;
+    }
+
+    /**
+     * Converts the given packets to the input of the mutation.
+     *
+     * @param packets {@link ProcessedDataPacket}s to convert.
+     * @return list of mutation inputs.
+     */
+    private List<CreatePermissionState> createInput(List<ProcessedDataPacket> packets) {
+        List<CreatePermissionState> permissionStates = new ArrayList<>();
+        for (ProcessedDataPacket packet : packets) {
+
+            Permission permission = packet.getObject(Permission.class,
+                "permission",
+                Permission.$UNKNOWN);
+
+            permissionStates.add(CreatePermissionState.builder()
+                .timestamp(FormatUtil.formatDate(new Date(packet.getLong("timestamp", 0L))))
+                .permission(AppPermission.safeValueOf(permission.getValue()))
+                .state(packet.getBoolean("state", false))
+                .build());
+        }
+
+        return permissionStates;
+    }
+
     @Override
     public String getTaskId() {
         return PermissionStateMutation.OPERATION_ID;
     }
+
+    @Override
+    public PacketSchema getSchema() {
+        return new PacketSchema(getTaskId())
+            .setPriority(PacketPriority.HIGH)
+            .addTimestamp("timestamp")
+            .addObject("permission")
+            .addBoolean("state");
+    }
 }
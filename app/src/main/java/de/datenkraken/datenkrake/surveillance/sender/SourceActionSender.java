@@ -8,9 +8,11 @@ import com.apollographql.apollo.api.Response;
 import com.apollographql.apollo.exception.ApolloException;
 
 import de.datenkraken.datenkrake.SourceActionMutation;
+import de.datenkraken.datenkrake.SurveillanceBatchMutation;
 import de.datenkraken.datenkrake.network.ITask;
 import de.datenkraken.datenkrake.network.clients.apollo.ApolloMutation;
-import de.datenkraken.datenkrake.surveillance.ISendProcessedData;
+import de.datenkraken.datenkrake.surveillance.IBatchSendProcessedData;
+import de.datenkraken.datenkrake.surveillance.PacketSchema;
 import de.datenkraken.datenkrake.surveillance.ProcessedDataPacket;
 import de.datenkraken.datenkrake.surveillance.graphqladapter.SourceAction;
 import de.datenkraken.datenkrake.surveillance.util.FormatUtil;
@@ -27,23 +29,12 @@ import java.util.List;
  * {@link de.datenkraken.datenkrake.surveillance.processors.event.SourceActionProcessor}.
  * @author Daniel Thoma - daniel.thoma@stud.tu-darmstadt.de
  */
-public class SourceActionSender implements ISendProcessedData {
+public class SourceActionSender implements IBatchSendProcessedData {
 
     @Nullable
     @Override
     public ITask getTask(List<ProcessedDataPacket> packets, Callback callback) {
-        List<CreateSourceEvent> list = new ArrayList<>();
-
-        for (ProcessedDataPacket packet : packets) {
-            SourceAction action = packet.getObject(SourceAction.class, "action", SourceAction.$UNKNOWN);
-
-            list.add(CreateSourceEvent.builder()
-                .timestamp(FormatUtil.formatDate(new Date(packet.getLong("timestamp", 0L))))
-                .type(SourceEventType.safeValueOf(action.getValue()))
-                .url(packet.getString("url", ""))
-                .build());
-        }
-
+        List<CreateSourceEvent> list = createInput(packets);
         SourceActionMutation mutation = SourceActionMutation.builder().list(list).build();
 
         return new ApolloMutation<SourceActionMutation.Data>() {
@@ -66,8 +57,48 @@ public class SourceActionSender implements ISendProcessedData {
         };
     }
 
+    @Override
+    public void addToBatch(List<ProcessedDataPacket> packets, SurveillanceBatchMutation.Builder batch) {
+        batch.sourceEvents(createInput(packets)).withSourceEvents(true);
+    }
+
+    @Override
+    public boolean isPartSuccessful(SurveillanceBatchMutation.Data data) {
+        return data.sourceEvents() != null;
+    }
+
+    /**
+     * Converts the given packets to the input of the mutation.
+     *
+     * @param packets {@link ProcessedDataPacket}s to convert.
+     * @return list of mutation inputs.
+     */
+    private List<CreateSourceEvent> createInput(List<ProcessedDataPacket> packets) {
+        List<CreateSourceEvent> list = new ArrayList<>();
+
+        for (ProcessedDataPacket packet : packets) {
+            SourceAction action = packet.getObject(SourceAction.class, "action", SourceAction.$UNKNOWN);
+
+            list.add(CreateSourceEvent.builder()
+                .timestamp(FormatUtil.formatDate(new Date(packet.getLong("timestamp", 0L))))
+                .type(SourceEventType.safeValueOf(action.getValue()))
+                .url(packet.getString("url", ""))
+                .build());
+        }
+
+        return list;
+    }
+
     @Override
     public String getTaskId() {
         return SourceActionMutation.OPERATION_ID;
     }
+
+    @Override
+    public PacketSchema getSchema() {
+        return new PacketSchema(getTaskId())
+            .addTimestamp("timestamp")
+            .addObject("action")
+            .addString("url");
+    }
 }
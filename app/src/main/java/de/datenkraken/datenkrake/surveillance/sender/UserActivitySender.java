@@ -7,10 +7,12 @@ import com.apollographql.apollo.api.Mutation;
 import com.apollographql.apollo.api.Response;
 import com.apollographql.apollo.exception.ApolloException;
 
+import de.datenkraken.datenkrake.SurveillanceBatchMutation;
 import de.datenkraken.datenkrake.UserActivityMutation;
 import de.datenkraken.datenkrake.network.ITask;
 import de.datenkraken.datenkrake.network.clients.apollo.ApolloMutation;
-import de.datenkraken.datenkrake.surveillance.ISendProcessedData;
+import de.datenkraken.datenkrake.surveillance.IBatchSendProcessedData;
+import de.datenkraken.datenkrake.surveillance.PacketSchema;
 import de.datenkraken.datenkrake.surveillance.ProcessedDataPacket;
 import de.datenkraken.datenkrake.surveillance.util.FormatUtil;
 import de.datenkraken.datenkrake.type.Activity;
@@ -21,30 +23,11 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
-public class UserActivitySender implements ISendProcessedData {
+public class UserActivitySender implements IBatchSendProcessedData {
     @Nullable
     @Override
     public ITask getTask(List<ProcessedDataPacket> packets, Callback callback) {
-        List<CreateUserActivity> userActivities = new ArrayList<>();
-        for (ProcessedDataPacket packet : packets) {
-
-            Boolean userActivity = packet.getBoolean("activity", null);
-            Activity activity;
-
-            if (userActivity == null) {
-                activity = Activity.$UNKNOWN;
-            } else if (userActivity) {
-                activity = Activity.PRESENT;
-            } else {
-                activity = Activity.GONE;
-            }
-
-            userActivities.add(CreateUserActivity.builder()
-                .timestamp(FormatUtil.formatDate(new Date(packet.getLong("timestamp", 0L))))
-                .activity(activity)
-                .build());
-        }
-
+        List<CreateUserActivity> userActivities = createInput(packets);
         UserActivityMutation mutation = UserActivityMutation.builder()
             .list(userActivities)
             .build();
@@ -69,8 +52,55 @@ public class UserActivitySender implements ISendProcessedData {
         };
     }
 
+    @Override
+    public void addToBatch(List<ProcessedDataPacket> packets, SurveillanceBatchMutation.Builder batch) {
+        batch.userActivities(createInput(packets)).withUserActivities(true);
+    }
+
+    @Override
+    public boolean isPartSuccessful(SurveillanceBatchMutation.Data data) {
+        return data.userActivities() != null;
+    }
+
+    /**
+     * Converts the given packets to the input of the mutation.
+     *
+     * @param packets {@link ProcessedDataPacket}s to convert.
+     * @return list of mutation inputs.
+     */
+    private List<CreateUserActivity> createInput(List<ProcessedDataPacket> packets) {
+        List<CreateUserActivity> userActivities = new ArrayList<>();
+        for (ProcessedDataPacket packet : packets) {
+
+            Boolean userActivity = packet.getBoolean("activity", null);
+            Activity activity;
+
+            if (userActivity == null) {
+                activity = Activity.$UNKNOWN;
+            } else if (userActivity) {
+                activity = Activity.PRESENT;
+            } else {
+                activity = Activity.GONE;
+            }
+
+            userActivities.add(CreateUserActivity.builder()
+                .timestamp(FormatUtil.formatDate(new Date(packet.getLong("timestamp", 0L))))
+                .activity(activity)
+                .build());
+        }
+
+        return userActivities;
+    }
+
     @Override
     public String getTaskId() {
         return UserActivityMutation.OPERATION_ID;
     }
+
+    @Override
+    public PacketSchema getSchema() {
+        return new PacketSchema(getTaskId())
+            .addTimestamp("timestamp")
+            .addBoolean("activity");
+    }
 }
@@ -6,10 +6,12 @@ import com.apollographql.apollo.api.Mutation;
 import com.apollographql.apollo.api.Response;
 import com.apollographql.apollo.exception.ApolloException;
 
+import de.datenkraken.datenkrake.SurveillanceBatchMutation;
 import de.datenkraken.datenkrake.WifiDataMutation;
 import de.datenkraken.datenkrake.network.ITask;
 import de.datenkraken.datenkrake.network.clients.apollo.ApolloMutation;
-import de.datenkraken.datenkrake.surveillance.ISendProcessedData;
+import de.datenkraken.datenkrake.surveillance.IBatchSendProcessedData;
+import de.datenkraken.datenkrake.surveillance.PacketSchema;
 import de.datenkraken.datenkrake.surveillance.ProcessedDataPacket;
 import de.datenkraken.datenkrake.surveillance.util.FormatUtil;
 import de.datenkraken.datenkrake.type.CreateWifiData;
@@ -21,25 +23,15 @@ import java.util.List;
 
 
 /**
- * Implements {@link ISendProcessedData} to parse {@link ProcessedDataPacket}s into an {@link ITask}.
+ * Implements {@link IBatchSendProcessedData} to parse {@link ProcessedDataPacket}s into an {@link ITask}.
  *
  * @author Daniel Thoma - daniel.thoma@stud.tu-darmstadt.de
  */
-public class WifiConnectionSender implements ISendProcessedData {
+public class WifiConnectionSender implements IBatchSendProcessedData {
 
     @Override
     public ITask getTask(List<ProcessedDataPacket> packets, Callback callback) {
-
-        List<CreateWifiData> createWifiDataList = new ArrayList<>();
-        for (ProcessedDataPacket packet : packets) {
-            createWifiDataList.add(CreateWifiData.builder()
-                .timestamp(FormatUtil.formatDate(new Date(packet.getLong("time", 0L))))
-                .ssid(packet.getString("SSID", ""))
-                .bssid(packet.getString("BSSID", ""))
-                .rssi(packet.getInteger("RSSI", 0))
-                .build());
-        }
-
+        List<CreateWifiData> createWifiDataList = createInput(packets);
         WifiDataMutation mutation = WifiDataMutation.builder()
             .list(createWifiDataList)
             .build();
@@ -64,8 +56,47 @@ public class WifiConnectionSender implements ISendProcessedData {
         };
     }
 
+    @Override
+    public void addToBatch(List<ProcessedDataPacket> packets, SurveillanceBatchMutation.Builder batch) {
+        batch.wifiData(createInput(packets)).withWifiData(true);
+    }
+
+    @Override
+    public boolean isPartSuccessful(SurveillanceBatchMutation.Data data) {
+        return data.wifiData() != null;
+    }
+
+    /**
+     * Converts the given packets to the input of the mutation.
+     *
+     * @param packets {@link ProcessedDataPacket}s to convert.
+     * @return list of mutation inputs.
+     */
+    private List<CreateWifiData> createInput(List<ProcessedDataPacket> packets) {
+        List<CreateWifiData> createWifiDataList = new ArrayList<>();
+        for (ProcessedDataPacket packet : packets) {
+            createWifiDataList.add(CreateWifiData.builder()
+                .timestamp(FormatUtil.formatDate(new Date(packet.getLong("time", 0L))))
+                .ssid(packet.getString("SSID", ""))
+                .bssid(packet.getString("BSSID", ""))
+                .rssi(packet.getInteger("RSSI", 0))
+                .build());
+        }
+
+        return createWifiDataList;
+    }
+
     @Override
     public String getTaskId() {
         return WifiDataMutation.OPERATION_ID;
     }
+
+    @Override
+    public PacketSchema getSchema() {
+        return new PacketSchema(getTaskId())
+            .addTimestamp("time")
+            .addString("SSID")
+            .addString("BSSID")
+            .addInteger("RSSI");
+    }
 }
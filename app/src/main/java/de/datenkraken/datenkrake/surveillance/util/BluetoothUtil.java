@@ -10,6 +10,7 @@ import android.os.Handler;
 import de.datenkraken.datenkrake.logging.L;
 
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public final class BluetoothUtil {
 
@@ -34,19 +35,40 @@ public final class BluetoothUtil {
         return adapter;
     }
 
-    public static void scanLeDevices(ScanCallback callback, Runnable stoppedCallback, long scanPeriod, Context context)  {
+    /**
+     * Starts a scan for bluetooth low energy devices, which stops after the given period. The
+     * returned runnable stops the scan before. Either way, the stopped callback runs once.
+     *
+     * @param callback receives the scanned devices
+     * @param stoppedCallback called after the scan stopped, may be null
+     * @param scanPeriod time in milliseconds, after which the scan stops
+     * @param context used to stop the scan on the main thread
+     * @return stops the scan, if it still runs
+     */
+    public static Runnable scanLeDevices(ScanCallback callback, Runnable stoppedCallback, long scanPeriod,
+                                         Context context)  {
         BluetoothLeScanner bluetoothLeScanner =
             BluetoothAdapter.getDefaultAdapter().getBluetoothLeScanner();
         Handler handler = new Handler(context.getMainLooper());
-        handler.postDelayed(() -> {
-            L.i("stopping bluetooth scan at %s", new Date());
-            bluetoothLeScanner.stopScan(callback);
-            if (stoppedCallback != null) {
-                stoppedCallback.run();
+        AtomicBoolean stopped = new AtomicBoolean();
+        Runnable stop = new Runnable() {
+            @Override
+            public void run() {
+                if (!stopped.compareAndSet(false, true)) {
+                    return;
+                }
+                handler.removeCallbacks(this);
+                L.i("stopping bluetooth scan at %s", new Date());
+                bluetoothLeScanner.stopScan(callback);
+                if (stoppedCallback != null) {
+                    stoppedCallback.run();
+                }
             }
-        }, scanPeriod);
+        };
+        handler.postDelayed(stop, scanPeriod);
         L.i("starting bluetooth scan at %s", new Date());
         bluetoothLeScanner.startScan(callback);
+        return stop;
     }
 
 }
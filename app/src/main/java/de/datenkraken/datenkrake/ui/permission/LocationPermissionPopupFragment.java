@@ -4,7 +4,6 @@ import android.app.AlertDialog;
 import android.app.Dialog;
 import android.graphics.drawable.ColorDrawable;
 import android.os.Bundle;
-import android.util.Pair;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -23,6 +22,7 @@ import de.datenkraken.datenkrake.surveillance.DataCollectionEvent;
 import de.datenkraken.datenkrake.surveillance.DataCollectionEventType;
 import de.datenkraken.datenkrake.surveillance.EventCollector;
 import de.datenkraken.datenkrake.surveillance.graphqladapter.Permission;
+import de.datenkraken.datenkrake.surveillance.payload.PermissionStatePayload;
 
 import java.util.Objects;
 import jp.wasabeef.blurry.Blurry;
@@ -87,7 +87,7 @@ public class LocationPermissionPopupFragment extends DialogFragment {
         if (!accepted) {
             locationPermissionPopupViewModel.save(requireContext(), false);
             EventCollector.raiseEvent(new DataCollectionEvent<>(DataCollectionEventType.PERMISSIONSTATE)
-                .with(new Pair<>(Permission.LOCATION, false)));
+                .with(PermissionStatePayload.obtain(Permission.LOCATION, false)));
         }
         super.onDestroyView();
     }
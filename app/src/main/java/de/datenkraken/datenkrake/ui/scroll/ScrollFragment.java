@@ -39,14 +39,12 @@ import de.datenkraken.datenkrake.surveillance.DataCollectionEventType;
 import de.datenkraken.datenkrake.surveillance.EventCollector;
 import de.datenkraken.datenkrake.surveillance.graphqladapter.ApplicationAction;
 import de.datenkraken.datenkrake.surveillance.graphqladapter.SourceAction;
+import de.datenkraken.datenkrake.surveillance.payload.SourceActionPayload;
 import de.datenkraken.datenkrake.ui.permission.LocationPermissionPopupFragment;
 
-import java.lang.ref.WeakReference;
 import java.util.List;
 import java.util.Objects;
 
-import kotlin.Triple;
-
 import org.jetbrains.annotations.NotNull;
 
 import timber.log.Timber;
@@ -181,10 +179,10 @@ public class ScrollFragment extends Fragment {
             );
 
             EventCollector.raiseEvent(new DataCollectionEvent<>(DataCollectionEventType.SOURCEIDACTION)
-                .with(new Triple<>(
+                .with(SourceActionPayload.obtain(
                     SourceAction.FILTERED,
                     sourceId,
-                    new WeakReference<>(((DatenkrakeApp) requireActivity().getApplication()).getDatabase()))));
+                    ((DatenkrakeApp) requireActivity().getApplication()).getDatabase())));
 
             scrollModel.filterSourceUid.postValue(sourceId);
         } else {
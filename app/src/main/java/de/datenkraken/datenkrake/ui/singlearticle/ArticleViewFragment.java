@@ -48,6 +48,7 @@ import de.datenkraken.datenkrake.surveillance.DataCollectionEvent;
 import de.datenkraken.datenkrake.surveillance.DataCollectionEventType;
 import de.datenkraken.datenkrake.surveillance.EventCollector;
 import de.datenkraken.datenkrake.surveillance.graphqladapter.ArticleAction;
+import de.datenkraken.datenkrake.surveillance.payload.ArticleActionPayload;
 import de.datenkraken.datenkrake.ui.scroll.ScrollViewModel;
 import de.datenkraken.datenkrake.ui.util.GlideImageGetter;
 import de.datenkraken.datenkrake.ui.util.HtmlDefaultTagHandler;
@@ -56,8 +57,6 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
 
-import kotlin.Triple;
-
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -135,7 +134,8 @@ public class ArticleViewFragment extends Fragment {
         menuItem.setOnMenuItemClickListener(v -> {
             // Send share information to backend.
             EventCollector.raiseEvent(new DataCollectionEvent<>(DataCollectionEventType.ARTICLEACTION)
-                .with(new Triple<>(ArticleAction.SHARED, currentArticle.title, currentArticle.source.url.toString())));
+                .with(ArticleActionPayload.obtain(ArticleAction.SHARED, currentArticle.title,
+                    currentArticle.source.url.toString())));
 
             // Share article.
             if (currentArticle.link != null) {
@@ -408,7 +408,7 @@ public class ArticleViewFragment extends Fragment {
         browserButton.setOnClickListener(v -> {
             // Raise Chrome Tab event for Article.
             EventCollector.raiseEvent(new DataCollectionEvent<>(DataCollectionEventType.ARTICLEACTION)
-                .with(new Triple<>(ArticleAction.CHROMEOPENED,
+                .with(ArticleActionPayload.obtain(ArticleAction.CHROMEOPENED,
                     currentArticle.title, currentArticle.source.url.toString())));
 
             if (currentArticle.link != null) {
@@ -0,0 +1,143 @@
+package de.datenkraken.datenkrake.network;
+
+import android.content.SharedPreferences;
+
+import net.lachlanmckee.timberjunit.TimberTestRule;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CircuitBreakerTest {
+
+    private static final long BASE_DELAY = 1000;
+    private static final long MAX_DELAY = 8000;
+
+    // Rule to pipe Timber output to system.out
+    @Rule
+    public TimberTestRule logAllAlwaysRule = TimberTestRule.logAllAlways();
+
+    private final Map<String, Object> values = new HashMap<>();
+    private SharedPreferences preferences;
+
+    @Before
+    public void setUp() {
+        // preferences backed by a map, changes are visible after apply
+        Map<String, Object> changes = new HashMap<>();
+        SharedPreferences.Editor editor = mock(SharedPreferences.Editor.class);
+        when(editor.putInt(anyString(), anyInt())).thenAnswer(invocation -> {
+            changes.put(invocation.getArgument(0), invocation.getArgument(1));
+            return editor;
+        });
+        when(editor.putLong(anyString(), anyLong())).thenAnswer(invocation -> {
+            changes.put(invocation.getArgument(0), invocation.getArgument(1));
+            return editor;
+        });
+        doAnswer(invocation -> {
+            values.putAll(changes);
+            changes.clear();
+            return null;
+        }).when(editor).apply();
+
+        preferences = mock(SharedPreferences.class);
+        when(preferences.edit()).thenReturn(editor);
+        when(preferences.getInt(anyString(), anyInt())).thenAnswer(this::getValue);
+        when(preferences.getLong(anyString(), anyLong())).thenAnswer(this::getValue);
+    }
+
+    @Test
+    public void testThreshold() {
+        CircuitBreaker breaker = new CircuitBreaker(preferences, "upload", 3, BASE_DELAY, MAX_DELAY);
+        breaker.onFailure();
+        breaker.onFailure();
+        Assert.assertTrue(breaker.allowRequest());
+        Assert.assertFalse(breaker.isHalfOpen());
+
+        breaker.onFailure();
+        Assert.assertFalse(breaker.allowRequest());
+        Assert.assertFalse(breaker.isHalfOpen());
+        Assert.assertTrue(breaker.getRetryTime() > System.currentTimeMillis());
+
+        // a success in between starts the count again
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onFailure();
+        Assert.assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void testExponentialDelay() {
+        CircuitBreaker breaker = new CircuitBreaker(preferences, "upload", 1, BASE_DELAY, MAX_DELAY);
+        long delay = BASE_DELAY;
+        for (int i = 0; i < 8; i++) {
+            long before = System.currentTimeMillis();
+            breaker.onFailure();
+            long after = System.currentTimeMillis();
+
+            // randomized between half and the full delay, which doubles up to the maximum
+            Assert.assertTrue(breaker.getRetryTime() >= before + delay / 2);
+            Assert.assertTrue(breaker.getRetryTime() <= after + delay);
+            delay = Math.min(MAX_DELAY, delay * 2);
+        }
+        Assert.assertEquals(8, values.get("upload_failures"));
+    }
+
+    @Test
+    public void testHalfOpenProbe() {
+        CircuitBreaker breaker = new CircuitBreaker(preferences, "upload", 2, BASE_DELAY, MAX_DELAY);
+        breaker.onFailure();
+        breaker.onFailure();
+        Assert.assertFalse(breaker.allowRequest());
+
+        // the delay passed, the next request is a probe
+        values.put("upload_open_until", System.currentTimeMillis() - 1);
+        Assert.assertTrue(breaker.allowRequest());
+        Assert.assertTrue(breaker.isHalfOpen());
+
+        // a failed probe opens the breaker again
+        breaker.onFailure();
+        Assert.assertFalse(breaker.allowRequest());
+        Assert.assertFalse(breaker.isHalfOpen());
+
+        // a successful probe closes it
+        values.put("upload_open_until", System.currentTimeMillis() - 1);
+        Assert.assertTrue(breaker.isHalfOpen());
+        breaker.onSuccess();
+        Assert.assertTrue(breaker.allowRequest());
+        Assert.assertFalse(breaker.isHalfOpen());
+        Assert.assertEquals(0L, breaker.getRetryTime());
+    }
+
+    @Test
+    public void testClockTurnedBack() {
+        CircuitBreaker breaker = new CircuitBreaker(preferences, "upload", 1, BASE_DELAY, MAX_DELAY);
+        breaker.onFailure();
+        Assert.assertFalse(breaker.allowRequest());
+
+        // the breaker opened before the clock was turned back an hour
+        values.put("upload_open_until", System.currentTimeMillis() + 3600000);
+        Assert.assertTrue(breaker.allowRequest());
+        Assert.assertTrue(breaker.isHalfOpen());
+
+        // a delay up to the maximum is kept
+        values.put("upload_open_until", System.currentTimeMillis() + MAX_DELAY - 1000);
+        Assert.assertFalse(breaker.allowRequest());
+    }
+
+    private Object getValue(InvocationOnMock invocation) {
+        String key = invocation.getArgument(0);
+        return values.containsKey(key) ? values.get(key) : invocation.getArgument(1);
+    }
+}
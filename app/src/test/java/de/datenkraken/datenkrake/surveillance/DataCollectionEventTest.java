@@ -0,0 +1,65 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.datenkraken.datenkrake.surveillance.payload.EventPayload;
+import de.datenkraken.datenkrake.surveillance.payload.PayloadPool;
+
+public class DataCollectionEventTest {
+
+    private static final PayloadPool<TestPayload> POOL = new PayloadPool<>(2);
+
+    @Test
+    public void testRecycle() {
+        TestPayload payload = TestPayload.obtain(42);
+        DataCollectionEvent<TestPayload> event = new DataCollectionEvent<>(DataCollectionEventType.DEFAULT);
+        event.with(payload);
+
+        event.recycle();
+        Assert.assertNull(event.content);
+        Assert.assertEquals(0, payload.value);
+
+        // recycling twice doesn't put the payload into the pool twice
+        payload.recycle();
+        Assert.assertEquals(1, POOL.size());
+        Assert.assertSame(payload, TestPayload.obtain(7));
+        Assert.assertEquals(0, POOL.size());
+        Assert.assertNotSame(payload, TestPayload.obtain(7));
+    }
+
+    @Test
+    public void testPeriodicEventKeepsContent() {
+        TestPayload payload = TestPayload.obtain(42);
+        DataCollectionEvent<TestPayload> event = new DataCollectionEvent<>(DataCollectionEventType.DEFAULT);
+        event.with(payload).setPeriod(1000);
+
+        event.recycle();
+        Assert.assertSame(payload, event.content);
+        Assert.assertEquals(42, payload.value);
+    }
+
+    private static final class TestPayload extends EventPayload {
+
+        private int value;
+
+        static TestPayload obtain(int value) {
+            TestPayload payload = POOL.acquire();
+            if (payload == null) {
+                payload = new TestPayload();
+            }
+            payload.value = value;
+            return payload;
+        }
+
+        @Override
+        protected void clear() {
+            value = 0;
+        }
+
+        @Override
+        protected PayloadPool getPool() {
+            return POOL;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import net.lachlanmckee.timberjunit.TimberTestRule;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class EventAdmissionTest {
+
+    // Rule to pipe Timber output to system.out
+    @Rule
+    public TimberTestRule logAllAlwaysRule = TimberTestRule.logAllAlways();
+
+    @Test
+    public void testCaps() {
+        EventAdmission admission = new EventAdmission(100, 200);
+        DataCollectionEventType type = DataCollectionEventType.APPLICATIONACTION;
+
+        Assert.assertTrue(admission.admit(type, 99, DataCollectionEvent.Priority.PRIORITY_LOW));
+        Assert.assertTrue(admission.admit(type, 150, DataCollectionEvent.Priority.PRIORITY_MEDIUM));
+        Assert.assertTrue(admission.admit(type, 199, DataCollectionEvent.Priority.PRIORITY_HIGH));
+        Assert.assertFalse(admission.admit(type, 200, DataCollectionEvent.Priority.PRIORITY_HIGH));
+        Assert.assertEquals(EventPressure.HARD, admission.getPressure(type));
+        Assert.assertEquals(EventPressure.NORMAL, admission.getPressure(DataCollectionEventType.SOURCEACTION));
+
+        Assert.assertEquals(1, admission.getAccepted(DataCollectionEvent.Priority.PRIORITY_HIGH));
+        Assert.assertEquals(1, admission.getRejected(DataCollectionEvent.Priority.PRIORITY_HIGH));
+    }
+
+    @Test
+    public void testLowPrioritySampling() {
+        EventAdmission admission = new EventAdmission(100, 200);
+        DataCollectionEventType type = DataCollectionEventType.APPLICATIONACTION;
+
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(admission.admit(type, 100, DataCollectionEvent.Priority.PRIORITY_LOW));
+        }
+
+        // three quarters of the space between the caps are used, about a quarter is accepted
+        for (int i = 0; i < 4000; i++) {
+            admission.admit(type, 175, DataCollectionEvent.Priority.PRIORITY_LOW);
+        }
+        long sampled = admission.getAccepted(DataCollectionEvent.Priority.PRIORITY_LOW) - 1000;
+        Assert.assertTrue(sampled > 700 && sampled < 1300);
+        Assert.assertEquals(4000 - sampled, admission.getRejected(DataCollectionEvent.Priority.PRIORITY_LOW));
+    }
+
+    @Test
+    public void testListener() {
+        EventAdmission admission = new EventAdmission(100, 200);
+        List<EventPressure> changes = new ArrayList<>();
+        IEventPressureListener listener = (type, pressure) -> changes.add(pressure);
+        admission.addListener(listener);
+
+        admission.admit(DataCollectionEventType.SOURCEACTION, 10, DataCollectionEvent.Priority.PRIORITY_LOW);
+        admission.admit(DataCollectionEventType.SOURCEACTION, 120, DataCollectionEvent.Priority.PRIORITY_HIGH);
+        admission.admit(DataCollectionEventType.SOURCEACTION, 130, DataCollectionEvent.Priority.PRIORITY_HIGH);
+        admission.admit(DataCollectionEventType.SOURCEACTION, 250, DataCollectionEvent.Priority.PRIORITY_HIGH);
+        // the lane drained
+        admission.update(DataCollectionEventType.SOURCEACTION, 0);
+        Assert.assertEquals(Arrays.asList(EventPressure.SOFT, EventPressure.HARD, EventPressure.NORMAL), changes);
+
+        admission.removeListener(listener);
+        admission.update(DataCollectionEventType.SOURCEACTION, 300);
+        Assert.assertEquals(3, changes.size());
+    }
+}
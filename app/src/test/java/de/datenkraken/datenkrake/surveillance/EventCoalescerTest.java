@@ -0,0 +1,50 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import net.lachlanmckee.timberjunit.TimberTestRule;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import de.datenkraken.datenkrake.surveillance.graphqladapter.ApplicationAction;
+import de.datenkraken.datenkrake.surveillance.processors.coalescer.ApplicationActionCoalescer;
+
+public class EventCoalescerTest {
+
+    // Rule to pipe Timber output to system.out
+    @Rule
+    public TimberTestRule logAllAlwaysRule = TimberTestRule.logAllAlways();
+
+    @Test
+    public void testWindow() {
+        EventCoalescer coalescer = new EventCoalescer(new ApplicationActionCoalescer());
+
+        Assert.assertTrue(coalescer.accept(createEvent(ApplicationAction.SCROLL, 0)));
+        Assert.assertFalse(coalescer.accept(createEvent(ApplicationAction.SCROLL, 500)));
+        Assert.assertTrue(coalescer.accept(createEvent(ApplicationAction.STARTED, 600)));
+        Assert.assertFalse(coalescer.accept(createEvent(ApplicationAction.SCROLL, 999)));
+        // the window isn't extended by duplicates
+        Assert.assertTrue(coalescer.accept(createEvent(ApplicationAction.SCROLL, 1000)));
+        Assert.assertEquals(2, coalescer.getMerged(DataCollectionEventType.APPLICATIONACTION));
+
+        // state changes are never dropped, even if they repeat quickly
+        Assert.assertTrue(coalescer.accept(createEvent(ApplicationAction.BACKGROUND, 1100)));
+        Assert.assertTrue(coalescer.accept(createEvent(ApplicationAction.STARTED, 1200)));
+        Assert.assertEquals(2, coalescer.getMerged(DataCollectionEventType.APPLICATIONACTION));
+
+        // types without coalescer are always accepted
+        DataCollectionEvent<String> other = new DataCollectionEvent<>(DataCollectionEventType.SOURCEACTION);
+        other.with("source");
+        Assert.assertTrue(coalescer.accept(other));
+        Assert.assertTrue(coalescer.accept(other));
+        Assert.assertEquals(0, coalescer.getMerged(DataCollectionEventType.SOURCEACTION));
+    }
+
+    private DataCollectionEvent<ApplicationAction> createEvent(ApplicationAction action, long time) {
+        DataCollectionEvent<ApplicationAction> event =
+            new DataCollectionEvent<>(DataCollectionEventType.APPLICATIONACTION);
+        event.with(action);
+        event.timestamp = time;
+        return event;
+    }
+}
@@ -0,0 +1,240 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import net.lachlanmckee.timberjunit.TimberTestRule;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.datenkraken.datenkrake.surveillance.graphqladapter.ApplicationAction;
+
+public class EventLanesTest {
+
+    // Rule to pipe Timber output to system.out
+    @Rule
+    public TimberTestRule logAllAlwaysRule = TimberTestRule.logAllAlways();
+
+    @Test
+    public void testOrderPerType() throws InterruptedException {
+        EventLanes lanes = new EventLanes(4);
+        DataCollectionEventType[] types = {DataCollectionEventType.APPLICATIONACTION,
+            DataCollectionEventType.ARTICLEACTION, DataCollectionEventType.SOURCEACTION};
+        List<List<Integer>> results = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(types.length * 1000);
+
+        List<Thread> producers = new ArrayList<>();
+        for (DataCollectionEventType type : types) {
+            List<Integer> result = Collections.synchronizedList(new ArrayList<>());
+            results.add(result);
+            producers.add(new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    int index = i;
+                    Assert.assertTrue(lanes.submit(type, () -> {
+                        result.add(index);
+                        done.countDown();
+                    }));
+                }
+            }));
+        }
+        for (Thread producer : producers) {
+            producer.start();
+        }
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        lanes.shutdownNow();
+
+        for (List<Integer> result : results) {
+            Assert.assertEquals(1000, result.size());
+            for (int i = 0; i < result.size(); i++) {
+                Assert.assertEquals(i, (int) result.get(i));
+            }
+        }
+        Assert.assertFalse(lanes.submit(DataCollectionEventType.DEFAULT, () -> { }));
+    }
+
+    @Test
+    public void testBurstDoesNotStarveOtherTypes() throws InterruptedException {
+        EventLanes lanes = new EventLanes(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1001);
+        List<DataCollectionEventType> order = Collections.synchronizedList(new ArrayList<>());
+
+        // the only thread is busy, until the burst and the other event are queued
+        lanes.submit(DataCollectionEventType.DEFAULT, () -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for (int i = 0; i < 1000; i++) {
+            lanes.submit(DataCollectionEventType.APPLICATIONACTION, () -> {
+                order.add(DataCollectionEventType.APPLICATIONACTION);
+                done.countDown();
+            });
+        }
+        lanes.submit(DataCollectionEventType.PERMISSIONSTATE, () -> {
+            order.add(DataCollectionEventType.PERMISSIONSTATE);
+            done.countDown();
+        });
+        Assert.assertEquals(1000, lanes.getPending(DataCollectionEventType.APPLICATIONACTION));
+        blocked.countDown();
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(order.indexOf(DataCollectionEventType.PERMISSIONSTATE) < 100);
+        lanes.shutdownNow();
+    }
+
+    @Test
+    public void testQueuedEventsAreBatched() throws InterruptedException {
+        EventLanes lanes = new EventLanes(1);
+        EventDistributor distributor = new EventDistributor(null);
+        List<Integer> batches = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+
+        distributor.eventProcessors.clear();
+        distributor.registerEventProcessor(new IEventProcessor() {
+            @Override
+            public DataCollectionEventType[] canProcess() {
+                return new DataCollectionEventType[] {DataCollectionEventType.SOURCEIDACTION};
+            }
+
+            @Override
+            public void process(DataCollectionEvent event, ProcessedDataCollector collector) {
+                batches.add(1);
+                done.countDown();
+            }
+
+            @Override
+            public void processBatch(List<DataCollectionEvent> events, ProcessedDataCollector collector) {
+                batches.add(events.size());
+                done.countDown();
+            }
+        });
+
+        // the only thread is busy, until all events are queued
+        lanes.submit(DataCollectionEventType.DEFAULT, () -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for (int i = 0; i < 5; i++) {
+            DataCollectionEvent<Integer> event = new DataCollectionEvent<>(DataCollectionEventType.SOURCEIDACTION);
+            event.with(i);
+            lanes.submit(event.type, new ProcessEventTask(new WeakReference<>(distributor), event));
+        }
+        blocked.countDown();
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(Collections.singletonList(5), batches);
+        lanes.shutdownNow();
+    }
+
+    @Test
+    public void testPeriodicEventsCarryTheirFiringTime() throws InterruptedException {
+        EventTimer timer = new EventTimer(1, 64);
+        EventLanes lanes = new EventLanes(1);
+        EventDistributor distributor = new EventDistributor(null);
+        EventCollector collector = new EventCollector(timer, lanes, distributor, new EventAdmission(10, 20));
+        List<Long> timestamps = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(2);
+
+        distributor.eventProcessors.clear();
+        distributor.registerEventProcessor(new IEventProcessor() {
+            @Override
+            public DataCollectionEventType[] canProcess() {
+                return new DataCollectionEventType[] {DataCollectionEventType.APPLICATIONACTION};
+            }
+
+            @Override
+            public void process(DataCollectionEvent event, ProcessedDataCollector collector) {
+                timestamps.add(event.timestamp);
+                done.countDown();
+            }
+        });
+
+        // duplicates are coalesced within a second, so only firings a window apart get through
+        DataCollectionEvent<ApplicationAction> event =
+            new DataCollectionEvent<>(DataCollectionEventType.APPLICATIONACTION);
+        event.with(ApplicationAction.SCROLL).setPeriod(400);
+        EventHandle handle = collector.addEvent(event);
+        Assert.assertNotNull(handle);
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        handle.cancel();
+        Assert.assertTrue(timestamps.get(1) - timestamps.get(0) >= 1000);
+        Assert.assertEquals(ApplicationAction.SCROLL, event.content);
+        timer.stop();
+        lanes.shutdownNow();
+    }
+
+    @Test
+    public void testDelayedEventIsAdmittedWhenDue() throws InterruptedException {
+        EventTimer timer = new EventTimer(1, 64);
+        EventLanes lanes = new EventLanes(1);
+        EventDistributor distributor = new EventDistributor(null);
+        EventAdmission admission = new EventAdmission(1, 2);
+        EventCollector collector = new EventCollector(timer, lanes, distributor, admission);
+        AtomicInteger processed = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        distributor.eventProcessors.clear();
+        distributor.registerEventProcessor(new IEventProcessor() {
+            @Override
+            public DataCollectionEventType[] canProcess() {
+                return new DataCollectionEventType[] {DataCollectionEventType.APPLICATIONACTION};
+            }
+
+            @Override
+            public void process(DataCollectionEvent event, ProcessedDataCollector collector) {
+                processed.incrementAndGet();
+            }
+        });
+
+        // the lane is empty, when the event is raised
+        DataCollectionEvent<ApplicationAction> event =
+            new DataCollectionEvent<>(DataCollectionEventType.APPLICATIONACTION);
+        event.with(ApplicationAction.SCROLL).setDelay(200).setPriority(DataCollectionEvent.Priority.PRIORITY_HIGH);
+        Assert.assertNotNull(collector.addEvent(event));
+
+        // but at its hard cap, when it is due
+        lanes.submit(DataCollectionEventType.APPLICATIONACTION, () -> {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        lanes.submit(DataCollectionEventType.APPLICATIONACTION, () -> { });
+        lanes.submit(DataCollectionEventType.APPLICATIONACTION, () -> { });
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (admission.getRejected(DataCollectionEvent.Priority.PRIORITY_HIGH) == 0
+            && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(1, admission.getRejected(DataCollectionEvent.Priority.PRIORITY_HIGH));
+        Assert.assertEquals(0, admission.getAccepted(DataCollectionEvent.Priority.PRIORITY_HIGH));
+        Assert.assertEquals(2, lanes.getPending(DataCollectionEventType.APPLICATIONACTION));
+        Assert.assertNull(event.content);
+
+        release.countDown();
+        Thread.sleep(100);
+        Assert.assertEquals(0, processed.get());
+        timer.stop();
+        lanes.shutdownNow();
+    }
+}
@@ -0,0 +1,84 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import net.lachlanmckee.timberjunit.TimberTestRule;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class EventProcessorMapTest {
+
+    // Rule to pipe Timber output to system.out
+    @Rule
+    public TimberTestRule logAllAlwaysRule = TimberTestRule.logAllAlways();
+
+    @Test
+    public void testRegistration() {
+        EventProcessorMap map = new EventProcessorMap();
+        IEventProcessor processor = createProcessor(DataCollectionEventType.SOURCEACTION,
+            DataCollectionEventType.SOURCEIDACTION);
+
+        map.addProcessor(processor);
+        map.addProcessor(processor);
+        IEventProcessor[] before = map.get(DataCollectionEventType.SOURCEACTION);
+        Assert.assertArrayEquals(new IEventProcessor[] {processor}, before);
+        Assert.assertArrayEquals(new IEventProcessor[] {processor}, map.get(DataCollectionEventType.SOURCEIDACTION));
+        Assert.assertEquals(0, map.get(DataCollectionEventType.DEFAULT).length);
+        Assert.assertEquals(0, map.get(null).length);
+
+        // arrays handed out before aren't changed by later registrations
+        map.addProcessor(createProcessor(DataCollectionEventType.SOURCEACTION));
+        Assert.assertEquals(1, before.length);
+        Assert.assertEquals(2, map.get(DataCollectionEventType.SOURCEACTION).length);
+
+        map.clear();
+        Assert.assertEquals(0, map.get(DataCollectionEventType.SOURCEACTION).length);
+    }
+
+    @Test
+    public void testConcurrentRegistration() throws InterruptedException {
+        EventProcessorMap map = new EventProcessorMap();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int j = 0; j < 250; j++) {
+                    map.addProcessor(createProcessor(DataCollectionEventType.APPLICATIONACTION));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        Assert.assertEquals(1000, map.get(DataCollectionEventType.APPLICATIONACTION).length);
+    }
+
+    private IEventProcessor createProcessor(DataCollectionEventType... types) {
+        return new IEventProcessor() {
+            @Override
+            public DataCollectionEventType[] canProcess() {
+                return types;
+            }
+
+            @Override
+            public void process(DataCollectionEvent event, ProcessedDataCollector collector) {
+                // nothing to do
+            }
+        };
+    }
+}
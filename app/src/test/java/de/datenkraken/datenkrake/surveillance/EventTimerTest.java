@@ -0,0 +1,84 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import net.lachlanmckee.timberjunit.TimberTestRule;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class EventTimerTest {
+
+    // Rule to pipe Timber output to system.out
+    @Rule
+    public TimberTestRule logAllAlwaysRule = TimberTestRule.logAllAlways();
+
+    @Test
+    public void testDelayOrder() throws InterruptedException {
+        // a small wheel, so some tasks wait for more than one round
+        EventTimer timer = new EventTimer(1, 8);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(5);
+        long start = System.nanoTime();
+        for (int delay : new int[] {50, 0, 30, 10, 20}) {
+            Assert.assertNotNull(timer.schedule(() -> {
+                order.add(delay);
+                done.countDown();
+            }, delay, 0));
+        }
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        Assert.assertEquals(Arrays.asList(0, 10, 20, 30, 50), order);
+
+        // the idle ticker wakes up for new tasks
+        CountDownLatch again = new CountDownLatch(1);
+        timer.schedule(again::countDown, 10, 0);
+        Assert.assertTrue(again.await(10, TimeUnit.SECONDS));
+        timer.stop();
+        Assert.assertNull(timer.schedule(() -> { }, 0, 0));
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        EventTimer timer = new EventTimer(1, 8);
+        AtomicInteger cancelledRuns = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+
+        EventHandle handle = timer.schedule(cancelledRuns::incrementAndGet, 20, 0);
+        timer.schedule(done::countDown, 60, 0);
+        Assert.assertTrue(handle.cancel());
+        Assert.assertTrue(handle.isCancelled());
+        Assert.assertFalse(handle.cancel());
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, cancelledRuns.get());
+        timer.stop();
+    }
+
+    @Test
+    public void testCancelPeriodic() throws InterruptedException {
+        EventTimer timer = new EventTimer(1, 8);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch repeated = new CountDownLatch(3);
+
+        EventHandle handle = timer.schedule(() -> {
+            runs.incrementAndGet();
+            repeated.countDown();
+        }, 0, 5);
+        Assert.assertTrue(repeated.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(handle.cancel());
+
+        int cancelledAt = runs.get();
+        Thread.sleep(50);
+        Assert.assertTrue(runs.get() <= cancelledAt + 1); // a run may have been in progress
+        timer.stop();
+    }
+}
@@ -0,0 +1,115 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import net.lachlanmckee.timberjunit.TimberTestRule;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import de.datenkraken.datenkrake.surveillance.graphqladapter.ApplicationAction;
+import de.datenkraken.datenkrake.surveillance.sender.WifiConnectionSender;
+
+public class PacketCodecTest {
+
+    // Rule to pipe Timber output to system.out
+    @Rule
+    public TimberTestRule logAllAlwaysRule = TimberTestRule.logAllAlways();
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PacketCodec.Encoder encoder = new PacketCodec.Encoder(bytes);
+        for (int i = 0; i < 10; i++) {
+            encoder.write(createPacket(i));
+        }
+        encoder.finish();
+
+        PacketCodec.Decoder decoder = new PacketCodec.Decoder(new ByteArrayInputStream(bytes.toByteArray()));
+        for (int i = 0; i < 10; i++) {
+            ProcessedDataPacket packet = decoder.read();
+            Assert.assertNotNull(packet);
+            Assert.assertEquals("task", packet.getTaskId());
+            Assert.assertEquals(-1000L * i, packet.getLong("timestamp", 0L));
+            Assert.assertEquals(-70, packet.getInteger("rssi", 0));
+            Assert.assertEquals(49.87, packet.getDouble("latitude", 0.0), 0.0);
+            Assert.assertEquals(12.5f, packet.getFloat("accuracy", 0f), 0f);
+            Assert.assertTrue(packet.getBoolean("known", false));
+            Assert.assertEquals("Datenkrake " + i, packet.getString("name", ""));
+            Assert.assertNull(packet.getString("address", null));
+            Assert.assertEquals(ApplicationAction.SCROLL,
+                packet.getObject(ApplicationAction.class, "action", ApplicationAction.$UNKNOWN));
+        }
+        Assert.assertNull(decoder.read());
+    }
+
+    @Test
+    public void testLegacyDetection() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream stream = new ObjectOutputStream(bytes)) {
+            stream.writeObject(1);
+            stream.writeObject("task");
+            stream.writeObject(1);
+            stream.writeObject("timestamp");
+            stream.writeObject(42L);
+        }
+
+        byte[] legacy = bytes.toByteArray();
+        Assert.assertTrue(PacketCodec.isLegacy(legacy, legacy.length));
+
+        try (ObjectInputStream stream = new ObjectInputStream(new ByteArrayInputStream(legacy))) {
+            ProcessedDataPacket packet = ProcessedDataPacket.load(stream);
+            Assert.assertNotNull(packet);
+            Assert.assertEquals(42L, packet.getLong("timestamp", 0L));
+        }
+
+        bytes = new ByteArrayOutputStream();
+        new PacketCodec.Encoder(bytes).finish();
+        Assert.assertFalse(PacketCodec.isLegacy(bytes.toByteArray(), bytes.size()));
+    }
+
+    @Test
+    public void testSchemaRecord() throws IOException {
+        String taskId = new WifiConnectionSender().getTaskId();
+        ProcessedDataPacket packet = new ProcessedDataPacket(taskId);
+        packet.putLong("time", 42L);
+        packet.putInteger("RSSI", -70);
+        packet.putString("SSID", "Datenkrake");
+        packet.putLong("BSSID", 7L);
+        packet.putString("extra", "value");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PacketCodec.Encoder encoder = new PacketCodec.Encoder(bytes);
+        encoder.write(packet);
+        encoder.finish();
+
+        packet = new PacketCodec.Decoder(new ByteArrayInputStream(bytes.toByteArray())).read();
+        Assert.assertNotNull(packet);
+        Assert.assertEquals(42L, packet.getLong("time", 0L));
+        Assert.assertEquals(-70, packet.getInteger("RSSI", 0));
+        Assert.assertEquals(Integer.valueOf(-70), packet.getInteger("RSSI", (Integer) null));
+        Assert.assertNull(packet.getLong("RSSI", (Long) null));
+        Assert.assertEquals("Datenkrake", packet.getString("SSID", ""));
+        Assert.assertNull(packet.getString("BSSID", null));
+        Assert.assertEquals(7L, packet.getLong("BSSID", 0L));
+        Assert.assertEquals("value", packet.getString("extra", ""));
+    }
+
+    private ProcessedDataPacket createPacket(int i) {
+        ProcessedDataPacket packet = new ProcessedDataPacket("task");
+        packet.putLong("timestamp", -1000L * i);
+        packet.putInteger("rssi", -70);
+        packet.putDouble("latitude", 49.87);
+        packet.putFloat("accuracy", 12.5f);
+        packet.putBoolean("known", true);
+        packet.putString("name", "Datenkrake " + i);
+        packet.putString("address", null);
+        packet.putObject("action", ApplicationAction.SCROLL);
+        return packet;
+    }
+}
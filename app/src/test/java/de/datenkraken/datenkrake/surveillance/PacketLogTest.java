@@ -0,0 +1,319 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import net.lachlanmckee.timberjunit.TimberTestRule;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import de.datenkraken.datenkrake.surveillance.sender.BluetoothDeviceScanSender;
+import de.datenkraken.datenkrake.surveillance.sender.PermissionStateSender;
+import de.datenkraken.datenkrake.surveillance.sender.WifiConnectionSender;
+
+public class PacketLogTest {
+
+    // Rule to pipe Timber output to system.out
+    @Rule
+    public TimberTestRule logAllAlwaysRule = TimberTestRule.logAllAlways();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final String wifiTaskId = new WifiConnectionSender().getTaskId();
+    private final String scanTaskId = new BluetoothDeviceScanSender().getTaskId();
+    private final String permissionTaskId = new PermissionStateSender().getTaskId();
+
+    @Test
+    public void testSelectAndAcknowledge() throws IOException {
+        File dir = folder.newFolder();
+        PacketLog log = new PacketLog(dir, 512, Long.MAX_VALUE);
+        for (int i = 0; i < 10; i++) {
+            String taskId = i % 2 == 0 ? wifiTaskId : "task";
+            Assert.assertTrue(log.append(taskId, createPackets(taskId, i * 100L)) > 0);
+        }
+
+        // records of the open segment can't be selected before it is sealed
+        log.sealActive();
+        List<PacketRecord> all = log.select(null, Long.MIN_VALUE, Long.MAX_VALUE);
+        Assert.assertEquals(10, all.size());
+        Assert.assertEquals(5, log.select("task", Long.MIN_VALUE, Long.MAX_VALUE).size());
+
+        List<PacketRecord> range = log.select(wifiTaskId, 200L, 250L);
+        Assert.assertEquals(1, range.size());
+        Assert.assertEquals(200L, range.get(0).getMinTimestamp());
+        Assert.assertEquals(209L, range.get(0).getMaxTimestamp());
+
+        List<ProcessedDataPacket> packets = log.read(range.get(0));
+        Assert.assertNotNull(packets);
+        Assert.assertEquals(10, packets.size());
+        Assert.assertEquals(205L, packets.get(5).getLong("time", 0L));
+
+        // a reopened log reads the index from the footers
+        log = new PacketLog(dir, 512, Long.MAX_VALUE);
+        all = log.select(null, Long.MIN_VALUE, Long.MAX_VALUE);
+        Assert.assertEquals(10, all.size());
+        for (PacketRecord record : all) {
+            log.acknowledge(record);
+        }
+        Assert.assertEquals(0, log.size());
+        Assert.assertEquals(0, new PacketLog(dir, 512, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void testPartialAcknowledge() throws IOException {
+        File dir = folder.newFolder();
+        PacketLog log = new PacketLog(dir, Long.MAX_VALUE, Long.MAX_VALUE);
+        log.append(wifiTaskId, createPackets(wifiTaskId, 0L));
+        log.sealActive();
+
+        PacketRecord record = log.select(null, Long.MIN_VALUE, Long.MAX_VALUE).get(0);
+        log.acknowledge(record, 0, 4);
+        log.acknowledge(record, 7, 10);
+        Assert.assertTrue(log.isSent(record, 3));
+        Assert.assertFalse(log.isSent(record, 4));
+        Assert.assertEquals(1, log.select(null, Long.MIN_VALUE, Long.MAX_VALUE).size());
+
+        // the reopened log restores the sent packets from the checkpoint
+        log = new PacketLog(dir, Long.MAX_VALUE, Long.MAX_VALUE);
+        record = log.select(null, Long.MIN_VALUE, Long.MAX_VALUE).get(0);
+        Assert.assertTrue(log.isSent(record, 8));
+        Assert.assertFalse(log.isSent(record, 5));
+
+        // the segment is deleted as soon as the gap is sent
+        log.acknowledge(record, 4, 7);
+        Assert.assertEquals(0, log.select(null, Long.MIN_VALUE, Long.MAX_VALUE).size());
+        Assert.assertEquals(0, log.size());
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        File dir = folder.newFolder();
+        PacketLog log = new PacketLog(dir, 256, 1024);
+        for (int i = 0; i < 20; i++) {
+            Assert.assertTrue(log.append(wifiTaskId, createPackets(wifiTaskId, i * 100L)) > 0);
+            Assert.assertTrue(log.size() <= 1024 + 256);
+        }
+
+        // the oldest records got evicted, the newest packets are kept
+        log.sealActive();
+        long oldest = Long.MAX_VALUE;
+        long newest = Long.MIN_VALUE;
+        for (PacketRecord record : log.select(null, Long.MIN_VALUE, Long.MAX_VALUE)) {
+            oldest = Math.min(oldest, record.getMinTimestamp());
+            newest = Math.max(newest, record.getMinTimestamp());
+        }
+        Assert.assertTrue(oldest > 0L);
+        Assert.assertEquals(1900L, newest);
+
+        // the reopened log restores its size from the ledger
+        Assert.assertEquals(log.size(), new PacketLog(dir, 256, 1024).size());
+    }
+
+    @Test
+    public void testPriorityEviction() throws IOException {
+        File dir = folder.newFolder();
+        PacketLog log = new PacketLog(dir, 256, 4096);
+        log.setEvictionPolicy(PacketLog.LOWEST_PRIORITY_FIRST);
+        for (int i = 0; i < 30; i++) {
+            String taskId = i % 3 == 0 ? permissionTaskId : wifiTaskId;
+            Assert.assertTrue(log.append(taskId, createPackets(taskId, i * 100L)) > 0);
+            Assert.assertTrue(log.size() <= 4096 + 256);
+        }
+
+        // the normal priority packets got evicted, high priority packets are all kept
+        log.sealActive();
+        Assert.assertEquals(10, log.select(permissionTaskId, Long.MIN_VALUE, Long.MAX_VALUE).size());
+        List<PacketRecord> wifi = log.select(wifiTaskId, Long.MIN_VALUE, Long.MAX_VALUE);
+        Assert.assertTrue(wifi.size() < 20);
+
+        // compacted records are still readable
+        List<ProcessedDataPacket> packets = log.read(wifi.get(0));
+        Assert.assertNotNull(packets);
+        Assert.assertEquals(10, packets.size());
+    }
+
+    @Test
+    public void testCompactionWithUndeletableSegments() throws IOException {
+        File dir = folder.newFolder();
+        PacketLog log = new PacketLog(dir, 256, 4096);
+        log.setEvictionPolicy(PacketLog.LOWEST_PRIORITY_FIRST);
+        int appended = 0;
+        int permissions = 0;
+        // append until the first eviction, which can't delete the compacted segments
+        while (log.size() <= 4096) {
+            Assert.assertTrue(appended < 100);
+            for (PacketRecord record : log.select(null, Long.MIN_VALUE, Long.MAX_VALUE)) {
+                // the mapped segment stays readable, but a directory takes the place of its file
+                // so it can't be deleted
+                Assert.assertNotNull(log.read(record));
+                File file = record.segment.getFile();
+                if (file.isFile()) {
+                    Assert.assertTrue(file.delete());
+                    Assert.assertTrue(new File(file, "pinned").mkdirs());
+                }
+            }
+
+            String taskId = appended % 3 == 0 ? permissionTaskId : wifiTaskId;
+            Assert.assertTrue(log.append(taskId, createPackets(taskId, appended * 100L)) > 0);
+            permissions += appended % 3 == 0 ? 1 : 0;
+            appended++;
+        }
+
+        // the records copied out of the kept segments are selected only once
+        log.sealActive();
+        Set<Long> timestamps = new HashSet<>();
+        for (PacketRecord record : log.select(null, Long.MIN_VALUE, Long.MAX_VALUE)) {
+            List<ProcessedDataPacket> packets = log.read(record);
+            Assert.assertNotNull(packets);
+            Assert.assertTrue(timestamps.add(packets.get(0).getLong("time", 0L)));
+        }
+        Assert.assertTrue(timestamps.size() < appended);
+        Assert.assertEquals(permissions, log.select(permissionTaskId, Long.MIN_VALUE, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void testAcknowledgeAfterCompaction() throws IOException {
+        PacketLog log = new PacketLog(folder.newFolder(), 256, 4096);
+        log.setEvictionPolicy(PacketLog.LOWEST_PRIORITY_FIRST);
+        List<PacketRecord> selected;
+        int appended = 0;
+        boolean evicted = false;
+        // the sender selects the high priority records, before the next append evicts records
+        do {
+            Assert.assertTrue(appended < 100);
+            selected = log.select(permissionTaskId, Long.MIN_VALUE, Long.MAX_VALUE);
+            String taskId = appended % 3 == 0 ? permissionTaskId : wifiTaskId;
+            long before = log.size();
+            int written = log.append(taskId, createPackets(taskId, appended * 100L));
+            Assert.assertTrue(written > 0);
+            evicted = log.size() < before + written;
+            appended++;
+        } while (!evicted);
+
+        // some of the selected records were compacted while they were sent
+        boolean compacted = false;
+        for (PacketRecord record : selected) {
+            compacted |= !record.segment.getFile().exists();
+        }
+        Assert.assertTrue(compacted);
+
+        // the late acknowledgements reach the copies, so they aren't sent again
+        for (PacketRecord record : selected) {
+            Assert.assertFalse(log.isSent(record, 0));
+            log.acknowledge(record);
+            Assert.assertTrue(log.isSent(record, 0));
+        }
+        log.sealActive();
+        int unsent = (appended - 1) % 3 == 0 ? 1 : 0;
+        Assert.assertEquals(unsent, log.select(permissionTaskId, Long.MIN_VALUE, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void testClear() throws IOException {
+        File dir = folder.newFolder();
+        PacketLog log = new PacketLog(dir, 512, Long.MAX_VALUE);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(log.append(wifiTaskId, createPackets(wifiTaskId, i * 100L)) > 0);
+        }
+        log.sealActive();
+        PacketRecord cleared = log.select(null, Long.MIN_VALUE, Long.MAX_VALUE).get(0);
+        log.append(wifiTaskId, createPackets(wifiTaskId, 1000L));
+
+        Assert.assertTrue(log.clear());
+        Assert.assertEquals(0, log.size());
+        Assert.assertTrue(log.select(null, Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+
+        // the log continues with new segments, a record of the old ones doesn't affect them
+        int written = log.append(wifiTaskId, createPackets(wifiTaskId, 2000L));
+        Assert.assertTrue(written > 0);
+        log.acknowledge(cleared);
+        log.sealActive();
+        List<PacketRecord> records = log.select(null, Long.MIN_VALUE, Long.MAX_VALUE);
+        Assert.assertEquals(1, records.size());
+        List<ProcessedDataPacket> packets = log.read(records.get(0));
+        Assert.assertNotNull(packets);
+        Assert.assertEquals(2000L, packets.get(0).getLong("time", 0L));
+
+        // the reopened log sees the same
+        PacketLog reopened = new PacketLog(dir, 512, Long.MAX_VALUE);
+        Assert.assertEquals(log.size(), reopened.size());
+        Assert.assertEquals(1, reopened.select(null, Long.MIN_VALUE, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void testQuota() throws IOException {
+        File dir = folder.newFolder();
+        PacketLog log = new PacketLog(dir, 256, 4096);
+        for (int i = 0; i < 40; i++) {
+            String taskId = i % 4 == 0 ? wifiTaskId : scanTaskId;
+            Assert.assertTrue(log.append(taskId, createPackets(taskId, i * 100L)) > 0);
+        }
+
+        // the scan packets are limited to a quarter of the cache, all other packets are kept
+        log.sealActive();
+        long scanSize = 0;
+        for (PacketRecord record : log.select(scanTaskId, Long.MIN_VALUE, Long.MAX_VALUE)) {
+            scanSize += record.getSize();
+        }
+        Assert.assertTrue(scanSize <= 4096 / 4 + 256);
+        Assert.assertEquals(10, log.select(wifiTaskId, Long.MIN_VALUE, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void testCorruption() throws IOException {
+        File dir = folder.newFolder();
+        PacketLog log = new PacketLog(dir, Long.MAX_VALUE, Long.MAX_VALUE);
+        log.append("task", createPackets("task", 0L));
+        log.append("task", createPackets("task", 100L));
+
+        // simulate a crash while writing the next record header
+        File open = getSegmentFile(dir);
+        try (FileOutputStream out = new FileOutputStream(open, true)) {
+            out.write(new byte[] {0x44, 0x4B, 0x52});
+        }
+
+        log = new PacketLog(dir, Long.MAX_VALUE, Long.MAX_VALUE);
+        log.sealActive();
+        List<PacketRecord> all = log.select(null, Long.MIN_VALUE, Long.MAX_VALUE);
+        Assert.assertEquals(2, all.size());
+
+        // flip a byte of the payload of the second record
+        PacketRecord record = all.get(1);
+        try (RandomAccessFile file = new RandomAccessFile(getSegmentFile(dir), "rw")) {
+            file.seek(record.getPayloadOffset() + 2);
+            int b = file.read();
+            file.seek(record.getPayloadOffset() + 2);
+            file.write(b ^ 0xFF);
+        }
+
+        Assert.assertNotNull(log.read(all.get(0)));
+        Assert.assertNull(log.read(record));
+    }
+
+    private File getSegmentFile(File dir) {
+        return dir.listFiles((parent, name) -> !name.startsWith(PacketLedger.FILE_NAME)
+            && !name.startsWith(PacketCheckpoint.FILE_NAME))[0];
+    }
+
+    private List<ProcessedDataPacket> createPackets(String taskId, long time) {
+        List<ProcessedDataPacket> packets = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ProcessedDataPacket packet = new ProcessedDataPacket(taskId);
+            packet.putLong("time", time + i);
+            packet.putString("SSID", "Datenkrake");
+            packet.putInteger("RSSI", -70);
+            packets.add(packet);
+        }
+        return packets;
+    }
+}
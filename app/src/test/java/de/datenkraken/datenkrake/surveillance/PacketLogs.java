@@ -0,0 +1,58 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Opens {@link PacketLog}s in a given directory for tests of other packages.
+ */
+public final class PacketLogs {
+
+    private PacketLogs() {
+
+    }
+
+    /**
+     * Opens the log in the given directory.
+     *
+     * @param dir directory of the log
+     * @param segmentSize size in bytes, after which a segment gets sealed
+     * @param maxSize size limit of the log in bytes
+     * @return the opened log
+     */
+    public static PacketLog open(File dir, long segmentSize, long maxSize) {
+        return new PacketLog(dir, segmentSize, maxSize);
+    }
+
+    /**
+     * Writes a sealed segment with one record to the given directory and opens the log. The
+     * checksum of the record is valid, but only the given packets can be decoded, the record
+     * claims to contain more.
+     *
+     * @param dir empty directory of the log
+     * @param taskId task id of the record
+     * @param packets packets, which can be decoded
+     * @param count number of packets the record claims to contain
+     * @return the opened log
+     * @throws IOException thrown if the segment couldn't be written
+     */
+    public static PacketLog openCorrupted(File dir, String taskId, List<ProcessedDataPacket> packets, int count)
+        throws IOException {
+        PacketLogSegment segment = PacketLogSegment.create(dir, 0);
+        try (PacketRecordWriter writer = new PacketRecordWriter(segment.getFile(), taskId, Long.MAX_VALUE)) {
+            DeflaterOutputStream compressed = new DeflaterOutputStream(writer);
+            PacketCodec.Encoder encoder = new PacketCodec.Encoder(compressed);
+            for (ProcessedDataPacket packet : packets) {
+                encoder.write(packet);
+            }
+            // an invalid packet marker instead of the end of the batch
+            compressed.write(0x7F);
+            compressed.finish();
+            segment.append(writer.commit(segment, count, Long.MIN_VALUE, Long.MAX_VALUE));
+        }
+        segment.seal();
+        return new PacketLog(dir, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,109 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import net.lachlanmckee.timberjunit.TimberTestRule;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PacketSpillTest {
+
+    // Rule to pipe Timber output to system.out
+    @Rule
+    public TimberTestRule logAllAlwaysRule = TimberTestRule.logAllAlways();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testDrain() throws IOException {
+        File dir = folder.newFolder();
+        PacketSpill spill = new PacketSpill(dir);
+        Assert.assertTrue(spill.write(createPackets(0)));
+        Assert.assertTrue(spill.write(createPackets(100)));
+        // leftover of a write, which didn't complete
+        Assert.assertTrue(new File(dir, "0-0.partial").createNewFile());
+
+        // a new process sees the spills of the old one
+        RecordingSaver saver = new RecordingSaver(true);
+        Assert.assertTrue(new PacketSpill(dir).drain(saver));
+        Assert.assertEquals(2, saver.batches.size());
+        Assert.assertEquals(10, saver.batches.get(0).size());
+        Assert.assertEquals(5L, saver.batches.get(0).get(5).getLong("time", 0L));
+        Assert.assertEquals(105L, saver.batches.get(1).get(5).getLong("time", 0L));
+        Assert.assertEquals(0, dir.listFiles().length);
+    }
+
+    @Test
+    public void testFailedSaveIsKept() throws IOException {
+        File dir = folder.newFolder();
+        PacketSpill spill = new PacketSpill(dir);
+        Assert.assertTrue(spill.write(createPackets(0)));
+
+        Assert.assertFalse(spill.drain(new RecordingSaver(false)));
+        Assert.assertEquals(1, dir.listFiles().length);
+
+        RecordingSaver saver = new RecordingSaver(true);
+        Assert.assertTrue(spill.drain(saver));
+        Assert.assertEquals(1, saver.batches.size());
+        Assert.assertEquals(0, dir.listFiles().length);
+    }
+
+    @Test
+    public void testCollectorSpillsBufferedPackets() throws IOException {
+        File dir = folder.newFolder();
+        RecordingSaver saver = new RecordingSaver(true);
+        // the flusher only wakes up after an hour
+        ProcessedDataCollector collector = new ProcessedDataCollector(saver, 100, 256, 3600000,
+            ProcessedDataCollector.OverflowPolicy.DROP_LOWEST_PRIORITY, 0);
+        for (ProcessedDataPacket packet : createPackets(0)) {
+            collector.addPacket(packet);
+        }
+
+        Assert.assertTrue(collector.spill(new PacketSpill(dir)));
+        Assert.assertTrue(saver.batches.isEmpty());
+
+        Assert.assertTrue(new PacketSpill(dir).drain(saver));
+        Assert.assertEquals(1, saver.batches.size());
+        Assert.assertEquals(10, saver.batches.get(0).size());
+    }
+
+    private List<ProcessedDataPacket> createPackets(long time) {
+        List<ProcessedDataPacket> packets = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ProcessedDataPacket packet = new ProcessedDataPacket("task");
+            packet.putLong("time", time + i);
+            packet.putString("SSID", "Datenkrake");
+            packets.add(packet);
+        }
+        return packets;
+    }
+
+    /**
+     * Saver recording the saved batches instead of writing them to the {@link PacketLog}.
+     */
+    private static class RecordingSaver extends PacketSaver {
+
+        private final boolean result;
+        final List<List<ProcessedDataPacket>> batches = new ArrayList<>();
+
+        RecordingSaver(boolean result) {
+            super(null);
+            this.result = result;
+        }
+
+        @Override
+        public synchronized boolean save(List<ProcessedDataPacket> packets) {
+            if (result) {
+                batches.add(new ArrayList<>(packets));
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import de.datenkraken.datenkrake.ArticleActionMutation;
+import de.datenkraken.datenkrake.network.ITask;
+import de.datenkraken.datenkrake.surveillance.graphqladapter.ArticleAction;
+
+/**
+ * JMH benchmarks of the surveillance pipeline, run with {@code ./gradlew benchmarkSurveillance}.
+ * Storage and concurrency changes should be checked against them. <br>
+ * The average size of a packet on the disk is reported next to the throughput of
+ * {@link #replayToDisk(ReplayedPipeline, DiskUsage)}.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PipelineBenchmark {
+
+    private static final int EVENTS = 1000;
+
+    /**
+     * Pipeline writing to a new directory for every trial.
+     */
+    @State(Scope.Benchmark)
+    public static class Pipeline {
+
+        @Param
+        public PipelineHarness.Stream stream;
+
+        PipelineHarness harness;
+        private File dir;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            dir = Files.createTempDirectory("pipeline").toFile();
+            harness = new PipelineHarness(dir);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            harness.close();
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    /**
+     * Pipeline, which replays its stream at a given rate. The rate changes how many events are
+     * coalesced.
+     */
+    @State(Scope.Benchmark)
+    public static class ReplayedPipeline extends Pipeline {
+
+        @Param({"100", "10000"})
+        public double eventsPerSecond;
+    }
+
+    /**
+     * Average size of a packet on the disk, taken after every iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class DiskUsage {
+
+        public double bytesPerPacket;
+
+        @TearDown(Level.Iteration)
+        public void measure(ReplayedPipeline pipeline) {
+            long bytes = 0;
+            long packets = 0;
+            for (PacketRecord record : pipeline.harness.getRecords(null)) {
+                bytes += record.getSize();
+                packets += record.getCount();
+            }
+            bytesPerPacket = packets == 0 ? 0 : (double) bytes / packets;
+        }
+    }
+
+    /**
+     * Log filled with the packets of one stream, to read them back.
+     */
+    @State(Scope.Benchmark)
+    public static class FilledLog {
+
+        @Param
+        public PipelineHarness.Stream stream;
+
+        PipelineHarness harness;
+        List<PacketRecord> records;
+        final Map<String, ISendProcessedData> senders = new HashMap<>();
+        private File dir;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException, InterruptedException {
+            dir = Files.createTempDirectory("pipeline").toFile();
+            harness = new PipelineHarness(dir);
+            // one event per second, so nothing is coalesced
+            harness.replay(stream, EVENTS, 1, false);
+            if (!harness.awaitDisk(10000)) {
+                throw new IllegalStateException("Packets weren't written");
+            }
+            records = harness.getRecords(null);
+            for (ISendProcessedData sender : ProcessorProvider.getSendProcessor()) {
+                senders.put(sender.getTaskId(), sender);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            harness.close();
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    /**
+     * Time from raising a single event, until its packet is on the disk.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean raiseToDisk(Pipeline pipeline) throws InterruptedException {
+        // one event per second, so the event isn't coalesced with the one before
+        pipeline.harness.replay(pipeline.stream, 1, 1, false);
+        return pipeline.harness.awaitDisk(10000);
+    }
+
+    /**
+     * Events per second, which are raised, processed and written, when they arrive at once.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(EVENTS)
+    public boolean replayToDisk(ReplayedPipeline pipeline, DiskUsage usage) throws InterruptedException {
+        pipeline.harness.replay(pipeline.stream, EVENTS, pipeline.eventsPerSecond, false);
+        return pipeline.harness.awaitDisk(10000);
+    }
+
+    /**
+     * Packets per second, which are buffered by the {@link ProcessedDataCollector} and written
+     * to the log.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(EVENTS)
+    public boolean flush(Pipeline pipeline) {
+        ProcessedDataCollector collector = pipeline.harness.getCollector();
+        for (int i = 0; i < EVENTS; i++) {
+            ProcessedDataPacket packet = new ProcessedDataPacket(ArticleActionMutation.OPERATION_ID);
+            packet.putObject("action", ArticleAction.OPENED);
+            packet.putLong("timestamp", PipelineHarness.EPOCH + i);
+            packet.putString("title", "Article " + i);
+            packet.putString("url", "https://example.org/feed");
+            collector.addPacket(packet);
+        }
+        return collector.flushAsync(10000);
+    }
+
+    /**
+     * Time to decode the records of the log and create the mutations sending them.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int decodeToMutation(FilledLog log) {
+        int created = 0;
+        for (PacketRecord record : log.records) {
+            List<ProcessedDataPacket> packets = log.harness.getLog().read(record);
+            ITask task = log.senders.get(record.getTaskId()).getTask(packets, null);
+            created += task == null ? 0 : 1;
+        }
+        return created;
+    }
+}
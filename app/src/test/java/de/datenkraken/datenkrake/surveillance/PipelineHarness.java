@@ -0,0 +1,290 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import android.content.Context;
+import android.content.res.Resources;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import de.datenkraken.datenkrake.R;
+import de.datenkraken.datenkrake.surveillance.graphqladapter.ApplicationAction;
+import de.datenkraken.datenkrake.surveillance.graphqladapter.ArticleAction;
+import de.datenkraken.datenkrake.surveillance.graphqladapter.Permission;
+import de.datenkraken.datenkrake.surveillance.graphqladapter.SourceAction;
+import de.datenkraken.datenkrake.surveillance.payload.ArticleActionPayload;
+import de.datenkraken.datenkrake.surveillance.payload.PermissionStatePayload;
+import de.datenkraken.datenkrake.surveillance.payload.SourceActionPayload;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the surveillance pipeline on the JVM, from the {@link EventCollector} over the
+ * {@link EventDistributor} and {@link ProcessedDataCollector} to a {@link PacketLog} in a
+ * directory of the tests. The Context and its Resources are mocked with the values of
+ * contants.xml. <br>
+ * Synthetic event streams are replayed at a given rate. The timestamps of the events follow a
+ * virtual clock, so a stream can be replayed faster than real time and still be coalesced as if
+ * it was raised at its rate. The clock and the index of the events continue across replays.
+ * Used by {@link PipelineHarnessTest} and {@link PipelineBenchmark}.
+ */
+final class PipelineHarness implements AutoCloseable {
+
+    // start of the virtual clock
+    static final long EPOCH = 1600000000000L;
+
+    private static final int SOFT_CAP = 2000;
+    private static final int HARD_CAP = 3000;
+    private static final ApplicationAction[] NAVIGATION = {ApplicationAction.STARTED, ApplicationAction.SCROLL,
+        ApplicationAction.BACKGROUND, ApplicationAction.CLOSED};
+
+    private final EventTimer timer = new EventTimer(10, 512);
+    private final EventLanes lanes;
+    private final PacketLog log;
+    private final ProcessedDataCollector collector;
+    private final EventCollector eventCollector;
+    private double clock = EPOCH;
+    private int next;
+
+    /**
+     * Creates the pipeline with the default configuration of the app.
+     *
+     * @param dir empty directory of the {@link PacketLog}
+     */
+    PipelineHarness(File dir) {
+        this(dir, Math.min(10, Runtime.getRuntime().availableProcessors()), 100, 30000);
+    }
+
+    /**
+     * Creates the pipeline.
+     *
+     * @param dir empty directory of the {@link PacketLog}
+     * @param threads threads of the {@link EventLanes}
+     * @param packetLimit buffered packets, after which they are written
+     * @param flushInterval time in milliseconds, after which buffered packets are written
+     */
+    PipelineHarness(File dir, int threads, int packetLimit, long flushInterval) {
+        lanes = new EventLanes(threads);
+        log = new PacketLog(dir, 262144, Long.MAX_VALUE);
+        collector = new ProcessedDataCollector(new LogSaver(log), packetLimit, 1024, flushInterval,
+            ProcessedDataCollector.OverflowPolicy.BLOCK, 10000);
+        eventCollector = new EventCollector(timer, lanes, new EventDistributor(collector),
+            new WeakReference<>(createContext()));
+    }
+
+    private static Context createContext() {
+        Resources resources = mock(Resources.class);
+        when(resources.getInteger(R.integer.event_queue_soft_cap)).thenReturn(SOFT_CAP);
+        when(resources.getInteger(R.integer.event_queue_hard_cap)).thenReturn(HARD_CAP);
+
+        Context context = mock(Context.class);
+        when(context.getResources()).thenReturn(resources);
+        return context;
+    }
+
+    /**
+     * Raises the events of a stream.
+     *
+     * @param source creates the events of the stream
+     * @param count number of events to raise
+     * @param eventsPerSecond rate of the stream, which sets the timestamps of the events
+     * @param paced true to raise the events at the rate in real time, false to raise them at once
+     * @return number of accepted events
+     */
+    int replay(EventSource source, int count, double eventsPerSecond, boolean paced) {
+        double interval = 1000 / eventsPerSecond;
+        long start = System.nanoTime();
+        int accepted = 0;
+        for (int i = 0; i < count; i++) {
+            if (paced) {
+                long due = start + (long) (i * interval * 1000000);
+                for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+
+            DataCollectionEvent event = source.create(next++);
+            event.timestamp = (long) clock;
+            clock += interval;
+            if (eventCollector.addEvent(event) != null) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Waits until all raised events are processed and their packets are written to the log.
+     *
+     * @param timeout time in milliseconds to wait at most
+     * @return true if everything was written in time
+     */
+    boolean awaitDisk(long timeout) throws InterruptedException {
+        // lanes are serial, so a marker runs after all events queued before it
+        DataCollectionEventType[] types = DataCollectionEventType.values();
+        CountDownLatch processed = new CountDownLatch(types.length);
+        for (DataCollectionEventType type : types) {
+            lanes.submit(type, processed::countDown);
+        }
+        return processed.await(timeout, TimeUnit.MILLISECONDS) && collector.flushAsync(timeout);
+    }
+
+    /**
+     * Returns the sealed records of the given task id.
+     *
+     * @param taskId task id of the records, null for all records
+     * @return records in the log
+     */
+    List<PacketRecord> getRecords(String taskId) {
+        log.sealActive();
+        return log.select(taskId, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the average size of a packet of every task id on the disk.
+     *
+     * @return bytes per packet by task id
+     */
+    Map<String, Double> getBytesPerPacket() {
+        Map<String, long[]> totals = new HashMap<>();
+        for (PacketRecord record : getRecords(null)) {
+            long[] total = totals.get(record.getTaskId());
+            if (total == null) {
+                total = new long[2];
+                totals.put(record.getTaskId(), total);
+            }
+            total[0] += record.getSize();
+            total[1] += record.getCount();
+        }
+
+        Map<String, Double> sizes = new HashMap<>();
+        for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+            sizes.put(entry.getKey(), (double) entry.getValue()[0] / entry.getValue()[1]);
+        }
+        return sizes;
+    }
+
+    PacketLog getLog() {
+        return log;
+    }
+
+    ProcessedDataCollector getCollector() {
+        return collector;
+    }
+
+    @Override
+    public void close() {
+        timer.stop();
+        lanes.shutdownNow();
+    }
+
+    /**
+     * Creates the events of a synthetic stream.
+     */
+    interface EventSource {
+
+        /**
+         * Creates the event with the given index in the stream.
+         *
+         * @param index index of the event
+         * @return new event
+         */
+        DataCollectionEvent create(int index);
+    }
+
+    /**
+     * Synthetic event streams of the app.
+     */
+    enum Stream implements EventSource {
+        /**
+         * Navigation of the app, cycling through the actions of a session.
+         */
+        APPLICATION_ACTIONS {
+            @Override
+            public DataCollectionEvent create(int index) {
+                return new DataCollectionEvent<>(DataCollectionEventType.APPLICATIONACTION)
+                    .with(NAVIGATION[index % NAVIGATION.length]);
+            }
+        },
+        /**
+         * Reading different articles of ten sources.
+         */
+        ARTICLE_ACTIONS {
+            @Override
+            public DataCollectionEvent create(int index) {
+                return new DataCollectionEvent<>(DataCollectionEventType.ARTICLEACTION)
+                    .with(ArticleActionPayload.obtain(ArticleAction.OPENED, "Article " + index,
+                        "https://example.org/feed" + index % 10));
+            }
+        },
+        /**
+         * Adding and removing sources.
+         */
+        SOURCE_ACTIONS {
+            @Override
+            public DataCollectionEvent create(int index) {
+                return new DataCollectionEvent<>(DataCollectionEventType.SOURCEACTION)
+                    .with(SourceActionPayload.obtain(index % 2 == 0 ? SourceAction.ADDED : SourceAction.REMOVED,
+                        "https://example.org/feed" + index));
+            }
+        },
+        /**
+         * Changes of the location permission.
+         */
+        PERMISSION_STATES {
+            @Override
+            public DataCollectionEvent create(int index) {
+                return new DataCollectionEvent<>(DataCollectionEventType.PERMISSIONSTATE)
+                    .with(PermissionStatePayload.obtain(Permission.LOCATION, index % 2 == 0));
+            }
+        },
+        /**
+         * Mix of all other streams.
+         */
+        MIXED {
+            @Override
+            public DataCollectionEvent create(int index) {
+                return values()[index % 4].create(index / 4);
+            }
+        }
+    }
+
+    /**
+     * Saver writing the packets to the log of the harness, instead of the log of the app.
+     */
+    private static final class LogSaver extends PacketSaver {
+
+        private final PacketLog log;
+
+        LogSaver(PacketLog log) {
+            super(new WeakReference<>(null));
+            this.log = log;
+        }
+
+        @Override
+        public boolean save(List<ProcessedDataPacket> processedDataPackets) {
+            Map<String, List<ProcessedDataPacket>> sortedPackets = new HashMap<>();
+            for (ProcessedDataPacket packet : processedDataPackets) {
+                List<ProcessedDataPacket> packets = sortedPackets.get(packet.getTaskId());
+                if (packets == null) {
+                    packets = new ArrayList<>();
+                    sortedPackets.put(packet.getTaskId(), packets);
+                }
+                packets.add(packet);
+            }
+
+            boolean result = true;
+            for (Map.Entry<String, List<ProcessedDataPacket>> entry : sortedPackets.entrySet()) {
+                result &= log.append(entry.getKey(), entry.getValue()) >= 0;
+            }
+            return result;
+        }
+    }
+}
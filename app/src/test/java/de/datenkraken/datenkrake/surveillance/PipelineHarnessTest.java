@@ -0,0 +1,64 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import net.lachlanmckee.timberjunit.TimberTestRule;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Map;
+
+public class PipelineHarnessTest {
+
+    // Rule to pipe Timber output to system.out
+    @Rule
+    public TimberTestRule logAllAlwaysRule = TimberTestRule.logAllAlways();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReplayToDisk() throws IOException, InterruptedException {
+        try (PipelineHarness harness = new PipelineHarness(folder.newFolder())) {
+            Assert.assertEquals(400, harness.replay(PipelineHarness.Stream.MIXED, 400, 1, false));
+            Assert.assertTrue(harness.awaitDisk(10000));
+
+            int packets = 0;
+            long first = Long.MAX_VALUE;
+            long last = Long.MIN_VALUE;
+            for (PacketRecord record : harness.getRecords(null)) {
+                packets += record.getCount();
+                first = Math.min(first, record.getMinTimestamp());
+                last = Math.max(last, record.getMaxTimestamp());
+            }
+            Assert.assertEquals(400, packets);
+            // the timestamps follow the virtual clock, one event per second
+            Assert.assertEquals(PipelineHarness.EPOCH, first);
+            Assert.assertEquals(PipelineHarness.EPOCH + 399000, last);
+
+            Map<String, Double> sizes = harness.getBytesPerPacket();
+            Assert.assertEquals(4, sizes.size());
+            for (double size : sizes.values()) {
+                Assert.assertTrue(size > 0);
+            }
+        }
+    }
+
+    @Test
+    public void testVirtualClockCoalesces() throws IOException, InterruptedException {
+        try (PipelineHarness harness = new PipelineHarness(folder.newFolder())) {
+            // four actions, each repeated every 40 ms of virtual time, only the scroll events are merged
+            // within their window
+            harness.replay(PipelineHarness.Stream.APPLICATION_ACTIONS, 1000, 100, false);
+            Assert.assertTrue(harness.awaitDisk(10000));
+
+            int packets = 0;
+            for (PacketRecord record : harness.getRecords(null)) {
+                packets += record.getCount();
+            }
+            Assert.assertEquals(760, packets);
+        }
+    }
+}
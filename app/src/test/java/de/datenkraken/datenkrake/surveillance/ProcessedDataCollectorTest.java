@@ -0,0 +1,156 @@
+package de.datenkraken.datenkrake.surveillance;
+
+import net.lachlanmckee.timberjunit.TimberTestRule;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import de.datenkraken.datenkrake.surveillance.sender.BluetoothDeviceScanSender;
+import de.datenkraken.datenkrake.surveillance.sender.PermissionStateSender;
+import de.datenkraken.datenkrake.surveillance.sender.WifiConnectionSender;
+
+public class ProcessedDataCollectorTest {
+
+    // Rule to pipe Timber output to system.out
+    @Rule
+    public TimberTestRule logAllAlwaysRule = TimberTestRule.logAllAlways();
+
+    private final String wifiTaskId = new WifiConnectionSender().getTaskId();
+    private final String scanTaskId = new BluetoothDeviceScanSender().getTaskId();
+    private final String permissionTaskId = new PermissionStateSender().getTaskId();
+
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        RecordingSaver saver = new RecordingSaver();
+        ProcessedDataCollector collector = new ProcessedDataCollector(saver, 100, 256, 10,
+            ProcessedDataCollector.OverflowPolicy.BLOCK, 10000);
+
+        List<Thread> producers = new ArrayList<>();
+        for (int producer = 0; producer < 4; producer++) {
+            String taskId = "task" + producer;
+            producers.add(new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    ProcessedDataPacket packet = new ProcessedDataPacket(taskId);
+                    packet.putLong("index", i);
+                    collector.addPacket(packet);
+                }
+            }));
+        }
+        for (Thread producer : producers) {
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        collector.flush();
+
+        long[] next = new long[4];
+        for (ProcessedDataPacket packet : saver.getPackets()) {
+            int producer = packet.getTaskId().charAt(4) - '0';
+            Assert.assertEquals(next[producer]++, packet.getLong("index", -1L));
+        }
+        for (long count : next) {
+            Assert.assertEquals(5000, count);
+        }
+    }
+
+    @Test
+    public void testDropLowestPriority() throws InterruptedException {
+        RecordingSaver saver = new RecordingSaver();
+        saver.block();
+        ProcessedDataCollector collector = new ProcessedDataCollector(saver, 100, 8, 0,
+            ProcessedDataCollector.OverflowPolicy.DROP_LOWEST_PRIORITY, 0);
+
+        // the flusher takes the first packet and blocks in the saver, so the buffer fills up
+        collector.addPacket(new ProcessedDataPacket(permissionTaskId));
+        Assert.assertTrue(saver.awaitSave());
+        for (String taskId : new String[] {scanTaskId, wifiTaskId, permissionTaskId}) {
+            for (int i = 0; i < 8; i++) {
+                collector.addPacket(new ProcessedDataPacket(taskId));
+            }
+        }
+        saver.unblock();
+        collector.flush();
+
+        Assert.assertEquals(4, saver.count(scanTaskId));
+        Assert.assertEquals(2, saver.count(wifiTaskId));
+        Assert.assertEquals(3, saver.count(permissionTaskId));
+    }
+
+    @Test
+    public void testFlushAsync() throws InterruptedException {
+        RecordingSaver saver = new RecordingSaver();
+        saver.block();
+        ProcessedDataCollector collector = new ProcessedDataCollector(saver, 100, 256, 60000,
+            ProcessedDataCollector.OverflowPolicy.DROP_LOWEST_PRIORITY, 0);
+        for (int i = 0; i < 10; i++) {
+            collector.addPacket(new ProcessedDataPacket(wifiTaskId));
+        }
+
+        // the saver blocks, so the flush doesn't finish in time, but keeps running
+        Assert.assertFalse(collector.flushAsync(50));
+        Assert.assertTrue(saver.awaitSave());
+        saver.unblock();
+        Assert.assertTrue(collector.flushAsync(10000));
+        Assert.assertEquals(10, saver.count(wifiTaskId));
+    }
+
+    private static class RecordingSaver extends PacketSaver {
+
+        private final List<ProcessedDataPacket> packets = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch saving = new CountDownLatch(1);
+        private CountDownLatch gate = new CountDownLatch(0);
+
+        RecordingSaver() {
+            super(new WeakReference<>(null));
+        }
+
+        @Override
+        public boolean save(List<ProcessedDataPacket> processedDataPackets) {
+            packets.addAll(processedDataPackets);
+            saving.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }
+
+        void block() {
+            gate = new CountDownLatch(1);
+        }
+
+        void unblock() {
+            gate.countDown();
+        }
+
+        boolean awaitSave() throws InterruptedException {
+            return saving.await(10, TimeUnit.SECONDS);
+        }
+
+        List<ProcessedDataPacket> getPackets() {
+            return packets;
+        }
+
+        int count(String taskId) {
+            int count = 0;
+            synchronized (packets) {
+                for (ProcessedDataPacket packet : packets) {
+                    if (packet.getTaskId().equals(taskId)) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+    }
+}
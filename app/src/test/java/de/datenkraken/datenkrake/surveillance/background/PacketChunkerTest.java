@@ -0,0 +1,182 @@
+package de.datenkraken.datenkrake.surveillance.background;
+
+import net.lachlanmckee.timberjunit.TimberTestRule;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.datenkraken.datenkrake.surveillance.PacketLog;
+import de.datenkraken.datenkrake.surveillance.PacketLogs;
+import de.datenkraken.datenkrake.surveillance.PacketRecord;
+import de.datenkraken.datenkrake.surveillance.ProcessedDataPacket;
+
+public class PacketChunkerTest {
+
+    // Rule to pipe Timber output to system.out
+    @Rule
+    public TimberTestRule logAllAlwaysRule = TimberTestRule.logAllAlways();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final int packetBytes = createPacket(0, "").estimateSize();
+
+    @Test
+    public void testOversizedPacket() throws IOException {
+        PacketLog log = PacketLogs.open(folder.newFolder(), 1 << 20, Long.MAX_VALUE);
+        List<ProcessedDataPacket> packets = new ArrayList<>();
+        packets.add(createPacket(0, ""));
+        packets.add(createPacket(1, new String(new char[1000]).replace('\0', 'x')));
+        packets.add(createPacket(2, ""));
+        PacketRecord record = append(log, packets);
+
+        PacketChunker chunker = new PacketChunker(log, record, 10, packetBytes * 2);
+        assertChunk(chunker.next(), 0, 1);
+        // a packet larger than the limit is sent on its own
+        PacketChunker.Chunk oversized = chunker.next();
+        assertChunk(oversized, 1, 1);
+        Assert.assertTrue(oversized.getBytes() > packetBytes * 2);
+        assertChunk(chunker.next(), 2, 1);
+        Assert.assertNull(chunker.next());
+        Assert.assertFalse(chunker.hasNext());
+    }
+
+    @Test
+    public void testPacketLimit() throws IOException {
+        PacketLog log = PacketLogs.open(folder.newFolder(), 1 << 20, Long.MAX_VALUE);
+        PacketRecord record = append(log, createPackets(8));
+
+        PacketChunker chunker = new PacketChunker(log, record, 4, Integer.MAX_VALUE);
+        assertChunk(chunker.next(), 0, 4);
+        assertChunk(chunker.next(), 4, 4);
+        Assert.assertNull(chunker.next());
+        Assert.assertFalse(chunker.hasNext());
+    }
+
+    @Test
+    public void testByteLimit() throws IOException {
+        PacketLog log = PacketLogs.open(folder.newFolder(), 1 << 20, Long.MAX_VALUE);
+        PacketRecord record = append(log, createPackets(6));
+
+        // exactly three packets fit
+        PacketChunker chunker = new PacketChunker(log, record, 100, packetBytes * 3);
+        PacketChunker.Chunk chunk = chunker.next();
+        assertChunk(chunk, 0, 3);
+        Assert.assertEquals(packetBytes * 3, chunk.getBytes());
+        assertChunk(chunker.next(), 3, 3);
+        Assert.assertNull(chunker.next());
+
+        // one byte less leaves the third one out
+        chunker = new PacketChunker(log, record, 100, packetBytes * 3 - 1);
+        chunk = chunker.next();
+        assertChunk(chunk, 0, 2);
+        Assert.assertEquals(packetBytes * 2, chunk.getBytes());
+    }
+
+    @Test
+    public void testAcknowledgeRanges() throws IOException {
+        PacketLog log = PacketLogs.open(folder.newFolder(), 1 << 20, Long.MAX_VALUE);
+        PacketRecord record = append(log, createPackets(6));
+
+        PacketChunker chunker = new PacketChunker(log, record, 2, Integer.MAX_VALUE);
+        assertChunk(chunker.next(), 0, 2);
+        PacketChunker.Chunk sent = chunker.next();
+        assertChunk(sent, 2, 2);
+        assertChunk(chunker.next(), 4, 2);
+        sent.acknowledge();
+        for (int i = 0; i < 6; i++) {
+            Assert.assertEquals(i == 2 || i == 3, log.isSent(record, i));
+        }
+
+        // a retry skips the sent packets, so the chunks don't span the gap
+        chunker = new PacketChunker(log, record, 10, Integer.MAX_VALUE);
+        PacketChunker.Chunk first = chunker.next();
+        PacketChunker.Chunk second = chunker.next();
+        assertChunk(first, 0, 2);
+        assertChunk(second, 4, 2);
+        Assert.assertNull(chunker.next());
+        first.acknowledge();
+        Assert.assertFalse(log.select(null, Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+
+        // the segment is deleted with the last range
+        second.acknowledge();
+        Assert.assertTrue(log.select(null, Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+        Assert.assertEquals(0, log.size());
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        PacketLog log = PacketLogs.open(folder.newFolder(), 1 << 20, Long.MAX_VALUE);
+        PacketRecord record = append(log, createPackets(6));
+
+        // abandoned after the first chunk
+        PacketChunker chunker = new PacketChunker(log, record, 2, Integer.MAX_VALUE);
+        assertChunk(chunker.next(), 0, 2);
+        chunker.close();
+        Assert.assertFalse(chunker.hasNext());
+        Assert.assertNull(chunker.next());
+
+        // the record is read again from the start
+        try (PacketChunker retry = new PacketChunker(log, record, 2, Integer.MAX_VALUE)) {
+            assertChunk(retry.next(), 0, 2);
+        }
+        // closing a chunker, which didn't take a chunk, doesn't read the record
+        new PacketChunker(log, record, 2, Integer.MAX_VALUE).close();
+    }
+
+    @Test
+    public void testCorruptedRecord() throws IOException {
+        PacketLog log = PacketLogs.openCorrupted(folder.newFolder(), "task", createPackets(3), 6);
+        PacketRecord record = log.select("task", Long.MIN_VALUE, Long.MAX_VALUE).get(0);
+
+        // the decoded packets are still sent, only the packets after them are dropped
+        PacketChunker chunker = new PacketChunker(log, record, 10, Integer.MAX_VALUE);
+        PacketChunker.Chunk chunk = chunker.next();
+        assertChunk(chunk, 0, 3);
+        Assert.assertNull(chunker.next());
+        for (int i = 0; i < 6; i++) {
+            Assert.assertEquals(i >= 3, log.isSent(record, i));
+        }
+
+        chunk.acknowledge();
+        Assert.assertTrue(log.select(null, Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+        Assert.assertEquals(0, log.size());
+    }
+
+    private static void assertChunk(PacketChunker.Chunk chunk, long from, int count) {
+        Assert.assertNotNull(chunk);
+        Assert.assertEquals(count, chunk.getPackets().size());
+        for (int i = 0; i < count; i++) {
+            Assert.assertEquals(from + i, chunk.getPackets().get(i).getLong("time", -1L));
+        }
+    }
+
+    private static PacketRecord append(PacketLog log, List<ProcessedDataPacket> packets) {
+        Assert.assertTrue(log.append("task", packets) > 0);
+        log.sealActive();
+        List<PacketRecord> records = log.select("task", Long.MIN_VALUE, Long.MAX_VALUE);
+        Assert.assertEquals(1, records.size());
+        return records.get(0);
+    }
+
+    private static List<ProcessedDataPacket> createPackets(int count) {
+        List<ProcessedDataPacket> packets = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            packets.add(createPacket(i, ""));
+        }
+        return packets;
+    }
+
+    private static ProcessedDataPacket createPacket(long time, String padding) {
+        ProcessedDataPacket packet = new ProcessedDataPacket("task");
+        packet.putLong("time", time);
+        packet.putString("SSID", "Datenkrake" + padding);
+        return packet;
+    }
+}
@@ -0,0 +1,127 @@
+package de.datenkraken.datenkrake.surveillance.background;
+
+import android.content.Context;
+
+import net.lachlanmckee.timberjunit.TimberTestRule;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import de.datenkraken.datenkrake.surveillance.ProcessedDataCollector;
+
+public class ProcessorRunTest {
+
+    // Rule to pipe Timber output to system.out
+    @Rule
+    public TimberTestRule logAllAlwaysRule = TimberTestRule.logAllAlways();
+
+    @Test
+    public void testProcessorsRunConcurrently() {
+        // both processors only return, once the other one started
+        CountDownLatch started = new CountDownLatch(2);
+        IBackgroundProcessor waiting = new IBackgroundProcessor() {
+            @Override
+            public void process(Context context, ProcessedDataCollector collector) {
+                started.countDown();
+                try {
+                    Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        IBackgroundProcessor failing = new IBackgroundProcessor() {
+            @Override
+            public void process(Context context, ProcessedDataCollector collector) {
+                throw new IllegalStateException("failing processor");
+            }
+        };
+
+        TestProcessor delayed = new TestProcessor(50);
+
+        ProcessorRun run = new ProcessorRun(new IBackgroundProcessor[] {waiting, waiting, failing, delayed});
+        long start = System.nanoTime();
+        run.start(null, null);
+        Assert.assertTrue(run.await(10000));
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        Assert.assertEquals(0, started.getCount());
+        Assert.assertFalse(delayed.result.isCancelled());
+    }
+
+    @Test
+    public void testTimeout() {
+        TestProcessor done = new TestProcessor(0);
+        TestProcessor endless = new TestProcessor(-1);
+        ProcessorRun run = new ProcessorRun(new IBackgroundProcessor[] {done, endless});
+        long start = System.nanoTime();
+        run.start(null, null);
+        Assert.assertFalse(run.await(50));
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+        // the processor has to stop acquiring data
+        Assert.assertTrue(endless.result.isCancelled());
+        Assert.assertFalse(done.result.isCancelled());
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        TestProcessor endless = new TestProcessor(-1);
+        ProcessorRun run = new ProcessorRun(new IBackgroundProcessor[] {endless});
+        run.start(null, null);
+        Thread canceller = new Thread(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            run.cancel();
+        });
+        canceller.start();
+
+        long start = System.nanoTime();
+        Assert.assertFalse(run.await(60000));
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+        Assert.assertTrue(endless.result.isCancelled());
+        canceller.join();
+    }
+
+    /**
+     * Processor, which is done after the given delay, never if it is negative.
+     */
+    private static class TestProcessor implements IBackgroundProcessor {
+
+        private final long delay;
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        TestProcessor(long delay) {
+            this.delay = delay;
+        }
+
+        @Override
+        public void process(Context context, ProcessedDataCollector collector) {
+            processAsync(context, collector);
+        }
+
+        @Override
+        public CompletableFuture<Void> processAsync(Context context, ProcessedDataCollector collector) {
+            if (delay == 0) {
+                result.complete(null);
+            } else if (delay > 0) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    result.complete(null);
+                });
+                thread.start();
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package de.datenkraken.datenkrake.surveillance.background;
+
+import net.lachlanmckee.timberjunit.TimberTestRule;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.datenkraken.datenkrake.network.ITask;
+import de.datenkraken.datenkrake.network.clients.Client;
+import de.datenkraken.datenkrake.util.Callback;
+
+public class UploadSchedulerTest {
+
+    // Rule to pipe Timber output to system.out
+    @Rule
+    public TimberTestRule logAllAlwaysRule = TimberTestRule.logAllAlways();
+
+    @Test
+    public void testParallelismLimit() throws InterruptedException {
+        UploadScheduler scheduler = new UploadScheduler(2, 60000);
+        BlockingQueue<FakeTask> requested = new LinkedBlockingQueue<>();
+        Outcomes outcomes = new Outcomes();
+
+        Thread submitter = new Thread(() -> {
+            for (int i = 0; i < 3; i++) {
+                scheduler.submit(callback -> new FakeTask(callback, requested), outcomes);
+            }
+        });
+        submitter.start();
+
+        FakeTask first = requested.poll(10, TimeUnit.SECONDS);
+        FakeTask second = requested.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull(first);
+        Assert.assertNotNull(second);
+        // the third batch waits for a free slot
+        Assert.assertNull(requested.poll(100, TimeUnit.MILLISECONDS));
+
+        first.callback.onSuccess();
+        FakeTask third = requested.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull(third);
+        submitter.join(10000);
+        Assert.assertFalse(submitter.isAlive());
+
+        second.callback.onSuccess();
+        third.callback.onFailure();
+        Assert.assertTrue(scheduler.awaitCompletion());
+        Assert.assertEquals(2, scheduler.getSucceeded());
+        Assert.assertEquals(1, scheduler.getFailed());
+        Assert.assertEquals(2, outcomes.succeeded.get());
+        Assert.assertEquals(1, outcomes.failed.get());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testTimeout() {
+        UploadScheduler scheduler = new UploadScheduler(1, 50);
+        BlockingQueue<FakeTask> requested = new LinkedBlockingQueue<>();
+        Outcomes outcomes = new Outcomes();
+
+        // the task never calls back
+        Assert.assertTrue(scheduler.submit(callback -> new FakeTask(callback, requested), outcomes));
+        long start = System.nanoTime();
+        Assert.assertTrue(scheduler.awaitCompletion());
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+
+        FakeTask task = requested.peek();
+        Assert.assertNotNull(task);
+        Assert.assertTrue(task.cancelled);
+        Assert.assertEquals(1, scheduler.getFailed());
+        Assert.assertEquals(1, outcomes.failed.get());
+
+        // a late answer doesn't change the outcome
+        task.callback.onSuccess();
+        Assert.assertEquals(0, scheduler.getSucceeded());
+        Assert.assertEquals(0, outcomes.succeeded.get());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testAwaitCompletion() {
+        UploadScheduler scheduler = new UploadScheduler(4, 60000);
+        Outcomes outcomes = new Outcomes();
+
+        for (int i = 0; i < 3; i++) {
+            long delay = 20L * (i + 1);
+            boolean success = i != 1;
+            Assert.assertTrue(scheduler.submit(callback -> new FakeTask(callback, null) {
+                @Override
+                public void request() {
+                    Thread thread = new Thread(() -> {
+                        try {
+                            Thread.sleep(delay);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        if (success) {
+                            callback.onSuccess();
+                        } else {
+                            callback.onFailure();
+                        }
+                    });
+                    thread.start();
+                }
+            }, outcomes));
+        }
+        // nothing to send frees the slot right away
+        Assert.assertTrue(scheduler.submit(callback -> null, outcomes));
+
+        Assert.assertTrue(scheduler.awaitCompletion());
+        Assert.assertEquals(2, outcomes.succeeded.get());
+        Assert.assertEquals(1, outcomes.failed.get());
+        Assert.assertEquals(2, scheduler.getSucceeded());
+        Assert.assertEquals(1, scheduler.getFailed());
+        scheduler.shutdown();
+    }
+
+    /**
+     * Counts the outcomes passed to the callback of the batches.
+     */
+    private static class Outcomes implements Callback {
+
+        final AtomicInteger succeeded = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+
+        @Override
+        public void onSuccess() {
+            succeeded.incrementAndGet();
+        }
+
+        @Override
+        public void onFailure() {
+            failed.incrementAndGet();
+        }
+    }
+
+    /**
+     * Task, which only calls back, when the test tells it to.
+     */
+    private static class FakeTask implements ITask {
+
+        final Callback callback;
+        private final BlockingQueue<FakeTask> requested;
+        volatile boolean cancelled;
+
+        FakeTask(Callback callback, BlockingQueue<FakeTask> requested) {
+            this.callback = callback;
+            this.requested = requested;
+        }
+
+        @Override
+        public void request() {
+            requested.add(this);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public Class<? extends Client<? extends ITask>> processedBy() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package de.datenkraken.datenkrake.surveillance.metrics;
+
+import net.lachlanmckee.timberjunit.TimberTestRule;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MetricsRegistryTest {
+
+    // Rule to pipe Timber output to system.out
+    @Rule
+    public TimberTestRule logAllAlwaysRule = TimberTestRule.logAllAlways();
+
+    @Test
+    public void testConcurrentCounter() throws InterruptedException {
+        MetricsRegistry registry = new MetricsRegistry();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                Counter counter = registry.counter("events.test");
+                for (int j = 0; j < 10000; j++) {
+                    counter.increment();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertSame(registry.counter("events.test"), registry.counter("events.test"));
+        Assert.assertEquals(40000, registry.snapshot().getCounter("events.test"));
+        Assert.assertEquals(0, registry.snapshot().getCounter("events.missing"));
+    }
+
+    @Test
+    public void testHistogram() {
+        MetricsRegistry registry = new MetricsRegistry();
+        LatencyHistogram histogram = registry.histogram("uploads.latency");
+        Assert.assertEquals(0, histogram.getPercentile(50));
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        histogram.record(-5);
+
+        Assert.assertEquals(1001, histogram.getCount());
+        Assert.assertEquals(1000000, histogram.getMax());
+        // buckets are at most an eighth wide
+        Assert.assertEquals(500000, histogram.getPercentile(50), 500000 / 8.0);
+        Assert.assertEquals(990000, histogram.getPercentile(99), 990000 / 8.0);
+        Assert.assertEquals(1000000, histogram.getPercentile(100));
+        Assert.assertEquals(0, histogram.getPercentile(0));
+        Assert.assertTrue(registry.snapshot().getHistograms().containsKey("uploads.latency"));
+    }
+
+    @Test
+    public void testBuckets() {
+        int last = -1;
+        for (long value : new long[] {0, 1, 15, 16, 17, 31, 32, 1000, 1L << 40, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.getIndex(value);
+            Assert.assertTrue(index >= last);
+            Assert.assertTrue(LatencyHistogram.getUpperBound(index) >= value);
+            last = index;
+        }
+        Assert.assertEquals(Long.MAX_VALUE, LatencyHistogram.getUpperBound(LatencyHistogram.getIndex(Long.MAX_VALUE)));
+    }
+}